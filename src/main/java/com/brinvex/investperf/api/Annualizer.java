@@ -3,7 +3,9 @@ package com.brinvex.investperf.api;
 import com.brinvex.investperf.internal.AnnualizerImpl;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.time.LocalDate;
+import java.time.Period;
 
 public interface Annualizer {
 
@@ -27,9 +29,57 @@ public interface Annualizer {
             LocalDate endDateIncl
     );
 
+    /**
+     * The same as {@link #annualizeGrowthFactor(AnnualizationOption, BigDecimal, LocalDate, LocalDate)},
+     * but with the root taken in BigDecimal to the given precision instead of in double, which limits the result to about 16 valid digits.
+     *
+     * @param mathContext null for the root in double
+     */
+    BigDecimal annualizeGrowthFactor(
+            AnnualizationOption annualizationOption,
+            BigDecimal cumulGrowthFactor,
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            MathContext mathContext
+    );
+
+    default BigDecimal[] annualizeGrowthFactors(
+            AnnualizationOption annualizationOption,
+            BigDecimal[] cumulGrowthFactors,
+            LocalDate startDateIncl,
+            LocalDate[] endDatesIncl
+    ) {
+        return annualizeGrowthFactors(annualizationOption, cumulGrowthFactors, startDateIncl, endDatesIncl, null);
+    }
+
+    /**
+     * Annualizes the cumulative growth factors of the periods from the given start date to each of the given end dates,
+     * each the same as {@link #annualizeGrowthFactor(AnnualizationOption, BigDecimal, LocalDate, LocalDate, MathContext)} does,
+     * but with the years and days of the periods counted incrementally, which is the cheapest for the end dates in ascending order.
+     *
+     * @param cumulGrowthFactors a null factor gives a null result
+     * @param mathContext        null for the root in double
+     */
+    BigDecimal[] annualizeGrowthFactors(
+            AnnualizationOption annualizationOption,
+            BigDecimal[] cumulGrowthFactors,
+            LocalDate startDateIncl,
+            LocalDate[] endDatesIncl,
+            MathContext mathContext
+    );
+
     BigDecimal annualizeGrowthFactor(
             AnnualizationOption annualizationOption,
             BigDecimal cumulGrowthFactor,
             int fullYears
     );
+
+    /**
+     * @param period a positive whole number of months or years, e.g. a trailing window length
+     */
+    BigDecimal annualizeGrowthFactor(
+            AnnualizationOption annualizationOption,
+            BigDecimal cumulGrowthFactor,
+            Period period
+    );
 }
@@ -0,0 +1,122 @@
+package com.brinvex.investperf.api;
+
+import com.brinvex.fintypes.vo.DateAmount;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.lang.Math.toIntExact;
+
+/**
+ * Daily values backed by an array indexed by the epoch day offset from the first date,
+ * so that a value is read by an index lookup instead of hashing the date.
+ * The days without a value are null.
+ * <p>
+ * It is accepted as the assetValues of {@link PerfAnalysisRequest} and {@link PerfCalcRequest} as is,
+ * and the calculators and analyzers read it by the epoch day index instead of through {@link Function#apply}.
+ */
+public final class DailySeries implements Function<LocalDate, BigDecimal> {
+
+    private final long startEpochDay;
+    private final BigDecimal[] values;
+
+    private DailySeries(long startEpochDay, BigDecimal[] values) {
+        this.startEpochDay = startEpochDay;
+        this.values = values;
+    }
+
+    /**
+     * @param values the values of the consecutive days starting with the given date, null elements for missing days
+     */
+    public static DailySeries of(LocalDate startDateIncl, List<BigDecimal> values) {
+        if (startDateIncl == null) {
+            throw new IllegalArgumentException("startDateIncl must not be null");
+        }
+        return new DailySeries(startDateIncl.toEpochDay(), values.toArray(new BigDecimal[0]));
+    }
+
+    public static DailySeries of(Map<LocalDate, BigDecimal> values) {
+        if (values.isEmpty()) {
+            return new DailySeries(0, new BigDecimal[0]);
+        }
+        long startEpochDay = Long.MAX_VALUE;
+        long endEpochDay = Long.MIN_VALUE;
+        for (LocalDate date : values.keySet()) {
+            long epochDay = date.toEpochDay();
+            startEpochDay = Math.min(startEpochDay, epochDay);
+            endEpochDay = Math.max(endEpochDay, epochDay);
+        }
+        BigDecimal[] array = new BigDecimal[toIntExact(endEpochDay - startEpochDay + 1)];
+        for (Map.Entry<LocalDate, BigDecimal> e : values.entrySet()) {
+            array[toIntExact(e.getKey().toEpochDay() - startEpochDay)] = e.getValue();
+        }
+        return new DailySeries(startEpochDay, array);
+    }
+
+    public static DailySeries of(Collection<DateAmount> values) {
+        if (values.isEmpty()) {
+            return new DailySeries(0, new BigDecimal[0]);
+        }
+        LocalDate startDateIncl = values.stream().map(DateAmount::date).min(LocalDate::compareTo).orElseThrow();
+        LocalDate endDateIncl = values.stream().map(DateAmount::date).max(LocalDate::compareTo).orElseThrow();
+        return of(values, startDateIncl, endDateIncl);
+    }
+
+    /**
+     * Only the values within the given date range are included.
+     */
+    public static DailySeries of(Collection<DateAmount> values, LocalDate startDateIncl, LocalDate endDateIncl) {
+        long startEpochDay = startDateIncl.toEpochDay();
+        long endEpochDay = endDateIncl.toEpochDay();
+        BigDecimal[] array = new BigDecimal[toIntExact(Math.max(0, endEpochDay - startEpochDay + 1))];
+        for (DateAmount dateValue : values) {
+            LocalDate date = dateValue.date();
+            BigDecimal value = dateValue.amount();
+            long epochDay = date.toEpochDay();
+            if (epochDay >= startEpochDay && epochDay <= endEpochDay) {
+                int index = toIntExact(epochDay - startEpochDay);
+                BigDecimal oldValue = array[index];
+                if (oldValue != null && oldValue.compareTo(value) != 0) {
+                    throw new IllegalArgumentException((
+                            "The values collection must not contain different entries for the same date; " +
+                            "given: %s, %s, %s")
+                            .formatted(date, oldValue, value));
+                }
+                array[index] = value;
+            }
+        }
+        return new DailySeries(startEpochDay, array);
+    }
+
+    /**
+     * @return the first date of the series, or null if the series is empty
+     */
+    public LocalDate startDateIncl() {
+        return values.length == 0 ? null : LocalDate.ofEpochDay(startEpochDay);
+    }
+
+    /**
+     * @return the last date of the series, or null if the series is empty
+     */
+    public LocalDate endDateIncl() {
+        return values.length == 0 ? null : LocalDate.ofEpochDay(startEpochDay + values.length - 1);
+    }
+
+    public BigDecimal get(long epochDay) {
+        long index = epochDay - startEpochDay;
+        return index < 0 || index >= values.length ? null : values[(int) index];
+    }
+
+    public BigDecimal get(LocalDate date) {
+        return get(date.toEpochDay());
+    }
+
+    @Override
+    public BigDecimal apply(LocalDate date) {
+        return get(date.toEpochDay());
+    }
+}
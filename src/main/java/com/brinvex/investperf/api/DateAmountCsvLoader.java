@@ -0,0 +1,54 @@
+package com.brinvex.investperf.api;
+
+import com.brinvex.investperf.internal.DateAmountCsvLoaderImpl;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.SequencedMap;
+import java.util.SortedMap;
+
+/**
+ * Loads the {@code date,amount} text files, one ISO date and one plain decimal per line, e.g. {@code 2023-10-17,-1250.50},
+ * or the {@code account,date,amount} files of more accounts.
+ * The file is memory-mapped and the dates and amounts are parsed straight from its bytes without a String per line,
+ * the blank lines are skipped and the fields may be surrounded by spaces.
+ * An amount with an exponent or with too many digits for a long falls back to {@link BigDecimal#BigDecimal(String)}.
+ * <p>
+ * The asset values are loaded into a {@link DailySeries} and the flows into the same sorted map of flows
+ * the requests index their flows into, with the amounts of the same date summed up,
+ * so both can be passed to {@link PerfAnalysisRequest} or {@link PerfCalcRequest} as they are.
+ * An I/O failure is thrown as {@link java.io.UncheckedIOException}, a malformed line as {@link IllegalArgumentException}.
+ */
+public interface DateAmountCsvLoader {
+
+    DateAmountCsvLoader INSTANCE = new DateAmountCsvLoaderImpl();
+
+    /**
+     * @param windowSize the file is mapped in windows of this many bytes at most, each ending at the last line break within it,
+     *                   so every line must be shorter; the default is 1 GB, since a single mapping is limited to 2 GB
+     */
+    static DateAmountCsvLoader withWindowSize(int windowSize) {
+        return new DateAmountCsvLoaderImpl(windowSize);
+    }
+
+    DailySeries loadAssetValues(Path file);
+
+    SortedMap<LocalDate, BigDecimal> loadFlows(Path file);
+
+    /**
+     * Splits an {@code account,date,amount} file into the asset values of each account in one pass.
+     * The lines of an account need not be adjacent, but adjacent lines are the cheapest.
+     *
+     * @return the series keyed by the account, in the order of the first lines of the accounts
+     */
+    SequencedMap<String, DailySeries> loadAssetValuesByAccount(Path file);
+
+    /**
+     * Splits an {@code account,date,amount} file into the flows of each account in one pass.
+     *
+     * @return the flows keyed by the account, in the order of the first lines of the accounts
+     * @see #loadAssetValuesByAccount(Path)
+     */
+    SequencedMap<String, SortedMap<LocalDate, BigDecimal>> loadFlowsByAccount(Path file);
+}
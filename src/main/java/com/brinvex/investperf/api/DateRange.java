@@ -0,0 +1,21 @@
+package com.brinvex.investperf.api;
+
+import java.time.LocalDate;
+
+public record DateRange(
+        LocalDate startDateIncl,
+        LocalDate endDateIncl
+) {
+    public DateRange {
+        if (startDateIncl == null) {
+            throw new IllegalArgumentException("startDateIncl must not be null");
+        }
+        if (endDateIncl == null) {
+            throw new IllegalArgumentException("endDateIncl must not be null");
+        }
+        if (startDateIncl.isAfter(endDateIncl)) {
+            throw new IllegalArgumentException("startDateIncl must be before endDateIncl, given: %s, %s"
+                    .formatted(startDateIncl, endDateIncl));
+        }
+    }
+}
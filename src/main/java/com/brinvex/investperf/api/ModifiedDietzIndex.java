@@ -0,0 +1,31 @@
+package com.brinvex.investperf.api;
+
+import com.brinvex.investperf.internal.ModifiedDietzIndexImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The Modified Dietz money-weighted return of any date range within the date range of a {@link PerfCalcRequest},
+ * e.g. the cumulative, period or trailing ranges of a report.
+ * The weight of a flow is linear in its date, so the prefix sums {@code Σflow} and {@code Σ(flow * epochDay)},
+ * computed once, give the weighted flow sum of a range by two lookups instead of walking all its flows.
+ * <p>
+ * A range gives the same as {@link PerformanceCalculator.ModifiedDietzMwrCalculator} would give
+ * for the request narrowed to the range in {@link NumericMode#BIG_DECIMAL},
+ * with the flow timing, annualization, calcScale, resultScale and roundingMode of the request.
+ * The asset values on the days before the range starts and on the days the range ends must be available,
+ * except for the start and end dates of the request, which use its startAssetValueExcl and endAssetValueIncl.
+ */
+public interface ModifiedDietzIndex {
+
+    static ModifiedDietzIndex of(PerfCalcRequest perfCalcRequest) {
+        return ModifiedDietzIndexImpl.of(perfCalcRequest);
+    }
+
+    LocalDate startDateIncl();
+
+    LocalDate endDateIncl();
+
+    BigDecimal mwr(LocalDate startDateIncl, LocalDate endDateIncl);
+}
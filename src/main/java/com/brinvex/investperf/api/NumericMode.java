@@ -0,0 +1,17 @@
+package com.brinvex.investperf.api;
+
+public enum NumericMode {
+
+    /**
+     * Every step is calculated in {@link java.math.BigDecimal} and scaled to the calcScale.
+     */
+    BIG_DECIMAL,
+
+    /**
+     * The calculators run in double arithmetic, summing with compensation and chaining growth factors as a sum of logarithms,
+     * and convert the return to {@link java.math.BigDecimal} only at the end.
+     * It is much faster but only about the first 13 to 15 significant digits are reliable,
+     * see {@link PerformanceCalculator#calculateReturnWithErrorBound(PerfCalcRequest)}.
+     */
+    DOUBLE,
+}
@@ -0,0 +1,99 @@
+package com.brinvex.investperf.api;
+
+import com.brinvex.investperf.internal.OffHeapSeriesImpl;
+
+import java.lang.foreign.Arena;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+/**
+ * A series of dated amounts stored outside the heap, in a memory segment of the given {@link Arena},
+ * as a column of epoch days and a column of amounts as unscaled longs of the fixed scale of the series.
+ * A series of tens of millions of days takes twelve bytes a day and no heap objects,
+ * the amounts are turned into BigDecimals only when they are read.
+ * <p>
+ * It is a {@code Function<LocalDate, BigDecimal>}, so it can be passed as the assetValues
+ * of {@link PerfAnalysisRequest} or {@link PerfCalcRequest} directly,
+ * an asset value is read by the offset of its date from the first date if no day is missing, otherwise by a binary search.
+ * The calculators read it by {@link #getUnscaled(long)}, without allocating a BigDecimal for each asset value they only need as a double.
+ * The flows and incomes are read only within the asked date range, e.g. {@code flows(flowSeries::subMap)}
+ * of {@link PerfAnalysisRequest.PerfAnalysisRequestBuilder}.
+ * <p>
+ * The series is valid as long as its arena is alive and can be read by the threads its arena allows,
+ * e.g. a {@link Arena#ofShared()} or {@link Arena#ofAuto()} arena to analyze a {@link PerfAnalysisBatch} in parallel.
+ */
+public interface OffHeapSeries extends Function<LocalDate, BigDecimal> {
+
+    /**
+     * The value of {@link #getUnscaled(long)} for a day without an amount, not accepted as an amount.
+     */
+    long NO_AMOUNT = Long.MIN_VALUE;
+
+    /**
+     * @param scale the scale of the amounts, an amount with more decimal places is rejected
+     */
+    static OffHeapSeriesBuilder builder(Arena arena, int scale) {
+        return OffHeapSeriesImpl.builder(arena, scale);
+    }
+
+    static OffHeapSeries of(Arena arena, int scale, Map<LocalDate, BigDecimal> values) {
+        return OffHeapSeriesImpl.of(arena, scale, values);
+    }
+
+    int size();
+
+    int scale();
+
+    /**
+     * @return the first date of the series, or null if the series is empty
+     */
+    LocalDate startDateIncl();
+
+    /**
+     * @return the last date of the series, or null if the series is empty
+     */
+    LocalDate endDateIncl();
+
+    /**
+     * @return the amount of the given day, or null if there is none
+     */
+    BigDecimal get(long epochDay);
+
+    /**
+     * @return the amount of the given day as an unscaled value of the {@link #scale()}, or {@link #NO_AMOUNT} if there is none
+     */
+    long getUnscaled(long epochDay);
+
+    @Override
+    default BigDecimal apply(LocalDate date) {
+        return get(date.toEpochDay());
+    }
+
+    /**
+     * @return the amounts of the given date range, read into an immutable sorted map backed by arrays,
+     * with the fixed-point sums taken from the unscaled amounts
+     */
+    SortedMap<LocalDate, BigDecimal> subMap(LocalDate startDateIncl, LocalDate endDateIncl);
+
+    /**
+     * Appends the amounts of consecutive dates, growing the memory off the heap as well.
+     * The memory of the series is allocated in the arena when it is built, the one used while appending is released then.
+     */
+    interface OffHeapSeriesBuilder {
+
+        /**
+         * @param date a date after the date of the previously added amount
+         */
+        OffHeapSeriesBuilder add(LocalDate date, BigDecimal amount);
+
+        /**
+         * @param unscaledAmount the amount as an unscaled value of the scale of the series, other than {@link #NO_AMOUNT}
+         */
+        OffHeapSeriesBuilder add(long epochDay, long unscaledAmount);
+
+        OffHeapSeries build();
+    }
+}
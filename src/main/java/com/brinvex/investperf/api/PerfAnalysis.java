@@ -2,6 +2,8 @@ package com.brinvex.investperf.api;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.SequencedMap;
 
 /**
  * Represents the performance details for a specific period.
@@ -31,6 +33,7 @@ import java.time.LocalDate;
  * @param trailingTwr3Y             The trailing Time-Weighted Return over the past 3 years.
  * @param trailingTwr5Y             The trailing Time-Weighted Return over the past 5 years.
  * @param trailingTwr10Y            The trailing Time-Weighted Return over the past 10 years.
+ * @param trailingTwrs              The trailing Time-Weighted Returns over the requested trailing periods, annualized if over one year.
  */
 public record PerfAnalysis(
         LocalDate periodStartDateIncl,
@@ -55,8 +58,64 @@ public record PerfAnalysis(
         BigDecimal trailingTwr2Y,
         BigDecimal trailingTwr3Y,
         BigDecimal trailingTwr5Y,
-        BigDecimal trailingTwr10Y
+        BigDecimal trailingTwr10Y,
+        SequencedMap<Period, BigDecimal> trailingTwrs
 ) {
+    /**
+     * Without the {@link #trailingTwrs()} of other trailing periods.
+     */
+    public PerfAnalysis(
+            LocalDate periodStartDateIncl,
+            LocalDate periodEndDateIncl,
+            String periodCaption,
+            BigDecimal periodStartAssetValueExcl,
+            BigDecimal periodEndAssetValueIncl,
+            BigDecimal periodFlow,
+            BigDecimal periodTwr,
+            BigDecimal cumulativeTwr,
+            BigDecimal annualizedTwr,
+            BigDecimal cumulativeMwr,
+            BigDecimal annualizedMwr,
+            BigDecimal totalContribution,
+            BigDecimal periodProfit,
+            BigDecimal totalProfit,
+            BigDecimal periodIncome,
+            BigDecimal trailingAvgProfit1Y,
+            BigDecimal trailingAvgFlow1Y,
+            BigDecimal trailingAvgIncome1Y,
+            BigDecimal trailingTwr1Y,
+            BigDecimal trailingTwr2Y,
+            BigDecimal trailingTwr3Y,
+            BigDecimal trailingTwr5Y,
+            BigDecimal trailingTwr10Y
+    ) {
+        this(
+                periodStartDateIncl,
+                periodEndDateIncl,
+                periodCaption,
+                periodStartAssetValueExcl,
+                periodEndAssetValueIncl,
+                periodFlow,
+                periodTwr,
+                cumulativeTwr,
+                annualizedTwr,
+                cumulativeMwr,
+                annualizedMwr,
+                totalContribution,
+                periodProfit,
+                totalProfit,
+                periodIncome,
+                trailingAvgProfit1Y,
+                trailingAvgFlow1Y,
+                trailingAvgIncome1Y,
+                trailingTwr1Y,
+                trailingTwr2Y,
+                trailingTwr3Y,
+                trailingTwr5Y,
+                trailingTwr10Y,
+                null);
+    }
+
     public static PerfAnalysisBuilder builder() {
         return new PerfAnalysisBuilder();
     }
@@ -85,6 +144,7 @@ public record PerfAnalysis(
         private BigDecimal trailingTwr3Y;
         private BigDecimal trailingTwr5Y;
         private BigDecimal trailingTwr10Y;
+        private SequencedMap<Period, BigDecimal> trailingTwrs;
 
         PerfAnalysisBuilder() {
         }
@@ -204,6 +264,11 @@ public record PerfAnalysis(
             return this;
         }
 
+        public PerfAnalysisBuilder trailingTwrs(SequencedMap<Period, BigDecimal> trailingTwrs) {
+            this.trailingTwrs = trailingTwrs;
+            return this;
+        }
+
         public PerfAnalysis build() {
             return new PerfAnalysis(
                     this.periodStartDateIncl,
@@ -228,7 +293,8 @@ public record PerfAnalysis(
                     this.trailingTwr2Y,
                     this.trailingTwr3Y,
                     this.trailingTwr5Y,
-                    this.trailingTwr10Y);
+                    this.trailingTwr10Y,
+                    this.trailingTwrs);
         }
     }
 }
@@ -0,0 +1,53 @@
+package com.brinvex.investperf.api;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SequencedCollection;
+
+/**
+ * The outcome of {@link PerformanceAnalyzer#analyzePerformance(java.util.Collection, int)}.
+ *
+ * @param outcomes the outcome of each request, in the order of the requests
+ * @param elapsed  the wall-clock duration of the whole batch
+ */
+public record PerfAnalysisBatch(
+        List<Outcome> outcomes,
+        Duration elapsed
+) {
+    public PerfAnalysisBatch {
+        outcomes = List.copyOf(outcomes);
+    }
+
+    /**
+     * @param results the results of the request, null if it failed
+     * @param failure the failure of the request, null if it succeeded
+     */
+    public record Outcome(
+            SequencedCollection<PerfAnalysis> results,
+            RuntimeException failure
+    ) {
+        public boolean succeeded() {
+            return failure == null;
+        }
+    }
+
+    public int failureCount() {
+        return (int) outcomes.stream().filter(outcome -> !outcome.succeeded()).count();
+    }
+
+    public double requestsPerSecond() {
+        return perSecond(outcomes.size());
+    }
+
+    /**
+     * @return the number of the result rows of the succeeded requests per second
+     */
+    public double resultsPerSecond() {
+        return perSecond(outcomes.stream().filter(Outcome::succeeded).mapToLong(outcome -> outcome.results().size()).sum());
+    }
+
+    private double perSecond(long count) {
+        long elapsedNanos = elapsed.toNanos();
+        return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+    }
+}
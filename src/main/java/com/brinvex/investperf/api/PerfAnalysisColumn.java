@@ -0,0 +1,46 @@
+package com.brinvex.investperf.api;
+
+/**
+ * The columns of {@link PerfAnalysis} a {@link PerfAnalysisWriter} can write, named after the record components.
+ * The {@link PerfAnalysis#trailingTwrs()} map is not a single column, the trailing TWRs of 1 to 10 years are.
+ */
+public enum PerfAnalysisColumn {
+
+    PERIOD_START_DATE_INCL("periodStartDateIncl"),
+    PERIOD_END_DATE_INCL("periodEndDateIncl"),
+    PERIOD_CAPTION("periodCaption"),
+    PERIOD_START_ASSET_VALUE_EXCL("periodStartAssetValueExcl"),
+    PERIOD_END_ASSET_VALUE_INCL("periodEndAssetValueIncl"),
+    PERIOD_FLOW("periodFlow"),
+    PERIOD_TWR("periodTwr"),
+    CUMULATIVE_TWR("cumulativeTwr"),
+    ANNUALIZED_TWR("annualizedTwr"),
+    CUMULATIVE_MWR("cumulativeMwr"),
+    ANNUALIZED_MWR("annualizedMwr"),
+    TOTAL_CONTRIBUTION("totalContribution"),
+    PERIOD_PROFIT("periodProfit"),
+    TOTAL_PROFIT("totalProfit"),
+    PERIOD_INCOME("periodIncome"),
+    TRAILING_AVG_PROFIT_1Y("trailingAvgProfit1Y"),
+    TRAILING_AVG_FLOW_1Y("trailingAvgFlow1Y"),
+    TRAILING_AVG_INCOME_1Y("trailingAvgIncome1Y"),
+    TRAILING_TWR_1Y("trailingTwr1Y"),
+    TRAILING_TWR_2Y("trailingTwr2Y"),
+    TRAILING_TWR_3Y("trailingTwr3Y"),
+    TRAILING_TWR_5Y("trailingTwr5Y"),
+    TRAILING_TWR_10Y("trailingTwr10Y"),
+    ;
+
+    private final String columnName;
+
+    PerfAnalysisColumn(String columnName) {
+        this.columnName = columnName;
+    }
+
+    /**
+     * @return the name of the record component, used in the header of CSV, the keys of JSON and the header of the columnar format
+     */
+    public String columnName() {
+        return columnName;
+    }
+}
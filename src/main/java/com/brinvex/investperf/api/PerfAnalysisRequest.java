@@ -11,14 +11,19 @@ import com.brinvex.investperf.internal.RequestSanitizer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.Period;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.SortedMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
 public final class PerfAnalysisRequest {
     private final Frequency resultFrequency;
+    private final List<Frequency> resultFrequencies;
     private final LocalDate resultStartDateIncl;
     private final LocalDate resultEndDateIncl;
     private final LocalDate performanceMeasureStartDateIncl;
@@ -35,6 +40,8 @@ public final class PerfAnalysisRequest {
     private final int resultRateScale;
     private final int resultAmountScale;
     private final RoundingMode roundingMode;
+    private final NumericMode numericMode;
+    private final boolean fixedPointAmounts;
     private final boolean calculateMwr;
     private final boolean calculateTrailingAvgProfit1Y;
     private final boolean calculateTrailingAvgFlow1Y;
@@ -46,10 +53,12 @@ public final class PerfAnalysisRequest {
     private final boolean calculateTrailingTwr3Y;
     private final boolean calculateTrailingTwr5Y;
     private final boolean calculateTrailingTwr10Y;
+    private final List<Period> trailingTwrPeriods;
 
     @SuppressWarnings("ReplaceNullCheck")
     private PerfAnalysisRequest(
             Frequency resultFrequency,
+            Collection<Frequency> resultFrequencies,
             LocalDate resultStartDateIncl,
             LocalDate resultEndDateIncl,
             LocalDate performanceMeasureStartDateIncl,
@@ -70,6 +79,8 @@ public final class PerfAnalysisRequest {
             Integer resultRateScale,
             Integer resultAmountScale,
             RoundingMode roundingMode,
+            NumericMode numericMode,
+            Boolean fixedPointAmounts,
             Boolean calculateMwr,
             Boolean calculateTrailingAvgProfit1Y,
             Boolean calculateTrailingAvgFlow1Y,
@@ -82,7 +93,8 @@ public final class PerfAnalysisRequest {
             Boolean calculateTrailingTwr2Y,
             Boolean calculateTrailingTwr3Y,
             Boolean calculateTrailingTwr5Y,
-            Boolean calculateTrailingTwr10Y
+            Boolean calculateTrailingTwr10Y,
+            Collection<Period> trailingTwrPeriods
     ) {
         if (resultStartDateIncl == null) {
             throw new IllegalArgumentException("resultStartDateIncl must not be null");
@@ -94,14 +106,33 @@ public final class PerfAnalysisRequest {
             throw new IllegalArgumentException("resultStartDateIncl must be before resultEndDateIncl, given: %s, %s"
                     .formatted(resultStartDateIncl, resultEndDateIncl));
         }
-        if (resultFrequency == Frequency.DAY) {
-            throw new IllegalArgumentException("resultFrequency must not be DAY");
-        }
         this.resultStartDateIncl = resultStartDateIncl;
         this.resultEndDateIncl = resultEndDateIncl;
         this.performanceMeasureStartDateIncl = performanceMeasureStartDateIncl == null ? resultStartDateIncl : performanceMeasureStartDateIncl;
         this.performanceMeasureEndDateIncl = performanceMeasureEndDateIncl == null ? resultEndDateIncl : performanceMeasureEndDateIncl;
-        this.resultFrequency = resultFrequency == null ? Frequency.MONTH : resultFrequency;
+        if (resultFrequencies == null || resultFrequencies.isEmpty()) {
+            this.resultFrequency = resultFrequency == null ? Frequency.MONTH : resultFrequency;
+            this.resultFrequencies = List.of(this.resultFrequency);
+        } else {
+            if (resultFrequencies.stream().anyMatch(Objects::isNull)) {
+                throw new IllegalArgumentException("resultFrequencies must not contain null, given: %s".formatted(resultFrequencies));
+            }
+            this.resultFrequencies = resultFrequencies.stream()
+                    .distinct()
+                    .sorted(Comparator.comparing(PerfAnalysisRequest::periodsPerYear).reversed())
+                    .toList();
+            this.resultFrequency = this.resultFrequencies.getFirst();
+            if (resultFrequency != null && resultFrequency != this.resultFrequency) {
+                throw new IllegalArgumentException("resultFrequency must be the finest of resultFrequencies, given: %s, %s"
+                        .formatted(resultFrequency, resultFrequencies));
+            }
+            for (Frequency coarserFrequency : this.resultFrequencies.subList(1, this.resultFrequencies.size())) {
+                if (!nests(this.resultFrequency, coarserFrequency)) {
+                    throw new IllegalArgumentException("each of resultFrequencies must consist of whole periods of the finest one, given: %s, %s"
+                            .formatted(coarserFrequency, this.resultFrequency));
+                }
+            }
+        }
         this.twrFlowTiming = twrFlowTiming == null ? FlowTiming.BEGINNING_OF_DAY : twrFlowTiming;
         this.mwrFlowTiming = mwrFlowTiming == null ? FlowTiming.BEGINNING_OF_DAY : mwrFlowTiming;
         this.twrCalculatorType = twrCalculatorType == null ? TrueTwrCalculator.class.getSimpleName() : twrCalculatorType;
@@ -112,6 +143,8 @@ public final class PerfAnalysisRequest {
         this.resultRateScale = resultRateScale == null ? 6 : resultRateScale;
         this.resultAmountScale = resultAmountScale == null ? 2 : resultAmountScale;
         this.roundingMode = roundingMode == null ? RoundingMode.HALF_UP : roundingMode;
+        this.numericMode = numericMode == null ? NumericMode.BIG_DECIMAL : numericMode;
+        this.fixedPointAmounts = fixedPointAmounts != null && fixedPointAmounts;
         this.calculateMwr = calculateMwr != null && calculateMwr;
         this.calculateTrailingAvgProfit1Y = calculateTrailingAvgProfit1Y != null && calculateTrailingAvgProfit1Y;
         this.calculateTrailingAvgFlow1Y = calculateTrailingAvgFlow1Y != null && calculateTrailingAvgFlow1Y;
@@ -122,6 +155,19 @@ public final class PerfAnalysisRequest {
         this.calculateTrailingTwr3Y = calculateTrailingTwr3Y != null && calculateTrailingTwr3Y;
         this.calculateTrailingTwr5Y = calculateTrailingTwr5Y != null && calculateTrailingTwr5Y;
         this.calculateTrailingTwr10Y = calculateTrailingTwr10Y != null && calculateTrailingTwr10Y;
+        this.trailingTwrPeriods = trailingTwrPeriods == null ? List.of() : List.copyOf(trailingTwrPeriods);
+        for (Period trailingTwrPeriod : this.trailingTwrPeriods) {
+            if (trailingTwrPeriod.getDays() != 0 || trailingTwrPeriod.isNegative() || trailingTwrPeriod.isZero()) {
+                throw new IllegalArgumentException("trailingTwrPeriod must be a positive number of months or years, given: %s"
+                        .formatted(trailingTwrPeriod));
+            }
+            for (Frequency frequency : this.resultFrequencies) {
+                if (frequency != Frequency.DAY && trailingTwrPeriod.toTotalMonths() * frequency.countPerYear() % 12 != 0) {
+                    throw new IllegalArgumentException("trailingTwrPeriod must be a whole number of resultFrequency periods, given: %s, %s"
+                            .formatted(trailingTwrPeriod, frequency));
+                }
+            }
+        }
 
         LocalDate calcStartDateIncl = this.resultStartDateIncl.isAfter(this.performanceMeasureStartDateIncl) ? this.resultStartDateIncl : this.performanceMeasureStartDateIncl;
         LocalDate calcEndDateIncl = this.resultEndDateIncl.isBefore(this.performanceMeasureEndDateIncl) ? this.resultEndDateIncl : this.performanceMeasureEndDateIncl;
@@ -137,12 +183,14 @@ public final class PerfAnalysisRequest {
         if (flowsProvider != null) {
             this.flows = flowsProvider;
         } else {
-            this.flows = (_, _) -> RequestSanitizer.sanitizeFlows(
+            SortedMap<LocalDate, BigDecimal> sanitizedFlows = RequestSanitizer.sanitizeFlows(
                     flowsMap,
                     flowsCollection,
                     calcStartDateIncl,
-                    calcEndDateIncl
+                    calcEndDateIncl,
+                    this.fixedPointAmounts
             );
+            this.flows = (_, _) -> sanitizedFlows;
         }
 
         if (this.calculatePeriodIncome || this.calculateTrailingAvgIncome1Y) {
@@ -155,26 +203,55 @@ public final class PerfAnalysisRequest {
             if (incomesProvider != null) {
                 this.incomes = incomesProvider;
             } else {
-                this.incomes = (_, _) -> RequestSanitizer.sanitizeFlows(
+                SortedMap<LocalDate, BigDecimal> sanitizedIncomes = RequestSanitizer.sanitizeFlows(
                         incomesMap,
                         incomesCollection,
                         calcStartDateIncl,
-                        calcEndDateIncl
+                        calcEndDateIncl,
+                        this.fixedPointAmounts
                 );
+                this.incomes = (_, _) -> sanitizedIncomes;
             }
         } else {
             this.incomes = null;
         }
     }
 
+    private static int periodsPerYear(Frequency frequency) {
+        return frequency == Frequency.DAY ? Integer.MAX_VALUE : frequency.countPerYear();
+    }
+
+    /**
+     * @return true if each period of the coarser frequency is made of whole periods of the finer one
+     */
+    private static boolean nests(Frequency finerFrequency, Frequency coarserFrequency) {
+        if (finerFrequency == Frequency.DAY) {
+            return true;
+        }
+        if (finerFrequency == Frequency.WEEK || coarserFrequency == Frequency.WEEK || coarserFrequency == Frequency.DAY) {
+            return false;
+        }
+        return finerFrequency.countPerYear() % coarserFrequency.countPerYear() == 0;
+    }
+
     public static PerfAnalysisRequestBuilder builder() {
         return new PerfAnalysisRequestBuilder();
     }
 
+    /**
+     * @return the finest of the {@link #resultFrequencies()}
+     */
     public Frequency resultFrequency() {
         return this.resultFrequency;
     }
 
+    /**
+     * @return the result frequencies from the finest to the coarsest one
+     */
+    public List<Frequency> resultFrequencies() {
+        return this.resultFrequencies;
+    }
+
     public LocalDate resultStartDateIncl() {
         return this.resultStartDateIncl;
     }
@@ -239,6 +316,22 @@ public final class PerfAnalysisRequest {
         return this.roundingMode;
     }
 
+    /**
+     * Applies to the calculators evaluating each period,
+     * the periods are chained in {@link NumericMode#BIG_DECIMAL} and the DAY result frequency is not affected.
+     */
+    public NumericMode numericMode() {
+        return this.numericMode;
+    }
+
+    /**
+     * Whether the flows and incomes are summed and the profits and contributions are accumulated as unscaled longs,
+     * falling back to {@link BigDecimal} for the amounts which do not fit, see {@link PerfAnalysisRequestBuilder#fixedPointAmounts(Boolean)}.
+     */
+    public boolean fixedPointAmounts() {
+        return this.fixedPointAmounts;
+    }
+
     public boolean calculateMwr() {
         return this.calculateMwr;
     }
@@ -283,8 +376,13 @@ public final class PerfAnalysisRequest {
         return this.calculateTrailingTwr10Y;
     }
 
+    public List<Period> trailingTwrPeriods() {
+        return this.trailingTwrPeriods;
+    }
+
     public static class PerfAnalysisRequestBuilder {
         private Frequency resultFrequency;
+        private Collection<Frequency> resultFrequencies;
         private LocalDate resultStartDateIncl;
         private LocalDate resultEndDateIncl;
         private LocalDate performanceMeasureStartDateIncl;
@@ -308,6 +406,8 @@ public final class PerfAnalysisRequest {
         private Integer resultRateScale;
         private Integer resultAmountScale;
         private RoundingMode roundingMode;
+        private NumericMode numericMode;
+        private Boolean fixedPointAmounts;
         private Boolean calculateMwr;
         private Boolean calculateTrailingAvgProfit1Y;
         private Boolean calculateTrailingAvgFlow1Y;
@@ -318,6 +418,7 @@ public final class PerfAnalysisRequest {
         private Boolean calculateTrailingTwr3Y;
         private Boolean calculateTrailingTwr5Y;
         private Boolean calculateTrailingTwr10Y;
+        private Collection<Period> trailingTwrPeriods;
 
         private PerfAnalysisRequestBuilder() {
         }
@@ -341,6 +442,16 @@ public final class PerfAnalysisRequest {
             return this;
         }
 
+        /**
+         * The series is read by its epoch day index, without going through a {@link Function}.
+         */
+        public PerfAnalysisRequestBuilder assetValues(DailySeries assetValues) {
+            this.assetValuesProvider = assetValues;
+            this.assetValuesMap = null;
+            this.assetValuesCollection = null;
+            return this;
+        }
+
         public PerfAnalysisRequestBuilder assetValues(Map<LocalDate, BigDecimal> assetValues) {
             this.assetValuesProvider = null;
             this.assetValuesMap = assetValues;
@@ -400,6 +511,7 @@ public final class PerfAnalysisRequest {
         public PerfAnalysisRequest build() {
             return new PerfAnalysisRequest(
                     resultFrequency,
+                    resultFrequencies,
                     resultStartDateIncl,
                     resultEndDateIncl,
                     performanceMeasureStartDateIncl,
@@ -420,6 +532,8 @@ public final class PerfAnalysisRequest {
                     resultRateScale,
                     resultAmountScale,
                     roundingMode,
+                    numericMode,
+                    fixedPointAmounts,
                     calculateMwr,
                     calculateTrailingAvgProfit1Y,
                     calculateTrailingAvgFlow1Y,
@@ -432,7 +546,8 @@ public final class PerfAnalysisRequest {
                     calculateTrailingTwr2Y,
                     calculateTrailingTwr3Y,
                     calculateTrailingTwr5Y,
-                    calculateTrailingTwr10Y
+                    calculateTrailingTwr10Y,
+                    trailingTwrPeriods
             );
         }
 
@@ -441,6 +556,17 @@ public final class PerfAnalysisRequest {
             return this;
         }
 
+        /**
+         * Several result frequencies analyzed in a single pass by {@link PerformanceAnalyzer#analyzePerformanceByFrequency},
+         * e.g. MONTH, QUARTER and YEAR.
+         * The finest one becomes the {@link #resultFrequency(Frequency)}
+         * and each of the others must consist of its whole periods, so WEEK can be combined only with DAY.
+         */
+        public PerfAnalysisRequestBuilder resultFrequencies(Collection<Frequency> resultFrequencies) {
+            this.resultFrequencies = resultFrequencies;
+            return this;
+        }
+
         public PerfAnalysisRequestBuilder resultStartDateIncl(LocalDate resultStartDateIncl) {
             this.resultStartDateIncl = resultStartDateIncl;
             return this;
@@ -521,6 +647,22 @@ public final class PerfAnalysisRequest {
             return this;
         }
 
+        public PerfAnalysisRequestBuilder numericMode(NumericMode numericMode) {
+            this.numericMode = numericMode;
+            return this;
+        }
+
+        /**
+         * Suits amounts of a few decimal places, e.g. cents.
+         * The flows and incomes given as a map or a collection are indexed with the prefix sums of their unscaled amounts,
+         * and the profits and contributions are accumulated as unscaled longs of the resultAmountScale.
+         * An amount of more decimal places or a sum which overflows is calculated in {@link BigDecimal}, so the results are the same either way.
+         */
+        public PerfAnalysisRequestBuilder fixedPointAmounts(Boolean fixedPointAmounts) {
+            this.fixedPointAmounts = fixedPointAmounts;
+            return this;
+        }
+
         public PerfAnalysisRequestBuilder calculateMwr(Boolean calculateMwr) {
             this.calculateMwr = calculateMwr;
             return this;
@@ -570,5 +712,14 @@ public final class PerfAnalysisRequest {
             this.calculateTrailingTwr10Y = calculateTrailingTwr10Y;
             return this;
         }
+
+        /**
+         * Trailing TWR windows of any length, e.g. 6M, 7Y or 15Y, reported in {@link PerfAnalysis#trailingTwrs()}.
+         * Each window must cover a whole number of result periods, any window fits the DAY result frequency.
+         */
+        public PerfAnalysisRequestBuilder trailingTwrPeriods(Collection<Period> trailingTwrPeriods) {
+            this.trailingTwrPeriods = trailingTwrPeriods;
+            return this;
+        }
     }
 }
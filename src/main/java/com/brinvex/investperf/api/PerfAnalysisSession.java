@@ -0,0 +1,29 @@
+package com.brinvex.investperf.api;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.SequencedCollection;
+
+/**
+ * A performance analysis which can be extended by new days,
+ * see {@link PerformanceAnalyzer#openSession(PerfAnalysisRequest)}.
+ */
+public interface PerfAnalysisSession {
+
+    /**
+     * @return the results analyzed so far, the same as {@link PerformanceAnalyzer#analyzePerformance(PerfAnalysisRequest)}
+     * would return for the request extended by all the appended days
+     */
+    SequencedCollection<PerfAnalysis> results();
+
+    /**
+     * Extends the analysis by the day following the last analyzed day.
+     * Only the period the day falls into is re-evaluated, the already closed periods are not replayed.
+     *
+     * @param flow   the flow on the given date or null if there is none
+     * @param income the income on the given date or null if there is none
+     * @return the updated result of the period the given date falls into
+     */
+    PerfAnalysis append(LocalDate date, BigDecimal assetValue, BigDecimal flow, BigDecimal income);
+
+}
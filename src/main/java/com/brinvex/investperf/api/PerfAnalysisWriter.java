@@ -0,0 +1,80 @@
+package com.brinvex.investperf.api;
+
+import com.brinvex.investperf.internal.ColumnarPerfAnalysisWriter;
+import com.brinvex.investperf.internal.CsvPerfAnalysisWriter;
+import com.brinvex.investperf.internal.JsonLinesPerfAnalysisWriter;
+
+import java.io.Flushable;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Writes the results of an analysis one by one as they are passed to {@link #accept(PerfAnalysis)},
+ * so it can be passed to {@link PerformanceAnalyzer#analyzePerformance(PerfAnalysisRequest, Consumer)}
+ * to export the results without collecting them:
+ * <pre>{@code
+ * try (PerfAnalysisWriter writer = PerfAnalysisWriter.csv(out, List.of(PERIOD_END_DATE_INCL, CUMULATIVE_TWR))) {
+ *     PerformanceAnalyzer.INSTANCE.analyzePerformance(request, writer);
+ * }
+ * }</pre>
+ * Only the given columns are written, in the given order.
+ * The dates are written in ISO format and the amounts and rates as plain decimals,
+ * formatted straight into a reusable buffer instead of through {@link java.math.BigDecimal#toPlainString()}.
+ * The buffer is written out when it is full, on {@link #flush()} and on {@link #close()}, which also closes the target.
+ * <p>
+ * An I/O failure is thrown as {@link java.io.UncheckedIOException}. A writer is not thread-safe.
+ */
+public interface PerfAnalysisWriter extends Consumer<PerfAnalysis>, Flushable, AutoCloseable {
+
+    /**
+     * A header line of the column names, then a line per result, the values separated by a comma and a missing value left empty.
+     */
+    static PerfAnalysisWriter csv(OutputStream out, List<PerfAnalysisColumn> columns) {
+        return new CsvPerfAnalysisWriter(out, null, columns);
+    }
+
+    static PerfAnalysisWriter csv(WritableByteChannel out, List<PerfAnalysisColumn> columns) {
+        return new CsvPerfAnalysisWriter(null, out, columns);
+    }
+
+    /**
+     * A JSON object per line keyed by the column names, the amounts and rates as JSON numbers and a missing value as null.
+     */
+    static PerfAnalysisWriter jsonLines(OutputStream out, List<PerfAnalysisColumn> columns) {
+        return new JsonLinesPerfAnalysisWriter(out, null, columns);
+    }
+
+    static PerfAnalysisWriter jsonLines(WritableByteChannel out, List<PerfAnalysisColumn> columns) {
+        return new JsonLinesPerfAnalysisWriter(null, out, columns);
+    }
+
+    /**
+     * A little-endian binary format of groups of rows, each column of a group stored contiguously.
+     * <p>
+     * The header holds the magic number, the version and the column count, then the type and the UTF-8 name of each column.
+     * Each group starts with its row count and a group of no rows ends the stream.
+     * Each column of a group starts with a bitmap of the missing values, then holds the dates as epoch days,
+     * the texts as the offsets of their UTF-8 bytes followed by the bytes,
+     * and the amounts and rates at the scale of the most precise one of the group,
+     * either as unscaled longs or, if some of them do not fit, as the offsets of the bytes of unscaled BigIntegers followed by the bytes.
+     * Only the rows of the current group are held until the group is written.
+     */
+    static PerfAnalysisWriter columnar(OutputStream out, List<PerfAnalysisColumn> columns) {
+        return new ColumnarPerfAnalysisWriter(out, null, columns);
+    }
+
+    static PerfAnalysisWriter columnar(WritableByteChannel out, List<PerfAnalysisColumn> columns) {
+        return new ColumnarPerfAnalysisWriter(null, out, columns);
+    }
+
+    @Override
+    void accept(PerfAnalysis perfAnalysis);
+
+    @Override
+    void flush();
+
+    @Override
+    void close();
+}
@@ -1,6 +1,7 @@
 package com.brinvex.investperf.api;
 
 import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.internal.FlowIndex;
 import com.brinvex.investperf.internal.RequestSanitizer;
 
 import java.math.BigDecimal;
@@ -28,6 +29,7 @@ public final class PerfCalcRequest {
     private final int calcScale;
     private final int resultScale;
     private final RoundingMode roundingMode;
+    private final NumericMode numericMode;
 
     private PerfCalcRequest(
             LocalDate startDateIncl,
@@ -45,7 +47,8 @@ public final class PerfCalcRequest {
             Boolean resultInPercent,
             Integer calcScale,
             Integer resultScale,
-            RoundingMode roundingMode
+            RoundingMode roundingMode,
+            NumericMode numericMode
     ) {
         if (startDateIncl == null) {
             throw new IllegalArgumentException("startDateIncl must not be null");
@@ -80,6 +83,7 @@ public final class PerfCalcRequest {
         this.calcScale = calcScale == null ? 20 : calcScale;
         this.resultScale = resultScale == null ? 6 : resultScale;
         this.roundingMode = roundingMode == null ? RoundingMode.HALF_UP : roundingMode;
+        this.numericMode = numericMode == null ? NumericMode.BIG_DECIMAL : numericMode;
 
         this.assetValues = RequestSanitizer.sanitizeAssetValues(
                 assetValuesProvider,
@@ -89,12 +93,14 @@ public final class PerfCalcRequest {
                 endDateIncl
         );
 
-        this.flows = unmodifiableSortedMap(RequestSanitizer.sanitizeFlows(
+        SortedMap<LocalDate, BigDecimal> sanitizedFlows = RequestSanitizer.sanitizeFlows(
                 flowsMap,
                 flowsCollection,
                 startDateIncl,
-                endDateIncl
-        ));
+                endDateIncl,
+                false
+        );
+        this.flows = sanitizedFlows instanceof FlowIndex ? sanitizedFlows : unmodifiableSortedMap(sanitizedFlows);
     }
 
 
@@ -118,6 +124,7 @@ public final class PerfCalcRequest {
         builder.assetValuesProvider = assetValues;
         builder.flowsMap = flows;
         builder.roundingMode = roundingMode;
+        builder.numericMode = numericMode;
         return builder;
     }
 
@@ -173,6 +180,10 @@ public final class PerfCalcRequest {
         return this.roundingMode;
     }
 
+    public NumericMode numericMode() {
+        return this.numericMode;
+    }
+
     public static class PerfCalcRequestBuilder {
 
         private LocalDate startDateIncl;
@@ -191,6 +202,7 @@ public final class PerfCalcRequest {
         private Integer calcScale;
         private Integer resultScale;
         private RoundingMode roundingMode;
+        private NumericMode numericMode;
 
         private PerfCalcRequestBuilder() {
         }
@@ -202,6 +214,16 @@ public final class PerfCalcRequest {
             return this;
         }
 
+        /**
+         * The series is read by its epoch day index, without going through a {@link Function}.
+         */
+        public PerfCalcRequestBuilder assetValues(DailySeries assetValues) {
+            this.assetValuesProvider = assetValues;
+            this.assetValuesMap = null;
+            this.assetValuesCollection = null;
+            return this;
+        }
+
         public PerfCalcRequestBuilder assetValues(Map<LocalDate, BigDecimal> assetValues) {
             this.assetValuesProvider = null;
             this.assetValuesMap = assetValues;
@@ -245,7 +267,8 @@ public final class PerfCalcRequest {
                     resultInPercent,
                     calcScale,
                     resultScale,
-                    roundingMode);
+                    roundingMode,
+                    numericMode);
         }
 
         public PerfCalcRequestBuilder copy() {
@@ -266,6 +289,7 @@ public final class PerfCalcRequest {
             copy.flowsMap = flowsMap;
             copy.flowsCollection = flowsCollection;
             copy.roundingMode = roundingMode;
+            copy.numericMode = numericMode;
             return copy;
         }
 
@@ -323,6 +347,11 @@ public final class PerfCalcRequest {
             this.roundingMode = roundingMode;
             return this;
         }
+
+        public PerfCalcRequestBuilder numericMode(NumericMode numericMode) {
+            this.numericMode = numericMode;
+            return this;
+        }
     }
 
 }
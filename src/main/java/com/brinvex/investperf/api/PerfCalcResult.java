@@ -0,0 +1,15 @@
+package com.brinvex.investperf.api;
+
+import java.math.BigDecimal;
+
+/**
+ * @param value      the same as {@link PerformanceCalculator#calculateReturn(PerfCalcRequest)} returns
+ * @param errorBound the estimated bound of the absolute difference between the value before the rounding to the resultScale
+ *                   and the one {@link NumericMode#BIG_DECIMAL} gives, in the same unit as the value;
+ *                   zero for {@link NumericMode#BIG_DECIMAL}
+ */
+public record PerfCalcResult(
+        BigDecimal value,
+        BigDecimal errorBound
+) {
+}
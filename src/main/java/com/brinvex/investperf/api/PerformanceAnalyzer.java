@@ -1,9 +1,15 @@
 package com.brinvex.investperf.api;
 
 
+import com.brinvex.fintypes.enu.Frequency;
 import com.brinvex.investperf.internal.PerformanceAnalyzerImpl;
 
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.SequencedCollection;
+import java.util.SequencedMap;
+import java.util.function.Consumer;
 
 public interface PerformanceAnalyzer {
 
@@ -11,4 +17,65 @@ public interface PerformanceAnalyzer {
 
     SequencedCollection<PerfAnalysis> analyzePerformance(PerfAnalysisRequest perfAnalysisRequest);
 
+    /**
+     * Passes the same results as {@link #analyzePerformance(PerfAnalysisRequest)} returns to the consumer,
+     * in the same order and each one as soon as it is final, without collecting them.
+     */
+    void analyzePerformance(PerfAnalysisRequest perfAnalysisRequest, Consumer<PerfAnalysis> resultConsumer);
+
+    /**
+     * Analyzes the request like {@link #analyzePerformance(PerfAnalysisRequest, Consumer)},
+     * but resumes from the checkpoint the previous call saved to the given file, e.g. one file per account,
+     * and passes only the results of the periods after the checkpoint to the consumer.
+     * The checkpoint holds the state of the analysis at the end of the last closed period: the cumulative TWR factor,
+     * the total contribution and profit and the trailing windows.
+     * If the MWR is calculated, it also holds every flow up to the checkpoint date,
+     * which the XIRR and the rounding fallback of the Modified Dietz MWR re-walk, so its size grows linearly with the number of flows.
+     * <p>
+     * The checkpoint is used only if it was saved by the same version of the library for the same request settings,
+     * the result date range aside, and if the inputs the periods up to the checkpoint date consumed have not changed since,
+     * which is checked by a digest of them. Otherwise, the whole request is analyzed.
+     * Then a new checkpoint replaces the file.
+     * The digest covers the flows, the incomes if calculated, and the asset values the TWR calculator reads:
+     * the value at each period end and on the day of each flow and the day before,
+     * and for the {@link PerformanceCalculator.LinkedModifiedDietzTwrCalculator} also at each month end.
+     * A change of any other asset value does not invalidate the checkpoint.
+     *
+     * @return the start date of the first result passed to the consumer,
+     * the day after the checkpoint if the analysis was resumed, resultStartDateIncl otherwise
+     */
+    LocalDate analyzePerformance(PerfAnalysisRequest perfAnalysisRequest, Path checkpointFile, Consumer<PerfAnalysis> resultConsumer);
+
+    /**
+     * Analyzes all the {@link PerfAnalysisRequest#resultFrequencies()} in a single pass.
+     * The results of the finest frequency are the same as {@link #analyzePerformance(PerfAnalysisRequest)} returns,
+     * the coarser periods are chained from the finest ones, so their rates may differ
+     * from a separate analysis with the coarser frequency in the last digits of the calcScale.
+     *
+     * @return the results keyed by the frequency, from the finest to the coarsest one
+     */
+    SequencedMap<Frequency, SequencedCollection<PerfAnalysis>> analyzePerformanceByFrequency(PerfAnalysisRequest perfAnalysisRequest);
+
+    /**
+     * Analyzes the requests in parallel on a work-stealing pool using the given number of threads at most.
+     * A failing request does not affect the others, its failure is reported in its outcome.
+     *
+     * @return the outcomes in the order of the requests and the throughput of the batch
+     */
+    PerfAnalysisBatch analyzePerformance(Collection<PerfAnalysisRequest> perfAnalysisRequests, int parallelism);
+
+    /**
+     * The same as {@link #analyzePerformance(Collection, int)} with one thread per available processor.
+     */
+    default PerfAnalysisBatch analyzePerformance(Collection<PerfAnalysisRequest> perfAnalysisRequests) {
+        return analyzePerformance(perfAnalysisRequests, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Analyzes the request like {@link #analyzePerformance(PerfAnalysisRequest)}
+     * and keeps the state, so that the analysis can be extended day by day with {@link PerfAnalysisSession#append}.
+     * Appending is supported only if the performance is measured up to the request's resultEndDateIncl.
+     */
+    PerfAnalysisSession openSession(PerfAnalysisRequest perfAnalysisRequest);
+
 }
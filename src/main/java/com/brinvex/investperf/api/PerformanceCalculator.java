@@ -3,8 +3,10 @@ package com.brinvex.investperf.api;
 import com.brinvex.investperf.internal.LinkedModifiedDietzTwrCalculatorImpl;
 import com.brinvex.investperf.internal.ModifiedDietzMwrCalculatorImpl;
 import com.brinvex.investperf.internal.TrueTwrCalculatorImpl;
+import com.brinvex.investperf.internal.XirrMwrCalculatorImpl;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public interface PerformanceCalculator {
 
@@ -20,6 +22,10 @@ public interface PerformanceCalculator {
         return ModifiedDietzMwrCalculatorImpl.INSTANCE;
     }
 
+    static XirrMwrCalculator xirrMwrCalculator() {
+        return XirrMwrCalculatorImpl.INSTANCE;
+    }
+
     static TwrCalculator twrCalculator() {
         return PerformanceCalculator.truetwrCalculator();
     }
@@ -40,6 +46,7 @@ public interface PerformanceCalculator {
     static MwrCalculator mwrCalculator(String twrCalculatorName) {
         return switch (twrCalculatorName) {
             case "ModifiedDietzMwrCalculator" -> modifiedDietzMwrCalculator();
+            case "XirrMwrCalculator" -> xirrMwrCalculator();
             case "MwrCalculator" -> mwrCalculator();
             default -> throw new IllegalStateException("Unexpected value: " + twrCalculatorName);
         };
@@ -64,9 +71,33 @@ public interface PerformanceCalculator {
     interface ModifiedDietzMwrCalculator extends MwrCalculator {
     }
 
+    /**
+     * The internal rate of return of the flows weighted by the flow timing,
+     * with the start value as the first flow and the end value as the last one.
+     * It is annualized by the split of the period into full years and days, the same as the other returns,
+     * unlike the XIRR spreadsheet function, which counts every year as 365 days.
+     */
+    interface XirrMwrCalculator extends MwrCalculator {
+    }
+
     interface SimpleReturnCalculator extends PerformanceCalculator {
     }
 
     BigDecimal calculateReturn(PerfCalcRequest perfCalcRequest);
 
+    PerfCalcResult calculateReturnWithErrorBound(PerfCalcRequest perfCalcRequest);
+
+    /**
+     * The same as {@link #calculateReturn(PerfCalcRequest)} for the given request narrowed to each of the given date ranges,
+     * e.g. MTD, QTD, YTD, 1Y and each calendar year of the same series, without building and sanitizing a request for each range.
+     * The asset values on the days before the ranges start and on the days the ranges end must be available,
+     * except for the start and end dates of the request, which use its startAssetValueExcl and endAssetValueIncl.
+     * The calculators which can split a range into sub-periods shared by other ranges compute each sub-period once,
+     * in {@link NumericMode#DOUBLE} the result might therefore differ from the one of the single range within the error bound.
+     *
+     * @param dateRanges the date ranges within the date range of the request
+     * @return the return of each date range, in the order of the date ranges
+     */
+    List<BigDecimal> calculateReturns(PerfCalcRequest perfCalcRequest, List<DateRange> dateRanges);
+
 }
@@ -0,0 +1,90 @@
+package com.brinvex.investperf.api;
+
+import com.brinvex.investperf.api.PerfAnalysisRequest.PerfAnalysisRequestBuilder;
+import com.brinvex.investperf.internal.PortfolioSeriesFileImpl;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SequencedSet;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+/**
+ * A binary file of the asset values, flows and incomes of many accounts, read through a memory mapping.
+ * <p>
+ * Each series is stored as a column of epoch days and a column of amounts at the scale of the most precise amount of the series,
+ * either as unscaled longs or, if some of them do not fit, as unscaled BigIntegers.
+ * An index of the accounts and their series follows the columns.
+ * Opening the file reads only the index, the amounts are read from the mapping when they are asked for,
+ * an asset value by a lookup of its date and the flows and incomes only within the asked date range.
+ * The amounts keep their values but get the scale of their series.
+ * <p>
+ * The format: a header of the magic number, the version, the account count, the log2 of the segment size and the index offset,
+ * all little-endian, followed by the columns, each within a single segment of the file.
+ * Every account in the index has its name in UTF-8 and the count, scale, encoding and offset of each of its three series.
+ * <p>
+ * An open file is thread-safe, its mapping is released when it is no longer referenced.
+ */
+public interface PortfolioSeriesFile {
+
+    static void write(Path file, Collection<AccountSeries> accounts) {
+        PortfolioSeriesFileImpl.write(file, accounts);
+    }
+
+    /**
+     * @param segmentSizeLog2 the log2 of the segment size, from 5 to 30, every column must fit into a segment;
+     *                        the default is 30, since a single mapping is limited to 2 GB
+     */
+    static void write(Path file, Collection<AccountSeries> accounts, int segmentSizeLog2) {
+        PortfolioSeriesFileImpl.write(file, accounts, segmentSizeLog2);
+    }
+
+    static PortfolioSeriesFile open(Path file) {
+        return PortfolioSeriesFileImpl.open(file);
+    }
+
+    /**
+     * @return the accounts in the order they were written in
+     */
+    SequencedSet<String> accounts();
+
+    Function<LocalDate, BigDecimal> assetValues(String account);
+
+    SortedMap<LocalDate, BigDecimal> flows(String account, LocalDate startDateIncl, LocalDate endDateIncl);
+
+    SortedMap<LocalDate, BigDecimal> incomes(String account, LocalDate startDateIncl, LocalDate endDateIncl);
+
+    /**
+     * @return a builder with the asset values, flows and incomes of the given account
+     */
+    default PerfAnalysisRequestBuilder analysisRequestBuilder(String account) {
+        return PerfAnalysisRequest.builder()
+                .assetValues(assetValues(account))
+                .flows((startDateIncl, endDateIncl) -> flows(account, startDateIncl, endDateIncl))
+                .incomes((startDateIncl, endDateIncl) -> incomes(account, startDateIncl, endDateIncl));
+    }
+
+    /**
+     * @param assetValues null for none
+     * @param flows       null for none
+     * @param incomes     null for none
+     */
+    record AccountSeries(
+            String account,
+            Map<LocalDate, BigDecimal> assetValues,
+            Map<LocalDate, BigDecimal> flows,
+            Map<LocalDate, BigDecimal> incomes
+    ) {
+        public AccountSeries {
+            if (account == null) {
+                throw new IllegalArgumentException("account must not be null");
+            }
+            assetValues = assetValues == null ? Map.of() : assetValues;
+            flows = flows == null ? Map.of() : flows;
+            incomes = incomes == null ? Map.of() : incomes;
+        }
+    }
+}
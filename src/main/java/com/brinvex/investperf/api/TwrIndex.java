@@ -0,0 +1,47 @@
+package com.brinvex.investperf.api;
+
+import com.brinvex.investperf.internal.TwrIndexImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The true time-weighted return of any date range within the date range of a {@link PerfCalcRequest},
+ * e.g. for interactively selected ranges.
+ * The growth factors of the sub-periods between the flows are computed once,
+ * so a range costs a binary search for its first and last flow and a few asset value lookups instead of walking all its flows.
+ * <ul>
+ *     <li>In {@link NumericMode#BIG_DECIMAL}, the factors are divided to the calcScale as the calculator divides them
+ *     and kept in a segment tree of their products, so a range is chained in O(log n)
+ *     and a corrected asset value is applied in O(log n).</li>
+ *     <li>In {@link NumericMode#DOUBLE}, the factors are kept as prefix sums of their logarithms, so a range is chained in O(1)
+ *     and a corrected asset value is applied in O(n).</li>
+ * </ul>
+ * A range gives the same as {@link PerformanceCalculator.TrueTwrCalculator} would give
+ * for the request narrowed to the range, within the last digits of the calcScale or within the error bound respectively,
+ * with the flow timing, annualization, calcScale, resultScale and roundingMode of the request.
+ * The asset values on the days before the range starts and on the days the range ends must be available,
+ * except for the start and end dates of the request, which use its startAssetValueExcl and endAssetValueIncl.
+ * <p>
+ * It is not thread-safe if {@link #updateAssetValue} is used.
+ */
+public interface TwrIndex {
+
+    static TwrIndex of(PerfCalcRequest perfCalcRequest) {
+        return TwrIndexImpl.of(perfCalcRequest);
+    }
+
+    LocalDate startDateIncl();
+
+    LocalDate endDateIncl();
+
+    BigDecimal twr(LocalDate startDateIncl, LocalDate endDateIncl);
+
+    PerfCalcResult twrWithErrorBound(LocalDate startDateIncl, LocalDate endDateIncl);
+
+    /**
+     * Corrects the asset value of the given date, the day before the startDateIncl standing for the startAssetValueExcl
+     * and the endDateIncl for the endAssetValueIncl, so that the subsequent ranges reflect it.
+     */
+    void updateAssetValue(LocalDate date, BigDecimal assetValue);
+}
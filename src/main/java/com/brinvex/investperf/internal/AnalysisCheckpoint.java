@@ -0,0 +1,334 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.fintypes.enu.Frequency;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.internal.MwrAccumulator.State;
+import com.brinvex.investperf.internal.PeriodResultChain.ClosedState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SequencedMap;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+import static com.brinvex.investperf.internal.BaseCalculatorImpl.assetValue;
+import static com.brinvex.java.collection.CollectionUtil.rangeSafeSubMap;
+
+/**
+ * The state of {@link PerfAnalysisSessionImpl} at the end of a closed period, saved to a file to resume the analysis from on the next run.
+ * <p>
+ * The state of the {@link PeriodResultChain} and of the MWR accumulator is saved, the rest is derived from the inputs.
+ * The MWR accumulator state holds all the flows, see {@link ModifiedDietzMwrAccumulator}, so the file is linear in the flows.
+ * The checkpoint holds the settings of the request it was saved for and a digest of the inputs the closed periods up to the checkpoint date consumed,
+ * see {@link #digestPeriod}, so it is used only if neither of them has changed since.
+ * A checkpoint of another version is ignored the same as a missing one.
+ *
+ * @param mwrState null if the MWR is not calculated
+ */
+record AnalysisCheckpoint(
+        String fingerprint,
+        LocalDate checkpointDateIncl,
+        long inputDigest,
+        ClosedState closedState,
+        State mwrState
+) {
+    private static final int MAGIC = 0x50435842;
+    static final int VERSION = 2;
+
+    private static final long DIGEST_SEED = 0x6A09E667F3BCC909L;
+    private static final long DIGEST_NULL = 0xBB67AE8584CAA73BL;
+
+    /**
+     * @return the settings of the request the results depend on, except for the result date range and the inputs
+     */
+    static String fingerprint(PerfAnalysisRequest req, LocalDate calcStartDateIncl) {
+        return List.of(
+                req.resultFrequency(),
+                calcStartDateIncl,
+                req.twrFlowTiming(),
+                req.mwrFlowTiming(),
+                req.twrCalculatorType(),
+                req.mwrCalculatorType(),
+                req.largeFlowLevelInPercent(),
+                req.resultRatesInPercent(),
+                req.calcScale(),
+                req.resultRateScale(),
+                req.resultAmountScale(),
+                req.roundingMode(),
+                req.numericMode(),
+                req.calculateMwr(),
+                req.calculateTrailingAvgProfit1Y(),
+                req.calculateTrailingAvgFlow1Y(),
+                req.calculatePeriodIncome(),
+                req.calculateTrailingAvgIncome1Y(),
+                req.calculateTrailingTwr1Y(),
+                req.calculateTrailingTwr2Y(),
+                req.calculateTrailingTwr3Y(),
+                req.calculateTrailingTwr5Y(),
+                req.calculateTrailingTwr10Y(),
+                req.trailingTwrPeriods()
+        ).toString();
+    }
+
+    /**
+     * @return the digest of the inputs of the closed periods from the calculation start up to and including the given period end,
+     * the same as the one continued by {@link #digestPeriod} period by period
+     */
+    static long digest(
+            Frequency frequency,
+            LocalDate calcStartDateIncl,
+            LocalDate toDateIncl,
+            Function<LocalDate, BigDecimal> assetValues,
+            SortedMap<LocalDate, BigDecimal> flows,
+            SortedMap<LocalDate, BigDecimal> incomes,
+            boolean monthEndValues
+    ) {
+        long digest = digest(assetValue(assetValues, calcStartDateIncl.minusDays(1)));
+        for (LocalDate periodStartDateIncl = calcStartDateIncl; !periodStartDateIncl.isAfter(toDateIncl); ) {
+            LocalDate periodEndDateIncl = frequency.adjustToEndDateIncl(periodStartDateIncl);
+            LocalDate periodEndDateExcl = periodEndDateIncl.plusDays(1);
+            digest = digestPeriod(
+                    digest,
+                    periodStartDateIncl,
+                    periodEndDateIncl,
+                    assetValues,
+                    rangeSafeSubMap(flows, periodStartDateIncl, periodEndDateExcl),
+                    incomes == null ? null : rangeSafeSubMap(incomes, periodStartDateIncl, periodEndDateExcl),
+                    monthEndValues
+            );
+            periodStartDateIncl = periodEndDateExcl;
+        }
+        return digest;
+    }
+
+    /**
+     * @return the digest to be continued by {@link #digestPeriod} from the calculation start
+     */
+    static long digest(BigDecimal startValueExcl) {
+        return mix(DIGEST_SEED, startValueExcl);
+    }
+
+    /**
+     * Continues the given digest by the inputs the analysis of a closed period consumes:
+     * its end value, its flows and the asset values of the day of each flow and of the day before, and its incomes.
+     * The asset values of the day of a flow and of the day before cover the sub-periods of the {@link TrueTwrCalculatorImpl}
+     * and the large flow splits of the {@link LinkedModifiedDietzTwrCalculatorImpl}, which also reads the month ends within the period.
+     *
+     * @param periodIncomes  null if the incomes are not calculated
+     * @param monthEndValues whether the asset values of the month ends within the period are consumed
+     */
+    static long digestPeriod(
+            long digest,
+            LocalDate periodStartDateIncl,
+            LocalDate periodEndDateIncl,
+            Function<LocalDate, BigDecimal> assetValues,
+            SortedMap<LocalDate, BigDecimal> periodFlows,
+            SortedMap<LocalDate, BigDecimal> periodIncomes,
+            boolean monthEndValues
+    ) {
+        digest = mix(digest, periodEndDateIncl.toEpochDay());
+        digest = mix(digest, assetValue(assetValues, periodEndDateIncl));
+        if (monthEndValues) {
+            for (LocalDate monthEndDateIncl = Frequency.MONTH.adjustToEndDateIncl(periodStartDateIncl);
+                 monthEndDateIncl.isBefore(periodEndDateIncl);
+                 monthEndDateIncl = Frequency.MONTH.adjustToEndDateIncl(monthEndDateIncl.plusDays(1))) {
+                digest = mix(mix(digest, 'M'), assetValue(assetValues, monthEndDateIncl));
+            }
+        }
+        for (Map.Entry<LocalDate, BigDecimal> flow : periodFlows.entrySet()) {
+            LocalDate flowDate = flow.getKey();
+            digest = mix(mix(mix(digest, 'F'), flowDate.toEpochDay()), flow.getValue());
+            digest = mix(digest, assetValue(assetValues, flowDate.minusDays(1)));
+            digest = mix(digest, assetValue(assetValues, flowDate));
+        }
+        if (periodIncomes != null) {
+            for (Map.Entry<LocalDate, BigDecimal> income : periodIncomes.entrySet()) {
+                digest = mix(mix(mix(digest, 'I'), income.getKey().toEpochDay()), income.getValue());
+            }
+        }
+        return digest;
+    }
+
+    private static long mix(long digest, BigDecimal value) {
+        if (value == null) {
+            return mix(digest, DIGEST_NULL);
+        }
+        digest = mix(digest, value.scale());
+        BigInteger unscaledValue = value.unscaledValue();
+        if (unscaledValue.bitLength() < Long.SIZE) {
+            return mix(digest, unscaledValue.longValue());
+        }
+        for (byte b : unscaledValue.toByteArray()) {
+            digest = mix(digest, b);
+        }
+        return digest;
+    }
+
+    private static long mix(long digest, long value) {
+        digest = (digest ^ value) * 0x9E3779B97F4A7C15L;
+        return digest ^ (digest >>> 29);
+    }
+
+    /**
+     * @return the checkpoint or null if there is no file or if it is not a checkpoint of the current version
+     */
+    static AnalysisCheckpoint read(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String fingerprint = in.readUTF();
+            LocalDate checkpointDateIncl = LocalDate.ofEpochDay(in.readLong());
+            long inputDigest = in.readLong();
+            ClosedState closedState = new ClosedState(
+                    readDecimal(in),
+                    readDecimal(in),
+                    readDecimal(in),
+                    readDecimalsByDate(in),
+                    readDecimalsByDate(in),
+                    readDecimalsByDate(in),
+                    readDecimals(in),
+                    in.readLong());
+            State mwrState = readMwrState(in);
+            return new AnalysisCheckpoint(fingerprint, checkpointDateIncl, inputDigest, closedState, mwrState);
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replaces the file through a temporary file, so that a failed write leaves the previous checkpoint in place.
+     */
+    void write(Path file) {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeLong(checkpointDateIncl.toEpochDay());
+                out.writeLong(inputDigest);
+                writeDecimal(out, closedState.cumulTwrFactor());
+                writeDecimal(out, closedState.totalContribution());
+                writeDecimal(out, closedState.totalProfit());
+                writeDecimalsByDate(out, closedState.trailingProfits1Y());
+                writeDecimalsByDate(out, closedState.trailingFlows1Y());
+                writeDecimalsByDate(out, closedState.trailingIncomes1Y());
+                writeDecimals(out, closedState.trailingTwrFactors());
+                out.writeLong(closedState.trailingTwrFactorCount());
+                writeMwrState(out, mwrState);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] unscaledBytes = value.unscaledValue().toByteArray();
+        out.writeInt(unscaledBytes.length);
+        out.write(unscaledBytes);
+        out.writeInt(value.scale());
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] unscaledBytes = new byte[length];
+        in.readFully(unscaledBytes);
+        return new BigDecimal(new BigInteger(unscaledBytes), in.readInt());
+    }
+
+    private static void writeMwrState(DataOutputStream out, State mwrState) throws IOException {
+        out.writeInt(mwrState == null ? -1 : mwrState.flows().length);
+        if (mwrState != null) {
+            for (int i = 0; i < mwrState.flows().length; i++) {
+                out.writeInt(mwrState.flowEpochDays()[i]);
+                writeDecimal(out, mwrState.flows()[i]);
+            }
+            writeDecimals(out, mwrState.flowSums());
+            out.writeDouble(mwrState.lastLogGrowthPerDay());
+        }
+    }
+
+    private static State readMwrState(DataInputStream in) throws IOException {
+        int flowCount = in.readInt();
+        if (flowCount < 0) {
+            return null;
+        }
+        int[] flowEpochDays = new int[flowCount];
+        BigDecimal[] flows = new BigDecimal[flowCount];
+        for (int i = 0; i < flowCount; i++) {
+            flowEpochDays[i] = in.readInt();
+            flows[i] = readDecimal(in);
+        }
+        return new State(flowEpochDays, flows, readDecimals(in), in.readDouble());
+    }
+
+    private static void writeDecimals(DataOutputStream out, List<BigDecimal> values) throws IOException {
+        out.writeInt(values == null ? -1 : values.size());
+        if (values != null) {
+            for (BigDecimal value : values) {
+                writeDecimal(out, value);
+            }
+        }
+    }
+
+    private static List<BigDecimal> readDecimals(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<BigDecimal> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readDecimal(in));
+        }
+        return values;
+    }
+
+    private static void writeDecimalsByDate(DataOutputStream out, SequencedMap<LocalDate, BigDecimal> values) throws IOException {
+        out.writeInt(values == null ? -1 : values.size());
+        if (values != null) {
+            for (Map.Entry<LocalDate, BigDecimal> e : values.entrySet()) {
+                out.writeLong(e.getKey().toEpochDay());
+                writeDecimal(out, e.getValue());
+            }
+        }
+    }
+
+    private static SequencedMap<LocalDate, BigDecimal> readDecimalsByDate(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        SequencedMap<LocalDate, BigDecimal> values = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            values.put(LocalDate.ofEpochDay(in.readLong()), readDecimal(in));
+        }
+        return values;
+    }
+}
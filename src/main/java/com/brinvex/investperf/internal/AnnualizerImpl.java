@@ -4,14 +4,18 @@ import com.brinvex.investperf.api.AnnualizationOption;
 import com.brinvex.investperf.api.Annualizer;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
+import java.time.Period;
 
+import static java.lang.Math.toIntExact;
 import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.ZERO;
 
 public class AnnualizerImpl implements Annualizer {
 
+    private static final int MAX_ROOT_ITERATIONS = 10;
 
     @Override
     public BigDecimal annualizeGrowthFactor(
@@ -19,6 +23,49 @@ public class AnnualizerImpl implements Annualizer {
             BigDecimal cumulGrowthFactor,
             LocalDate startDateIncl,
             LocalDate endDateIncl
+    ) {
+        return annualizeGrowthFactor(annualizationOption, cumulGrowthFactor, startDateIncl, endDateIncl, null);
+    }
+
+    @Override
+    public BigDecimal annualizeGrowthFactor(
+            AnnualizationOption annualizationOption,
+            BigDecimal cumulGrowthFactor,
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            MathContext mathContext
+    ) {
+        return FixedStartAnnualizer.annualizeGrowthFactor(annualizationOption, cumulGrowthFactor, startDateIncl, endDateIncl, mathContext);
+    }
+
+    @Override
+    public BigDecimal[] annualizeGrowthFactors(
+            AnnualizationOption annualizationOption,
+            BigDecimal[] cumulGrowthFactors,
+            LocalDate startDateIncl,
+            LocalDate[] endDatesIncl,
+            MathContext mathContext
+    ) {
+        if (cumulGrowthFactors.length != endDatesIncl.length) {
+            throw new IllegalArgumentException("cumulGrowthFactors and endDatesIncl must have the same length, given: %s, %s"
+                    .formatted(cumulGrowthFactors.length, endDatesIncl.length));
+        }
+        FixedStartAnnualizer annualizer = new FixedStartAnnualizer(startDateIncl, mathContext);
+        BigDecimal[] annGrowthFactors = new BigDecimal[cumulGrowthFactors.length];
+        for (int i = 0; i < cumulGrowthFactors.length; i++) {
+            BigDecimal cumulGrowthFactor = cumulGrowthFactors[i];
+            if (cumulGrowthFactor != null) {
+                annGrowthFactors[i] = annualizer.annualizeGrowthFactor(annualizationOption, cumulGrowthFactor, endDatesIncl[i]);
+            }
+        }
+        return annGrowthFactors;
+    }
+
+    @Override
+    public BigDecimal annualizeGrowthFactor(
+            AnnualizationOption annualizationOption,
+            BigDecimal cumulGrowthFactor,
+            int fullYears
     ) {
         if (annualizationOption == AnnualizationOption.DO_NOT_ANNUALIZE) {
             return cumulGrowthFactor;
@@ -29,22 +76,19 @@ public class AnnualizerImpl implements Annualizer {
         if (cumulGrowthFactor.compareTo(ONE) == 0) {
             return cumulGrowthFactor;
         }
-        LocalDate endDateExcl = endDateIncl.plusDays(1);
-        long fullYears = ChronoUnit.YEARS.between(startDateIncl, endDateExcl);
-        if (fullYears < 0) {
-            throw new IllegalArgumentException("startDateIncl must be before endDateExcl, given: %s, %s".formatted(startDateIncl, endDateExcl));
-        }
-        long days = ChronoUnit.DAYS.between(startDateIncl.plusYears(fullYears), endDateExcl);
         if (annualizationOption == AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR) {
-            if (fullYears == 0 || (fullYears == 1 && days == 0)) {
+            if (fullYears == 0 || fullYears == 1) {
                 return cumulGrowthFactor;
             }
         }
-        if (fullYears == 0 && days == 0) {
-            throw new IllegalArgumentException("startDateIncl must be before endDateExcl, given: %s, %s".formatted(startDateIncl, endDateExcl));
+        if (fullYears == 0) {
+            throw new IllegalArgumentException("fullYears must be positive, given: %s".formatted(fullYears));
+        }
+        if (fullYears == 1) {
+            return cumulGrowthFactor;
         }
         double cumGrowthFactor = cumulGrowthFactor.doubleValue();
-        double exponent = 1.0 / (fullYears + (days / 365.0));
+        double exponent = 1.0 / fullYears;
         return BigDecimal.valueOf(Math.pow(cumGrowthFactor, exponent));
     }
 
@@ -52,8 +96,15 @@ public class AnnualizerImpl implements Annualizer {
     public BigDecimal annualizeGrowthFactor(
             AnnualizationOption annualizationOption,
             BigDecimal cumulGrowthFactor,
-            int fullYears
+            Period period
     ) {
+        if (period.getDays() != 0 || period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("period must be a positive number of months or years, given: %s".formatted(period));
+        }
+        long totalMonths = period.toTotalMonths();
+        if (totalMonths % 12 == 0) {
+            return annualizeGrowthFactor(annualizationOption, cumulGrowthFactor, toIntExact(totalMonths / 12));
+        }
         if (annualizationOption == AnnualizationOption.DO_NOT_ANNUALIZE) {
             return cumulGrowthFactor;
         }
@@ -64,19 +115,57 @@ public class AnnualizerImpl implements Annualizer {
             return cumulGrowthFactor;
         }
         if (annualizationOption == AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR) {
-            if (fullYears == 0 || fullYears == 1) {
+            if (totalMonths < 12) {
                 return cumulGrowthFactor;
             }
         }
-        if (fullYears == 0) {
-            throw new IllegalArgumentException("fullYears must be positive, given: %s".formatted(fullYears));
-        }
-        if (fullYears == 1) {
-            return cumulGrowthFactor;
-        }
         double cumGrowthFactor = cumulGrowthFactor.doubleValue();
-        double exponent = 1.0 / fullYears;
+        double exponent = 12.0 / totalMonths;
         return BigDecimal.valueOf(Math.pow(cumGrowthFactor, exponent));
     }
 
+    /**
+     * Raises the given positive factor to the power of {@code numerator / denominator}
+     * by refining the double power by the Newton method on {@code x^denominator = factor^numerator} with the integer powers in BigDecimal.
+     * Each step about doubles the valid digits, so one or two steps follow the double power for the usual precisions,
+     * and the last step is not checked by another power since its residual is estimated from the previous one.
+     */
+    static BigDecimal rationalPower(BigDecimal factor, long numerator, long denominator, MathContext mathContext) {
+        long gcd = gcd(numerator, denominator);
+        int p = toIntExact(numerator / gcd);
+        int q = toIntExact(denominator / gcd);
+        if (p == q) {
+            return factor.round(mathContext);
+        }
+        double guess = Math.pow(factor.doubleValue(), (double) p / q);
+        if (!(guess > 0) || Double.isInfinite(guess)) {
+            //Out of the double range or an invalid factor, fails or gives the same as the double path
+            return BigDecimal.valueOf(guess);
+        }
+        MathContext workMc = new MathContext(mathContext.getPrecision() + 5 + Long.toString(q).length(), RoundingMode.HALF_EVEN);
+        double tolerance = Math.pow(10, -(mathContext.getPrecision() + 2));
+        BigDecimal bigQ = BigDecimal.valueOf(q);
+        BigDecimal poweredFactor = p == 1 ? factor : factor.pow(p, workMc);
+        BigDecimal root = new BigDecimal(guess, workMc);
+        for (int i = 0; i < MAX_ROOT_ITERATIONS; i++) {
+            //root^q / factor^p - 1, the step is root * (1 - relResidual / q)
+            BigDecimal relResidual = root.pow(q, workMc).divide(poweredFactor, workMc).subtract(ONE);
+            root = root.subtract(root.multiply(relResidual, workMc).divide(bigQ, workMc), workMc);
+            //The relative error of the root after the step is about (q + 1) / 2 * (relResidual / q)^2
+            double relError = Math.abs(relResidual.doubleValue()) / q;
+            if ((q + 1) * relError * relError < tolerance) {
+                break;
+            }
+        }
+        return root.round(mathContext);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
 }
@@ -2,87 +2,392 @@ package com.brinvex.investperf.internal;
 
 
 import com.brinvex.investperf.api.Annualizer;
+import com.brinvex.investperf.api.DailySeries;
+import com.brinvex.investperf.api.DateRange;
 import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+import com.brinvex.investperf.api.OffHeapSeries;
 import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerfCalcResult;
 import com.brinvex.investperf.api.PerformanceCalculator;
 import com.brinvex.java.Num;
-import com.brinvex.java.collection.CollectionUtil;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.SortedMap;
+import java.util.function.Function;
 
+import static com.brinvex.java.collection.CollectionUtil.rangeSafeSubMap;
 import static java.math.BigDecimal.ZERO;
 
 abstract class BaseCalculatorImpl implements PerformanceCalculator {
 
     @Override
     public final BigDecimal calculateReturn(PerfCalcRequest perfCalcRequest) {
+        return calculateReturnWithErrorBound(perfCalcRequest).value();
+    }
+
+    @Override
+    public final PerfCalcResult calculateReturnWithErrorBound(PerfCalcRequest perfCalcRequest) {
+        return calculateReturnWithErrorBound(
+                perfCalcRequest,
+                perfCalcRequest.startDateIncl(),
+                perfCalcRequest.endDateIncl(),
+                perfCalcRequest.startAssetValueExcl(),
+                perfCalcRequest.endAssetValueIncl()
+        );
+    }
 
-        SortedMap<LocalDate, BigDecimal> flows = perfCalcRequest.flows();
-        BigDecimal startValueExcl = perfCalcRequest.startAssetValueExcl();
-        BigDecimal endValueIncl = perfCalcRequest.endAssetValueIncl();
-        LocalDate startDateIncl = perfCalcRequest.startDateIncl();
-        LocalDate endDateIncl = perfCalcRequest.endDateIncl();
-        FlowTiming flowTiming = perfCalcRequest.flowTiming();
-        if (!flows.isEmpty()) {
-            switch (flowTiming) {
-                case BEGINNING_OF_DAY -> {
-                    Entry<LocalDate, BigDecimal> firstFlowEntry = flows.firstEntry();
-                    LocalDate firstFlowDate = firstFlowEntry.getKey();
-                    if (firstFlowDate.isEqual(startDateIncl)) {
-                        startValueExcl = startValueExcl.add(firstFlowEntry.getValue());
-                        flows = CollectionUtil.rangeSafeTailMap(flows, firstFlowDate.plusDays(1));
-                    }
-                }
-                case END_OF_DAY -> {
-                    Entry<LocalDate, BigDecimal> lastFlowEntry = flows.lastEntry();
-                    LocalDate lastFlowDate = lastFlowEntry.getKey();
-                    if (lastFlowDate.isEqual(endDateIncl)) {
-                        endValueIncl = endValueIncl.subtract(lastFlowEntry.getValue());
-                        flows = CollectionUtil.rangeSafeHeadMap(flows, lastFlowDate);
-                    }
-                }
-                default -> throw new IllegalStateException("Unexpected value: " + flowTiming);
+    /**
+     * Walks the sub-periods of each range on its own, the calculators which can share them override it.
+     */
+    @Override
+    public List<BigDecimal> calculateReturns(PerfCalcRequest perfCalcRequest, List<DateRange> dateRanges) {
+        List<BigDecimal> returns = new ArrayList<>(dateRanges.size());
+        for (DateRange dateRange : dateRanges) {
+            LocalDate startDateIncl = dateRange.startDateIncl();
+            LocalDate endDateIncl = dateRange.endDateIncl();
+            validateDateRange(perfCalcRequest, dateRange);
+            BigDecimal startValueExcl = startDateIncl.isEqual(perfCalcRequest.startDateIncl())
+                    ? perfCalcRequest.startAssetValueExcl()
+                    : assetValue(perfCalcRequest.assetValues(), startDateIncl.minusDays(1));
+            if (startValueExcl == null) {
+                throw new IllegalArgumentException("startAssetValueExcl must not be null, missing assetValue for %s"
+                        .formatted(startDateIncl.minusDays(1)));
             }
+            BigDecimal endValueIncl = endDateIncl.isEqual(perfCalcRequest.endDateIncl())
+                    ? perfCalcRequest.endAssetValueIncl()
+                    : assetValue(perfCalcRequest.assetValues(), endDateIncl);
+            if (endValueIncl == null) {
+                throw new IllegalArgumentException("endAssetValueIncl must not be null, missing assetValue for %s"
+                        .formatted(endDateIncl));
+            }
+            returns.add(calculateReturnWithErrorBound(perfCalcRequest, startDateIncl, endDateIncl, startValueExcl, endValueIncl).value());
+        }
+        return returns;
+    }
+
+    /**
+     * Reads a {@link DailySeries} or an {@link OffHeapSeries} by the epoch day directly instead of through the megamorphic {@link Function#apply}.
+     */
+    static BigDecimal assetValue(Function<LocalDate, BigDecimal> assetValues, LocalDate date) {
+        return switch (assetValues) {
+            case DailySeries assetValueSeries -> assetValueSeries.get(date.toEpochDay());
+            case OffHeapSeries assetValueSeries -> assetValueSeries.get(date.toEpochDay());
+            default -> assetValues.apply(date);
+        };
+    }
+
+    /**
+     * The same as {@link #assetValue} converted to a double, or NaN if there is none,
+     * but an {@link OffHeapSeries} is read by the unscaled amount, without allocating a BigDecimal.
+     */
+    static double assetValueInDouble(Function<LocalDate, BigDecimal> assetValues, LocalDate date) {
+        if (assetValues instanceof OffHeapSeries assetValueSeries) {
+            long unscaledValue = assetValueSeries.getUnscaled(date.toEpochDay());
+            return unscaledValue == OffHeapSeries.NO_AMOUNT ? Double.NaN : FixedPoint.toDouble(unscaledValue, assetValueSeries.scale());
         }
+        BigDecimal value = assetValue(assetValues, date);
+        return value == null ? Double.NaN : value.doubleValue();
+    }
 
-        if (startValueExcl.compareTo(ZERO) <= 0) {
-            throw new IllegalArgumentException((
-                    "startValueExcl must be greater than zero; " +
-                    "given: startValueExcl=%s, endValueIncl=%s, startDateIncl=%s, endDateIncl=%s, %s, flows=%s")
-                    .formatted(startValueExcl, endValueIncl, startDateIncl, endDateIncl, flowTiming, flows));
+    static void validateDateRange(PerfCalcRequest perfCalcRequest, DateRange dateRange) {
+        if (dateRange == null) {
+            throw new IllegalArgumentException("dateRange must not be null");
+        }
+        if (dateRange.startDateIncl().isBefore(perfCalcRequest.startDateIncl()) || dateRange.endDateIncl().isAfter(perfCalcRequest.endDateIncl())) {
+            throw new IllegalArgumentException("The date range must be within the date range of the request %s - %s, given: %s"
+                    .formatted(perfCalcRequest.startDateIncl(), perfCalcRequest.endDateIncl(), dateRange));
         }
+    }
 
-        BigDecimal cumulReturn;
-        if (flows.isEmpty()) {
-            cumulReturn = SimpleReturnCalculatorImpl.calculateSimpleCumulReturn(
+    /**
+     * @param perfCalcRequest the request of the flows, asset values and options, the dates and the start and end values are given
+     */
+    private PerfCalcResult calculateReturnWithErrorBound(
+            PerfCalcRequest perfCalcRequest,
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl
+    ) {
+        SortedMap<LocalDate, BigDecimal> flows = validateAndTrimFlows(startDateIncl, endDateIncl, startValueExcl, endValueIncl, perfCalcRequest.flows());
+        if (perfCalcRequest.numericMode() == NumericMode.DOUBLE) {
+            DoubleReturn doubleReturn = calculateUnscaledCumulReturnInDouble(
+                    startDateIncl,
+                    endDateIncl,
                     startValueExcl,
                     endValueIncl,
+                    flows,
+                    perfCalcRequest.assetValues(),
+                    perfCalcRequest.flowTiming(),
+                    perfCalcRequest.largeFlowLevelInPercent(),
                     perfCalcRequest.calcScale(),
                     perfCalcRequest.roundingMode()
             );
-        } else {
-            PerfCalcRequest adjPerfCalcRequest = perfCalcRequest.toBuilder()
-                    .startAssetValueExcl(startValueExcl)
-                    .endAssetValueIncl(endValueIncl)
-                    .flows(flows)
-                    .build();
-            cumulReturn = calculateCumulativeReturn(adjPerfCalcRequest);
+            if (doubleReturn.isFinite()) {
+                return toPerfCalcResult(perfCalcRequest, startDateIncl, endDateIncl, doubleReturn.bigDecimalCumulReturn(), doubleReturn.errorBound());
+            }
+            //Out of the range of a double, e.g. for extreme values, so calculated in BIG_DECIMAL instead
         }
+        BigDecimal cumulReturn = calculateUnscaledCumulReturn(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                flows,
+                perfCalcRequest.assetValues(),
+                perfCalcRequest.flowTiming(),
+                perfCalcRequest.largeFlowLevelInPercent(),
+                perfCalcRequest.calcScale(),
+                perfCalcRequest.roundingMode()
+        );
+        return toPerfCalcResult(perfCalcRequest, startDateIncl, endDateIncl, cumulReturn, 0);
+    }
 
+    /**
+     * Annualizes, converts to percent and scales the given cumulative return as the given request asks, together with its error bound.
+     */
+    static PerfCalcResult toPerfCalcResult(
+            PerfCalcRequest perfCalcRequest,
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal cumulReturn,
+            double errorBound
+    ) {
         BigDecimal unscaledAnnReturn = Annualizer.INSTANCE.annualizeReturn(
                 perfCalcRequest.annualization(),
                 cumulReturn,
                 startDateIncl,
                 endDateIncl
         );
+        if (errorBound != 0 && unscaledAnnReturn.compareTo(cumulReturn) != 0) {
+            //The derivative of (1 + cumulReturn)^exponent - 1 with the exponent derived from the annualized return itself
+            double cumulFactor = 1 + cumulReturn.doubleValue();
+            double annFactor = 1 + unscaledAnnReturn.doubleValue();
+            double exponent = Math.log(annFactor) / Math.log(cumulFactor);
+            errorBound *= exponent * annFactor / cumulFactor;
+        }
+        if (!Double.isFinite(errorBound)) {
+            throw new IllegalStateException("The error bound is out of the range of a double, given: cumulReturn=%s, errorBound=%s"
+                    .formatted(cumulReturn, errorBound));
+        }
         if (perfCalcRequest.resultInPercent()) {
             unscaledAnnReturn = unscaledAnnReturn.multiply(Num._100);
+            errorBound *= 100;
+        }
+        return new PerfCalcResult(
+                unscaledAnnReturn.setScale(perfCalcRequest.resultScale(), perfCalcRequest.roundingMode()),
+                errorBound == 0 ? ZERO : new BigDecimal(errorBound, new MathContext(2, RoundingMode.UP))
+        );
+    }
+
+    /**
+     * The same as {@link #calculateReturn(PerfCalcRequest)} with {@code DO_NOT_ANNUALIZE} and the result scaled to the calcScale,
+     * but without building, validating and sanitizing a {@link PerfCalcRequest} for each call.
+     * The flows out of the date range are ignored, the same as {@link PerfCalcRequest} does.
+     */
+    final BigDecimal calculateCumulReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode,
+            NumericMode numericMode
+    ) {
+        if (numericMode == NumericMode.DOUBLE) {
+            DoubleReturn doubleReturn = calculateCumulReturnInDouble(
+                    startDateIncl,
+                    endDateIncl,
+                    startValueExcl,
+                    endValueIncl,
+                    flows,
+                    assetValues,
+                    flowTiming,
+                    largeFlowLevelInPercent,
+                    calcScale,
+                    roundingMode
+            );
+            if (doubleReturn.isFinite()) {
+                return doubleReturn.bigDecimalCumulReturn().setScale(calcScale, roundingMode);
+            }
         }
-        return unscaledAnnReturn.setScale(perfCalcRequest.resultScale(), perfCalcRequest.roundingMode());
+        return calculateUnscaledCumulReturn(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                validateAndTrimFlows(startDateIncl, endDateIncl, startValueExcl, endValueIncl, flows),
+                assetValues,
+                flowTiming,
+                largeFlowLevelInPercent,
+                calcScale,
+                roundingMode
+        ).setScale(calcScale, roundingMode);
+    }
+
+    /**
+     * The same as {@link #calculateCumulReturn} in {@link NumericMode#DOUBLE}, with the error bound.
+     */
+    final DoubleReturn calculateCumulReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        return calculateUnscaledCumulReturnInDouble(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                validateAndTrimFlows(startDateIncl, endDateIncl, startValueExcl, endValueIncl, flows),
+                assetValues,
+                flowTiming,
+                largeFlowLevelInPercent,
+                calcScale,
+                roundingMode
+        );
+    }
+
+    private static SortedMap<LocalDate, BigDecimal> validateAndTrimFlows(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows
+    ) {
+        validateStartAndEndValues(startValueExcl, endValueIncl);
+        if (!flows.isEmpty() && (flows.firstKey().isBefore(startDateIncl) || flows.lastKey().isAfter(endDateIncl))) {
+            flows = rangeSafeSubMap(flows, startDateIncl, endDateIncl.plusDays(1));
+        }
+        return flows;
     }
 
-    protected abstract BigDecimal calculateCumulativeReturn(PerfCalcRequest calcRequest);
+    static void validateStartAndEndValues(BigDecimal startValueExcl, BigDecimal endValueIncl) {
+        if (startValueExcl.compareTo(ZERO) < 0) {
+            throw new IllegalArgumentException("startAssetValueExcl must be greater than or equal to zero");
+        }
+        if (endValueIncl.compareTo(ZERO) < 0) {
+            throw new IllegalArgumentException("endAssetValueIncl must be greater than or equal to zero");
+        }
+    }
+
+    private BigDecimal calculateUnscaledCumulReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.of(startDateIncl, endDateIncl, startValueExcl, endValueIncl, flows, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        flows = adjustment.flows(flows);
+
+        if (flows.isEmpty()) {
+            return SimpleReturnCalculatorImpl.calculateSimpleCumulReturn(startValueExcl, endValueIncl, calcScale, roundingMode);
+        } else {
+            return calculateCumulativeReturn(
+                    startDateIncl,
+                    endDateIncl,
+                    startValueExcl,
+                    endValueIncl,
+                    flows,
+                    assetValues,
+                    flowTiming,
+                    largeFlowLevelInPercent,
+                    calcScale,
+                    roundingMode
+            );
+        }
+    }
+
+    private DoubleReturn calculateUnscaledCumulReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.of(startDateIncl, endDateIncl, startValueExcl, endValueIncl, flows, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        flows = adjustment.flows(flows);
+
+        if (flows.isEmpty()) {
+            return SimpleReturnCalculatorImpl.calculateSimpleCumulReturnInDouble(startValueExcl, endValueIncl, calcScale);
+        } else {
+            return calculateCumulativeReturnInDouble(
+                    startDateIncl,
+                    endDateIncl,
+                    startValueExcl,
+                    endValueIncl,
+                    flows,
+                    assetValues,
+                    flowTiming,
+                    largeFlowLevelInPercent,
+                    calcScale,
+                    roundingMode
+            );
+        }
+    }
+
+    /**
+     * @param flows the non-empty flows within the date range,
+     *              without the flow on the start date for the beginning of day timing
+     *              and without the flow on the end date for the end of day timing
+     */
+    protected abstract BigDecimal calculateCumulativeReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    );
+
+    /**
+     * The same as {@link #calculateCumulativeReturn} in {@link NumericMode#DOUBLE}.
+     */
+    protected abstract DoubleReturn calculateCumulativeReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    );
 }
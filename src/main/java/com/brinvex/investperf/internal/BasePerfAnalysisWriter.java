@@ -0,0 +1,304 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisColumn;
+import com.brinvex.investperf.api.PerfAnalysisWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Buffers the bytes of a {@link PerfAnalysisWriter} and formats the values into the buffer.
+ */
+abstract class BasePerfAnalysisWriter implements PerfAnalysisWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    enum ColumnType {
+        DATE,
+        TEXT,
+        DECIMAL,
+    }
+
+    private final OutputStream out;
+    private final WritableByteChannel channel;
+    protected final PerfAnalysisColumn[] columns;
+
+    protected ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /*
+    The digits of the unscaled value of a decimal, from the least significant one
+     */
+    private final byte[] digits = new byte[19];
+
+    private boolean started;
+    private boolean closed;
+
+    BasePerfAnalysisWriter(OutputStream out, WritableByteChannel channel, List<PerfAnalysisColumn> columns) {
+        if (out == null && channel == null) {
+            throw new IllegalArgumentException("out must not be null");
+        }
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("columns must not be empty, given: %s".formatted(columns));
+        }
+        Set<PerfAnalysisColumn> uniqueColumns = EnumSet.noneOf(PerfAnalysisColumn.class);
+        for (PerfAnalysisColumn column : columns) {
+            if (column == null || !uniqueColumns.add(column)) {
+                throw new IllegalArgumentException("columns must be unique and not null, given: %s".formatted(columns));
+            }
+        }
+        this.out = out;
+        this.channel = channel;
+        this.columns = columns.toArray(PerfAnalysisColumn[]::new);
+    }
+
+    /**
+     * Writes the beginning of the output, before the first result or on closing if there is none.
+     */
+    protected abstract void writeHeader() throws IOException;
+
+    protected abstract void write(PerfAnalysis perfAnalysis) throws IOException;
+
+    /**
+     * Writes the end of the output on closing.
+     */
+    protected void writeTrailer() throws IOException {
+    }
+
+    @Override
+    public void accept(PerfAnalysis perfAnalysis) {
+        if (closed) {
+            throw new IllegalStateException("The writer is closed");
+        }
+        try {
+            start();
+            write(perfAnalysis);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            drain();
+            if (out != null) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (Closeable _ = out != null ? out : channel) {
+            start();
+            writeTrailer();
+            drain();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void start() throws IOException {
+        if (!started) {
+            started = true;
+            writeHeader();
+        }
+    }
+
+    /**
+     * Makes room for the given number of bytes, writing out the buffer or growing it if they do not fit.
+     */
+    protected final void ensureRemaining(int byteCount) throws IOException {
+        if (buffer.remaining() < byteCount) {
+            drain();
+            if (buffer.remaining() < byteCount) {
+                buffer = ByteBuffer.allocate(byteCount).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        if (out != null) {
+            out.write(buffer.array(), 0, buffer.limit());
+        } else {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    protected final void putAscii(String s) throws IOException {
+        ensureRemaining(s.length());
+        for (int i = 0, n = s.length(); i < n; i++) {
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    /**
+     * Puts the text in UTF-8, an ASCII text char by char without encoding it first.
+     */
+    protected final void putUtf8(String s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            if (s.charAt(i) >= 0x80) {
+                putBytes(utf8(s));
+                return;
+            }
+        }
+        putAscii(s);
+    }
+
+    protected final void putBytes(byte[] bytes) throws IOException {
+        ensureRemaining(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Puts the date in ISO format, the same as {@link LocalDate#toString()}.
+     */
+    protected final void putDate(LocalDate date) throws IOException {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            putAscii(date.toString());
+            return;
+        }
+        ensureRemaining(10);
+        putTwoDigits(year / 100);
+        putTwoDigits(year % 100);
+        buffer.put((byte) '-');
+        putTwoDigits(date.getMonthValue());
+        buffer.put((byte) '-');
+        putTwoDigits(date.getDayOfMonth());
+    }
+
+    private void putTwoDigits(int twoDigits) {
+        buffer.put((byte) ('0' + twoDigits / 10));
+        buffer.put((byte) ('0' + twoDigits % 10));
+    }
+
+    /**
+     * Puts the decimal the same as {@link BigDecimal#toPlainString()} does,
+     * but from the digits of the unscaled value if it fits in a long, without building a String.
+     */
+    protected final void putDecimal(BigDecimal decimal) throws IOException {
+        BigInteger unscaledValue = decimal.unscaledValue();
+        if (unscaledValue.bitLength() >= Long.SIZE) {
+            putAscii(decimal.toPlainString());
+            return;
+        }
+        long unscaled = unscaledValue.longValue();
+        int scale = decimal.scale();
+
+        //The digits are taken from the negative value, which covers Long.MIN_VALUE too
+        long rest = unscaled < 0 ? unscaled : -unscaled;
+        int digitCount = 0;
+        do {
+            digits[digitCount++] = (byte) ('0' - rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+
+        ensureRemaining(digitCount + Math.abs(scale) + 3);
+        if (unscaled < 0) {
+            buffer.put((byte) '-');
+        }
+        if (scale <= 0) {
+            putDigits(digitCount, 0);
+            for (int i = unscaled == 0 ? 0 : scale; i < 0; i++) {
+                buffer.put((byte) '0');
+            }
+        } else if (digitCount > scale) {
+            putDigits(digitCount, scale);
+            buffer.put((byte) '.');
+            putDigits(scale, 0);
+        } else {
+            buffer.put((byte) '0');
+            buffer.put((byte) '.');
+            for (int i = digitCount; i < scale; i++) {
+                buffer.put((byte) '0');
+            }
+            putDigits(digitCount, 0);
+        }
+    }
+
+    /**
+     * Puts the digits from the more significant position exclusive down to the less significant one inclusive.
+     */
+    private void putDigits(int fromPositionExcl, int toPositionIncl) {
+        for (int i = fromPositionExcl - 1; i >= toPositionIncl; i--) {
+            buffer.put(digits[i]);
+        }
+    }
+
+    static ColumnType type(PerfAnalysisColumn column) {
+        return switch (column) {
+            case PERIOD_START_DATE_INCL, PERIOD_END_DATE_INCL -> ColumnType.DATE;
+            case PERIOD_CAPTION -> ColumnType.TEXT;
+            default -> ColumnType.DECIMAL;
+        };
+    }
+
+    static LocalDate date(PerfAnalysis perfAnalysis, PerfAnalysisColumn column) {
+        return switch (column) {
+            case PERIOD_START_DATE_INCL -> perfAnalysis.periodStartDateIncl();
+            case PERIOD_END_DATE_INCL -> perfAnalysis.periodEndDateIncl();
+            default -> throw new IllegalArgumentException("The column must be a date, given: %s".formatted(column));
+        };
+    }
+
+    static String text(PerfAnalysis perfAnalysis, PerfAnalysisColumn column) {
+        return switch (column) {
+            case PERIOD_CAPTION -> perfAnalysis.periodCaption();
+            default -> throw new IllegalArgumentException("The column must be a text, given: %s".formatted(column));
+        };
+    }
+
+    static BigDecimal decimal(PerfAnalysis perfAnalysis, PerfAnalysisColumn column) {
+        return switch (column) {
+            case PERIOD_START_ASSET_VALUE_EXCL -> perfAnalysis.periodStartAssetValueExcl();
+            case PERIOD_END_ASSET_VALUE_INCL -> perfAnalysis.periodEndAssetValueIncl();
+            case PERIOD_FLOW -> perfAnalysis.periodFlow();
+            case PERIOD_TWR -> perfAnalysis.periodTwr();
+            case CUMULATIVE_TWR -> perfAnalysis.cumulativeTwr();
+            case ANNUALIZED_TWR -> perfAnalysis.annualizedTwr();
+            case CUMULATIVE_MWR -> perfAnalysis.cumulativeMwr();
+            case ANNUALIZED_MWR -> perfAnalysis.annualizedMwr();
+            case TOTAL_CONTRIBUTION -> perfAnalysis.totalContribution();
+            case PERIOD_PROFIT -> perfAnalysis.periodProfit();
+            case TOTAL_PROFIT -> perfAnalysis.totalProfit();
+            case PERIOD_INCOME -> perfAnalysis.periodIncome();
+            case TRAILING_AVG_PROFIT_1Y -> perfAnalysis.trailingAvgProfit1Y();
+            case TRAILING_AVG_FLOW_1Y -> perfAnalysis.trailingAvgFlow1Y();
+            case TRAILING_AVG_INCOME_1Y -> perfAnalysis.trailingAvgIncome1Y();
+            case TRAILING_TWR_1Y -> perfAnalysis.trailingTwr1Y();
+            case TRAILING_TWR_2Y -> perfAnalysis.trailingTwr2Y();
+            case TRAILING_TWR_3Y -> perfAnalysis.trailingTwr3Y();
+            case TRAILING_TWR_5Y -> perfAnalysis.trailingTwr5Y();
+            case TRAILING_TWR_10Y -> perfAnalysis.trailingTwr10Y();
+            default -> throw new IllegalArgumentException("The column must be a decimal, given: %s".formatted(column));
+        };
+    }
+
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,220 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerfCalcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * The factors in {@link com.brinvex.investperf.api.NumericMode#BIG_DECIMAL}, each divided to the calcScale
+ * the same way as {@link TrueTwrCalculatorImpl} divides it, kept in a segment tree of their products.
+ * The factors between the first and the last flow of a range are chained by multiplying O(log n) nodes
+ * and a corrected asset value updates the O(log n) ancestors of the affected factors.
+ * <p>
+ * Each product is rounded to the calcScale as the calculator rounds its running product,
+ * but the products are grouped by the tree instead of from left to right,
+ * so the result might differ from the calculator's in the last digits of the calcScale.
+ * With the left to right chaining, the tree is not built and the factors of a range are chained one by one,
+ * which gives exactly the calculator's result in O(n) multiplications but without any division or asset value lookup.
+ */
+final class BigDecimalTwrIndex extends TwrIndexImpl {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final int leafCount;
+    private final boolean leftToRight;
+    /**
+     * The node i is the product of the nodes 2i and 2i + 1, the factor k is the leaf leafCount + k.
+     * A factor the calculator fails for is ONE here, its failure is tracked by the firstInvalidFactors.
+     */
+    private final BigDecimal[] products;
+    /**
+     * The first factor of the node the calculator fails for, NONE if there is none.
+     */
+    private final int[] firstInvalidFactors;
+    /**
+     * The first bankrupt factor of the node, NONE if there is none.
+     */
+    private final int[] firstBankruptFactors;
+
+    BigDecimalTwrIndex(PerfCalcRequest perfCalcRequest, int[] flowEpochDays, BigDecimal[] flows, boolean leftToRight) {
+        super(perfCalcRequest, flowEpochDays, flows);
+        this.leafCount = factorCount();
+        this.leftToRight = leftToRight;
+        this.products = new BigDecimal[2 * leafCount];
+        this.firstInvalidFactors = new int[2 * leafCount];
+        this.firstBankruptFactors = new int[2 * leafCount];
+        for (int k = 0; k < leafCount; k++) {
+            setLeaf(k);
+        }
+        if (!leftToRight) {
+            for (int node = leafCount - 1; node > 0; node--) {
+                computeNode(node);
+            }
+        }
+    }
+
+    @Override
+    void flowDayValueChanged(int flowIndex) {
+        for (int k = Math.max(flowIndex - 1, 0); k <= Math.min(flowIndex, leafCount - 1); k++) {
+            setLeaf(k);
+            if (!leftToRight) {
+                for (int node = (leafCount + k) >>> 1; node > 0; node >>>= 1) {
+                    computeNode(node);
+                }
+            }
+        }
+    }
+
+    @Override
+    PerfCalcResult calculateSimpleReturn(LocalDate startDateIncl, LocalDate endDateIncl, BigDecimal startValueExcl, BigDecimal endValueIncl) {
+        BigDecimal cumulReturn = SimpleReturnCalculatorImpl.calculateSimpleCumulReturn(startValueExcl, endValueIncl, calcScale, roundingMode);
+        return toPerfCalcResult(startDateIncl, endDateIncl, cumulReturn, 0);
+    }
+
+    @Override
+    PerfCalcResult calculateChainedReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal firstStartValue,
+            BigDecimal firstFlow,
+            int fromFactor,
+            int toFactor,
+            BigDecimal lastFlow,
+            BigDecimal lastEndValue
+    ) {
+        //The sub-period up to the first flow
+        BigDecimal firstFactor = factor(firstStartValue, firstFlow, flowDayValues[fromFactor]);
+        if (firstFactor == null) {
+            throw subPeriodFailure(startDateIncl, subPeriodEndDateIncl(fromFactor), firstStartValue, firstFlow, flowDayValues[fromFactor]);
+        }
+        if (firstFactor.signum() == 0) {
+            return toPerfCalcResult(startDateIncl, endDateIncl, ONE.negate(), 0);
+        }
+
+        if (leftToRight) {
+            return chainLeftToRight(startDateIncl, endDateIncl, firstFactor, fromFactor, toFactor, lastFlow, lastEndValue);
+        }
+
+        //The factors between the first and the last flow, the first failing one decides
+        BigDecimal leftProduct = ONE;
+        BigDecimal rightProduct = ONE;
+        int firstInvalidFactor = NONE;
+        int firstBankruptFactor = NONE;
+        for (int left = leafCount + fromFactor, right = leafCount + toFactor; left < right; left >>>= 1, right >>>= 1) {
+            if ((left & 1) == 1) {
+                leftProduct = multiply(leftProduct, products[left]);
+                firstInvalidFactor = Math.min(firstInvalidFactor, firstInvalidFactors[left]);
+                firstBankruptFactor = Math.min(firstBankruptFactor, firstBankruptFactors[left]);
+                left++;
+            }
+            if ((right & 1) == 1) {
+                right--;
+                rightProduct = multiply(products[right], rightProduct);
+                firstInvalidFactor = Math.min(firstInvalidFactor, firstInvalidFactors[right]);
+                firstBankruptFactor = Math.min(firstBankruptFactor, firstBankruptFactors[right]);
+            }
+        }
+        if (firstInvalidFactor < firstBankruptFactor) {
+            int k = firstInvalidFactor;
+            throw subPeriodFailure(subPeriodStartDateIncl(k), subPeriodEndDateIncl(k + 1), flowDayValues[k], factorFlow(k), flowDayValues[k + 1]);
+        }
+        if (firstBankruptFactor != NONE) {
+            return toPerfCalcResult(startDateIncl, endDateIncl, ONE.negate(), 0);
+        }
+
+        //The sub-period after the last flow
+        BigDecimal lastFactor = factor(flowDayValues[toFactor], lastFlow, lastEndValue);
+        if (lastFactor == null) {
+            throw subPeriodFailure(subPeriodStartDateIncl(toFactor), endDateIncl, flowDayValues[toFactor], lastFlow, lastEndValue);
+        }
+        if (lastFactor.signum() == 0) {
+            return toPerfCalcResult(startDateIncl, endDateIncl, ONE.negate(), 0);
+        }
+
+        BigDecimal cumulFactor = multiply(multiply(multiply(firstFactor, leftProduct), rightProduct), lastFactor);
+        return toPerfCalcResult(startDateIncl, endDateIncl, cumulFactor.subtract(ONE), 0);
+    }
+
+    private PerfCalcResult chainLeftToRight(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal firstFactor,
+            int fromFactor,
+            int toFactor,
+            BigDecimal lastFlow,
+            BigDecimal lastEndValue
+    ) {
+        BigDecimal cumulFactor = firstFactor;
+        for (int k = fromFactor; k < toFactor; k++) {
+            int leaf = leafCount + k;
+            if (firstInvalidFactors[leaf] != NONE) {
+                throw subPeriodFailure(subPeriodStartDateIncl(k), subPeriodEndDateIncl(k + 1), flowDayValues[k], factorFlow(k), flowDayValues[k + 1]);
+            }
+            if (firstBankruptFactors[leaf] != NONE) {
+                return toPerfCalcResult(startDateIncl, endDateIncl, ONE.negate(), 0);
+            }
+            cumulFactor = multiply(cumulFactor, products[leaf]);
+        }
+        BigDecimal lastFactor = factor(flowDayValues[toFactor], lastFlow, lastEndValue);
+        if (lastFactor == null) {
+            throw subPeriodFailure(subPeriodStartDateIncl(toFactor), endDateIncl, flowDayValues[toFactor], lastFlow, lastEndValue);
+        }
+        if (lastFactor.signum() == 0) {
+            return toPerfCalcResult(startDateIncl, endDateIncl, ONE.negate(), 0);
+        }
+        cumulFactor = multiply(cumulFactor, lastFactor);
+        return toPerfCalcResult(startDateIncl, endDateIncl, cumulFactor.subtract(ONE), 0);
+    }
+
+    private void setLeaf(int k) {
+        int node = leafCount + k;
+        BigDecimal factor = factor(flowDayValues[k], factorFlow(k), flowDayValues[k + 1]);
+        products[node] = factor == null ? ONE : factor;
+        firstInvalidFactors[node] = factor == null ? k : NONE;
+        firstBankruptFactors[node] = factor != null && factor.signum() == 0 ? k : NONE;
+    }
+
+    private void computeNode(int node) {
+        products[node] = multiply(products[2 * node], products[2 * node + 1]);
+        firstInvalidFactors[node] = Math.min(firstInvalidFactors[2 * node], firstInvalidFactors[2 * node + 1]);
+        firstBankruptFactors[node] = Math.min(firstBankruptFactors[2 * node], firstBankruptFactors[2 * node + 1]);
+    }
+
+    /**
+     * The same as {@link TrueTwrCalculatorImpl} calculates for a sub-period.
+     *
+     * @return the growth factor, ZERO for a bankruptcy, or null for a sub-period the calculator fails for
+     */
+    private BigDecimal factor(BigDecimal startValue, BigDecimal flow, BigDecimal endValue) {
+        if (startValue == null || endValue == null) {
+            return null;
+        }
+        BigDecimal numerator;
+        BigDecimal denominator;
+        if (flowTiming == FlowTiming.BEGINNING_OF_DAY) {
+            numerator = endValue;
+            denominator = startValue.add(flow);
+            if (denominator.compareTo(ZERO) == 0) {
+                return numerator.compareTo(ZERO) == 0 ? ONE : null;
+            }
+        } else {
+            numerator = endValue.subtract(flow);
+            denominator = startValue;
+            if (denominator.compareTo(ZERO) == 0) {
+                return null;
+            }
+        }
+        BigDecimal factor = numerator.divide(denominator, calcScale, roundingMode);
+        return factor.signum() < 0 ? null : factor;
+    }
+
+    private BigDecimal multiply(BigDecimal factor1, BigDecimal factor2) {
+        return factor1.multiply(factor2).setScale(calcScale, roundingMode);
+    }
+}
@@ -0,0 +1,181 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisColumn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.Math.toIntExact;
+
+public final class ColumnarPerfAnalysisWriter extends BasePerfAnalysisWriter {
+
+    static final int MAGIC = 0x41505842;
+    static final int VERSION = 1;
+    static final int GROUP_SIZE = 4096;
+    static final byte LONG_ENCODING = 0;
+    static final byte BIG_INTEGER_ENCODING = 1;
+
+    private final ColumnType[] columnTypes;
+
+    private final PerfAnalysis[] group;
+    private int groupRowCount;
+
+    private final long[] missingBits;
+    private final BigInteger[] unscaledValues;
+    private final byte[][] texts;
+
+    public ColumnarPerfAnalysisWriter(OutputStream out, WritableByteChannel channel, List<PerfAnalysisColumn> columns) {
+        super(out, channel, columns);
+        this.columnTypes = new ColumnType[this.columns.length];
+        for (int i = 0; i < this.columns.length; i++) {
+            columnTypes[i] = type(this.columns[i]);
+        }
+        this.group = new PerfAnalysis[GROUP_SIZE];
+        this.missingBits = new long[GROUP_SIZE >>> 6];
+        this.unscaledValues = new BigInteger[GROUP_SIZE];
+        this.texts = new byte[GROUP_SIZE][];
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        ensureRemaining(12);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            byte[] name = utf8(columns[i].columnName());
+            ensureRemaining(5);
+            buffer.put((byte) columnTypes[i].ordinal()).putInt(name.length);
+            putBytes(name);
+        }
+    }
+
+    @Override
+    protected void write(PerfAnalysis perfAnalysis) throws IOException {
+        group[groupRowCount++] = perfAnalysis;
+        if (groupRowCount == group.length) {
+            writeGroup();
+        }
+    }
+
+    @Override
+    protected void writeTrailer() throws IOException {
+        if (groupRowCount > 0) {
+            writeGroup();
+        }
+        ensureRemaining(4);
+        buffer.putInt(0);
+    }
+
+    private void writeGroup() throws IOException {
+        int rowCount = groupRowCount;
+        ensureRemaining(4);
+        buffer.putInt(rowCount);
+        for (int i = 0; i < columns.length; i++) {
+            switch (columnTypes[i]) {
+                case DATE -> writeDates(columns[i], rowCount);
+                case TEXT -> writeTexts(columns[i], rowCount);
+                case DECIMAL -> writeDecimals(columns[i], rowCount);
+            }
+        }
+        Arrays.fill(group, 0, rowCount, null);
+        groupRowCount = 0;
+    }
+
+    private void writeDates(PerfAnalysisColumn column, int rowCount) throws IOException {
+        Arrays.fill(missingBits, 0);
+        for (int r = 0; r < rowCount; r++) {
+            if (date(group[r], column) == null) {
+                missingBits[r >>> 6] |= 1L << r;
+            }
+        }
+        putMissingBits(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            LocalDate date = date(group[r], column);
+            ensureRemaining(4);
+            buffer.putInt(date == null ? 0 : toIntExact(date.toEpochDay()));
+        }
+    }
+
+    private void writeTexts(PerfAnalysisColumn column, int rowCount) throws IOException {
+        Arrays.fill(missingBits, 0);
+        for (int r = 0; r < rowCount; r++) {
+            String text = text(group[r], column);
+            if (text == null) {
+                missingBits[r >>> 6] |= 1L << r;
+            }
+            texts[r] = text == null ? null : utf8(text);
+        }
+        putMissingBits(rowCount);
+        putBytesWithOffsets(texts, rowCount);
+        Arrays.fill(texts, 0, rowCount, null);
+    }
+
+    private void writeDecimals(PerfAnalysisColumn column, int rowCount) throws IOException {
+        Arrays.fill(missingBits, 0);
+        int scale = Integer.MIN_VALUE;
+        for (int r = 0; r < rowCount; r++) {
+            BigDecimal decimal = decimal(group[r], column);
+            if (decimal == null) {
+                missingBits[r >>> 6] |= 1L << r;
+            } else {
+                scale = Math.max(scale, decimal.scale());
+            }
+        }
+        scale = scale == Integer.MIN_VALUE ? 0 : scale;
+        boolean fitLong = true;
+        for (int r = 0; r < rowCount; r++) {
+            BigDecimal decimal = decimal(group[r], column);
+            BigInteger unscaledValue = decimal == null ? BigInteger.ZERO : decimal.setScale(scale).unscaledValue();
+            unscaledValues[r] = unscaledValue;
+            fitLong &= unscaledValue.bitLength() < Long.SIZE;
+        }
+        putMissingBits(rowCount);
+        ensureRemaining(5);
+        buffer.putInt(scale).put(fitLong ? LONG_ENCODING : BIG_INTEGER_ENCODING);
+        if (fitLong) {
+            for (int r = 0; r < rowCount; r++) {
+                ensureRemaining(8);
+                buffer.putLong(unscaledValues[r].longValue());
+            }
+        } else {
+            for (int r = 0; r < rowCount; r++) {
+                texts[r] = unscaledValues[r].toByteArray();
+            }
+            putBytesWithOffsets(texts, rowCount);
+            Arrays.fill(texts, 0, rowCount, null);
+        }
+        Arrays.fill(unscaledValues, 0, rowCount, null);
+    }
+
+    private void putMissingBits(int rowCount) throws IOException {
+        for (int w = 0, n = (rowCount + 63) >>> 6; w < n; w++) {
+            ensureRemaining(8);
+            buffer.putLong(missingBits[w]);
+        }
+    }
+
+    /**
+     * Puts the offsets of the bytes of each row, the end offset, then the bytes, a missing row having no bytes.
+     */
+    private void putBytesWithOffsets(byte[][] rowBytes, int rowCount) throws IOException {
+        int offset = 0;
+        for (int r = 0; r < rowCount; r++) {
+            ensureRemaining(4);
+            buffer.putInt(offset);
+            offset += rowBytes[r] == null ? 0 : rowBytes[r].length;
+        }
+        ensureRemaining(4);
+        buffer.putInt(offset);
+        for (int r = 0; r < rowCount; r++) {
+            if (rowBytes[r] != null) {
+                putBytes(rowBytes[r]);
+            }
+        }
+    }
+}
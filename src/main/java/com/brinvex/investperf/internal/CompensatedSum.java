@@ -0,0 +1,47 @@
+package com.brinvex.investperf.internal;
+
+/**
+ * A double sum with the rounding error of each addition carried separately (Neumaier's variant of the Kahan summation),
+ * so that the error of the sum does not grow with the number of the added values.
+ */
+final class CompensatedSum {
+
+    private double sum;
+    private double compensation;
+    private double absSum;
+
+    void add(double value) {
+        addToSum(value);
+        absSum += Math.abs(value);
+    }
+
+    /**
+     * Merges a sum accumulated separately, e.g. in a vector lane.
+     */
+    void addPartial(double partialSum, double partialCompensation, double partialAbsSum) {
+        addToSum(partialSum);
+        compensation += partialCompensation;
+        absSum += partialAbsSum;
+    }
+
+    private void addToSum(double value) {
+        double newSum = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            compensation += (sum - newSum) + value;
+        } else {
+            compensation += (value - newSum) + sum;
+        }
+        sum = newSum;
+    }
+
+    double sum() {
+        return sum + compensation;
+    }
+
+    /**
+     * @return the sum of the absolute values, which the error of the sum is proportional to
+     */
+    double absSum() {
+        return absSum;
+    }
+}
@@ -0,0 +1,87 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisColumn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.List;
+
+public final class CsvPerfAnalysisWriter extends BasePerfAnalysisWriter {
+
+    private final ColumnType[] columnTypes;
+
+    public CsvPerfAnalysisWriter(OutputStream out, WritableByteChannel channel, List<PerfAnalysisColumn> columns) {
+        super(out, channel, columns);
+        this.columnTypes = new ColumnType[this.columns.length];
+        for (int i = 0; i < this.columns.length; i++) {
+            columnTypes[i] = type(this.columns[i]);
+        }
+    }
+
+    @Override
+    protected void writeHeader() throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                putAscii(",");
+            }
+            putAscii(columns[i].columnName());
+        }
+        putAscii("\n");
+    }
+
+    @Override
+    protected void write(PerfAnalysis perfAnalysis) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                putAscii(",");
+            }
+            PerfAnalysisColumn column = columns[i];
+            switch (columnTypes[i]) {
+                case DATE -> {
+                    LocalDate date = date(perfAnalysis, column);
+                    if (date != null) {
+                        putDate(date);
+                    }
+                }
+                case TEXT -> {
+                    String text = text(perfAnalysis, column);
+                    if (text != null) {
+                        putText(text);
+                    }
+                }
+                case DECIMAL -> {
+                    BigDecimal decimal = decimal(perfAnalysis, column);
+                    if (decimal != null) {
+                        putDecimal(decimal);
+                    }
+                }
+            }
+        }
+        putAscii("\n");
+    }
+
+    /**
+     * Quotes the text if it contains a comma, a quote or a line break, doubling the quotes inside.
+     */
+    private void putText(String text) throws IOException {
+        boolean quoted = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                quoted = true;
+                break;
+            }
+        }
+        if (!quoted) {
+            putUtf8(text);
+            return;
+        }
+        putAscii("\"");
+        putUtf8(text.replace("\"", "\"\""));
+        putAscii("\"");
+    }
+}
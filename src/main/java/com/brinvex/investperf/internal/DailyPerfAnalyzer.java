@@ -0,0 +1,515 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.fintypes.enu.Frequency;
+import com.brinvex.investperf.api.Annualizer;
+import com.brinvex.investperf.api.DailySeries;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerformanceCalculator;
+import com.brinvex.java.Num;
+import com.brinvex.java.validation.Assert;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SequencedCollection;
+import java.util.SequencedMap;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR;
+import static com.brinvex.investperf.internal.PerfAnalysisSessionImpl.toPctAndScale;
+import static com.brinvex.java.DateUtil.maxDate;
+import static com.brinvex.java.DateUtil.minDate;
+import static com.brinvex.java.NullUtil.nullSafe;
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.ZERO;
+import static java.util.Collections.emptySortedMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Analysis with the {@link Frequency#DAY} result frequency.
+ * <p>
+ * The period TWR of a single day is the simple return adjusted by the day's flow, whichever TWR calculator is requested,
+ * so it is evaluated directly, without building a {@link com.brinvex.investperf.api.PerfCalcRequest} for each day.
+ * The flows and incomes are walked with a single forward cursor and the day's start value is the previous day's end value.
+ * <p>
+ * The trailing TWR windows are calendar based, e.g. the trailing 1Y window of 2021-03-01 starts on 2020-03-02
+ * and the trailing 6M window of 2021-06-30 starts on 2021-01-01,
+ * so on a month end they cover the same days as the trailing TWRs of {@link Frequency#MONTH}.
+ * Like there, they are products of the factors within the window, not ratios of the cumulative factors,
+ * so a cumulative factor too small for the calcScale does not spoil them.
+ * The trailing averages are, like for the other frequencies, the sums of the last {@link Frequency#countPerYear()} periods
+ * divided by that count, i.e. the average of a day of the last 365 days.
+ * <p>
+ * The coarser result frequencies, if requested, are aggregated from the days, see {@link PeriodResultChain#aggregate}.
+ */
+@SuppressWarnings("DuplicatedCode")
+final class DailyPerfAnalyzer {
+
+    private static final int[] FIXED_TRAILING_TWR_YEARS = {1, 2, 3, 5, 10};
+
+    /*
+    The trailing TWR products are rounded to calcScale + TRAILING_TWR_GUARD_DIGITS significant digits,
+    enough for the rounding errors of ten years of daily factors to stay below the calcScale
+     */
+    private static final int TRAILING_TWR_GUARD_DIGITS = 8;
+
+    private static final String[] DAYS_OF_MONTH = IntStream.rangeClosed(0, 31)
+            .mapToObj("%02d"::formatted)
+            .toArray(String[]::new);
+
+    private DailyPerfAnalyzer() {
+    }
+
+    static void analyzePerformance(PerfAnalysisRequest req, Consumer<PerfAnalysis> resultConsumer) {
+        analyzePerformance(req, resultConsumer, false);
+    }
+
+    static SequencedMap<Frequency, SequencedCollection<PerfAnalysis>> analyzePerformanceByFrequency(PerfAnalysisRequest req) {
+        List<PerfAnalysis> results = new ArrayList<>();
+        List<PeriodResultChain> coarserResultChains = analyzePerformance(req, results::add, true);
+        SequencedMap<Frequency, SequencedCollection<PerfAnalysis>> resultsByFrequency = new LinkedHashMap<>();
+        resultsByFrequency.put(req.resultFrequency(), results);
+        for (PeriodResultChain coarserResultChain : coarserResultChains) {
+            resultsByFrequency.put(coarserResultChain.frequency(), coarserResultChain.results());
+        }
+        return resultsByFrequency;
+    }
+
+    /**
+     * @return the result chains of the coarser result frequencies, empty if not requested
+     */
+    @SuppressWarnings("DataFlowIssue")
+    private static List<PeriodResultChain> analyzePerformance(
+            PerfAnalysisRequest req,
+            Consumer<PerfAnalysis> resultConsumer,
+            boolean allResultFrequencies
+    ) {
+        Frequency frequency = req.resultFrequency();
+        LocalDate resultStartDateIncl = req.resultStartDateIncl();
+        LocalDate resultEndDateIncl = req.resultEndDateIncl();
+        FlowTiming twrFlowTiming = req.twrFlowTiming();
+        FlowTiming mwrFlowTiming = req.mwrFlowTiming();
+        boolean resultRatesInPct = req.resultRatesInPercent();
+        int calcScale = req.calcScale();
+        int resultRateScale = req.resultRateScale();
+        int resultAmountScale = req.resultAmountScale();
+        boolean fixedPointAmounts = req.fixedPointAmounts();
+        RoundingMode roundingMode = req.roundingMode();
+        //Resolved only to validate the type, a single day needs no calculator
+        PerformanceCalculator.twrCalculator(req.twrCalculatorType());
+        PerformanceCalculator mwrCalculator = PerformanceCalculator.mwrCalculator(req.mwrCalculatorType());
+        boolean calculateMwr = req.calculateMwr();
+        boolean calculateTrailingAvgProfit1Y = req.calculateTrailingAvgProfit1Y();
+        boolean calculateTrailingAvgFlow1Y = req.calculateTrailingAvgFlow1Y();
+        boolean calculatePeriodIncome = req.calculatePeriodIncome();
+        boolean calculateTrailingAvgIncome1Y = req.calculateTrailingAvgIncome1Y();
+        //All the fixed trailing TWRs up to the longest requested one, the same as the other frequencies give
+        int fixedTrailingTwrYears = req.calculateTrailingTwr10Y() ? 10 : req.calculateTrailingTwr5Y() ? 5 : req.calculateTrailingTwr3Y() ? 3
+                : req.calculateTrailingTwr2Y() ? 2 : req.calculateTrailingTwr1Y() ? 1 : 0;
+        List<Period> trailingTwrPeriods = req.trailingTwrPeriods();
+        Function<LocalDate, BigDecimal> assetValues = req.assetValues();
+        Annualizer annualizer = Annualizer.INSTANCE;
+        DayCaptions captions = new DayCaptions(frequency);
+
+        LocalDate calcStartDateIncl = minDate(maxDate(resultStartDateIncl, req.performanceMeasureStartDateIncl()), resultEndDateIncl.plusDays(1));
+        FixedStartAnnualizer cumulAnnualizer = new FixedStartAnnualizer(calcStartDateIncl, null);
+        LocalDate calcStartDateExcl = calcStartDateIncl.minusDays(1);
+        LocalDate calcEndDateIncl = minDate(resultEndDateIncl, req.performanceMeasureEndDateIncl());
+        boolean calcIsNeeded = !calcStartDateIncl.isAfter(calcEndDateIncl);
+
+        List<PeriodResultChain> coarserResultChains = !allResultFrequencies ? List.of() : req.resultFrequencies()
+                .stream()
+                .skip(1)
+                .map(coarserFrequency -> new PeriodResultChain(coarserFrequency, req, calcStartDateIncl, null))
+                .toList();
+        for (PeriodResultChain coarserResultChain : coarserResultChains) {
+            coarserResultChain.addPreCalcResults(resultStartDateIncl, calcIsNeeded ? assetValues : null);
+        }
+
+        for (LocalDate date = resultStartDateIncl; date.isBefore(calcStartDateIncl); date = date.plusDays(1)) {
+            BigDecimal endValueIncl = calcIsNeeded && date.isEqual(calcStartDateExcl) ? assetValues.apply(date) : null;
+            resultConsumer.accept(PerfAnalysis.builder()
+                    .periodCaption(captions.caption(date))
+                    .periodStartDateIncl(date)
+                    .periodEndDateIncl(date)
+                    .periodEndAssetValueIncl(endValueIncl)
+                    .build());
+        }
+
+        if (calcIsNeeded) {
+            SortedMap<LocalDate, BigDecimal> flows = req.flows().apply(calcStartDateIncl, calcEndDateIncl);
+            if (flows == null) {
+                flows = emptySortedMap();
+            } else if (!flows.isEmpty()) {
+                Entry<LocalDate, BigDecimal> firstFlow = flows.firstEntry();
+                Assert.isTrue(!firstFlow.getKey().isBefore(calcStartDateIncl),
+                        () -> "firstFlow must not be before calcStartDateIncl; %s, %s".formatted(firstFlow, calcStartDateExcl));
+                Entry<LocalDate, BigDecimal> lastFlow = flows.lastEntry();
+                Assert.isTrue(!lastFlow.getKey().isAfter(calcEndDateIncl),
+                        () -> "lastFlow must not be after calcEndDateIncl; %s, %s".formatted(lastFlow, calcEndDateIncl));
+            }
+            SortedMap<LocalDate, BigDecimal> incomes = nullSafe(req.incomes(), _incomes -> _incomes.apply(calcStartDateIncl, calcEndDateIncl));
+            if (incomes == null) {
+                incomes = emptySortedMap();
+            } else if (!incomes.isEmpty()) {
+                Entry<LocalDate, BigDecimal> firstIncome = incomes.firstEntry();
+                Assert.isTrue(!firstIncome.getKey().isBefore(calcStartDateIncl),
+                        () -> "firstIncome must not be before calcStartDateIncl; %s, %s".formatted(firstIncome, calcStartDateExcl));
+                Entry<LocalDate, BigDecimal> lastIncome = incomes.lastEntry();
+                Assert.isTrue(!lastIncome.getKey().isAfter(calcEndDateIncl),
+                        () -> "lastIncome must not be after calcEndDateIncl; %s, %s".formatted(lastIncome, calcEndDateIncl));
+            }
+            boolean calculateIncome = calculatePeriodIncome || calculateTrailingAvgIncome1Y;
+
+            BigDecimal startValueExcl = assetValues.apply(calcStartDateExcl);
+            if (startValueExcl == null) {
+                throw new IllegalStateException("startValueExcl must not be null, missing assetValue for calcStartDateExcl=%s"
+                        .formatted(calcStartDateExcl));
+            }
+            for (PeriodResultChain coarserResultChain : coarserResultChains) {
+                coarserResultChain.startCalculation(startValueExcl);
+            }
+            LocalDate firstFlowDate = flows.isEmpty() ? null : flows.firstKey();
+            MwrAccumulator mwrAccumulator = calculateMwr
+                    ? MwrAccumulator.of(mwrCalculator, mwrFlowTiming, calcScale, roundingMode, req.numericMode())
+                    : null;
+            int periodFrequencyPerYear = frequency.countPerYear();
+            TrailingSum trailingProfits1Y = calculateTrailingAvgProfit1Y ? new TrailingSum(periodFrequencyPerYear) : null;
+            TrailingSum trailingFlows1Y = calculateTrailingAvgFlow1Y ? new TrailingSum(periodFrequencyPerYear) : null;
+            TrailingSum trailingIncomes1Y = calculateTrailingAvgIncome1Y ? new TrailingSum(periodFrequencyPerYear) : null;
+            //The products are rounded to significant digits, so that a small product keeps its relative precision
+            MathContext trailingTwrMathContext = new MathContext(calcScale + TRAILING_TWR_GUARD_DIGITS, roundingMode);
+            TrailingWindowProduct[] fixedTrailingTwrProducts = new TrailingWindowProduct[FIXED_TRAILING_TWR_YEARS.length];
+            for (int i = 0; i < FIXED_TRAILING_TWR_YEARS.length && FIXED_TRAILING_TWR_YEARS[i] <= fixedTrailingTwrYears; i++) {
+                fixedTrailingTwrProducts[i] = new TrailingWindowProduct(Period.ofYears(FIXED_TRAILING_TWR_YEARS[i]), calcStartDateExcl, trailingTwrMathContext);
+            }
+            TrailingWindowProduct[] trailingTwrPeriodProducts = trailingTwrPeriods
+                    .stream()
+                    .map(trailingTwrPeriod -> new TrailingWindowProduct(trailingTwrPeriod, calcStartDateExcl, trailingTwrMathContext))
+                    .toArray(TrailingWindowProduct[]::new);
+
+            Iterator<Entry<LocalDate, BigDecimal>> flowIterator = flows.entrySet().iterator();
+            Entry<LocalDate, BigDecimal> nextFlow = flowIterator.hasNext() ? flowIterator.next() : null;
+            Iterator<Entry<LocalDate, BigDecimal>> incomeIterator = incomes.entrySet().iterator();
+            Entry<LocalDate, BigDecimal> nextIncome = incomeIterator.hasNext() ? incomeIterator.next() : null;
+
+            BigDecimal cumulTwrFactor = ONE;
+            BigDecimal totalContribution = startValueExcl;
+            BigDecimal totalProfit = ZERO;
+            long unscaledStartValue = fixedPointAmounts ? FixedPoint.unscaled(startValueExcl, resultAmountScale) : FixedPoint.NONE;
+            long unscaledTotalContribution = unscaledStartValue;
+            long unscaledTotalProfit = fixedPointAmounts ? 0 : FixedPoint.NONE;
+            BigDecimal startValue = startValueExcl;
+            DailySeries assetValueSeries = assetValues instanceof DailySeries _assetValueSeries ? _assetValueSeries : null;
+            for (LocalDate date = calcStartDateIncl; !date.isAfter(calcEndDateIncl); date = date.plusDays(1)) {
+                LocalDate periodDate = date;
+                BigDecimal endValue = assetValueSeries == null ? assetValues.apply(date) : assetValueSeries.get(date.toEpochDay());
+                requireNonNull(endValue, () -> "periodEndValueIncl must not be null, missing assetValue for periodEndDateIncl=%s"
+                        .formatted(periodDate));
+                BigDecimal flow;
+                if (nextFlow != null && nextFlow.getKey().isEqual(date)) {
+                    flow = nextFlow.getValue();
+                    nextFlow = flowIterator.hasNext() ? flowIterator.next() : null;
+                } else {
+                    flow = null;
+                }
+                BigDecimal income;
+                if (nextIncome != null && nextIncome.getKey().isEqual(date)) {
+                    income = nextIncome.getValue();
+                    nextIncome = incomeIterator.hasNext() ? incomeIterator.next() : null;
+                } else {
+                    income = ZERO;
+                }
+
+                BigDecimal periodTwr = calculateDayTwr(date, startValue, endValue, flow, twrFlowTiming, calcScale, roundingMode);
+                BigDecimal periodTwrFactor = periodTwr.add(ONE);
+                cumulTwrFactor = cumulTwrFactor.multiply(periodTwrFactor).setScale(calcScale, roundingMode);
+                BigDecimal annTwrFactor = cumulAnnualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, cumulTwrFactor, date);
+
+                BigDecimal cumulMwr;
+                BigDecimal annMwr;
+                if (calculateMwr) {
+                    if (flow != null) {
+                        mwrAccumulator.addFlow(date, flow);
+                    }
+                    LocalDate mwrStartDateIncl;
+                    if (startValueExcl.compareTo(ZERO) == 0) {
+                        mwrStartDateIncl = firstFlowDate == null || firstFlowDate.isAfter(date) ? null : firstFlowDate;
+                    } else {
+                        mwrStartDateIncl = calcStartDateIncl;
+                    }
+                    if (mwrStartDateIncl == null) {
+                        cumulMwr = ZERO;
+                    } else {
+                        cumulMwr = mwrAccumulator.calculateCumulReturn(mwrStartDateIncl, date, startValueExcl, endValue);
+                    }
+                    annMwr = cumulAnnualizer.annualizeReturn(ANNUALIZE_IF_OVER_ONE_YEAR, cumulMwr, date);
+                } else {
+                    cumulMwr = null;
+                    annMwr = null;
+                }
+
+                BigDecimal periodFlow = flow == null ? ZERO : flow;
+                long unscaledPeriodProfit = FixedPoint.NONE;
+                if (fixedPointAmounts) {
+                    long unscaledEndValue = FixedPoint.unscaled(endValue, resultAmountScale);
+                    long unscaledPeriodFlow = flow == null ? 0 : FixedPoint.unscaled(flow, resultAmountScale);
+                    unscaledPeriodProfit = FixedPoint.subtract(FixedPoint.subtract(unscaledEndValue, unscaledStartValue), unscaledPeriodFlow);
+                    unscaledTotalContribution = FixedPoint.add(unscaledTotalContribution, unscaledPeriodFlow);
+                    unscaledTotalProfit = FixedPoint.add(unscaledTotalProfit, unscaledPeriodProfit);
+                    unscaledStartValue = unscaledEndValue;
+                }
+                //A total which does not fit continues from the previous one in BigDecimal
+                totalContribution = unscaledTotalContribution == FixedPoint.NONE
+                        ? totalContribution.add(periodFlow)
+                        : BigDecimal.valueOf(unscaledTotalContribution, resultAmountScale);
+                BigDecimal periodProfit = unscaledPeriodProfit == FixedPoint.NONE
+                        ? endValue.subtract(startValue).subtract(periodFlow)
+                        : BigDecimal.valueOf(unscaledPeriodProfit, resultAmountScale);
+                totalProfit = unscaledTotalProfit == FixedPoint.NONE
+                        ? totalProfit.add(periodProfit)
+                        : BigDecimal.valueOf(unscaledTotalProfit, resultAmountScale);
+
+                BigDecimal trailingAvgProfit1Y = trailingProfits1Y == null ? null
+                        : trailingProfits1Y.addAndAverage(periodProfit, resultAmountScale, roundingMode);
+                BigDecimal trailingAvgFlow1Y = trailingFlows1Y == null ? null
+                        : trailingFlows1Y.addAndAverage(periodFlow, resultAmountScale, roundingMode);
+                BigDecimal trailingAvgIncome1Y = trailingIncomes1Y == null ? null
+                        : trailingIncomes1Y.addAndAverage(income, resultAmountScale, roundingMode);
+
+                BigDecimal trailTwr1Y = trailingTwr(fixedTrailingTwrProducts[0], date, periodTwrFactor, annualizer,
+                        resultRatesInPct, resultRateScale, calcScale, roundingMode);
+                BigDecimal trailTwr2Y = trailingTwr(fixedTrailingTwrProducts[1], date, periodTwrFactor, annualizer,
+                        resultRatesInPct, resultRateScale, calcScale, roundingMode);
+                BigDecimal trailTwr3Y = trailingTwr(fixedTrailingTwrProducts[2], date, periodTwrFactor, annualizer,
+                        resultRatesInPct, resultRateScale, calcScale, roundingMode);
+                BigDecimal trailTwr5Y = trailingTwr(fixedTrailingTwrProducts[3], date, periodTwrFactor, annualizer,
+                        resultRatesInPct, resultRateScale, calcScale, roundingMode);
+                BigDecimal trailTwr10Y = trailingTwr(fixedTrailingTwrProducts[4], date, periodTwrFactor, annualizer,
+                        resultRatesInPct, resultRateScale, calcScale, roundingMode);
+                SequencedMap<Period, BigDecimal> trailingTwrs = null;
+                if (trailingTwrPeriodProducts.length > 0) {
+                    trailingTwrs = new LinkedHashMap<>();
+                    for (TrailingWindowProduct trailingTwrPeriodProduct : trailingTwrPeriodProducts) {
+                        trailingTwrs.put(trailingTwrPeriodProduct.period, trailingTwr(trailingTwrPeriodProduct, date, periodTwrFactor, annualizer,
+                                resultRatesInPct, resultRateScale, calcScale, roundingMode));
+                    }
+                }
+
+                resultConsumer.accept(PerfAnalysis.builder()
+                        .periodStartDateIncl(date)
+                        .periodEndDateIncl(date)
+                        .periodCaption(captions.caption(date))
+                        .periodStartAssetValueExcl(Num.setScale(startValue, resultAmountScale, roundingMode))
+                        .periodEndAssetValueIncl(Num.setScale(endValue, resultAmountScale, roundingMode))
+                        .periodFlow(Num.setScale(periodFlow, resultAmountScale, roundingMode))
+                        .periodTwr(toPctAndScale(periodTwr, resultRatesInPct, resultRateScale, roundingMode))
+                        .cumulativeTwr(toPctAndScale(cumulTwrFactor.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                        .annualizedTwr(toPctAndScale(annTwrFactor.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                        .cumulativeMwr(toPctAndScale(cumulMwr, resultRatesInPct, resultRateScale, roundingMode))
+                        .annualizedMwr(toPctAndScale(annMwr, resultRatesInPct, resultRateScale, roundingMode))
+                        .totalContribution(Num.setScale(totalContribution, resultAmountScale, roundingMode))
+                        .periodProfit(Num.setScale(periodProfit, resultAmountScale, roundingMode))
+                        .totalProfit(Num.setScale(totalProfit, resultAmountScale, roundingMode))
+                        .trailingAvgProfit1Y(trailingAvgProfit1Y)
+                        .trailingAvgFlow1Y(trailingAvgFlow1Y)
+                        .periodIncome(calculateIncome ? Num.setScale(income, resultAmountScale, roundingMode) : null)
+                        .trailingAvgIncome1Y(trailingAvgIncome1Y)
+                        .trailingTwr1Y(trailTwr1Y)
+                        .trailingTwr2Y(trailTwr2Y)
+                        .trailingTwr3Y(trailTwr3Y)
+                        .trailingTwr5Y(trailTwr5Y)
+                        .trailingTwr10Y(trailTwr10Y)
+                        .trailingTwrs(trailingTwrs)
+                        .build());
+                for (PeriodResultChain coarserResultChain : coarserResultChains) {
+                    coarserResultChain.aggregate(date, date, startValue, endValue, periodTwrFactor, periodFlow,
+                            calculateIncome ? income : null, cumulMwr, annMwr, true, date.isEqual(calcEndDateIncl));
+                }
+
+                //For the next iteration
+                startValue = endValue;
+            }
+        }
+
+        for (LocalDate date = maxDate(calcEndDateIncl.plusDays(1), calcStartDateIncl); !date.isAfter(resultEndDateIncl); date = date.plusDays(1)) {
+            resultConsumer.accept(PerfAnalysis.builder()
+                    .periodStartDateIncl(date)
+                    .periodEndDateIncl(date)
+                    .periodCaption(captions.caption(date))
+                    .build());
+        }
+        for (PeriodResultChain coarserResultChain : coarserResultChains) {
+            coarserResultChain.addPostCalcResults(calcEndDateIncl.plusDays(1), resultEndDateIncl);
+        }
+        return coarserResultChains;
+    }
+
+    /**
+     * The same result as the TWR calculators give for a single day period, see {@link BaseCalculatorImpl}.
+     */
+    private static BigDecimal calculateDayTwr(
+            LocalDate date,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            BigDecimal flow,
+            FlowTiming flowTiming,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.adjust(date, date, startValueExcl, endValueIncl, flow, flow, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        if (startValueExcl.signum() == 0) {
+            if (endValueIncl.compareTo(ZERO) == 0) {
+                return ZERO;
+            }
+            throw new IllegalArgumentException((
+                    "if periodStartValueExcl is zero and periodFlows is empty, then periodEndValueIncl must be zero; given: " +
+                    "periodEndValueIncl=%s, periodIncl=%s-%s, ")
+                    .formatted(endValueIncl, date, date));
+        }
+        adjustment.validate(date, date, Map.of());
+        return SimpleReturnCalculatorImpl.calculateSimpleCumulReturn(startValueExcl, endValueIncl, calcScale, roundingMode)
+                .setScale(calcScale, roundingMode);
+    }
+
+    /**
+     * @param trailingTwrProduct null if the trailing TWR is not calculated
+     */
+    private static BigDecimal trailingTwr(
+            TrailingWindowProduct trailingTwrProduct,
+            LocalDate date,
+            BigDecimal periodTwrFactor,
+            Annualizer annualizer,
+            boolean resultRatesInPct,
+            int resultRateScale,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        if (trailingTwrProduct == null) {
+            return null;
+        }
+        BigDecimal trailTwrFactor = trailingTwrProduct.addAndMultiply(date, periodTwrFactor, calcScale, roundingMode);
+        return trailTwrFactor == null ? null : toPctAndScale(
+                annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, trailTwrFactor, trailingTwrProduct.period).subtract(ONE),
+                resultRatesInPct, resultRateScale, roundingMode);
+    }
+
+    /**
+     * Running sum of the last {@code capacity} added values, the same window as the other frequencies keep, see {@link PeriodResultChain}.
+     */
+    private static final class TrailingSum {
+        private final int capacity;
+        private final BigDecimal divisor;
+        private final ArrayDeque<BigDecimal> values = new ArrayDeque<>();
+        private BigDecimal sum = ZERO;
+
+        private TrailingSum(int capacity) {
+            this.capacity = capacity;
+            this.divisor = BigDecimal.valueOf(capacity);
+        }
+
+        private BigDecimal addAndAverage(BigDecimal value, int scale, RoundingMode roundingMode) {
+            values.addLast(value);
+            sum = sum.add(value);
+            if (values.size() > capacity) {
+                sum = sum.subtract(values.pollFirst());
+            }
+            return sum.divide(divisor, scale, roundingMode);
+        }
+    }
+
+    /**
+     * Product of the factors of the days from {@code date.plusDays(1).minus(period)} up to the last added date.
+     * The window start never moves back, so the factors are kept in a two-stack queue like in {@link RollingWindowProduct}
+     * and adding a day costs amortized O(1) multiplications.
+     */
+    private static final class TrailingWindowProduct {
+        private final Period period;
+        private final LocalDate startDateExcl;
+        private final MathContext mathContext;
+        //The newest factor last
+        private final ArrayDeque<BigDecimal> backFactors = new ArrayDeque<>();
+        //The product of the oldest factor and all the newer ones up to the back stack on the top
+        private final ArrayDeque<BigDecimal> frontProducts = new ArrayDeque<>();
+        private BigDecimal backProduct = ONE;
+
+        private TrailingWindowProduct(Period period, LocalDate startDateExcl, MathContext mathContext) {
+            this.period = period;
+            this.startDateExcl = startDateExcl;
+            this.mathContext = mathContext;
+        }
+
+        /**
+         * @return the product of the window ending on the given date, the day of the given factor,
+         * or null if the window starts before the first added date
+         */
+        private BigDecimal addAndMultiply(LocalDate date, BigDecimal factor, int calcScale, RoundingMode roundingMode) {
+            backFactors.addLast(factor);
+            backProduct = backProduct.multiply(factor, mathContext);
+            LocalDate windowStartDateExcl = date.plusDays(1).minus(period).minusDays(1);
+            if (windowStartDateExcl.isBefore(startDateExcl)) {
+                return null;
+            }
+            long windowDays = date.toEpochDay() - windowStartDateExcl.toEpochDay();
+            while (backFactors.size() + frontProducts.size() > windowDays) {
+                if (frontProducts.isEmpty()) {
+                    //Move the back stack to the front stack, the product including the oldest factor ends up on the top
+                    BigDecimal frontProduct = ONE;
+                    while (!backFactors.isEmpty()) {
+                        frontProduct = frontProduct.multiply(backFactors.pollLast(), mathContext);
+                        frontProducts.push(frontProduct);
+                    }
+                    backProduct = ONE;
+                }
+                frontProducts.pop();
+            }
+            BigDecimal product = frontProducts.isEmpty() ? backProduct : frontProducts.peek().multiply(backProduct, mathContext);
+            return product.setScale(calcScale, roundingMode);
+        }
+    }
+
+    /**
+     * The captions of the days, built from the caption of the first day of the month if it is the ISO date,
+     * so that a date is not formatted for each day.
+     */
+    private static final class DayCaptions {
+        private final Frequency frequency;
+        private int year;
+        private int month;
+        //Null if the captions are not the ISO dates
+        private String monthCaptionPrefix;
+
+        private DayCaptions(Frequency frequency) {
+            this.frequency = frequency;
+        }
+
+        private String caption(LocalDate date) {
+            if (date.getMonthValue() != month || date.getYear() != year) {
+                year = date.getYear();
+                month = date.getMonthValue();
+                LocalDate monthStartDate = date.withDayOfMonth(1);
+                String monthStartCaption = frequency.caption(monthStartDate);
+                monthCaptionPrefix = monthStartCaption.equals(monthStartDate.toString())
+                        ? monthStartCaption.substring(0, monthStartCaption.length() - 2)
+                        : null;
+            }
+            return monthCaptionPrefix == null ? frequency.caption(date) : monthCaptionPrefix.concat(DAYS_OF_MONTH[date.getDayOfMonth()]);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.DailySeries;
+import com.brinvex.investperf.api.DateAmountCsvLoader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SequencedMap;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+import static java.lang.Math.toIntExact;
+
+public class DateAmountCsvLoaderImpl implements DateAmountCsvLoader {
+
+    /**
+     * The file is mapped in windows of this size at most, each ending at the last line break within it,
+     * since a single mapping is limited to 2 GB.
+     */
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    /**
+     * The most digits of an amount parsed into a long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final int windowSize;
+
+    public DateAmountCsvLoaderImpl() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public DateAmountCsvLoaderImpl(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be greater than zero, given: %s".formatted(windowSize));
+        }
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public DailySeries loadAssetValues(Path file) {
+        Columns columns = new Columns();
+        parse(file, windowSize, false, (_, _, _, epochDay, amount) -> columns.add(epochDay, amount));
+        return columns.toDailySeries();
+    }
+
+    @Override
+    public SortedMap<LocalDate, BigDecimal> loadFlows(Path file) {
+        Columns columns = new Columns();
+        parse(file, windowSize, false, (_, _, _, epochDay, amount) -> columns.add(epochDay, amount));
+        return columns.toFlowIndex();
+    }
+
+    @Override
+    public SequencedMap<String, DailySeries> loadAssetValuesByAccount(Path file) {
+        return loadByAccount(file, Columns::toDailySeries);
+    }
+
+    @Override
+    public SequencedMap<String, SortedMap<LocalDate, BigDecimal>> loadFlowsByAccount(Path file) {
+        return loadByAccount(file, Columns::toFlowIndex);
+    }
+
+    private <T> SequencedMap<String, T> loadByAccount(Path file, Function<Columns, T> finisher) {
+        AccountColumns accountColumns = new AccountColumns();
+        parse(file, windowSize, true, accountColumns);
+        SequencedMap<String, T> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Columns> e : accountColumns.columnsByAccount.entrySet()) {
+            results.put(e.getKey(), finisher.apply(e.getValue()));
+        }
+        return results;
+    }
+
+    @FunctionalInterface
+    interface LineConsumer {
+        /**
+         * @param accountFrom the first byte of the account within the buffer, inclusive
+         * @param accountTo   the last byte of the account within the buffer, exclusive
+         */
+        void accept(MappedByteBuffer buffer, int accountFrom, int accountTo, int epochDay, BigDecimal amount);
+    }
+
+    /**
+     * Passes the parsed lines of the given file to the given consumer in the order of the file.
+     */
+    private static void parse(Path file, int windowSize, boolean withAccount, LineConsumer lineConsumer) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long windowStart = 0;
+            long lineNumber = 0;
+            while (windowStart < fileSize) {
+                int windowLength = (int) Math.min(fileSize - windowStart, windowSize);
+                boolean lastWindow = windowStart + windowLength == fileSize;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+                int lineStart = 0;
+                while (lineStart < windowLength) {
+                    int lineEnd = indexOf(buffer, (byte) '\n', lineStart, windowLength);
+                    if (lineEnd < 0) {
+                        if (!lastWindow) {
+                            break;
+                        }
+                        lineEnd = windowLength;
+                    }
+                    lineNumber++;
+                    parseLine(buffer, lineStart, lineEnd, withAccount, lineConsumer, file, lineNumber);
+                    lineStart = lineEnd + 1;
+                }
+                if (lineStart == 0) {
+                    throw new IllegalArgumentException("The line %s of %s must be shorter than %s bytes"
+                            .formatted(lineNumber + 1, file, windowSize));
+                }
+                windowStart += lineStart;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void parseLine(
+            MappedByteBuffer buffer,
+            int lineStart,
+            int lineEnd,
+            boolean withAccount,
+            LineConsumer lineConsumer,
+            Path file,
+            long lineNumber
+    ) {
+        int from = skipSpaces(buffer, lineStart, lineEnd);
+        int to = skipTrailingSpaces(buffer, from, lineEnd);
+        if (from == to) {
+            return;
+        }
+        int accountFrom = -1;
+        int accountTo = -1;
+        if (withAccount) {
+            int comma = indexOf(buffer, (byte) ',', from, to);
+            if (comma < 0) {
+                throw invalidLine(buffer, lineStart, lineEnd, file, lineNumber);
+            }
+            accountFrom = from;
+            accountTo = skipTrailingSpaces(buffer, from, comma);
+            if (accountFrom == accountTo) {
+                throw invalidLine(buffer, lineStart, lineEnd, file, lineNumber);
+            }
+            from = comma + 1;
+        }
+        int comma = indexOf(buffer, (byte) ',', from, to);
+        if (comma < 0 || indexOf(buffer, (byte) ',', comma + 1, to) >= 0) {
+            throw invalidLine(buffer, lineStart, lineEnd, file, lineNumber);
+        }
+        int epochDay;
+        BigDecimal amount;
+        try {
+            epochDay = parseEpochDay(buffer, skipSpaces(buffer, from, comma), skipTrailingSpaces(buffer, from, comma));
+            amount = parseAmount(buffer, skipSpaces(buffer, comma + 1, to), to);
+        } catch (DateTimeException | NumberFormatException | ArithmeticException e) {
+            IllegalArgumentException invalidLine = invalidLine(buffer, lineStart, lineEnd, file, lineNumber);
+            invalidLine.initCause(e);
+            throw invalidLine;
+        }
+        lineConsumer.accept(buffer, accountFrom, accountTo, epochDay, amount);
+    }
+
+    /**
+     * Parses the ISO date {@code yyyy-MM-dd} directly, any other layout by {@link LocalDate#parse}.
+     */
+    private static int parseEpochDay(MappedByteBuffer buffer, int from, int to) {
+        if (to - from == 10 && buffer.get(from + 4) == '-' && buffer.get(from + 7) == '-') {
+            int year = parseDigits(buffer, from, from + 4);
+            int month = parseDigits(buffer, from + 5, from + 7);
+            int day = parseDigits(buffer, from + 8, from + 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return toIntExact(LocalDate.of(year, month, day).toEpochDay());
+            }
+        }
+        return toIntExact(LocalDate.parse(decode(buffer, from, to)).toEpochDay());
+    }
+
+    /**
+     * @return the value of the given decimal digits, or -1 if there is another character
+     */
+    private static int parseDigits(MappedByteBuffer buffer, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parses a plain decimal of up to {@link #MAX_LONG_DIGITS} digits directly, any other one by {@link BigDecimal#BigDecimal(String)},
+     * both giving the same scale.
+     */
+    private static BigDecimal parseAmount(MappedByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean point = false;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                if (++digits > MAX_LONG_DIGITS) {
+                    return new BigDecimal(decode(buffer, from, to));
+                }
+                unscaled = unscaled * 10 + (b - '0');
+                if (point) {
+                    scale++;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                return new BigDecimal(decode(buffer, from, to));
+            }
+        }
+        if (digits == 0) {
+            return new BigDecimal(decode(buffer, from, to));
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(MappedByteBuffer buffer, int from, int to) {
+        while (from < to && isSpace(buffer.get(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int skipTrailingSpaces(MappedByteBuffer buffer, int from, int to) {
+        while (to > from && isSpace(buffer.get(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static String decode(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static IllegalArgumentException invalidLine(MappedByteBuffer buffer, int lineStart, int lineEnd, Path file, long lineNumber) {
+        return new IllegalArgumentException("Invalid line %s of %s, expected: %s, given: %s".formatted(
+                lineNumber, file, "date,amount", decode(buffer, lineStart, lineEnd).strip()));
+    }
+
+    /**
+     * The parsed entries in the order of the file.
+     */
+    private static final class Columns {
+
+        private int size;
+        private int[] epochDays = new int[256];
+        private BigDecimal[] amounts = new BigDecimal[256];
+
+        void add(int epochDay, BigDecimal amount) {
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                amounts = Arrays.copyOf(amounts, size * 2);
+            }
+            epochDays[size] = epochDay;
+            amounts[size] = amount;
+            size++;
+        }
+
+        FlowIndex toFlowIndex() {
+            return FlowIndex.of(Arrays.copyOf(epochDays, size), Arrays.copyOf(amounts, size));
+        }
+
+        /**
+         * The same as {@link DailySeries#of(java.util.Collection)} gives for the entries.
+         */
+        DailySeries toDailySeries() {
+            if (size == 0) {
+                return DailySeries.of(Map.of());
+            }
+            int startEpochDay = Integer.MAX_VALUE;
+            int endEpochDay = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                startEpochDay = Math.min(startEpochDay, epochDays[i]);
+                endEpochDay = Math.max(endEpochDay, epochDays[i]);
+            }
+            BigDecimal[] values = new BigDecimal[endEpochDay - startEpochDay + 1];
+            for (int i = 0; i < size; i++) {
+                int index = epochDays[i] - startEpochDay;
+                BigDecimal oldValue = values[index];
+                if (oldValue != null && oldValue.compareTo(amounts[i]) != 0) {
+                    throw new IllegalArgumentException((
+                            "The values collection must not contain different entries for the same date; " +
+                            "given: %s, %s, %s")
+                            .formatted(LocalDate.ofEpochDay(epochDays[i]), oldValue, amounts[i]));
+                }
+                values[index] = amounts[i];
+            }
+            return DailySeries.of(LocalDate.ofEpochDay(startEpochDay), Arrays.asList(values));
+        }
+    }
+
+    /**
+     * The columns of each account, the account of a line is decoded into a String only if it differs from the previous line's one.
+     */
+    private static final class AccountColumns implements LineConsumer {
+
+        private final Map<String, Columns> columnsByAccount = new LinkedHashMap<>();
+        private byte[] lastAccount = new byte[0];
+        private Columns lastColumns;
+
+        @Override
+        public void accept(MappedByteBuffer buffer, int accountFrom, int accountTo, int epochDay, BigDecimal amount) {
+            if (lastColumns == null || !equalsLastAccount(buffer, accountFrom, accountTo)) {
+                lastAccount = new byte[accountTo - accountFrom];
+                buffer.get(accountFrom, lastAccount);
+                lastColumns = columnsByAccount.computeIfAbsent(new String(lastAccount, StandardCharsets.UTF_8), _ -> new Columns());
+            }
+            lastColumns.add(epochDay, amount);
+        }
+
+        private boolean equalsLastAccount(MappedByteBuffer buffer, int accountFrom, int accountTo) {
+            if (accountTo - accountFrom != lastAccount.length) {
+                return false;
+            }
+            for (int i = 0; i < lastAccount.length; i++) {
+                if (buffer.get(accountFrom + i) != lastAccount[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
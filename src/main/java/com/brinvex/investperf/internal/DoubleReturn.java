@@ -0,0 +1,73 @@
+package com.brinvex.investperf.internal;
+
+import java.math.BigDecimal;
+
+/**
+ * A cumulative return calculated in {@link com.brinvex.investperf.api.NumericMode#DOUBLE}.
+ *
+ * @param errorBound the estimated bound of the absolute difference from the return calculated in
+ *                   {@link com.brinvex.investperf.api.NumericMode#BIG_DECIMAL}
+ */
+record DoubleReturn(
+        double cumulReturn,
+        double errorBound
+) {
+    /**
+     * The bound of the relative error of a single rounded double operation.
+     */
+    static final double UNIT_ROUNDOFF = 0x1p-53;
+
+    /**
+     * @return the bound of the error the given number of roundings to the calcScale of {@code BIG_DECIMAL} introduce
+     */
+    static double bigDecimalRoundingBound(int roundingCount, int calcScale) {
+        return roundingCount * 0.5 * Math.pow(10, -calcScale);
+    }
+
+    /**
+     * @return the growth factor below which the {@code BIG_DECIMAL} division rounds to zero, which is treated as a bankruptcy
+     */
+    static double bankruptcyFactor(int calcScale) {
+        return 0.5 * Math.pow(10, -calcScale);
+    }
+
+    /**
+     * @param logSum                  the natural logarithms of the growth factors
+     * @param logErrorBound           the bound of the error of the logarithms coming from their inputs
+     * @param bigDecimalRoundingCount the number of the roundings of {@code BIG_DECIMAL} to chain the same factors
+     */
+    static DoubleReturn ofLogSum(CompensatedSum logSum, double logErrorBound, int bigDecimalRoundingCount, int calcScale) {
+        return ofLogSum(logSum.sum(), logSum.absSum(), logErrorBound, bigDecimalRoundingCount, calcScale);
+    }
+
+    /**
+     * @param absLogSum the sum of the absolute values of the logarithms
+     */
+    static DoubleReturn ofLogSum(double logSum, double absLogSum, double logErrorBound, int bigDecimalRoundingCount, int calcScale) {
+        double cumulReturn = Math.expm1(logSum);
+        double cumulFactor = 1 + cumulReturn;
+        double errorBound = cumulFactor * (logErrorBound + 3 * UNIT_ROUNDOFF * absLogSum)
+                            + UNIT_ROUNDOFF * Math.abs(cumulReturn)
+                            + bigDecimalRoundingBound(bigDecimalRoundingCount, calcScale) * Math.max(1, cumulFactor);
+        return new DoubleReturn(cumulReturn, errorBound);
+    }
+
+    /**
+     * @return false if the return or its error bound overflowed the range of a double, e.g. for extreme values,
+     * so it has to be calculated in {@link com.brinvex.investperf.api.NumericMode#BIG_DECIMAL} instead
+     */
+    boolean isFinite() {
+        return Double.isFinite(cumulReturn) && Double.isFinite(errorBound);
+    }
+
+    /**
+     * @throws IllegalStateException if the return is not {@link #isFinite() finite}
+     */
+    BigDecimal bigDecimalCumulReturn() {
+        if (!isFinite()) {
+            throw new IllegalStateException("The return is out of the range of a double, given: cumulReturn=%s, errorBound=%s"
+                    .formatted(cumulReturn, errorBound));
+        }
+        return BigDecimal.valueOf(cumulReturn);
+    }
+}
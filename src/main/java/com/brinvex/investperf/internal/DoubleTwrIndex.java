@@ -0,0 +1,232 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerfCalcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The factors in {@link com.brinvex.investperf.api.NumericMode#DOUBLE} kept as prefix sums of their logarithms,
+ * so the factors between the first and the last flow of a range are chained by a single subtraction.
+ * A corrected asset value rebuilds the prefix sums after the affected factors.
+ */
+@SuppressWarnings("DuplicatedCode")
+final class DoubleTwrIndex extends TwrIndexImpl {
+
+    private final double bankruptcyFactor;
+    private final double[] flowsInDouble;
+    /**
+     * NaN if the flow day value is missing.
+     */
+    private final double[] flowDayValuesInDouble;
+
+    /**
+     * The element k is the sum over the first k factors.
+     */
+    private final double[] logPrefixSums;
+    private final double[] absLogPrefixSums;
+    private final double[] relErrorPrefixSums;
+    private final int[] bankruptcyPrefixCounts;
+    private final int[] invalidPrefixCounts;
+
+    DoubleTwrIndex(PerfCalcRequest perfCalcRequest, int[] flowEpochDays, BigDecimal[] flows) {
+        super(perfCalcRequest, flowEpochDays, flows);
+        this.bankruptcyFactor = DoubleReturn.bankruptcyFactor(calcScale);
+        int flowCount = flowEpochDays.length;
+        this.flowsInDouble = new double[flowCount];
+        this.flowDayValuesInDouble = new double[flowCount];
+        for (int k = 0; k < flowCount; k++) {
+            flowsInDouble[k] = flows[k].doubleValue();
+            flowDayValuesInDouble[k] = toDouble(flowDayValues[k]);
+        }
+        int factorCount = factorCount();
+        this.logPrefixSums = new double[factorCount + 1];
+        this.absLogPrefixSums = new double[factorCount + 1];
+        this.relErrorPrefixSums = new double[factorCount + 1];
+        this.bankruptcyPrefixCounts = new int[factorCount + 1];
+        this.invalidPrefixCounts = new int[factorCount + 1];
+        computePrefixSums(0);
+    }
+
+    private void computePrefixSums(int fromFactor) {
+        CompensatedSum logSum = new CompensatedSum();
+        logSum.addPartial(logPrefixSums[fromFactor], 0, absLogPrefixSums[fromFactor]);
+        double relErrorSum = relErrorPrefixSums[fromFactor];
+        for (int k = fromFactor, factorCount = factorCount(); k < factorCount; k++) {
+            double startValue = flowDayValuesInDouble[k];
+            double flow = factorFlowInDouble(k);
+            double endValue = flowDayValuesInDouble[k + 1];
+            double logFactor = logFactor(startValue, flow, endValue);
+            bankruptcyPrefixCounts[k + 1] = bankruptcyPrefixCounts[k];
+            invalidPrefixCounts[k + 1] = invalidPrefixCounts[k];
+            if (Double.isNaN(logFactor)) {
+                invalidPrefixCounts[k + 1]++;
+            } else if (logFactor == Double.NEGATIVE_INFINITY) {
+                bankruptcyPrefixCounts[k + 1]++;
+            } else {
+                logSum.add(logFactor);
+                relErrorSum += relError(startValue, flow, endValue);
+            }
+            logPrefixSums[k + 1] = logSum.sum();
+            absLogPrefixSums[k + 1] = logSum.absSum();
+            relErrorPrefixSums[k + 1] = relErrorSum;
+        }
+    }
+
+    @Override
+    void flowDayValueChanged(int flowIndex) {
+        flowDayValuesInDouble[flowIndex] = toDouble(flowDayValues[flowIndex]);
+        computePrefixSums(Math.max(flowIndex - 1, 0));
+    }
+
+    @Override
+    PerfCalcResult calculateSimpleReturn(LocalDate startDateIncl, LocalDate endDateIncl, BigDecimal startValueExcl, BigDecimal endValueIncl) {
+        DoubleReturn cumulReturn = SimpleReturnCalculatorImpl.calculateSimpleCumulReturnInDouble(startValueExcl, endValueIncl, calcScale);
+        return toPerfCalcResult(startDateIncl, endDateIncl, cumulReturn);
+    }
+
+    @Override
+    PerfCalcResult calculateChainedReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal firstStartValue,
+            BigDecimal firstFlow,
+            int fromFactor,
+            int toFactor,
+            BigDecimal lastFlow,
+            BigDecimal lastEndValue
+    ) {
+        //The sub-period up to the first flow
+        double firstStartValueInDouble = firstStartValue.doubleValue();
+        double firstFlowInDouble = firstFlow.doubleValue();
+        double firstEndValueInDouble = flowDayValuesInDouble[fromFactor];
+        double firstLogFactor = logFactor(firstStartValueInDouble, firstFlowInDouble, firstEndValueInDouble);
+        if (Double.isNaN(firstLogFactor)) {
+            throw subPeriodFailure(startDateIncl, subPeriodEndDateIncl(fromFactor), firstStartValue, firstFlow, flowDayValues[fromFactor]);
+        }
+        if (firstLogFactor == Double.NEGATIVE_INFINITY) {
+            return toPerfCalcResult(startDateIncl, endDateIncl, new DoubleReturn(-1, 0));
+        }
+
+        //The factors between the first and the last flow, the first failing one decides
+        if (bankruptcyPrefixCounts[toFactor] > bankruptcyPrefixCounts[fromFactor]
+            || invalidPrefixCounts[toFactor] > invalidPrefixCounts[fromFactor]) {
+            int firstInvalidFactor = firstCountedFactor(invalidPrefixCounts, fromFactor, toFactor);
+            int firstBankruptFactor = firstCountedFactor(bankruptcyPrefixCounts, fromFactor, toFactor);
+            if (firstInvalidFactor < firstBankruptFactor) {
+                int k = firstInvalidFactor;
+                throw subPeriodFailure(subPeriodStartDateIncl(k), subPeriodEndDateIncl(k + 1), flowDayValues[k], factorFlow(k), flowDayValues[k + 1]);
+            }
+            return toPerfCalcResult(startDateIncl, endDateIncl, new DoubleReturn(-1, 0));
+        }
+
+        //The sub-period after the last flow
+        double lastStartValueInDouble = flowDayValuesInDouble[toFactor];
+        double lastFlowInDouble = lastFlow.doubleValue();
+        double lastEndValueInDouble = lastEndValue.doubleValue();
+        double lastLogFactor = logFactor(lastStartValueInDouble, lastFlowInDouble, lastEndValueInDouble);
+        if (Double.isNaN(lastLogFactor)) {
+            throw subPeriodFailure(subPeriodStartDateIncl(toFactor), endDateIncl, flowDayValues[toFactor], lastFlow, lastEndValue);
+        }
+        if (lastLogFactor == Double.NEGATIVE_INFINITY) {
+            return toPerfCalcResult(startDateIncl, endDateIncl, new DoubleReturn(-1, 0));
+        }
+
+        double fromLogPrefixSum = logPrefixSums[fromFactor];
+        double toLogPrefixSum = logPrefixSums[toFactor];
+        double logSum = firstLogFactor + (toLogPrefixSum - fromLogPrefixSum) + lastLogFactor;
+        double absLogSum = Math.abs(firstLogFactor) + (absLogPrefixSums[toFactor] - absLogPrefixSums[fromFactor]) + Math.abs(lastLogFactor);
+        double relErrorSum = relError(firstStartValueInDouble, firstFlowInDouble, firstEndValueInDouble)
+                             + (relErrorPrefixSums[toFactor] - relErrorPrefixSums[fromFactor])
+                             + relError(lastStartValueInDouble, lastFlowInDouble, lastEndValueInDouble);
+        //The rounding of the two prefix sums and of their difference
+        double prefixSumErrorBound = 2 * DoubleReturn.UNIT_ROUNDOFF * (Math.abs(fromLogPrefixSum) + Math.abs(toLogPrefixSum));
+        int periodCount = toFactor - fromFactor + 2;
+        return toPerfCalcResult(startDateIncl, endDateIncl, DoubleReturn.ofLogSum(
+                logSum,
+                absLogSum,
+                relErrorSum * DoubleReturn.UNIT_ROUNDOFF + prefixSumErrorBound,
+                2 * periodCount,
+                calcScale
+        ));
+    }
+
+    private PerfCalcResult toPerfCalcResult(LocalDate startDateIncl, LocalDate endDateIncl, DoubleReturn cumulReturn) {
+        return toPerfCalcResult(startDateIncl, endDateIncl, cumulReturn.bigDecimalCumulReturn(), cumulReturn.errorBound());
+    }
+
+    /**
+     * The same checks as {@link TrueTwrCalculatorImpl} does in {@link com.brinvex.investperf.api.NumericMode#DOUBLE}.
+     *
+     * @return the natural logarithm of the growth factor, zero for a zero start and end value of the beginning of day timing,
+     * negative infinity for a bankruptcy and NaN for a sub-period the calculator fails for
+     */
+    private double logFactor(double startValue, double flow, double endValue) {
+        double numerator;
+        double denominator;
+        if (flowTiming == FlowTiming.BEGINNING_OF_DAY) {
+            numerator = endValue;
+            denominator = startValue + flow;
+            if (denominator == 0 && numerator == 0) {
+                return 0;
+            }
+        } else {
+            numerator = endValue - flow;
+            denominator = startValue;
+        }
+        if (Double.isNaN(numerator) || Double.isNaN(denominator) || denominator == 0) {
+            return Double.NaN;
+        }
+        if (Math.abs(numerator) < bankruptcyFactor * Math.abs(denominator)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if ((numerator > 0) != (denominator > 0)) {
+            return Double.NaN;
+        }
+        return Math.log(numerator / denominator);
+    }
+
+    /**
+     * @return the relative error of the growth factor of a valid sub-period in units of the unit roundoff,
+     * the same as {@link TrueTwrCalculatorImpl} estimates
+     */
+    private double relError(double startValue, double flow, double endValue) {
+        if (flowTiming == FlowTiming.BEGINNING_OF_DAY) {
+            double startValueWithFlow = startValue + flow;
+            return startValueWithFlow == 0 ? 0 : 3 + (Math.abs(startValue) + Math.abs(flow)) / Math.abs(startValueWithFlow);
+        } else {
+            return 3 + (Math.abs(endValue) + Math.abs(flow)) / Math.abs(endValue - flow);
+        }
+    }
+
+    private double factorFlowInDouble(int k) {
+        return flowTiming == FlowTiming.BEGINNING_OF_DAY ? flowsInDouble[k] : flowsInDouble[k + 1];
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    /**
+     * @return the first factor within the given range counted by the given prefix counts, or toFactor if there is none
+     */
+    private static int firstCountedFactor(int[] prefixCounts, int fromFactor, int toFactor) {
+        int baseCount = prefixCounts[fromFactor];
+        if (prefixCounts[toFactor] == baseCount) {
+            return toFactor;
+        }
+        int low = fromFactor + 1;
+        int high = toFactor;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prefixCounts[mid] > baseCount) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low - 1;
+    }
+}
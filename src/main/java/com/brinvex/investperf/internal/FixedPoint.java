@@ -0,0 +1,62 @@
+package com.brinvex.investperf.internal;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts as unscaled longs of a fixed scale, e.g. cents, see {@link com.brinvex.investperf.api.PerfAnalysisRequest#fixedPointAmounts()}.
+ * An amount which is not representable that way and any sum involving it is {@link #NONE}, to be calculated in {@link BigDecimal} instead.
+ */
+final class FixedPoint {
+
+    static final long NONE = Long.MIN_VALUE;
+
+    /*
+    The powers of ten exactly representable as a double
+     */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private FixedPoint() {
+    }
+
+    /**
+     * @return the unscaled value of the amount at the given scale,
+     * or {@link #NONE} if the amount has more decimal places or its unscaled value might not fit into a long
+     */
+    static long unscaled(BigDecimal amount, int scale) {
+        int amountScale = amount.scale();
+        if (amountScale > scale || amount.precision() - amountScale + scale > 18) {
+            return NONE;
+        }
+        return amount.setScale(scale).unscaledValue().longValue();
+    }
+
+    /**
+     * @return the same as {@code BigDecimal.valueOf(unscaledValue, scale).doubleValue()},
+     * by a single correctly rounded division without the BigDecimal if both of its operands are exact doubles
+     */
+    static double toDouble(long unscaledValue, int scale) {
+        if (scale >= 0 && scale < EXACT_POWERS_OF_TEN.length && unscaledValue > -(1L << 53) && unscaledValue < 1L << 53) {
+            return unscaledValue / EXACT_POWERS_OF_TEN[scale];
+        }
+        return BigDecimal.valueOf(unscaledValue, scale).doubleValue();
+    }
+
+    static long add(long augend, long addend) {
+        if (augend == NONE || addend == NONE) {
+            return NONE;
+        }
+        long sum = augend + addend;
+        //Overflow iff both operands have the same sign and the result has the opposite one
+        if (((augend ^ sum) & (addend ^ sum)) < 0) {
+            return NONE;
+        }
+        return sum;
+    }
+
+    static long subtract(long minuend, long subtrahend) {
+        return subtrahend == NONE ? NONE : add(minuend, -subtrahend);
+    }
+}
@@ -0,0 +1,174 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.AnnualizationOption;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.ChronoUnit;
+
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * Annualizes the cumulative growth factors of periods sharing the start date, the same as {@link AnnualizerImpl} does.
+ * The split of a period into full years and days is kept for the latest end date,
+ * so the end dates in ascending order only compare with the next anniversary of the start date instead of counting the years again,
+ * and the exponent is reused for the same end date, e.g. for both the TWR and the MWR of a period.
+ * <p>
+ * With a MathContext, the growth factor is raised to the exponent in BigDecimal instead of in double,
+ * see {@link AnnualizerImpl#rationalPower}.
+ */
+final class FixedStartAnnualizer {
+
+    private static final int DAYS_PER_YEAR = 365;
+
+    private final LocalDate startDateIncl;
+    private final long startEpochDay;
+    private final boolean startsOnLeapDay;
+    private final MathContext mathContext;
+
+    /*
+    The full years up to the latest end date not before the start date, the anniversary the days left over are counted from,
+    and the range of the end dates exclusive with these full years
+     */
+    private long fullYears = -1;
+    private long anniversaryEpochDay;
+    private long fullYearsFromEpochDay;
+    private long fullYearsToEpochDay;
+
+    private long lastEndEpochDayExcl = Long.MIN_VALUE;
+    private long lastFullYears;
+    private long lastDays;
+    private double lastExponent;
+
+    /**
+     * @param mathContext null for the power in double
+     */
+    FixedStartAnnualizer(LocalDate startDateIncl, MathContext mathContext) {
+        this.startDateIncl = startDateIncl;
+        this.startEpochDay = startDateIncl.toEpochDay();
+        this.startsOnLeapDay = startDateIncl.getMonth() == Month.FEBRUARY && startDateIncl.getDayOfMonth() == 29;
+        this.mathContext = mathContext;
+    }
+
+    BigDecimal annualizeReturn(AnnualizationOption annualizationOption, BigDecimal cumulReturn, LocalDate endDateIncl) {
+        return annualizeGrowthFactor(annualizationOption, cumulReturn.add(ONE), endDateIncl).subtract(ONE);
+    }
+
+    BigDecimal annualizeGrowthFactor(AnnualizationOption annualizationOption, BigDecimal cumulGrowthFactor, LocalDate endDateIncl) {
+        if (annualizationOption == AnnualizationOption.DO_NOT_ANNUALIZE) {
+            return cumulGrowthFactor;
+        }
+        if (cumulGrowthFactor.compareTo(ZERO) == 0) {
+            return ZERO;
+        }
+        if (cumulGrowthFactor.compareTo(ONE) == 0) {
+            return cumulGrowthFactor;
+        }
+        LocalDate endDateExcl = endDateIncl.plusDays(1);
+        long endEpochDayExcl = endDateExcl.toEpochDay();
+        if (endEpochDayExcl != lastEndEpochDayExcl) {
+            split(endDateExcl, endEpochDayExcl);
+        }
+        return annualizeGrowthFactor(annualizationOption, cumulGrowthFactor, startDateIncl, endDateExcl, lastFullYears, lastDays, lastExponent, mathContext);
+    }
+
+    /**
+     * The same as an instance for the given start date gives, but without keeping the split of the period, for a single period.
+     *
+     * @param mathContext null for the power in double
+     */
+    static BigDecimal annualizeGrowthFactor(
+            AnnualizationOption annualizationOption,
+            BigDecimal cumulGrowthFactor,
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            MathContext mathContext
+    ) {
+        if (annualizationOption == AnnualizationOption.DO_NOT_ANNUALIZE) {
+            return cumulGrowthFactor;
+        }
+        if (cumulGrowthFactor.compareTo(ZERO) == 0) {
+            return ZERO;
+        }
+        if (cumulGrowthFactor.compareTo(ONE) == 0) {
+            return cumulGrowthFactor;
+        }
+        LocalDate endDateExcl = endDateIncl.plusDays(1);
+        long fullYears = ChronoUnit.YEARS.between(startDateIncl, endDateExcl);
+        if (fullYears < 0) {
+            throw new IllegalArgumentException("startDateIncl must be before endDateExcl, given: %s, %s".formatted(startDateIncl, endDateExcl));
+        }
+        long days = ChronoUnit.DAYS.between(startDateIncl.plusYears(fullYears), endDateExcl);
+        double exponent = 1.0 / (fullYears + (days / (double) DAYS_PER_YEAR));
+        return annualizeGrowthFactor(annualizationOption, cumulGrowthFactor, startDateIncl, endDateExcl, fullYears, days, exponent, mathContext);
+    }
+
+    private static BigDecimal annualizeGrowthFactor(
+            AnnualizationOption annualizationOption,
+            BigDecimal cumulGrowthFactor,
+            LocalDate startDateIncl,
+            LocalDate endDateExcl,
+            long fullYears,
+            long days,
+            double exponent,
+            MathContext mathContext
+    ) {
+        if (annualizationOption == AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR) {
+            if (fullYears == 0 || (fullYears == 1 && days == 0)) {
+                return cumulGrowthFactor;
+            }
+        }
+        if (fullYears == 0 && days == 0) {
+            throw new IllegalArgumentException("startDateIncl must be before endDateExcl, given: %s, %s".formatted(startDateIncl, endDateExcl));
+        }
+        if (mathContext != null) {
+            return AnnualizerImpl.rationalPower(cumulGrowthFactor, DAYS_PER_YEAR, fullYears * DAYS_PER_YEAR + days, mathContext);
+        }
+        return BigDecimal.valueOf(Math.pow(cumulGrowthFactor.doubleValue(), exponent));
+    }
+
+    private void split(LocalDate endDateExcl, long endEpochDayExcl) {
+        if (endEpochDayExcl < startEpochDay) {
+            if (ChronoUnit.YEARS.between(startDateIncl, endDateExcl) < 0) {
+                throw new IllegalArgumentException("startDateIncl must be before endDateExcl, given: %s, %s".formatted(startDateIncl, endDateExcl));
+            }
+            //Less than a year before the start date, the days are counted from the start date
+            this.lastFullYears = 0;
+            this.lastDays = endEpochDayExcl - startEpochDay;
+        } else {
+            if (fullYears < 0 || endEpochDayExcl < fullYearsFromEpochDay) {
+                //The first end date or an end date before the latest one
+                setFullYears(ChronoUnit.YEARS.between(startDateIncl, endDateExcl));
+            }
+            while (endEpochDayExcl >= fullYearsToEpochDay) {
+                setFullYears(fullYears + 1);
+            }
+            this.lastFullYears = fullYears;
+            this.lastDays = endEpochDayExcl - anniversaryEpochDay;
+        }
+        this.lastExponent = 1.0 / (lastFullYears + (lastDays / (double) DAYS_PER_YEAR));
+        this.lastEndEpochDayExcl = endEpochDayExcl;
+    }
+
+    private void setFullYears(long fullYears) {
+        this.fullYears = fullYears;
+        this.anniversaryEpochDay = startDateIncl.plusYears(fullYears).toEpochDay();
+        this.fullYearsFromEpochDay = fullYears == 0 ? startEpochDay : fullYearEndEpochDayExcl(fullYears);
+        this.fullYearsToEpochDay = fullYearEndEpochDayExcl(fullYears + 1);
+    }
+
+    /**
+     * @return the first end date exclusive of the given number of full years,
+     * a year from the 29th of February ends on the 1st of March of a common year, although the anniversary is the 28th of February
+     */
+    private long fullYearEndEpochDayExcl(long fullYears) {
+        LocalDate endDateExcl = startDateIncl.plusYears(fullYears);
+        if (startsOnLeapDay && endDateExcl.getDayOfMonth() == 28) {
+            endDateExcl = endDateExcl.plusDays(1);
+        }
+        return endDateExcl.toEpochDay();
+    }
+}
@@ -0,0 +1,429 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.fintypes.vo.DateAmount;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+import static java.lang.Math.toIntExact;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * An immutable sorted map of flows stored in parallel arrays of epoch days and amounts.
+ * With {@link #withFixedPointSums()}, if the amounts fit, e.g. cents, their prefix sums are also kept as scaled longs,
+ * so that the sum of any view is a single subtraction without walking or allocating the intermediate sums.
+ * <p>
+ * It is built once per request and shared by the analyzer and the calculators.
+ * The {@link #subMap}, {@link #headMap} and {@link #tailMap} views share the arrays
+ * and are found by a binary search, so narrowing the flows to a period costs O(log n).
+ * Unlike {@link java.util.TreeMap}, a view narrowed beyond its own range is clamped to it instead of failing.
+ */
+public final class FlowIndex extends AbstractMap<LocalDate, BigDecimal> implements SortedMap<LocalDate, BigDecimal> {
+
+    private static final FlowIndex EMPTY = new FlowIndex(new int[0], new BigDecimal[0], 0, new long[1], 0, 0);
+
+    /**
+     * The value of {@link #unscaledPrefixSums} before the prefix sums are computed.
+     */
+    private static final long[] NO_PREFIX_SUMS = new long[0];
+
+    private final int[] epochDays;
+    private final BigDecimal[] amounts;
+    private final int amountScale;
+    /**
+     * The prefix sums of the amounts as unscaled longs of the amountScale, the element i being the sum of the first i amounts,
+     * {@link #NO_PREFIX_SUMS} if not computed, or null if the amounts are not representable that way.
+     */
+    private final long[] unscaledPrefixSums;
+    private final int fromIndex;
+    private final int toIndex;
+
+    private FlowIndex(int[] epochDays, BigDecimal[] amounts, int amountScale, long[] unscaledPrefixSums, int fromIndex, int toIndex) {
+        this.epochDays = epochDays;
+        this.amounts = amounts;
+        this.amountScale = amountScale;
+        this.unscaledPrefixSums = unscaledPrefixSums;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+
+    /**
+     * The amounts of the entries with the same date are summed up.
+     * An input already sorted by date is indexed in linear time.
+     */
+    public static FlowIndex of(Collection<DateAmount> flows) {
+        int size = flows.size();
+        if (size == 0) {
+            return EMPTY;
+        }
+        int[] epochDays = new int[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        int i = 0;
+        for (DateAmount flow : flows) {
+            epochDays[i] = toIntExact(flow.date().toEpochDay());
+            amounts[i] = flow.amount();
+            i++;
+        }
+        return of(epochDays, amounts);
+    }
+
+    public static FlowIndex of(Map<LocalDate, BigDecimal> flows) {
+        if (flows instanceof FlowIndex flowIndex) {
+            return flowIndex;
+        }
+        int size = flows.size();
+        if (size == 0) {
+            return EMPTY;
+        }
+        int[] epochDays = new int[size];
+        BigDecimal[] amounts = new BigDecimal[size];
+        int i = 0;
+        for (Entry<LocalDate, BigDecimal> flow : flows.entrySet()) {
+            epochDays[i] = toIntExact(flow.getKey().toEpochDay());
+            amounts[i] = flow.getValue();
+            i++;
+        }
+        return of(epochDays, amounts);
+    }
+
+    /**
+     * The given arrays are taken over without copying, the entries of the same date are merged in place.
+     */
+    static FlowIndex of(int[] epochDays, BigDecimal[] amounts) {
+        int size = epochDays.length;
+        boolean sorted = true;
+        for (int i = 1; i < size; i++) {
+            if (epochDays[i] < epochDays[i - 1]) {
+                sorted = false;
+                break;
+            }
+        }
+        if (!sorted) {
+            //The epoch day in the high bits and the original position in the low bits keep the sort stable
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) epochDays[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] sortedEpochDays = new int[size];
+            BigDecimal[] sortedAmounts = new BigDecimal[size];
+            for (int i = 0; i < size; i++) {
+                int origIndex = (int) keys[i];
+                sortedEpochDays[i] = epochDays[origIndex];
+                sortedAmounts[i] = amounts[origIndex];
+            }
+            epochDays = sortedEpochDays;
+            amounts = sortedAmounts;
+        }
+
+        int mergedSize = 0;
+        for (int i = 0; i < size; i++) {
+            BigDecimal amount = amounts[i];
+            if (amount == null) {
+                throw new IllegalArgumentException("The flow amount must not be null, given: %s"
+                        .formatted(LocalDate.ofEpochDay(epochDays[i])));
+            }
+            if (mergedSize > 0 && epochDays[mergedSize - 1] == epochDays[i]) {
+                amounts[mergedSize - 1] = amounts[mergedSize - 1].add(amount);
+            } else {
+                epochDays[mergedSize] = epochDays[i];
+                amounts[mergedSize] = amount;
+                mergedSize++;
+            }
+        }
+
+        if (mergedSize < size) {
+            epochDays = Arrays.copyOf(epochDays, mergedSize);
+            amounts = Arrays.copyOf(amounts, mergedSize);
+        }
+        return new FlowIndex(epochDays, amounts, 0, NO_PREFIX_SUMS, 0, mergedSize);
+    }
+
+    /**
+     * The given arrays are taken over without copying, with the fixed-point prefix sums of the unscaled amounts.
+     *
+     * @param epochDays strictly ascending, e.g. read from a series
+     */
+    static FlowIndex ofUnscaled(int[] epochDays, long[] unscaledAmounts, int amountScale) {
+        int size = epochDays.length;
+        BigDecimal[] amounts = new BigDecimal[size];
+        for (int i = 0; i < size; i++) {
+            amounts[i] = BigDecimal.valueOf(unscaledAmounts[i], amountScale);
+        }
+        return new FlowIndex(epochDays, amounts, amountScale, unscaledPrefixSums(unscaledAmounts), 0, size);
+    }
+
+    /**
+     * @return null if a prefix sum does not fit into a long
+     */
+    private static long[] unscaledPrefixSums(long[] unscaledAmounts) {
+        int size = unscaledAmounts.length;
+        long[] prefixSums = new long[size + 1];
+        long prefixSum = 0;
+        for (int i = 0; i < size; i++) {
+            long unscaledAmount = unscaledAmounts[i];
+            long newPrefixSum = prefixSum + unscaledAmount;
+            //Overflow iff both operands have the same sign and the result has the opposite one
+            if (((prefixSum ^ newPrefixSum) & (unscaledAmount ^ newPrefixSum)) < 0) {
+                return null;
+            }
+            prefixSum = newPrefixSum;
+            prefixSums[i + 1] = prefixSum;
+        }
+        return prefixSums;
+    }
+
+    /**
+     * @return the same flows with the fixed-point prefix sums of all the amounts of the backing arrays,
+     * or without them if the amounts or their sums do not fit into a long
+     */
+    FlowIndex withFixedPointSums() {
+        if (unscaledPrefixSums != NO_PREFIX_SUMS) {
+            return this;
+        }
+        int amountScale = 0;
+        for (BigDecimal amount : amounts) {
+            amountScale = Math.max(amountScale, amount.scale());
+        }
+        return new FlowIndex(epochDays, amounts, amountScale, unscaledPrefixSums(amounts, amountScale), fromIndex, toIndex);
+    }
+
+    /**
+     * @return null if an amount or a prefix sum does not fit into a long at the given scale
+     */
+    private static long[] unscaledPrefixSums(BigDecimal[] amounts, int amountScale) {
+        int size = amounts.length;
+        long[] prefixSums = new long[size + 1];
+        long prefixSum = 0;
+        for (int i = 0; i < size; i++) {
+            BigInteger unscaledAmount = amounts[i].setScale(amountScale).unscaledValue();
+            if (unscaledAmount.bitLength() >= Long.SIZE) {
+                return null;
+            }
+            long newPrefixSum = prefixSum + unscaledAmount.longValue();
+            //Overflow iff both operands have the same sign and the result has the opposite one
+            if (((prefixSum ^ newPrefixSum) & (unscaledAmount.longValue() ^ newPrefixSum)) < 0) {
+                return null;
+            }
+            prefixSum = newPrefixSum;
+            prefixSums[i + 1] = prefixSum;
+        }
+        return prefixSums;
+    }
+
+    /**
+     * The same as summing up the values of the given map, but in constant time if it is a {@link FlowIndex}.
+     */
+    public static BigDecimal sum(SortedMap<LocalDate, BigDecimal> flows) {
+        if (flows instanceof FlowIndex flowIndex) {
+            return flowIndex.sum();
+        }
+        return flows.values().stream().reduce(ZERO, BigDecimal::add);
+    }
+
+    /**
+     * @return the sum of the amounts of this view, from the fixed-point prefix sums unless they are unavailable or the difference overflows
+     */
+    public BigDecimal sum() {
+        if (unscaledPrefixSums != null && unscaledPrefixSums != NO_PREFIX_SUMS) {
+            long toPrefixSum = unscaledPrefixSums[toIndex];
+            long fromPrefixSum = unscaledPrefixSums[fromIndex];
+            long unscaledSum = toPrefixSum - fromPrefixSum;
+            if (((toPrefixSum ^ fromPrefixSum) & (toPrefixSum ^ unscaledSum)) >= 0) {
+                return BigDecimal.valueOf(unscaledSum, amountScale);
+            }
+        }
+        BigDecimal sum = ZERO;
+        for (int i = fromIndex; i < toIndex; i++) {
+            sum = sum.add(amounts[i]);
+        }
+        return sum;
+    }
+
+    /**
+     * The backing array shared by all views, the entries of this view being those from {@link #fromIndex()} to {@link #toIndex()}.
+     */
+    int[] epochDays() {
+        return epochDays;
+    }
+
+    /**
+     * The backing array shared by all views, the entries of this view being those from {@link #fromIndex()} to {@link #toIndex()}.
+     */
+    BigDecimal[] amounts() {
+        return amounts;
+    }
+
+    int fromIndex() {
+        return fromIndex;
+    }
+
+    int toIndex() {
+        return toIndex;
+    }
+
+    /**
+     * @return the epoch days of this view only, the backing array itself if the view spans all of it
+     */
+    int[] viewEpochDays() {
+        return fromIndex == 0 && toIndex == epochDays.length ? epochDays : Arrays.copyOfRange(epochDays, fromIndex, toIndex);
+    }
+
+    /**
+     * @return the amounts of this view only, the backing array itself if the view spans all of it
+     */
+    BigDecimal[] viewAmounts() {
+        return fromIndex == 0 && toIndex == amounts.length ? amounts : Arrays.copyOfRange(amounts, fromIndex, toIndex);
+    }
+
+    private int indexOf(long epochDay) {
+        int low = fromIndex;
+        int high = toIndex - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midEpochDay = epochDays[mid];
+            if (midEpochDay < epochDay) {
+                low = mid + 1;
+            } else if (midEpochDay > epochDay) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return the index of the first flow on or after the given date within this view
+     */
+    private int ceilingIndex(LocalDate date) {
+        int index = indexOf(date.toEpochDay());
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    private FlowIndex view(int fromIndex, int toIndex) {
+        if (fromIndex == this.fromIndex && toIndex == this.toIndex) {
+            return this;
+        }
+        return new FlowIndex(epochDays, amounts, amountScale, unscaledPrefixSums, fromIndex, toIndex);
+    }
+
+    private Entry<LocalDate, BigDecimal> entry(int index) {
+        return new SimpleImmutableEntry<>(LocalDate.ofEpochDay(epochDays[index]), amounts[index]);
+    }
+
+    @Override
+    public Comparator<? super LocalDate> comparator() {
+        return null;
+    }
+
+    @Override
+    public FlowIndex subMap(LocalDate fromKey, LocalDate toKey) {
+        if (fromKey.isAfter(toKey)) {
+            throw new IllegalArgumentException("fromKey must not be after toKey, given: %s, %s"
+                    .formatted(fromKey, toKey));
+        }
+        return view(ceilingIndex(fromKey), ceilingIndex(toKey));
+    }
+
+    @Override
+    public FlowIndex headMap(LocalDate toKey) {
+        return view(fromIndex, ceilingIndex(toKey));
+    }
+
+    @Override
+    public FlowIndex tailMap(LocalDate fromKey) {
+        return view(ceilingIndex(fromKey), toIndex);
+    }
+
+    @Override
+    public LocalDate firstKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return LocalDate.ofEpochDay(epochDays[fromIndex]);
+    }
+
+    @Override
+    public LocalDate lastKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return LocalDate.ofEpochDay(epochDays[toIndex - 1]);
+    }
+
+    @Override
+    public Entry<LocalDate, BigDecimal> firstEntry() {
+        return isEmpty() ? null : entry(fromIndex);
+    }
+
+    @Override
+    public Entry<LocalDate, BigDecimal> lastEntry() {
+        return isEmpty() ? null : entry(toIndex - 1);
+    }
+
+    @Override
+    public int size() {
+        return toIndex - fromIndex;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return toIndex == fromIndex;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof LocalDate date && indexOf(date.toEpochDay()) >= 0;
+    }
+
+    @Override
+    public BigDecimal get(Object key) {
+        if (key instanceof LocalDate date) {
+            int index = indexOf(date.toEpochDay());
+            return index >= 0 ? amounts[index] : null;
+        }
+        return null;
+    }
+
+    @Override
+    public Set<Entry<LocalDate, BigDecimal>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<LocalDate, BigDecimal>> iterator() {
+                return new Iterator<>() {
+                    private int index = fromIndex;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < toIndex;
+                    }
+
+                    @Override
+                    public Entry<LocalDate, BigDecimal> next() {
+                        if (index >= toIndex) {
+                            throw new NoSuchElementException();
+                        }
+                        return entry(index++);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return toIndex - fromIndex;
+            }
+        };
+    }
+}
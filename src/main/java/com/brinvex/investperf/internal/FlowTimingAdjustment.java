@@ -0,0 +1,150 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.java.collection.CollectionUtil;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * The start and end values of a period with the flow on the start date added to the start value for {@link FlowTiming#BEGINNING_OF_DAY}
+ * or the flow on the end date subtracted from the end value for {@link FlowTiming#END_OF_DAY},
+ * the moved flow being no longer one of the flows of the period.
+ *
+ * @param movedFlow the flow moved into the start or end value, or null if there is none
+ */
+record FlowTimingAdjustment(
+        BigDecimal startValueExcl,
+        BigDecimal endValueIncl,
+        FlowTiming flowTiming,
+        BigDecimal movedFlow
+) {
+
+    /**
+     * Adjusts the values by the flows within the given range of the arrays and validates the adjusted start value.
+     */
+    static FlowTimingAdjustment of(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            int[] flowEpochDays,
+            BigDecimal[] flows,
+            int fromIndex,
+            int toIndex,
+            FlowTiming flowTiming
+    ) {
+        FlowTimingAdjustment adjustment = fromIndex == toIndex
+                ? adjust(startDateIncl, endDateIncl, startValueExcl, endValueIncl, null, null, flowTiming)
+                : adjust(startDateIncl, endDateIncl, startValueExcl, endValueIncl,
+                flowEpochDays[fromIndex] == startDateIncl.toEpochDay() ? flows[fromIndex] : null,
+                flowEpochDays[toIndex - 1] == endDateIncl.toEpochDay() ? flows[toIndex - 1] : null,
+                flowTiming);
+        if (adjustment.startValueExcl.compareTo(ZERO) <= 0) {
+            SortedMap<LocalDate, BigDecimal> adjustedFlows = new TreeMap<>();
+            for (int i = adjustment.fromIndex(fromIndex); i < adjustment.toIndex(toIndex); i++) {
+                adjustedFlows.put(LocalDate.ofEpochDay(flowEpochDays[i]), flows[i]);
+            }
+            adjustment.validate(startDateIncl, endDateIncl, adjustedFlows);
+        }
+        return adjustment;
+    }
+
+    /**
+     * Adjusts the values by the given flows within the date range and validates the adjusted start value.
+     */
+    static FlowTimingAdjustment of(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            FlowTiming flowTiming
+    ) {
+        FlowTimingAdjustment adjustment;
+        if (flows.isEmpty()) {
+            adjustment = adjust(startDateIncl, endDateIncl, startValueExcl, endValueIncl, null, null, flowTiming);
+        } else {
+            Entry<LocalDate, BigDecimal> firstFlowEntry = flows.firstEntry();
+            Entry<LocalDate, BigDecimal> lastFlowEntry = flows.lastEntry();
+            adjustment = adjust(startDateIncl, endDateIncl, startValueExcl, endValueIncl,
+                    firstFlowEntry.getKey().isEqual(startDateIncl) ? firstFlowEntry.getValue() : null,
+                    lastFlowEntry.getKey().isEqual(endDateIncl) ? lastFlowEntry.getValue() : null,
+                    flowTiming);
+        }
+        if (adjustment.startValueExcl.compareTo(ZERO) <= 0) {
+            adjustment.validate(startDateIncl, endDateIncl, adjustment.flows(flows));
+        }
+        return adjustment;
+    }
+
+    /**
+     * Adjusts the values without validating them.
+     *
+     * @param startDateFlow the flow on the start date, or null if there is none
+     * @param endDateFlow   the flow on the end date, or null if there is none
+     */
+    static FlowTimingAdjustment adjust(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            BigDecimal startDateFlow,
+            BigDecimal endDateFlow,
+            FlowTiming flowTiming
+    ) {
+        return switch (flowTiming) {
+            case BEGINNING_OF_DAY -> startDateFlow == null
+                    ? new FlowTimingAdjustment(startValueExcl, endValueIncl, flowTiming, null)
+                    : new FlowTimingAdjustment(startValueExcl.add(startDateFlow), endValueIncl, flowTiming, startDateFlow);
+            case END_OF_DAY -> endDateFlow == null
+                    ? new FlowTimingAdjustment(startValueExcl, endValueIncl, flowTiming, null)
+                    : new FlowTimingAdjustment(startValueExcl, endValueIncl.subtract(endDateFlow), flowTiming, endDateFlow);
+            default -> throw new IllegalStateException("Unexpected value: " + flowTiming);
+        };
+    }
+
+    /**
+     * @param flows the flows of the period left after the adjustment, only formatted into the message
+     */
+    void validate(LocalDate startDateIncl, LocalDate endDateIncl, Object flows) {
+        if (startValueExcl.compareTo(ZERO) <= 0) {
+            throw new IllegalArgumentException((
+                    "startValueExcl must be greater than zero; " +
+                    "given: startValueExcl=%s, endValueIncl=%s, startDateIncl=%s, endDateIncl=%s, %s, flows=%s")
+                    .formatted(startValueExcl, endValueIncl, startDateIncl, endDateIncl, flowTiming, flows));
+        }
+    }
+
+    /**
+     * @return the start of the range of the flows left, given the start of the range of the flows of the period
+     */
+    int fromIndex(int fromIndex) {
+        return movedFlow != null && flowTiming == FlowTiming.BEGINNING_OF_DAY ? fromIndex + 1 : fromIndex;
+    }
+
+    /**
+     * @return the end of the range of the flows left, given the end of the range of the flows of the period
+     */
+    int toIndex(int toIndex) {
+        return movedFlow != null && flowTiming == FlowTiming.END_OF_DAY ? toIndex - 1 : toIndex;
+    }
+
+    /**
+     * @return the flows left, given the flows of the period
+     */
+    SortedMap<LocalDate, BigDecimal> flows(SortedMap<LocalDate, BigDecimal> flows) {
+        if (movedFlow == null) {
+            return flows;
+        }
+        return switch (flowTiming) {
+            case BEGINNING_OF_DAY -> CollectionUtil.rangeSafeTailMap(flows, flows.firstKey().plusDays(1));
+            case END_OF_DAY -> CollectionUtil.rangeSafeHeadMap(flows, flows.lastKey());
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisColumn;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.util.List;
+
+public final class JsonLinesPerfAnalysisWriter extends BasePerfAnalysisWriter {
+
+    private final ColumnType[] columnTypes;
+
+    /*
+    The opening brace or the comma, the quoted column name and the colon before each value
+     */
+    private final byte[][] keys;
+
+    public JsonLinesPerfAnalysisWriter(OutputStream out, WritableByteChannel channel, List<PerfAnalysisColumn> columns) {
+        super(out, channel, columns);
+        this.columnTypes = new ColumnType[this.columns.length];
+        this.keys = new byte[this.columns.length][];
+        for (int i = 0; i < this.columns.length; i++) {
+            columnTypes[i] = type(this.columns[i]);
+            keys[i] = utf8((i == 0 ? "{\"" : ",\"") + this.columns[i].columnName() + "\":");
+        }
+    }
+
+    @Override
+    protected void writeHeader() {
+    }
+
+    @Override
+    protected void write(PerfAnalysis perfAnalysis) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            putBytes(keys[i]);
+            PerfAnalysisColumn column = columns[i];
+            switch (columnTypes[i]) {
+                case DATE -> {
+                    LocalDate date = date(perfAnalysis, column);
+                    if (date == null) {
+                        putAscii("null");
+                    } else {
+                        putAscii("\"");
+                        putDate(date);
+                        putAscii("\"");
+                    }
+                }
+                case TEXT -> {
+                    String text = text(perfAnalysis, column);
+                    if (text == null) {
+                        putAscii("null");
+                    } else {
+                        putString(text);
+                    }
+                }
+                case DECIMAL -> {
+                    BigDecimal decimal = decimal(perfAnalysis, column);
+                    if (decimal == null) {
+                        putAscii("null");
+                    } else {
+                        putDecimal(decimal);
+                    }
+                }
+            }
+        }
+        putAscii("}\n");
+    }
+
+    /**
+     * Puts the text as a JSON string, escaping the quotes, the backslashes and the control characters.
+     */
+    private void putString(String text) throws IOException {
+        putAscii("\"");
+        int start = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                putUtf8(text.substring(start, i));
+                putAscii(switch (c) {
+                    case '"' -> "\\\"";
+                    case '\\' -> "\\\\";
+                    case '\n' -> "\\n";
+                    case '\r' -> "\\r";
+                    case '\t' -> "\\t";
+                    default -> "\\u%04x".formatted((int) c);
+                });
+                start = i + 1;
+            }
+        }
+        putUtf8(start == 0 ? text : text.substring(start));
+        putAscii("\"");
+    }
+}
@@ -2,45 +2,45 @@ package com.brinvex.investperf.internal;
 
 import com.brinvex.fintypes.enu.Frequency;
 import com.brinvex.investperf.api.FlowTiming;
-import com.brinvex.investperf.api.PerfCalcRequest;
 import com.brinvex.investperf.api.PerformanceCalculator;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.SortedMap;
 import java.util.function.Function;
 
-import static com.brinvex.investperf.api.AnnualizationOption.DO_NOT_ANNUALIZE;
-import static com.brinvex.java.collection.CollectionUtil.rangeSafeSubMap;
 import static com.brinvex.java.DateUtil.minDate;
+import static java.lang.Math.toIntExact;
 import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.ZERO;
 
 @SuppressWarnings("DuplicatedCode")
 public class LinkedModifiedDietzTwrCalculatorImpl extends BaseCalculatorImpl implements PerformanceCalculator.LinkedModifiedDietzTwrCalculator {
 
-    public static final LinkedModifiedDietzTwrCalculator INSTANCE = new LinkedModifiedDietzTwrCalculatorImpl(ModifiedDietzMwrCalculatorImpl.INSTANCE);
+    public static final LinkedModifiedDietzTwrCalculator INSTANCE = new LinkedModifiedDietzTwrCalculatorImpl();
 
-    private final ModifiedDietzMwrCalculator modifiedDietzMwrCalculator;
-
-    private LinkedModifiedDietzTwrCalculatorImpl(ModifiedDietzMwrCalculator modifiedDietzMwrCalculator) {
-        this.modifiedDietzMwrCalculator = modifiedDietzMwrCalculator;
+    private LinkedModifiedDietzTwrCalculatorImpl() {
     }
 
+    /**
+     * Walks the flows once, each sub-period takes the flows from the cursor up to its end
+     * and accumulates its Modified Dietz sums while looking for a large flow.
+     */
     @Override
-    protected BigDecimal calculateCumulativeReturn(PerfCalcRequest calcReq) {
-        LocalDate startDateIncl = calcReq.startDateIncl();
-        LocalDate endDateIncl = calcReq.endDateIncl();
-        BigDecimal startAssetValueExcl = calcReq.startAssetValueExcl();
-        BigDecimal endAssetValueIncl = calcReq.endAssetValueIncl();
-        Function<LocalDate, BigDecimal> assetValues = calcReq.assetValues();
-        SortedMap<LocalDate, BigDecimal> flows = calcReq.flows();
-        int largeFlowLevelInPercent = calcReq.largeFlowLevelInPercent();
-        FlowTiming flowTiming = calcReq.flowTiming();
-        int calcScale = calcReq.calcScale();
-        RoundingMode roundingMode = calcReq.roundingMode();
+    protected BigDecimal calculateCumulativeReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startAssetValueExcl,
+            BigDecimal endAssetValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
 
         /*
         GIPS Standard
@@ -52,16 +52,23 @@ public class LinkedModifiedDietzTwrCalculatorImpl extends BaseCalculatorImpl imp
          */
         Frequency frequency = Frequency.MONTH;
 
-        LocalDate endDateExcl = endDateIncl.plusDays(1);
         LocalDate subPeriodStartDateIncl = startDateIncl;
         BigDecimal cumulTwrFactor = ONE;
 
         BigDecimal largeFlowLevel = new BigDecimal(largeFlowLevelInPercent).divide(new BigDecimal("100"), calcScale, roundingMode);
+        //The flow level rounded to the calcScale differs from the exact one by less than one unit of the calcScale
+        BigDecimal calcScaleUnit = ONE.scaleByPowerOfTen(-calcScale);
+        BigDecimal lowLargeFlowLevel = largeFlowLevel.subtract(calcScaleUnit);
+        BigDecimal highLargeFlowLevel = largeFlowLevel.add(calcScaleUnit);
 
-        SortedMap<LocalDate, BigDecimal> iterativeForwardFlows = flows;
+        FlowIndex flowIndex = FlowIndex.of(flows);
+        int[] flowEpochDays = flowIndex.epochDays();
+        BigDecimal[] flowAmounts = flowIndex.amounts();
+        int flowCursor = flowIndex.fromIndex();
+        int flowEnd = flowIndex.toIndex();
         while (!subPeriodStartDateIncl.isAfter(endDateIncl)) {
             LocalDate subPeriodStartDateExcl = subPeriodStartDateIncl.minusDays(1);
-            BigDecimal subPeriodStartValueExcl = subPeriodStartDateIncl == startDateIncl ? startAssetValueExcl : assetValues.apply(subPeriodStartDateExcl);
+            BigDecimal subPeriodStartValueExcl = subPeriodStartDateIncl == startDateIncl ? startAssetValueExcl : assetValue(assetValues, subPeriodStartDateExcl);
             if (subPeriodStartValueExcl == null) {
                 throw new IllegalArgumentException("subPeriodStartValueExcl must not be null, missing assetValue for subPeriodStartDateExcl=%s"
                         .formatted(subPeriodStartDateExcl));
@@ -69,29 +76,41 @@ public class LinkedModifiedDietzTwrCalculatorImpl extends BaseCalculatorImpl imp
 
             LocalDate subPeriodEndDateIncl = minDate(frequency.adjustToEndDateIncl(subPeriodStartDateIncl), endDateIncl);
 
-            LocalDate largeFlowDate;
-            if (subPeriodStartValueExcl.compareTo(ZERO) == 0) {
-                largeFlowDate = null;
-            } else {
-                largeFlowDate = rangeSafeSubMap(iterativeForwardFlows, subPeriodStartDateIncl.plusDays(1), subPeriodEndDateIncl)
-                        .entrySet()
-                        .stream()
-                        .filter(e -> {
-                            BigDecimal flowLevel = e.getValue().divide(subPeriodStartValueExcl, calcScale, roundingMode).abs();
-                            return flowLevel.compareTo(largeFlowLevel) > 0;
-                        })
-                        .findFirst()
-                        .map(Map.Entry::getKey)
-                        .orElse(null);
+            //The flows strictly between the sub-period start date and the month end are checked, the same as a sub-map would
+            boolean largeFlowsChecked = subPeriodStartValueExcl.compareTo(ZERO) != 0;
+            BigDecimal absStartValue = subPeriodStartValueExcl.abs();
+            BigDecimal lowLargeFlow = lowLargeFlowLevel.multiply(absStartValue);
+            BigDecimal highLargeFlow = highLargeFlowLevel.multiply(absStartValue);
+
+            ModifiedDietzMwrAccumulator subPeriodFlows = new ModifiedDietzMwrAccumulator(flowTiming, calcScale, roundingMode);
+            LocalDate largeFlowDate = null;
+            while (flowCursor < flowEnd && flowEpochDays[flowCursor] <= subPeriodEndDateIncl.toEpochDay()) {
+                LocalDate flowDate = LocalDate.ofEpochDay(flowEpochDays[flowCursor]);
+                BigDecimal flow = flowAmounts[flowCursor];
+                if (largeFlowsChecked
+                    && flowDate.isAfter(subPeriodStartDateIncl)
+                    && flowDate.isBefore(subPeriodEndDateIncl)
+                    && isLargeFlow(flow, lowLargeFlow, highLargeFlow, subPeriodStartValueExcl, largeFlowLevel, calcScale, roundingMode)) {
+                    largeFlowDate = flowDate;
+                    if (flowTiming == FlowTiming.BEGINNING_OF_DAY) {
+                        //The large flow starts the next sub-period
+                        break;
+                    }
+                }
+                subPeriodFlows.addFlow(flowDate, flow);
+                flowCursor++;
                 if (largeFlowDate != null) {
-                    subPeriodEndDateIncl = switch (flowTiming) {
-                        case BEGINNING_OF_DAY -> largeFlowDate.minusDays(1);
-                        case END_OF_DAY -> largeFlowDate;
-                    };
+                    break;
                 }
             }
+            if (largeFlowDate != null) {
+                subPeriodEndDateIncl = switch (flowTiming) {
+                    case BEGINNING_OF_DAY -> largeFlowDate.minusDays(1);
+                    case END_OF_DAY -> largeFlowDate;
+                };
+            }
 
-            BigDecimal subPeriodEndValueIncl = subPeriodEndDateIncl == endDateIncl ? endAssetValueIncl : assetValues.apply(subPeriodEndDateIncl);
+            BigDecimal subPeriodEndValueIncl = subPeriodEndDateIncl == endDateIncl ? endAssetValueIncl : assetValue(assetValues, subPeriodEndDateIncl);
             if (subPeriodEndValueIncl == null) {
                 throw new IllegalArgumentException((
                         "subPeriodEndValueIncl must not be null, missing assetValue for endDateIncl=%s, " +
@@ -99,19 +118,12 @@ public class LinkedModifiedDietzTwrCalculatorImpl extends BaseCalculatorImpl imp
                 ).formatted(subPeriodEndDateIncl, largeFlowDate, flowTiming));
             }
 
-            BigDecimal subPeriodFactor = ONE.add(modifiedDietzMwrCalculator.calculateReturn(PerfCalcRequest.builder()
-                    .startDateIncl(subPeriodStartDateIncl)
-                    .endDateIncl(subPeriodEndDateIncl)
-                    .startAssetValueExcl(subPeriodStartValueExcl)
-                    .endAssetValueIncl(subPeriodEndValueIncl)
-                    .flows(flows)
-                    .assetValues(assetValues)
-                    .flowTiming(flowTiming)
-                    .annualization(DO_NOT_ANNUALIZE)
-                    .calcScale(calcScale)
-                    .resultScale(calcScale)
-                    .roundingMode(roundingMode)
-                    .build()));
+            validateStartAndEndValues(subPeriodStartValueExcl, subPeriodEndValueIncl);
+            BigDecimal subPeriodFactor = ONE.add(subPeriodFlows.calculateCumulReturn(
+                    subPeriodStartDateIncl,
+                    subPeriodEndDateIncl,
+                    subPeriodStartValueExcl,
+                    subPeriodEndValueIncl));
 
             int subPeriodFactorSignum = subPeriodFactor.signum();
             if (subPeriodFactorSignum == 0) {
@@ -127,9 +139,216 @@ public class LinkedModifiedDietzTwrCalculatorImpl extends BaseCalculatorImpl imp
             cumulTwrFactor = cumulTwrFactor.multiply(subPeriodFactor).setScale(calcScale, roundingMode);
 
             subPeriodStartDateIncl = subPeriodEndDateIncl.plusDays(1);
-            iterativeForwardFlows = rangeSafeSubMap(iterativeForwardFlows, subPeriodStartDateIncl, endDateExcl);
         }
         return cumulTwrFactor.subtract(ONE);
     }
 
+    /**
+     * The sub-periods are split exactly as in {@link #calculateCumulativeReturn}, so that both numeric modes link the same sub-periods,
+     * only the flow levels too close to the large flow level are compared in BigDecimal.
+     * The flows of a sub-period are buffered until its end date, which the weights of the flows depend on, is known.
+     */
+    @Override
+    protected DoubleReturn calculateCumulativeReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startAssetValueExcl,
+            BigDecimal endAssetValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        Frequency frequency = Frequency.MONTH;
+
+        LocalDate subPeriodStartDateIncl = startDateIncl;
+        double bankruptcyFactor = DoubleReturn.bankruptcyFactor(calcScale);
+        CompensatedSum logSum = new CompensatedSum();
+        double logErrorBound = 0;
+        int subPeriodCount = 0;
+
+        BigDecimal largeFlowLevel = new BigDecimal(largeFlowLevelInPercent).divide(new BigDecimal("100"), calcScale, roundingMode);
+        double largeFlowLevelValue = largeFlowLevel.doubleValue();
+        //Beyond the margin, the double flow is on the same side of the large flow as the one derived from the flow level rounded to the calcScale
+        double largeFlowLevelMargin = Math.max(1e-9 * largeFlowLevelValue, 2 * Math.pow(10, -calcScale));
+        double lowLargeFlowLevel = largeFlowLevelValue - largeFlowLevelMargin;
+        double highLargeFlowLevel = largeFlowLevelValue + largeFlowLevelMargin;
+
+        int[] subPeriodFlowEpochDays = new int[16];
+        BigDecimal[] subPeriodFlows = new BigDecimal[16];
+        FlowIndex flowIndex = FlowIndex.of(flows);
+        int[] flowEpochDays = flowIndex.epochDays();
+        BigDecimal[] flowAmounts = flowIndex.amounts();
+        int flowCursor = flowIndex.fromIndex();
+        int flowEnd = flowIndex.toIndex();
+        while (!subPeriodStartDateIncl.isAfter(endDateIncl)) {
+            LocalDate subPeriodStartDateExcl = subPeriodStartDateIncl.minusDays(1);
+            BigDecimal subPeriodStartValueExcl = subPeriodStartDateIncl == startDateIncl ? startAssetValueExcl : assetValue(assetValues, subPeriodStartDateExcl);
+            if (subPeriodStartValueExcl == null) {
+                throw new IllegalArgumentException("subPeriodStartValueExcl must not be null, missing assetValue for subPeriodStartDateExcl=%s"
+                        .formatted(subPeriodStartDateExcl));
+            }
+
+            LocalDate subPeriodEndDateIncl = minDate(frequency.adjustToEndDateIncl(subPeriodStartDateIncl), endDateIncl);
+
+            boolean largeFlowsChecked = subPeriodStartValueExcl.compareTo(ZERO) != 0;
+            double absStartValue = Math.abs(subPeriodStartValueExcl.doubleValue());
+            double lowLargeFlow = lowLargeFlowLevel * absStartValue;
+            double highLargeFlow = highLargeFlowLevel * absStartValue;
+
+            int subPeriodFlowCount = 0;
+            LocalDate largeFlowDate = null;
+            long subPeriodStartEpochDay = subPeriodStartDateIncl.toEpochDay();
+            long subPeriodEndEpochDay = subPeriodEndDateIncl.toEpochDay();
+            while (flowCursor < flowEnd && flowEpochDays[flowCursor] <= subPeriodEndEpochDay) {
+                int flowEpochDay = flowEpochDays[flowCursor];
+                BigDecimal flow = flowAmounts[flowCursor];
+                if (largeFlowsChecked && flowEpochDay > subPeriodStartEpochDay && flowEpochDay < subPeriodEndEpochDay) {
+                    double absFlow = Math.abs(flow.doubleValue());
+                    boolean largeFlow;
+                    if (absFlow < lowLargeFlow) {
+                        largeFlow = false;
+                    } else if (absFlow > highLargeFlow) {
+                        largeFlow = true;
+                    } else {
+                        //Too close to the level to be decided in double
+                        largeFlow = flow.divide(subPeriodStartValueExcl, calcScale, roundingMode).abs().compareTo(largeFlowLevel) > 0;
+                    }
+                    if (largeFlow) {
+                        largeFlowDate = LocalDate.ofEpochDay(flowEpochDay);
+                        if (flowTiming == FlowTiming.BEGINNING_OF_DAY) {
+                            break;
+                        }
+                    }
+                }
+                if (subPeriodFlowCount == subPeriodFlows.length) {
+                    subPeriodFlowEpochDays = Arrays.copyOf(subPeriodFlowEpochDays, 2 * subPeriodFlowCount);
+                    subPeriodFlows = Arrays.copyOf(subPeriodFlows, 2 * subPeriodFlowCount);
+                }
+                subPeriodFlowEpochDays[subPeriodFlowCount] = flowEpochDay;
+                subPeriodFlows[subPeriodFlowCount] = flow;
+                subPeriodFlowCount++;
+                flowCursor++;
+                if (largeFlowDate != null) {
+                    break;
+                }
+            }
+            if (largeFlowDate != null) {
+                subPeriodEndDateIncl = switch (flowTiming) {
+                    case BEGINNING_OF_DAY -> largeFlowDate.minusDays(1);
+                    case END_OF_DAY -> largeFlowDate;
+                };
+            }
+
+            BigDecimal subPeriodEndValueIncl = subPeriodEndDateIncl == endDateIncl ? endAssetValueIncl : assetValue(assetValues, subPeriodEndDateIncl);
+            if (subPeriodEndValueIncl == null) {
+                throw new IllegalArgumentException((
+                        "subPeriodEndValueIncl must not be null, missing assetValue for endDateIncl=%s, " +
+                        "largeFlowDate=%s, flowTiming=%s"
+                ).formatted(subPeriodEndDateIncl, largeFlowDate, flowTiming));
+            }
+
+            DoubleReturn subPeriodReturn = calculateSubPeriodReturnInDouble(
+                    subPeriodStartDateIncl,
+                    subPeriodEndDateIncl,
+                    subPeriodStartValueExcl,
+                    subPeriodEndValueIncl,
+                    subPeriodFlowEpochDays,
+                    subPeriodFlows,
+                    subPeriodFlowCount,
+                    flowTiming,
+                    calcScale);
+            double subPeriodFactor = 1 + subPeriodReturn.cumulReturn();
+            subPeriodCount++;
+
+            if (Math.abs(subPeriodFactor) < bankruptcyFactor) {
+                //Bankruptcy
+                return new DoubleReturn(-1, 0);
+            } else {
+                if (subPeriodFactor <= 0) {
+                    throw new IllegalArgumentException("subPeriodFactorSignum must not be negative");
+                }
+            }
+
+            logSum.add(Math.log1p(subPeriodReturn.cumulReturn()));
+            logErrorBound += subPeriodReturn.errorBound() / subPeriodFactor;
+
+            subPeriodStartDateIncl = subPeriodEndDateIncl.plusDays(1);
+        }
+        return DoubleReturn.ofLogSum(logSum, logErrorBound, subPeriodCount, calcScale);
+    }
+
+    /**
+     * Whether the level of the given flow rounded to the calcScale is above the large flow level,
+     * compared without a division unless the flow is within one unit of the calcScale of the level.
+     */
+    private static boolean isLargeFlow(
+            BigDecimal flow,
+            BigDecimal lowLargeFlow,
+            BigDecimal highLargeFlow,
+            BigDecimal startValue,
+            BigDecimal largeFlowLevel,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        BigDecimal absFlow = flow.abs();
+        if (absFlow.compareTo(lowLargeFlow) <= 0) {
+            return false;
+        }
+        if (absFlow.compareTo(highLargeFlow) >= 0) {
+            return true;
+        }
+        return flow.divide(startValue, calcScale, roundingMode).abs().compareTo(largeFlowLevel) > 0;
+    }
+
+    /**
+     * The same as {@link ModifiedDietzMwrCalculatorImpl} gives in {@link com.brinvex.investperf.api.NumericMode#DOUBLE}
+     * for the given flows of the sub-period.
+     */
+    private static DoubleReturn calculateSubPeriodReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            int[] flowEpochDays,
+            BigDecimal[] flows,
+            int flowCount,
+            FlowTiming flowTiming,
+            int calcScale
+    ) {
+        validateStartAndEndValues(startValueExcl, endValueIncl);
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.of(
+                startDateIncl, endDateIncl, startValueExcl, endValueIncl, flowEpochDays, flows, 0, flowCount, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        int fromIndex = adjustment.fromIndex(0);
+        int toIndex = adjustment.toIndex(flowCount);
+
+        if (fromIndex == toIndex) {
+            return SimpleReturnCalculatorImpl.calculateSimpleCumulReturnInDouble(startValueExcl, endValueIncl, calcScale);
+        }
+        long endEpochDayExcl = endDateIncl.toEpochDay() + 1;
+        int totalDays = toIntExact(endEpochDayExcl - startDateIncl.toEpochDay());
+        int flowTimingWeightAdjuster = ModifiedDietzMwrCalculatorImpl.flowTimingWeightAdjuster(flowTiming);
+        CompensatedSum flowSum = new CompensatedSum();
+        CompensatedSum weightedFlowNumeratorSum = new CompensatedSum();
+        for (int i = fromIndex; i < toIndex; i++) {
+            double flowValue = flows[i].doubleValue();
+            int weightNumerator = toIntExact(endEpochDayExcl - flowEpochDays[i]) + flowTimingWeightAdjuster;
+            flowSum.add(flowValue);
+            weightedFlowNumeratorSum.add(flowValue * weightNumerator);
+        }
+        return ModifiedDietzMwrCalculatorImpl.calculateCumulReturnInDouble(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                flowSum,
+                weightedFlowNumeratorSum,
+                totalDays,
+                calcScale
+        );
+    }
 }
@@ -0,0 +1,50 @@
+package com.brinvex.investperf.internal;
+
+import java.util.Optional;
+
+/**
+ * Adds the natural logarithms of the ratios of two primitive arrays to a {@link CompensatedSum}.
+ * It is the inner loop of chaining the growth factors in {@link com.brinvex.investperf.api.NumericMode#DOUBLE}.
+ * <p>
+ * The {@link #INSTANCE} is vectorized by the JDK Vector API if the library is built with the {@code vector} Maven profile
+ * and the incubator module {@code jdk.incubator.vector} is enabled, e.g. by {@code --add-modules jdk.incubator.vector},
+ * otherwise it is a plain scalar loop.
+ */
+abstract class LogRatioKernel {
+
+    static final LogRatioKernel INSTANCE = create();
+
+    /**
+     * @param numerators   the numerators, e.g. the end values of the sub-periods
+     * @param denominators the non-zero denominators, e.g. the start values of the sub-periods with the flows
+     * @param length       the number of the ratios, the arrays might be longer
+     */
+    abstract void addLogRatios(double[] numerators, double[] denominators, int length, CompensatedSum logSum);
+
+    private static LogRatioKernel create() {
+        Optional<Module> vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        if (vectorModule.isPresent()) {
+            try {
+                //The module descriptor does not require the incubator module, so that the default build does not report it
+                LogRatioKernel.class.getModule().addReads(vectorModule.get());
+                //Loaded reflectively, so that the vector classes are never resolved without the module,
+                //and compiled only by the vector profile
+                return (LogRatioKernel) Class.forName("com.brinvex.investperf.internal.VectorLogRatioKernel")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return new ScalarLogRatioKernel();
+            }
+        }
+        return new ScalarLogRatioKernel();
+    }
+
+    static final class ScalarLogRatioKernel extends LogRatioKernel {
+        @Override
+        void addLogRatios(double[] numerators, double[] denominators, int length, CompensatedSum logSum) {
+            for (int i = 0; i < length; i++) {
+                logSum.add(Math.log(numerators[i] / denominators[i]));
+            }
+        }
+    }
+}
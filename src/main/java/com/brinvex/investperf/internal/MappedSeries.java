@@ -0,0 +1,165 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.OffHeapSeries;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT_UNALIGNED;
+import static java.lang.foreign.ValueLayout.JAVA_LONG_UNALIGNED;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+/**
+ * A series read straight from a memory segment, the mapping of a {@link PortfolioSeriesFileImpl} or the segment of an {@link OffHeapSeriesImpl},
+ * the epoch days at the offset followed by the amounts at the next multiple of eight, all in little-endian order.
+ * The segment is only read, so the series is thread-safe.
+ */
+final class MappedSeries {
+
+    static final ValueLayout.OfInt INT = JAVA_INT_UNALIGNED.withOrder(LITTLE_ENDIAN);
+    static final ValueLayout.OfLong LONG = JAVA_LONG_UNALIGNED.withOrder(LITTLE_ENDIAN);
+
+    private final MemorySegment segment;
+    private final long epochDaysOffset;
+    private final long amountsOffset;
+    private final int count;
+    private final int scale;
+    private final boolean bigInteger;
+
+    private final int firstEpochDay;
+    private final int lastEpochDay;
+    /*
+    Every day between the first and the last one has an amount, so the position of a day is its distance from the first one
+     */
+    private final boolean dense;
+
+    /**
+     * @param bigInteger if true, the amounts are the offsets of the two's-complement bytes of each amount followed by the bytes,
+     *                   otherwise the unscaled longs
+     */
+    MappedSeries(MemorySegment segment, long offset, int count, int scale, boolean bigInteger) {
+        this.segment = segment;
+        this.epochDaysOffset = offset;
+        this.amountsOffset = offset + amountsOffset(count);
+        this.count = count;
+        this.scale = scale;
+        this.bigInteger = bigInteger;
+        this.firstEpochDay = count == 0 ? 0 : epochDay(0);
+        this.lastEpochDay = count == 0 ? -1 : epochDay(count - 1);
+        this.dense = count > 0 && (long) lastEpochDay - firstEpochDay == count - 1;
+    }
+
+    /**
+     * @return the offset of the amounts relative to the epoch days
+     */
+    static long amountsOffset(long count) {
+        return (4 * count + 7) & -8;
+    }
+
+    int size() {
+        return count;
+    }
+
+    int scale() {
+        return scale;
+    }
+
+    LocalDate startDateIncl() {
+        return count == 0 ? null : LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    LocalDate endDateIncl() {
+        return count == 0 ? null : LocalDate.ofEpochDay(lastEpochDay);
+    }
+
+    BigDecimal get(long epochDay) {
+        if (epochDay < firstEpochDay || epochDay > lastEpochDay) {
+            return null;
+        }
+        int i = dense ? (int) (epochDay - firstEpochDay) : binarySearch((int) epochDay);
+        return i < 0 ? null : amount(i);
+    }
+
+    /**
+     * @return the unscaled amount of the given day, or {@link OffHeapSeries#NO_AMOUNT} if there is none,
+     * only for the amounts stored as unscaled longs
+     */
+    long getUnscaled(long epochDay) {
+        if (epochDay < firstEpochDay || epochDay > lastEpochDay) {
+            return OffHeapSeries.NO_AMOUNT;
+        }
+        int i = dense ? (int) (epochDay - firstEpochDay) : binarySearch((int) epochDay);
+        return i < 0 ? OffHeapSeries.NO_AMOUNT : segment.get(LONG, amountsOffset + 8L * i);
+    }
+
+    /**
+     * The days and the unscaled longs are copied in bulk and the fixed-point sums are taken from the latter.
+     */
+    FlowIndex toFlowIndex(LocalDate startDateIncl, LocalDate endDateIncl) {
+        int from = insertionPoint(startDateIncl.toEpochDay());
+        int to = insertionPoint(endDateIncl.toEpochDay() + 1);
+        int size = Math.max(0, to - from);
+        int[] epochDays = new int[size];
+        MemorySegment.copy(segment, INT, epochDaysOffset + 4L * from, epochDays, 0, size);
+        if (!bigInteger) {
+            long[] unscaledAmounts = new long[size];
+            MemorySegment.copy(segment, LONG, amountsOffset + 8L * from, unscaledAmounts, 0, size);
+            return FlowIndex.ofUnscaled(epochDays, unscaledAmounts, scale);
+        }
+        BigDecimal[] amounts = new BigDecimal[size];
+        for (int i = 0; i < size; i++) {
+            amounts[i] = amount(from + i);
+        }
+        return FlowIndex.of(epochDays, amounts);
+    }
+
+    private int epochDay(int i) {
+        return segment.get(INT, epochDaysOffset + 4L * i);
+    }
+
+    private BigDecimal amount(int i) {
+        if (!bigInteger) {
+            return BigDecimal.valueOf(segment.get(LONG, amountsOffset + 8L * i), scale);
+        }
+        long bytesStart = amountsOffset + 4L * (count + 1);
+        int bytesOffset = segment.get(INT, amountsOffset + 4L * i);
+        byte[] bytes = new byte[segment.get(INT, amountsOffset + 4L * (i + 1)) - bytesOffset];
+        MemorySegment.copy(segment, JAVA_BYTE, bytesStart + bytesOffset, bytes, 0, bytes.length);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    /**
+     * @return the position of the first day not before the given one
+     */
+    private int insertionPoint(long epochDay) {
+        if (epochDay <= firstEpochDay) {
+            return 0;
+        }
+        if (epochDay > lastEpochDay) {
+            return count;
+        }
+        int i = binarySearch((int) epochDay);
+        return i < 0 ? -(i + 1) : i;
+    }
+
+    private int binarySearch(int epochDay) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midEpochDay = epochDay(mid);
+            if (midEpochDay < epochDay) {
+                low = mid + 1;
+            } else if (midEpochDay > epochDay) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
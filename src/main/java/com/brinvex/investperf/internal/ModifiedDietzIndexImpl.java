@@ -0,0 +1,146 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.ModifiedDietzIndex;
+import com.brinvex.investperf.api.PerfCalcRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static java.lang.Math.toIntExact;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * The prefix sums are exact, so the exact weighted flow sum of a range is derived from them,
+ * and the flows of the range are summed up with their rounded weights the same as {@link ModifiedDietzMwrCalculatorImpl} does
+ * only if the rounding could change the return, see also {@link ModifiedDietzMwrAccumulator}.
+ */
+public final class ModifiedDietzIndexImpl implements ModifiedDietzIndex {
+
+    private final PerfCalcRequest perfCalcRequest;
+    private final FlowTiming flowTiming;
+
+    private final int[] flowEpochDays;
+    private final BigDecimal[] flows;
+    /**
+     * The element i is the sum over the first i flows.
+     */
+    private final BigDecimal[] flowPrefixSums;
+    private final BigDecimal[] absFlowPrefixSums;
+    private final BigDecimal[] flowEpochDayPrefixSums;
+
+    private ModifiedDietzIndexImpl(PerfCalcRequest perfCalcRequest, int[] flowEpochDays, BigDecimal[] flows) {
+        this.perfCalcRequest = perfCalcRequest;
+        this.flowTiming = perfCalcRequest.flowTiming();
+        this.flowEpochDays = flowEpochDays;
+        this.flows = flows;
+        this.flowPrefixSums = new BigDecimal[flows.length + 1];
+        this.absFlowPrefixSums = new BigDecimal[flows.length + 1];
+        this.flowEpochDayPrefixSums = new BigDecimal[flows.length + 1];
+        flowPrefixSums[0] = ZERO;
+        absFlowPrefixSums[0] = ZERO;
+        flowEpochDayPrefixSums[0] = ZERO;
+        for (int i = 0; i < flows.length; i++) {
+            flowPrefixSums[i + 1] = flowPrefixSums[i].add(flows[i]);
+            absFlowPrefixSums[i + 1] = absFlowPrefixSums[i].add(flows[i].abs());
+            flowEpochDayPrefixSums[i + 1] = flowEpochDayPrefixSums[i].add(flows[i].multiply(BigDecimal.valueOf(flowEpochDays[i])));
+        }
+    }
+
+    public static ModifiedDietzIndex of(PerfCalcRequest perfCalcRequest) {
+        FlowIndex flows = FlowIndex.of(perfCalcRequest.flows());
+        return new ModifiedDietzIndexImpl(perfCalcRequest, flows.viewEpochDays(), flows.viewAmounts());
+    }
+
+    @Override
+    public LocalDate startDateIncl() {
+        return perfCalcRequest.startDateIncl();
+    }
+
+    @Override
+    public LocalDate endDateIncl() {
+        return perfCalcRequest.endDateIncl();
+    }
+
+    @Override
+    public BigDecimal mwr(LocalDate startDateIncl, LocalDate endDateIncl) {
+        if (startDateIncl == null) {
+            throw new IllegalArgumentException("startDateIncl must not be null");
+        }
+        if (endDateIncl == null) {
+            throw new IllegalArgumentException("endDateIncl must not be null");
+        }
+        if (startDateIncl.isAfter(endDateIncl)) {
+            throw new IllegalArgumentException("startDateIncl must be before endDateIncl, given: %s, %s"
+                    .formatted(startDateIncl, endDateIncl));
+        }
+        if (startDateIncl.isBefore(startDateIncl()) || endDateIncl.isAfter(endDateIncl())) {
+            throw new IllegalArgumentException("The date range must be within the date range of the index %s - %s, given: %s, %s"
+                    .formatted(startDateIncl(), endDateIncl(), startDateIncl, endDateIncl));
+        }
+
+        BigDecimal startValueExcl = startDateIncl.isEqual(startDateIncl())
+                ? perfCalcRequest.startAssetValueExcl()
+                : perfCalcRequest.assetValues().apply(startDateIncl.minusDays(1));
+        if (startValueExcl == null) {
+            throw new IllegalArgumentException("startAssetValueExcl must not be null, missing assetValue for %s"
+                    .formatted(startDateIncl.minusDays(1)));
+        }
+        if (startValueExcl.compareTo(ZERO) < 0) {
+            throw new IllegalArgumentException("startAssetValueExcl must be greater than or equal to zero");
+        }
+        BigDecimal endValueIncl = endDateIncl.isEqual(endDateIncl())
+                ? perfCalcRequest.endAssetValueIncl()
+                : perfCalcRequest.assetValues().apply(endDateIncl);
+        if (endValueIncl == null) {
+            throw new IllegalArgumentException("endAssetValueIncl must not be null, missing assetValue for %s"
+                    .formatted(endDateIncl));
+        }
+        if (endValueIncl.compareTo(ZERO) < 0) {
+            throw new IllegalArgumentException("endAssetValueIncl must be greater than or equal to zero");
+        }
+
+        int periodFromIndex = ceilingIndex(startDateIncl.toEpochDay());
+        int periodToIndex = ceilingIndex(endDateIncl.toEpochDay() + 1);
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.of(
+                startDateIncl, endDateIncl, startValueExcl, endValueIncl, flowEpochDays, flows, periodFromIndex, periodToIndex, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        int fromIndex = adjustment.fromIndex(periodFromIndex);
+        int toIndex = adjustment.toIndex(periodToIndex);
+        BigDecimal flowSum = flowPrefixSums[toIndex].subtract(flowPrefixSums[fromIndex]);
+
+        int calcScale = perfCalcRequest.calcScale();
+        BigDecimal cumulReturn;
+        if (fromIndex == toIndex) {
+            cumulReturn = SimpleReturnCalculatorImpl.calculateSimpleCumulReturn(startValueExcl, endValueIncl, calcScale, perfCalcRequest.roundingMode());
+        } else {
+            cumulReturn = ModifiedDietzMwrCalculatorImpl.calculateCumulReturn(
+                    startDateIncl,
+                    endDateIncl,
+                    startValueExcl,
+                    endValueIncl,
+                    flowEpochDays,
+                    flows,
+                    fromIndex,
+                    toIndex,
+                    flowSum,
+                    absFlowPrefixSums[toIndex].subtract(absFlowPrefixSums[fromIndex]),
+                    flowEpochDayPrefixSums[toIndex].subtract(flowEpochDayPrefixSums[fromIndex]),
+                    flowTiming,
+                    calcScale,
+                    perfCalcRequest.roundingMode()
+            );
+        }
+        return BaseCalculatorImpl.toPerfCalcResult(perfCalcRequest, startDateIncl, endDateIncl, cumulReturn, 0).value();
+    }
+
+    /**
+     * @return the index of the first flow on or after the given epoch day
+     */
+    private int ceilingIndex(long epochDay) {
+        int index = Arrays.binarySearch(flowEpochDays, toIntExact(epochDay));
+        return index >= 0 ? index : -(index + 1);
+    }
+}
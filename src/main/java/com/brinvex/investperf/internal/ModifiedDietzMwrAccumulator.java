@@ -0,0 +1,149 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.Math.toIntExact;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * Keeps the running sums {@code Σflow} and {@code Σ(flow * epochDay)} of forward-appended flows,
+ * so that a cumulative Modified Dietz return can be evaluated for any end date
+ * without re-walking the already accumulated flows.
+ * The result is the same as {@link ModifiedDietzMwrCalculatorImpl} gives for the same flows,
+ * the flows are re-walked with their rounded weights only if the rounding could change it,
+ * see {@link ModifiedDietzMwrCalculatorImpl#calculateCumulReturnIfWeightRoundingIrrelevant}.
+ * <p>
+ * The rounded weights depend on the end date, so they cannot be kept in running sums and all the flows are kept for the re-walk,
+ * the memory being linear in the flows.
+ * The re-walk is needed when {@code Σ|flow| * 10^-calcScale} is not small against the average capital,
+ * i.e. only with a calcScale low for the size and the count of the flows,
+ * then each evaluation costs as much as the calculator's one, linear in the flows, and never more.
+ */
+final class ModifiedDietzMwrAccumulator implements MwrAccumulator {
+
+    private final FlowTiming flowTiming;
+    private final int calcScale;
+    private final RoundingMode roundingMode;
+
+    private int flowCount;
+    private int[] flowEpochDays = new int[16];
+    private BigDecimal[] flows = new BigDecimal[16];
+    private BigDecimal flowSum = ZERO;
+    private BigDecimal absFlowSum = ZERO;
+    private BigDecimal flowEpochDaySum = ZERO;
+    private LocalDate firstFlowDate;
+    private LocalDate lastFlowDate;
+
+    ModifiedDietzMwrAccumulator(FlowTiming flowTiming, int calcScale, RoundingMode roundingMode) {
+        this.flowTiming = flowTiming;
+        this.calcScale = calcScale;
+        this.roundingMode = roundingMode;
+    }
+
+    @Override
+    public void addFlow(LocalDate flowDate, BigDecimal flow) {
+        if (lastFlowDate != null && !flowDate.isAfter(lastFlowDate)) {
+            throw new IllegalArgumentException("flowDate must be after lastFlowDate, given: %s, %s"
+                    .formatted(flowDate, lastFlowDate));
+        }
+        if (firstFlowDate == null) {
+            firstFlowDate = flowDate;
+        }
+        lastFlowDate = flowDate;
+        if (flowCount == flows.length) {
+            flowEpochDays = Arrays.copyOf(flowEpochDays, 2 * flowCount);
+            flows = Arrays.copyOf(flows, 2 * flowCount);
+        }
+        flowEpochDays[flowCount] = toIntExact(flowDate.toEpochDay());
+        flows[flowCount] = flow;
+        flowCount++;
+        flowSum = flowSum.add(flow);
+        absFlowSum = absFlowSum.add(flow.abs());
+        flowEpochDaySum = flowEpochDaySum.add(flow.multiply(BigDecimal.valueOf(flowDate.toEpochDay())));
+    }
+
+    @Override
+    public State state() {
+        return new State(
+                Arrays.copyOf(flowEpochDays, flowCount),
+                Arrays.copyOf(flows, flowCount),
+                List.of(flowSum, absFlowSum, flowEpochDaySum),
+                Double.NaN
+        );
+    }
+
+    @Override
+    public void restore(State state) {
+        if (flowCount > 0) {
+            throw new IllegalStateException("No flow must have been added, given: %s".formatted(flowCount));
+        }
+        flowCount = state.flows().length;
+        flowEpochDays = Arrays.copyOf(state.flowEpochDays(), Math.max(16, flowCount));
+        flows = Arrays.copyOf(state.flows(), flowEpochDays.length);
+        flowSum = state.flowSums().get(0);
+        absFlowSum = state.flowSums().get(1);
+        flowEpochDaySum = state.flowSums().get(2);
+        if (flowCount > 0) {
+            firstFlowDate = LocalDate.ofEpochDay(flowEpochDays[0]);
+            lastFlowDate = LocalDate.ofEpochDay(flowEpochDays[flowCount - 1]);
+        }
+    }
+
+    LocalDate firstFlowDate() {
+        return firstFlowDate;
+    }
+
+    @Override
+    public BigDecimal calculateCumulReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl
+    ) {
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.of(
+                startDateIncl, endDateIncl, startValueExcl, endValueIncl, flowEpochDays, flows, 0, flowCount, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        int fromIndex = adjustment.fromIndex(0);
+        int toIndex = adjustment.toIndex(flowCount);
+        BigDecimal adjFlowSum = flowSum;
+        BigDecimal adjAbsFlowSum = absFlowSum;
+        BigDecimal adjFlowEpochDaySum = flowEpochDaySum;
+        BigDecimal movedFlow = adjustment.movedFlow();
+        if (movedFlow != null) {
+            LocalDate movedFlowDate = fromIndex > 0 ? firstFlowDate : lastFlowDate;
+            adjFlowSum = adjFlowSum.subtract(movedFlow);
+            adjAbsFlowSum = adjAbsFlowSum.subtract(movedFlow.abs());
+            adjFlowEpochDaySum = adjFlowEpochDaySum.subtract(movedFlow.multiply(BigDecimal.valueOf(movedFlowDate.toEpochDay())));
+        }
+
+        BigDecimal cumulReturn;
+        if (fromIndex == toIndex) {
+            cumulReturn = SimpleReturnCalculatorImpl.calculateSimpleCumulReturn(startValueExcl, endValueIncl, calcScale, roundingMode);
+        } else {
+            cumulReturn = ModifiedDietzMwrCalculatorImpl.calculateCumulReturn(
+                    startDateIncl,
+                    endDateIncl,
+                    startValueExcl,
+                    endValueIncl,
+                    flowEpochDays,
+                    flows,
+                    fromIndex,
+                    toIndex,
+                    adjFlowSum,
+                    adjAbsFlowSum,
+                    adjFlowEpochDaySum,
+                    flowTiming,
+                    calcScale,
+                    roundingMode
+            );
+        }
+        return cumulReturn.setScale(calcScale, roundingMode);
+    }
+}
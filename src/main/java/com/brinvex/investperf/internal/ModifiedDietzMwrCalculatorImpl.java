@@ -1,6 +1,8 @@
 package com.brinvex.investperf.internal;
 
+import com.brinvex.investperf.api.DateRange;
 import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.ModifiedDietzIndex;
 import com.brinvex.investperf.api.PerfCalcRequest;
 import com.brinvex.investperf.api.PerformanceCalculator;
 import com.brinvex.java.Num;
@@ -8,8 +10,11 @@ import com.brinvex.java.Num;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.SortedMap;
+import java.util.function.Function;
 
 import static java.lang.Math.toIntExact;
 import static java.math.BigDecimal.ZERO;
@@ -17,31 +22,45 @@ import static java.time.temporal.ChronoUnit.DAYS;
 
 public class ModifiedDietzMwrCalculatorImpl extends BaseCalculatorImpl implements PerformanceCalculator.ModifiedDietzMwrCalculator {
 
-    public static final ModifiedDietzMwrCalculator INSTANCE = new ModifiedDietzMwrCalculatorImpl();
+    public static final ModifiedDietzMwrCalculatorImpl INSTANCE = new ModifiedDietzMwrCalculatorImpl();
 
     private ModifiedDietzMwrCalculatorImpl() {
     }
 
+    /**
+     * Sums up the flows of the request once, see {@link ModifiedDietzIndexImpl}.
+     */
     @Override
-    protected BigDecimal calculateCumulativeReturn(PerfCalcRequest calcReq) {
-        LocalDate startDateIncl = calcReq.startDateIncl();
-        LocalDate endDateIncl = calcReq.endDateIncl();
+    public List<BigDecimal> calculateReturns(PerfCalcRequest perfCalcRequest, List<DateRange> dateRanges) {
+        ModifiedDietzIndex mDietzIndex = ModifiedDietzIndexImpl.of(perfCalcRequest);
+        List<BigDecimal> returns = new ArrayList<>(dateRanges.size());
+        for (DateRange dateRange : dateRanges) {
+            validateDateRange(perfCalcRequest, dateRange);
+            returns.add(mDietzIndex.mwr(dateRange.startDateIncl(), dateRange.endDateIncl()));
+        }
+        return returns;
+    }
+
+    @Override
+    protected BigDecimal calculateCumulativeReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
         LocalDate endDateExcl = endDateIncl.plusDays(1);
-        BigDecimal startValueExcl = calcReq.startAssetValueExcl();
-        BigDecimal endValueIncl = calcReq.endAssetValueIncl();
-        SortedMap<LocalDate, BigDecimal> flows = calcReq.flows();
-        FlowTiming flowTiming = calcReq.flowTiming();
-        int calcScale = calcReq.calcScale();
-        RoundingMode roundingMode = calcReq.roundingMode();
         int totalDays = toIntExact(DAYS.between(startDateIncl, endDateExcl));
-        BigDecimal totalDaysDecimal = new BigDecimal(totalDays);
+        BigDecimal totalDaysDecimal = BigDecimal.valueOf(totalDays);
 
         BigDecimal flowSum = ZERO;
         BigDecimal weightedFlowSum = ZERO;
-        int flowTimingWeightAdjuster = switch (flowTiming) {
-            case BEGINNING_OF_DAY -> 0;
-            case END_OF_DAY -> -1;
-        };
+        int flowTimingWeightAdjuster = flowTimingWeightAdjuster(flowTiming);
         for (Entry<LocalDate, BigDecimal> flow : flows.entrySet()) {
             LocalDate flowDate = flow.getKey();
             BigDecimal flowValue = flow.getValue();
@@ -54,22 +73,260 @@ public class ModifiedDietzMwrCalculatorImpl extends BaseCalculatorImpl implement
                         .formatted(flowDate, startDateIncl, endDateIncl, flowTiming, weightNumerator, totalDays));
             }
 
-            BigDecimal weight = new BigDecimal(weightNumerator).divide(totalDaysDecimal, calcScale, roundingMode);
-            BigDecimal weightedFlowValue = flowValue.multiply(weight);
-
             flowSum = flowSum.add(flowValue);
-            weightedFlowSum = weightedFlowSum.add(weightedFlowValue);
+            weightedFlowSum = weightedFlowSum.add(flowValue.multiply(weight(weightNumerator, totalDaysDecimal, calcScale, roundingMode)));
+        }
+        return calculateCumulReturn(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                flowSum,
+                weightedFlowSum,
+                calcScale,
+                roundingMode
+        );
+    }
+
+    @Override
+    protected DoubleReturn calculateCumulativeReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        LocalDate endDateExcl = endDateIncl.plusDays(1);
+        long endEpochDayExcl = endDateExcl.toEpochDay();
+        int totalDays = toIntExact(endEpochDayExcl - startDateIncl.toEpochDay());
+
+        CompensatedSum flowSum = new CompensatedSum();
+        CompensatedSum weightedFlowNumeratorSum = new CompensatedSum();
+        int flowTimingWeightAdjuster = flowTimingWeightAdjuster(flowTiming);
+        for (Entry<LocalDate, BigDecimal> flow : flows.entrySet()) {
+            LocalDate flowDate = flow.getKey();
+            double flowValue = flow.getValue().doubleValue();
+
+            int weightNumerator = toIntExact(endEpochDayExcl - flowDate.toEpochDay()) + flowTimingWeightAdjuster;
+            if (weightNumerator >= totalDays || weightNumerator <= 0) {
+                throw new IllegalArgumentException((
+                        "flowDate out of range; " +
+                        "given: flowDate=%s, startDateIncl=%s, endDateIncl=%s, flowTiming=%s, weightNumerator=%s, totalDays=%s")
+                        .formatted(flowDate, startDateIncl, endDateIncl, flowTiming, weightNumerator, totalDays));
+            }
+
+            flowSum.add(flowValue);
+            weightedFlowNumeratorSum.add(flowValue * weightNumerator);
+        }
+        return calculateCumulReturnInDouble(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                flowSum,
+                weightedFlowNumeratorSum,
+                totalDays,
+                calcScale
+        );
+    }
+
+    /**
+     * The same as {@link #calculateCumulReturn} in {@link com.brinvex.investperf.api.NumericMode#DOUBLE}, with the error bound.
+     *
+     * @param weightedFlowNumeratorSum the compensated sum of {@code flow * weightNumerator} over all flows
+     */
+    static DoubleReturn calculateCumulReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            CompensatedSum flowSum,
+            CompensatedSum weightedFlowNumeratorSum,
+            int totalDays,
+            int calcScale
+    ) {
+        double startValue = startValueExcl.doubleValue();
+        double endValue = endValueIncl.doubleValue();
+        double weightedFlowSum = weightedFlowNumeratorSum.sum() / totalDays;
+        if (startValue <= -weightedFlowSum) {
+            throw new IllegalStateException((
+                    "Could not calculate ModifiedDietz return of given data: " +
+                    "adjStartValueExcl=%s, adjEndValueIncl=%s, " +
+                    "weightedFlowSum=%s, flowSum=%s, " +
+                    "startDateIncl=%s, endDateIncl=%s")
+                    .formatted(
+                            startValueExcl, endValueIncl,
+                            weightedFlowSum, flowSum.sum(),
+                            startDateIncl, endDateIncl
+                    ));
+        }
+
+        double gain = endValue - startValue - flowSum.sum();
+        double averageCapital = startValue + weightedFlowSum;
+        double cumulReturn = Math.max(gain / averageCapital, -1);
+
+        //Converting the flows and the compensated summation, the weighted flows are also multiplied
+        double u = DoubleReturn.UNIT_ROUNDOFF;
+        double flowSumError = 3 * u * flowSum.absSum();
+        //BIG_DECIMAL rounds each weight to the calcScale
+        double weightedFlowSumError = 4 * u * weightedFlowNumeratorSum.absSum() / totalDays + u * Math.abs(weightedFlowSum)
+                                      + flowSum.absSum() * Math.pow(10, -calcScale);
+        double gainError = 3 * u * (Math.abs(endValue) + Math.abs(startValue)) + 2 * u * Math.abs(flowSum.sum()) + flowSumError;
+        double averageCapitalError = u * Math.abs(startValue) + weightedFlowSumError + u * Math.abs(averageCapital);
+        double errorBound = (gainError + Math.abs(cumulReturn) * averageCapitalError) / Math.abs(averageCapital)
+                            + u * Math.abs(cumulReturn)
+                            + DoubleReturn.bigDecimalRoundingBound(2, calcScale);
+        return new DoubleReturn(cumulReturn, errorBound);
+    }
+
+    static int flowTimingWeightAdjuster(FlowTiming flowTiming) {
+        return switch (flowTiming) {
+            case BEGINNING_OF_DAY -> 0;
+            case END_OF_DAY -> -1;
+        };
+    }
+
+    static BigDecimal weight(int weightNumerator, BigDecimal totalDays, int calcScale, RoundingMode roundingMode) {
+        return BigDecimal.valueOf(weightNumerator).divide(totalDays, calcScale, roundingMode);
+    }
+
+    /**
+     * The same as {@link #calculateCumulativeReturn} sums up flow by flow, each flow weighted by its weight rounded to the calcScale.
+     *
+     * @param flowEpochDays the epoch days of the flows, within the date range ending before the given end epoch day
+     */
+    private static BigDecimal weightedFlowSum(
+            int[] flowEpochDays,
+            BigDecimal[] flows,
+            int fromIndex,
+            int toIndex,
+            long weightNumeratorBase,
+            int totalDays,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        BigDecimal totalDaysDecimal = BigDecimal.valueOf(totalDays);
+        BigDecimal weightedFlowSum = ZERO;
+        for (int i = fromIndex; i < toIndex; i++) {
+            int weightNumerator = toIntExact(weightNumeratorBase - flowEpochDays[i]);
+            weightedFlowSum = weightedFlowSum.add(flows[i].multiply(weight(weightNumerator, totalDaysDecimal, calcScale, roundingMode)));
         }
+        return weightedFlowSum;
+    }
+
+    /**
+     * The same as {@link #calculateCumulativeReturn} gives for the flows of the given index range,
+     * derived from their exact sums if possible, see {@link #calculateCumulReturnIfWeightRoundingIrrelevant}.
+     *
+     * @param flowEpochDaySum the exact sum of {@code flow * epochDay} over the flows of the range
+     */
+    static BigDecimal calculateCumulReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            int[] flowEpochDays,
+            BigDecimal[] flows,
+            int fromIndex,
+            int toIndex,
+            BigDecimal flowSum,
+            BigDecimal absFlowSum,
+            BigDecimal flowEpochDaySum,
+            FlowTiming flowTiming,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        long endEpochDayExcl = endDateIncl.toEpochDay() + 1;
+        int totalDays = toIntExact(endEpochDayExcl - startDateIncl.toEpochDay());
+        long weightNumeratorBase = endEpochDayExcl + flowTimingWeightAdjuster(flowTiming);
+        //Σ(flow * (weightNumeratorBase - flowEpochDay)) = weightNumeratorBase * Σflow - Σ(flow * flowEpochDay)
+        BigDecimal weightedFlowNumeratorSum = flowSum.multiply(BigDecimal.valueOf(weightNumeratorBase)).subtract(flowEpochDaySum);
+        BigDecimal cumulReturn = calculateCumulReturnIfWeightRoundingIrrelevant(
+                startValueExcl, endValueIncl, flowSum, weightedFlowNumeratorSum, absFlowSum, totalDays, calcScale, roundingMode);
+        if (cumulReturn != null) {
+            return cumulReturn;
+        }
+        BigDecimal weightedFlowSum = weightedFlowSum(flowEpochDays, flows, fromIndex, toIndex, weightNumeratorBase, totalDays, calcScale, roundingMode);
+        return calculateCumulReturn(startDateIncl, endDateIncl, startValueExcl, endValueIncl, flowSum, weightedFlowSum, calcScale, roundingMode);
+    }
+
+    /**
+     * Derives the return from the exact weighted flow sum of running sums, see {@link ModifiedDietzMwrAccumulator},
+     * when the weights rounded one by one cannot change it.
+     * <p>
+     * A rounded weight differs from the exact one by less than one unit of the calcScale,
+     * so the weighted flow sum of the rounded weights is within {@code Σ|flow|} units from the exact one.
+     * The rounded division is monotonic, so if both ends of that range give the same return, so does the sum of the rounded weights.
+     *
+     * @param weightedFlowNumeratorSum the exact sum of {@code flow * weightNumerator} over all flows
+     * @param absFlowSum               the sum of the absolute values of the flows
+     * @return the same as {@link #calculateCumulReturn} gives for the weighted flow sum of the rounded weights,
+     * or null if it cannot be derived and the flows have to be summed up with their rounded weights
+     */
+    private static BigDecimal calculateCumulReturnIfWeightRoundingIrrelevant(
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            BigDecimal flowSum,
+            BigDecimal weightedFlowNumeratorSum,
+            BigDecimal absFlowSum,
+            int totalDays,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        if (roundingMode == RoundingMode.UNNECESSARY) {
+            return null;
+        }
+        BigDecimal totalDaysDecimal = BigDecimal.valueOf(totalDays);
+        BigDecimal weightRoundingBound = absFlowSum.movePointLeft(calcScale);
+        BigDecimal lowAverageCapital = startValueExcl
+                .add(weightedFlowNumeratorSum.divide(totalDaysDecimal, calcScale, RoundingMode.FLOOR))
+                .subtract(weightRoundingBound);
+        if (lowAverageCapital.signum() <= 0) {
+            return null;
+        }
+        BigDecimal highAverageCapital = startValueExcl
+                .add(weightedFlowNumeratorSum.divide(totalDaysDecimal, calcScale, RoundingMode.CEILING))
+                .add(weightRoundingBound);
+
+        BigDecimal gain = endValueIncl.subtract(startValueExcl).subtract(flowSum);
+        BigDecimal cumulReturn = gain.divide(lowAverageCapital, calcScale, roundingMode);
+        if (cumulReturn.compareTo(gain.divide(highAverageCapital, calcScale, roundingMode)) != 0) {
+            return null;
+        }
+        if (cumulReturn.compareTo(Num.MINUS_1) < 0) {
+            cumulReturn = Num.MINUS_1;
+        }
+        return cumulReturn;
+    }
+
+    /**
+     * @param weightedFlowSum the sum of {@code flow * weight} over all flows, each weight rounded to the calcScale
+     */
+    static BigDecimal calculateCumulReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            BigDecimal flowSum,
+            BigDecimal weightedFlowSum,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
         if (startValueExcl.compareTo(weightedFlowSum.negate()) <= 0) {
             //See https://en.wikipedia.org/wiki/Modified_Dietz_method#Negative_or_zero_average_capital
             throw new IllegalStateException((
                     "Could not calculate ModifiedDietz return of given data: " +
                     "adjStartValueExcl=%s, adjEndValueIncl=%s, " +
-                    "weightedFlowSum=%s, periodFlow=%s, " +
+                    "weightedFlowSum=%s, flowSum=%s, " +
                     "startDateIncl=%s, endDateIncl=%s")
                     .formatted(
                             startValueExcl, endValueIncl,
-                            weightedFlowSum, flows,
+                            weightedFlowSum, flowSum,
                             startDateIncl, endDateIncl
                     ));
         }
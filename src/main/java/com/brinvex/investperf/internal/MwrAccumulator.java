@@ -0,0 +1,63 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+import com.brinvex.investperf.api.PerformanceCalculator;
+import com.brinvex.investperf.api.PerformanceCalculator.ModifiedDietzMwrCalculator;
+import com.brinvex.investperf.api.PerformanceCalculator.XirrMwrCalculator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Keeps the forward-appended flows of a growing date range in the form its money-weighted return calculator
+ * can evaluate for each end date without re-walking a flow map.
+ */
+sealed interface MwrAccumulator permits ModifiedDietzMwrAccumulator, XirrMwrAccumulator {
+
+    /**
+     * @return the accumulator giving the same as the given calculator
+     */
+    static MwrAccumulator of(PerformanceCalculator mwrCalculator, FlowTiming flowTiming, int calcScale, RoundingMode roundingMode, NumericMode numericMode) {
+        if (mwrCalculator instanceof ModifiedDietzMwrCalculator) {
+            return new ModifiedDietzMwrAccumulator(flowTiming, calcScale, roundingMode);
+        }
+        if (mwrCalculator instanceof XirrMwrCalculator) {
+            return new XirrMwrAccumulator(flowTiming, calcScale, roundingMode, numericMode);
+        }
+        throw new IllegalArgumentException("mwrCalculator must be a Modified Dietz or an XIRR calculator, given: %s".formatted(mwrCalculator));
+    }
+
+    void addFlow(LocalDate flowDate, BigDecimal flow);
+
+    /**
+     * All the added flows must fall into the given date range.
+     *
+     * @return the cumulative return scaled to the calcScale
+     */
+    BigDecimal calculateCumulReturn(LocalDate startDateIncl, LocalDate endDateIncl, BigDecimal startValueExcl, BigDecimal endValueIncl);
+
+    /**
+     * @return a copy of the state after the added flows
+     */
+    State state();
+
+    /**
+     * Restores the state of an accumulator of the same kind and settings, no flow must have been added yet.
+     */
+    void restore(State state);
+
+    /**
+     * @param flowSums            the running sums of the flows, empty if the accumulator keeps none
+     * @param lastLogGrowthPerDay the warm start of the next evaluation, NaN if there is none
+     */
+    record State(
+            int[] flowEpochDays,
+            BigDecimal[] flows,
+            List<BigDecimal> flowSums,
+            double lastLogGrowthPerDay
+    ) {
+    }
+}
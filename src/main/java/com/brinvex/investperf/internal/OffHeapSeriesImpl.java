@@ -0,0 +1,175 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.OffHeapSeries;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static com.brinvex.investperf.internal.MappedSeries.INT;
+import static com.brinvex.investperf.internal.MappedSeries.LONG;
+import static java.lang.Math.toIntExact;
+
+/**
+ * The epoch days at the start of the segment followed by the amounts at the next multiple of eight, read by {@link MappedSeries}.
+ */
+public final class OffHeapSeriesImpl implements OffHeapSeries {
+
+    private final MappedSeries series;
+
+    private OffHeapSeriesImpl(MemorySegment segment, int count, int scale) {
+        this.series = new MappedSeries(segment, 0, count, scale, false);
+    }
+
+    public static OffHeapSeriesBuilder builder(Arena arena, int scale) {
+        if (arena == null) {
+            throw new IllegalArgumentException("arena must not be null");
+        }
+        return new Builder(arena, scale);
+    }
+
+    public static OffHeapSeries of(Arena arena, int scale, Map<LocalDate, BigDecimal> values) {
+        OffHeapSeriesBuilder builder = builder(arena, scale);
+        if (!(values instanceof SortedMap<LocalDate, BigDecimal> sortedValues && sortedValues.comparator() == null)) {
+            values = new TreeMap<>(values);
+        }
+        for (Map.Entry<LocalDate, BigDecimal> e : values.entrySet()) {
+            builder.add(e.getKey(), e.getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int size() {
+        return series.size();
+    }
+
+    @Override
+    public int scale() {
+        return series.scale();
+    }
+
+    @Override
+    public LocalDate startDateIncl() {
+        return series.startDateIncl();
+    }
+
+    @Override
+    public LocalDate endDateIncl() {
+        return series.endDateIncl();
+    }
+
+    @Override
+    public BigDecimal get(long epochDay) {
+        return series.get(epochDay);
+    }
+
+    @Override
+    public long getUnscaled(long epochDay) {
+        return series.getUnscaled(epochDay);
+    }
+
+    @Override
+    public SortedMap<LocalDate, BigDecimal> subMap(LocalDate startDateIncl, LocalDate endDateIncl) {
+        return series.toFlowIndex(startDateIncl, endDateIncl);
+    }
+
+    /**
+     * Appends into a pair of columns of its own confined arena, replaced by one of double the capacity when they are full,
+     * and copies them into a single segment of the target arena when the series is built.
+     */
+    private static final class Builder implements OffHeapSeriesBuilder {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final Arena arena;
+        private final int scale;
+
+        private Arena bufferArena;
+        private MemorySegment epochDays;
+        private MemorySegment amounts;
+        private int capacity;
+        private int count;
+
+        private Builder(Arena arena, int scale) {
+            this.arena = arena;
+            this.scale = scale;
+        }
+
+        @Override
+        public OffHeapSeriesBuilder add(LocalDate date, BigDecimal amount) {
+            if (amount == null) {
+                throw new IllegalArgumentException("The amount must not be null, given: %s".formatted(date));
+            }
+            long unscaledAmount;
+            try {
+                unscaledAmount = amount.setScale(scale).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("The amount must fit into a long of the scale %s, given: %s, %s"
+                        .formatted(scale, date, amount), e);
+            }
+            return add(date.toEpochDay(), unscaledAmount);
+        }
+
+        @Override
+        public OffHeapSeriesBuilder add(long epochDay, long unscaledAmount) {
+            if (capacity < 0) {
+                throw new IllegalStateException("The series has already been built");
+            }
+            if (unscaledAmount == NO_AMOUNT) {
+                throw new IllegalArgumentException("The unscaled amount must not be NO_AMOUNT, given: %s, %s"
+                        .formatted(LocalDate.ofEpochDay(epochDay), unscaledAmount));
+            }
+            if (count > 0 && epochDay <= epochDays.getAtIndex(INT, count - 1)) {
+                throw new IllegalArgumentException("The dates must be added in ascending order, given: %s after %s"
+                        .formatted(LocalDate.ofEpochDay(epochDay), LocalDate.ofEpochDay(epochDays.getAtIndex(INT, count - 1))));
+            }
+            if (count == capacity) {
+                grow();
+            }
+            epochDays.setAtIndex(INT, count, toIntExact(epochDay));
+            amounts.setAtIndex(LONG, count, unscaledAmount);
+            count++;
+            return this;
+        }
+
+        private void grow() {
+            int newCapacity = capacity == 0 ? INITIAL_CAPACITY : toIntExact(2L * capacity);
+            Arena newBufferArena = Arena.ofConfined();
+            MemorySegment newEpochDays = newBufferArena.allocate(4L * newCapacity, 4);
+            MemorySegment newAmounts = newBufferArena.allocate(8L * newCapacity, 8);
+            if (bufferArena != null) {
+                MemorySegment.copy(epochDays, 0, newEpochDays, 0, 4L * count);
+                MemorySegment.copy(amounts, 0, newAmounts, 0, 8L * count);
+                bufferArena.close();
+            }
+            bufferArena = newBufferArena;
+            epochDays = newEpochDays;
+            amounts = newAmounts;
+            capacity = newCapacity;
+        }
+
+        @Override
+        public OffHeapSeries build() {
+            if (capacity < 0) {
+                throw new IllegalStateException("The series has already been built");
+            }
+            long amountsOffset = MappedSeries.amountsOffset(count);
+            MemorySegment segment = arena.allocate(Math.max(8, amountsOffset + 8L * count), 8);
+            if (bufferArena != null) {
+                MemorySegment.copy(epochDays, 0, segment, 0, 4L * count);
+                MemorySegment.copy(amounts, 0, segment, amountsOffset, 8L * count);
+                bufferArena.close();
+                bufferArena = null;
+                epochDays = null;
+                amounts = null;
+            }
+            capacity = -1;
+            return new OffHeapSeriesImpl(segment, count, scale);
+        }
+    }
+}
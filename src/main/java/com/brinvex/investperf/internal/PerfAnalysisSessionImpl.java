@@ -0,0 +1,511 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.fintypes.enu.Frequency;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerfAnalysisSession;
+import com.brinvex.investperf.api.PerformanceCalculator;
+import com.brinvex.investperf.api.PerformanceCalculator.LinkedModifiedDietzTwrCalculator;
+import com.brinvex.investperf.internal.PeriodResultChain.PeriodAnalysis;
+import com.brinvex.java.Num;
+import com.brinvex.java.validation.Assert;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SequencedCollection;
+import java.util.SequencedMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR;
+import static com.brinvex.investperf.api.FlowTiming.BEGINNING_OF_DAY;
+import static com.brinvex.investperf.internal.BaseCalculatorImpl.assetValue;
+import static com.brinvex.java.DateUtil.maxDate;
+import static com.brinvex.java.DateUtil.minDate;
+import static com.brinvex.java.NullUtil.nullSafe;
+import static com.brinvex.java.collection.CollectionUtil.rangeSafeHeadMap;
+import static com.brinvex.java.collection.CollectionUtil.rangeSafeTailMap;
+import static java.math.BigDecimal.ZERO;
+import static java.util.Collections.emptySortedMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Holds the state of the period loop of {@link PerformanceAnalyzerImpl},
+ * so that the analysis can be extended by new days without replaying the already closed periods.
+ * <p>
+ * Only the last, not yet closed period is re-evaluated on each appended day.
+ * Its growth factor, flows and profit are kept apart from the closed periods' ones until the period ends.
+ * <p>
+ * The coarser result frequencies, if requested, are aggregated from the evaluated periods in the same pass,
+ * see {@link PeriodResultChain#aggregate}.
+ */
+@SuppressWarnings("DuplicatedCode")
+final class PerfAnalysisSessionImpl implements PerfAnalysisSession {
+
+    private final Frequency frequency;
+    private final FlowTiming twrFlowTiming;
+    private final int calcScale;
+    private final RoundingMode roundingMode;
+    private final NumericMode numericMode;
+    private final BaseCalculatorImpl twrCalculator;
+    private final int largeFlowLevelInPercent;
+    private final FlowTiming mwrFlowTiming;
+    private final boolean calculateMwr;
+    private final boolean calculateIncome;
+    private final FixedStartAnnualizer mwrAnnualizer;
+
+    private final LocalDate calcStartDateIncl;
+    private final LocalDate calcEndDateIncl;
+    private final boolean appendable;
+    private final PeriodResultChain resultChain;
+    private final List<PeriodResultChain> coarserResultChains;
+    private MwrAccumulator mwrAccumulator;
+
+    private final TreeMap<LocalDate, BigDecimal> appendedAssetValues = new TreeMap<>();
+    private final Function<LocalDate, BigDecimal> reqAssetValues;
+    private Function<LocalDate, BigDecimal> assetValues;
+    private LocalDate firstFlowDate;
+    private BigDecimal startValueExcl;
+    private LocalDate resultEndDateIncl;
+
+    /*
+    The period which has not reached its end yet, if any
+     */
+    private LocalDate openPeriodStartDateIncl;
+    private TreeMap<LocalDate, BigDecimal> openPeriodFlows;
+    private TreeMap<LocalDate, BigDecimal> openPeriodIncomes;
+
+    /**
+     * @param resultConsumer       if not null, the results are not collected,
+     *                             but passed to the consumer one by one as soon as they are final
+     * @param allResultFrequencies if true, the results of all the {@link PerfAnalysisRequest#resultFrequencies()}
+     *                             are collected, the coarser ones being aggregated from the finest one
+     */
+    private PerfAnalysisSessionImpl(PerfAnalysisRequest req, Consumer<PerfAnalysis> resultConsumer, boolean allResultFrequencies) {
+        frequency = req.resultFrequency();
+        resultEndDateIncl = req.resultEndDateIncl();
+        twrFlowTiming = req.twrFlowTiming();
+        mwrFlowTiming = req.mwrFlowTiming();
+        calcScale = req.calcScale();
+        roundingMode = req.roundingMode();
+        numericMode = req.numericMode();
+        //All the calculators extend BaseCalculatorImpl, whose internal entry point needs no PerfCalcRequest per period
+        twrCalculator = (BaseCalculatorImpl) PerformanceCalculator.twrCalculator(req.twrCalculatorType());
+        largeFlowLevelInPercent = req.largeFlowLevelInPercent();
+        calculateMwr = req.calculateMwr();
+        calculateIncome = req.calculatePeriodIncome() || req.calculateTrailingAvgIncome1Y();
+        reqAssetValues = req.assetValues();
+        //Composed with the appended values only once appending starts, e.g. to keep a DailySeries lookup direct
+        assetValues = reqAssetValues;
+
+        calcStartDateIncl = minDate(maxDate(req.resultStartDateIncl(), req.performanceMeasureStartDateIncl()), resultEndDateIncl.plusDays(1));
+        mwrAnnualizer = new FixedStartAnnualizer(calcStartDateIncl, null);
+        calcEndDateIncl = minDate(resultEndDateIncl, req.performanceMeasureEndDateIncl());
+        appendable = !calcStartDateIncl.isAfter(calcEndDateIncl) && calcEndDateIncl.isEqual(resultEndDateIncl);
+
+        resultChain = new PeriodResultChain(frequency, req, calcStartDateIncl, resultConsumer);
+        coarserResultChains = !allResultFrequencies ? List.of() : req.resultFrequencies()
+                .stream()
+                .skip(1)
+                .map(coarserFrequency -> new PeriodResultChain(coarserFrequency, req, calcStartDateIncl, null))
+                .toList();
+    }
+
+    /**
+     * @return the session holding the results of the request, to be extended by {@link #append}
+     */
+    static PerfAnalysisSessionImpl open(PerfAnalysisRequest req) {
+        PerfAnalysisSessionImpl session = new PerfAnalysisSessionImpl(req, null, false);
+        session.run(req, null);
+        return session;
+    }
+
+    /**
+     * Passes the results to the consumer one by one as soon as they are final, without collecting them.
+     */
+    static void analyze(PerfAnalysisRequest req, Consumer<PerfAnalysis> resultConsumer) {
+        new PerfAnalysisSessionImpl(req, requireNonNull(resultConsumer), false).run(req, null);
+    }
+
+    /**
+     * Resumes the analysis from the checkpoint file if the checkpoint is valid for the request and its inputs,
+     * passing only the results of the periods after the checkpoint to the consumer,
+     * and saves a new checkpoint at the end of the last closed period, see {@link AnalysisCheckpoint}.
+     *
+     * @return the day after the checkpoint the analysis was resumed from or null if it was not resumed
+     */
+    static LocalDate analyze(PerfAnalysisRequest req, Consumer<PerfAnalysis> resultConsumer, Path checkpointFile) {
+        return new PerfAnalysisSessionImpl(req, requireNonNull(resultConsumer), false).run(req, requireNonNull(checkpointFile));
+    }
+
+    /**
+     * @return the results of all the {@link PerfAnalysisRequest#resultFrequencies()},
+     * the coarser ones being aggregated from the finest one
+     */
+    static SequencedMap<Frequency, SequencedCollection<PerfAnalysis>> analyzeByFrequency(PerfAnalysisRequest req) {
+        PerfAnalysisSessionImpl session = new PerfAnalysisSessionImpl(req, null, true);
+        session.run(req, null);
+        return session.resultsByFrequency();
+    }
+
+    /**
+     * Runs the period loop over the request, the session having been just created for it.
+     *
+     * @param checkpointFile if not null, see {@link #analyze(PerfAnalysisRequest, Consumer, Path)}
+     * @return the day after the checkpoint the analysis was resumed from or null if it was not resumed
+     */
+    @SuppressWarnings("DataFlowIssue")
+    private LocalDate run(PerfAnalysisRequest req, Path checkpointFile) {
+        LocalDate resultStartDateIncl = req.resultStartDateIncl();
+        LocalDate calcStartDateExcl = calcStartDateIncl.minusDays(1);
+        LocalDate calcEndDateExcl = calcEndDateIncl.plusDays(1);
+        boolean calcIsNeeded = !calcStartDateIncl.isAfter(calcEndDateIncl);
+        LocalDate resumedDateIncl = null;
+
+        SortedMap<LocalDate, BigDecimal> flows = req.flows().apply(calcStartDateIncl, calcEndDateIncl);
+        if (flows == null) {
+            flows = emptySortedMap();
+        } else if (!flows.isEmpty()) {
+            Entry<LocalDate, BigDecimal> firstFlow = flows.firstEntry();
+            Assert.isTrue(!firstFlow.getKey().isBefore(calcStartDateIncl),
+                    () -> "firstFlow must not be before calcStartDateIncl; %s, %s".formatted(firstFlow, calcStartDateExcl));
+            Entry<LocalDate, BigDecimal> lastFlow = flows.lastEntry();
+            Assert.isTrue(!lastFlow.getKey().isAfter(calcEndDateIncl),
+                    () -> "lastFlow must not be after calcEndDateIncl; %s, %s".formatted(lastFlow, calcEndDateIncl));
+            firstFlowDate = firstFlow.getKey();
+        }
+        SortedMap<LocalDate, BigDecimal> incomes = nullSafe(req.incomes(), _incomes -> _incomes.apply(calcStartDateIncl, calcEndDateIncl));
+        if (incomes == null) {
+            incomes = emptySortedMap();
+        } else if (!incomes.isEmpty()) {
+            Entry<LocalDate, BigDecimal> firstIncome = incomes.firstEntry();
+            Assert.isTrue(!firstIncome.getKey().isBefore(calcStartDateIncl),
+                    () -> "firstIncome must not be before calcStartDateIncl; %s, %s".formatted(firstIncome, calcStartDateExcl));
+            Entry<LocalDate, BigDecimal> lastIncome = incomes.lastEntry();
+            Assert.isTrue(!lastIncome.getKey().isAfter(calcEndDateIncl),
+                    () -> "lastIncome must not be after calcEndDateIncl; %s, %s".formatted(lastIncome, calcEndDateIncl));
+        }
+
+        SortedMap<LocalDate, BigDecimal> digestIncomes = calculateIncome ? incomes : null;
+        boolean digestMonthEndValues = twrCalculator instanceof LinkedModifiedDietzTwrCalculator;
+        String checkpointFingerprint = null;
+        AnalysisCheckpoint checkpoint = null;
+        if (checkpointFile != null && calcIsNeeded) {
+            checkpointFingerprint = AnalysisCheckpoint.fingerprint(req, calcStartDateIncl);
+            checkpoint = AnalysisCheckpoint.read(checkpointFile);
+            if (checkpoint != null) {
+                LocalDate checkpointDateIncl = checkpoint.checkpointDateIncl();
+                boolean valid = checkpoint.fingerprint().equals(checkpointFingerprint)
+                        && !checkpointDateIncl.isBefore(calcStartDateIncl)
+                        && checkpointDateIncl.isBefore(calcEndDateIncl)
+                        && checkpoint.inputDigest() == AnalysisCheckpoint.digest(
+                        frequency, calcStartDateIncl, checkpointDateIncl, reqAssetValues, flows, digestIncomes, digestMonthEndValues);
+                if (!valid) {
+                    checkpoint = null;
+                }
+            }
+        }
+
+        if (checkpoint == null) {
+            resultChain.addPreCalcResults(resultStartDateIncl, calcIsNeeded ? reqAssetValues : null);
+            for (PeriodResultChain coarserResultChain : coarserResultChains) {
+                coarserResultChain.addPreCalcResults(resultStartDateIncl, calcIsNeeded ? reqAssetValues : null);
+            }
+        }
+        if (calcIsNeeded) {
+            SortedMap<LocalDate, BigDecimal> iterativeForwardFlows = flows;
+            SortedMap<LocalDate, BigDecimal> iterativeForwardIncomes = incomes;
+            LocalDate periodStartDateIncl = calcStartDateIncl;
+
+            startValueExcl = reqAssetValues.apply(calcStartDateExcl);
+            if (startValueExcl == null) {
+                throw new IllegalStateException("startValueExcl must not be null, missing assetValue for calcStartDateExcl=%s"
+                        .formatted(calcStartDateExcl));
+            }
+            //Modified Dietz is evaluated from running flow sums instead of re-walking all the flows in each period,
+            //XIRR from the flow arrays, warm-started from the root of the previous period
+            mwrAccumulator = calculateMwr
+                    ? MwrAccumulator.of(PerformanceCalculator.mwrCalculator(req.mwrCalculatorType()), mwrFlowTiming, calcScale, roundingMode, numericMode)
+                    : null;
+            long inputDigest = checkpoint == null ? AnalysisCheckpoint.digest(startValueExcl) : checkpoint.inputDigest();
+            if (checkpoint == null) {
+                resultChain.startCalculation(startValueExcl);
+                for (PeriodResultChain coarserResultChain : coarserResultChains) {
+                    coarserResultChain.startCalculation(startValueExcl);
+                }
+            } else {
+                LocalDate checkpointDateExcl = checkpoint.checkpointDateIncl().plusDays(1);
+                if (mwrAccumulator != null) {
+                    mwrAccumulator.restore(checkpoint.mwrState());
+                }
+                resultChain.restoreClosedState(checkpoint.closedState());
+                resumedDateIncl = checkpointDateExcl;
+                periodStartDateIncl = checkpointDateExcl;
+                iterativeForwardFlows = rangeSafeTailMap(flows, checkpointDateExcl);
+                iterativeForwardIncomes = rangeSafeTailMap(incomes, checkpointDateExcl);
+            }
+
+            LocalDate newCheckpointDateIncl = null;
+            PeriodResultChain.ClosedState newCheckpointState = null;
+            MwrAccumulator.State newCheckpointMwrState = null;
+            long newCheckpointDigest = 0;
+            while (!periodStartDateIncl.isAfter(calcEndDateIncl)) {
+                LocalDate periodNaturalEndDateIncl = frequency.adjustToEndDateIncl(periodStartDateIncl);
+                LocalDate periodEndDateIncl = minDate(periodNaturalEndDateIncl, calcEndDateIncl);
+                LocalDate periodEndDateExcl = periodEndDateIncl.plusDays(1);
+                boolean periodClosed = periodEndDateIncl.isEqual(periodNaturalEndDateIncl);
+
+                SortedMap<LocalDate, BigDecimal> periodFlows = rangeSafeHeadMap(iterativeForwardFlows, periodEndDateExcl);
+                SortedMap<LocalDate, BigDecimal> periodIncomes = calculateIncome
+                        ? rangeSafeHeadMap(iterativeForwardIncomes, periodEndDateExcl)
+                        : null;
+                if (mwrAccumulator != null) {
+                    for (Entry<LocalDate, BigDecimal> periodFlow : periodFlows.entrySet()) {
+                        mwrAccumulator.addFlow(periodFlow.getKey(), periodFlow.getValue());
+                    }
+                }
+
+                analyzePeriod(periodStartDateIncl, periodEndDateIncl, periodFlows, periodIncomes,
+                        periodClosed, periodEndDateIncl.isEqual(calcEndDateIncl));
+                //The state is taken after the last closed period, before the open period, if any, enters the trailing windows
+                if (checkpointFile != null && periodClosed) {
+                    inputDigest = AnalysisCheckpoint.digestPeriod(inputDigest, periodStartDateIncl, periodEndDateIncl,
+                            reqAssetValues, periodFlows, periodIncomes, digestMonthEndValues);
+                    if (frequency.adjustToEndDateIncl(periodEndDateExcl).isAfter(calcEndDateIncl)) {
+                        newCheckpointDateIncl = periodEndDateIncl;
+                        newCheckpointState = resultChain.closedState();
+                        newCheckpointMwrState = mwrAccumulator == null ? null : mwrAccumulator.state();
+                        newCheckpointDigest = inputDigest;
+                    }
+                }
+                if (!periodClosed) {
+                    openPeriodStartDateIncl = periodStartDateIncl;
+                    openPeriodFlows = new TreeMap<>(periodFlows);
+                    openPeriodIncomes = periodIncomes == null ? null : new TreeMap<>(periodIncomes);
+                }
+
+                //For the next iteration
+                {
+                    periodStartDateIncl = periodEndDateExcl;
+                    iterativeForwardFlows = rangeSafeTailMap(iterativeForwardFlows, periodEndDateExcl);
+                    if (calculateIncome) {
+                        iterativeForwardIncomes = rangeSafeTailMap(iterativeForwardIncomes, periodEndDateExcl);
+                    }
+                }
+            }
+
+            if (newCheckpointDateIncl != null) {
+                new AnalysisCheckpoint(checkpointFingerprint, newCheckpointDateIncl, newCheckpointDigest, newCheckpointState, newCheckpointMwrState)
+                        .write(checkpointFile);
+            }
+        }
+        resultChain.addPostCalcResults(calcEndDateExcl, resultEndDateIncl);
+        for (PeriodResultChain coarserResultChain : coarserResultChains) {
+            coarserResultChain.addPostCalcResults(calcEndDateExcl, resultEndDateIncl);
+        }
+        return resumedDateIncl;
+    }
+
+    @Override
+    public SequencedCollection<PerfAnalysis> results() {
+        return resultChain.results();
+    }
+
+    private SequencedMap<Frequency, SequencedCollection<PerfAnalysis>> resultsByFrequency() {
+        SequencedMap<Frequency, SequencedCollection<PerfAnalysis>> resultsByFrequency = new LinkedHashMap<>();
+        resultsByFrequency.put(frequency, resultChain.results());
+        for (PeriodResultChain coarserResultChain : coarserResultChains) {
+            resultsByFrequency.put(coarserResultChain.frequency(), coarserResultChain.results());
+        }
+        return resultsByFrequency;
+    }
+
+    @Override
+    public PerfAnalysis append(LocalDate date, BigDecimal assetValue, BigDecimal flow, BigDecimal income) {
+        if (!appendable) {
+            throw new IllegalStateException(
+                    "append is supported only if the performance is measured up to resultEndDateIncl=%s".formatted(resultEndDateIncl));
+        }
+        LocalDate nextDate = resultEndDateIncl.plusDays(1);
+        if (date == null || !date.isEqual(nextDate)) {
+            throw new IllegalArgumentException("date must be the day after the last analyzed day, given: %s, %s"
+                    .formatted(date, nextDate));
+        }
+        if (assetValue == null) {
+            throw new IllegalArgumentException("assetValue must not be null, given: %s".formatted(date));
+        }
+        if (openPeriodStartDateIncl == null) {
+            openPeriodStartDateIncl = date;
+            openPeriodFlows = new TreeMap<>();
+            openPeriodIncomes = calculateIncome ? new TreeMap<>() : null;
+            //Only the asset values needed by the open period are kept
+            appendedAssetValues.headMap(date.minusDays(1)).clear();
+        }
+        if (assetValues == reqAssetValues) {
+            assetValues = assetValueDate -> {
+                BigDecimal appendedAssetValue = appendedAssetValues.get(assetValueDate);
+                return appendedAssetValue == null ? reqAssetValues.apply(assetValueDate) : appendedAssetValue;
+            };
+        }
+        appendedAssetValues.put(date, assetValue);
+        if (flow != null) {
+            openPeriodFlows.put(date, flow);
+            if (firstFlowDate == null) {
+                firstFlowDate = date;
+            }
+            if (mwrAccumulator != null) {
+                mwrAccumulator.addFlow(date, flow);
+            }
+        }
+        if (income != null && openPeriodIncomes != null) {
+            openPeriodIncomes.put(date, income);
+        }
+        resultEndDateIncl = date;
+
+        boolean periodClosed = date.isEqual(frequency.adjustToEndDateIncl(openPeriodStartDateIncl));
+        PerfAnalysis result = analyzePeriod(openPeriodStartDateIncl, date, openPeriodFlows, openPeriodIncomes, periodClosed, true);
+        if (periodClosed) {
+            openPeriodStartDateIncl = null;
+            openPeriodFlows = null;
+            openPeriodIncomes = null;
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the period on top of the closed periods' state and commits it to the state if the period is closed.
+     * The period is also passed to the coarser result chains, which evaluate their period if it ends with this one
+     * or if {@code evaluateCoarser} is true.
+     */
+    private PerfAnalysis analyzePeriod(
+            LocalDate periodStartDateIncl,
+            LocalDate periodEndDateIncl,
+            SortedMap<LocalDate, BigDecimal> periodFlows,
+            SortedMap<LocalDate, BigDecimal> periodIncomes,
+            boolean periodClosed,
+            boolean evaluateCoarser
+    ) {
+        LocalDate periodStartDateExcl = periodStartDateIncl.minusDays(1);
+        BigDecimal periodStartValueExcl = periodStartDateIncl.isEqual(calcStartDateIncl) ? startValueExcl : assetValue(assetValues, periodStartDateExcl);
+        requireNonNull(periodStartValueExcl, () -> "periodStartValueExcl must not be null, missing assetValue for periodStartDateExcl=%s"
+                .formatted(periodStartDateExcl));
+        BigDecimal periodEndValueIncl = assetValue(assetValues, periodEndDateIncl);
+        requireNonNull(periodEndValueIncl, () -> "periodEndValueIncl must not be null, missing assetValue for periodEndDateIncl=%s"
+                .formatted(periodEndDateIncl));
+
+        BigDecimal periodTwr;
+        {
+            BigDecimal adjPeriodStartValueExcl = periodStartValueExcl;
+            SortedMap<LocalDate, BigDecimal> adjPeriodFlows = periodFlows;
+            if (!periodFlows.isEmpty()) {
+                if (twrFlowTiming == BEGINNING_OF_DAY) {
+                    Entry<LocalDate, BigDecimal> firstFlowEntry = periodFlows.firstEntry();
+                    LocalDate firstFlowDate = firstFlowEntry.getKey();
+                    if (firstFlowDate.isEqual(periodStartDateIncl)) {
+                        adjPeriodStartValueExcl = periodStartValueExcl.add(firstFlowEntry.getValue());
+                        adjPeriodFlows = rangeSafeTailMap(periodFlows, firstFlowDate.plusDays(1));
+                    }
+                }
+            }
+            if (adjPeriodStartValueExcl.compareTo(ZERO) == 0) {
+                if (adjPeriodFlows.isEmpty()) {
+                    if (periodEndValueIncl.compareTo(ZERO) == 0) {
+                        periodTwr = ZERO;
+                    } else {
+                        throw new IllegalArgumentException((
+                                "if periodStartValueExcl is zero and periodFlows is empty, then periodEndValueIncl must be zero; given: " +
+                                "periodEndValueIncl=%s, periodIncl=%s-%s, ")
+                                .formatted(periodEndValueIncl, periodStartDateIncl, periodEndDateIncl));
+                    }
+                } else {
+                    LocalDate adjPeriodStartDateIncl;
+                    adjPeriodStartDateIncl = switch (twrFlowTiming) {
+                        case BEGINNING_OF_DAY -> adjPeriodFlows.firstKey();
+                        case END_OF_DAY -> adjPeriodFlows.firstKey().plusDays(1);
+                    };
+                    periodTwr = twrCalculator.calculateCumulReturn(
+                            adjPeriodStartDateIncl,
+                            periodEndDateIncl,
+                            periodStartValueExcl,
+                            periodEndValueIncl,
+                            adjPeriodFlows,
+                            assetValues,
+                            twrFlowTiming,
+                            largeFlowLevelInPercent,
+                            calcScale,
+                            roundingMode,
+                            numericMode);
+                }
+            } else {
+                periodTwr = twrCalculator.calculateCumulReturn(
+                        periodStartDateIncl,
+                        periodEndDateIncl,
+                        periodStartValueExcl,
+                        periodEndValueIncl,
+                        periodFlows,
+                        assetValues,
+                        twrFlowTiming,
+                        largeFlowLevelInPercent,
+                        calcScale,
+                        roundingMode,
+                        numericMode);
+            }
+        }
+
+        BigDecimal cumulMwr;
+        BigDecimal annMwr;
+        if (calculateMwr) {
+            LocalDate mwrStartDateIncl;
+            if (startValueExcl.compareTo(ZERO) == 0) {
+                mwrStartDateIncl = firstFlowDate == null || firstFlowDate.isAfter(periodEndDateIncl) ? null : firstFlowDate;
+            } else {
+                mwrStartDateIncl = calcStartDateIncl;
+            }
+            if (mwrStartDateIncl == null) {
+                cumulMwr = ZERO;
+            } else {
+                cumulMwr = mwrAccumulator.calculateCumulReturn(mwrStartDateIncl, periodEndDateIncl, startValueExcl, periodEndValueIncl);
+            }
+            annMwr = mwrAnnualizer.annualizeReturn(ANNUALIZE_IF_OVER_ONE_YEAR, cumulMwr, periodEndDateIncl);
+        } else {
+            cumulMwr = null;
+            annMwr = null;
+        }
+
+        BigDecimal periodFlowSum = FlowIndex.sum(periodFlows);
+        BigDecimal periodIncomeSum = periodIncomes == null ? null : FlowIndex.sum(periodIncomes);
+
+        PeriodAnalysis periodAnalysis = resultChain.analyzePeriod(
+                periodStartDateIncl, periodEndDateIncl, periodStartValueExcl, periodEndValueIncl,
+                periodTwr, periodFlowSum, periodIncomeSum, cumulMwr, annMwr);
+        if (periodClosed) {
+            resultChain.closePeriod(periodAnalysis);
+        }
+        for (PeriodResultChain coarserResultChain : coarserResultChains) {
+            coarserResultChain.aggregate(
+                    periodStartDateIncl, periodEndDateIncl, periodStartValueExcl, periodEndValueIncl,
+                    periodAnalysis.periodTwrFactor(), periodFlowSum, periodIncomeSum, cumulMwr, annMwr,
+                    periodClosed, evaluateCoarser);
+        }
+        return periodAnalysis.result();
+    }
+
+    static BigDecimal toPctAndScale(BigDecimal input, boolean toPercent, int scale, RoundingMode roundingMode) {
+        if (input == null) {
+            return null;
+        }
+        if (toPercent) {
+            input = input.multiply(Num._100);
+        }
+        return input.setScale(scale, roundingMode);
+    }
+}
@@ -0,0 +1,536 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.fintypes.enu.Frequency;
+import com.brinvex.investperf.api.Annualizer;
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.java.LimitedLinkedMap;
+import com.brinvex.java.Num;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SequencedCollection;
+import java.util.SequencedMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR;
+import static com.brinvex.investperf.internal.PerfAnalysisSessionImpl.toPctAndScale;
+import static com.brinvex.java.DateUtil.maxDate;
+import static com.brinvex.java.DateUtil.minDate;
+import static java.lang.Math.toIntExact;
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * The result table of one frequency: chains the period returns into the cumulative ones,
+ * keeps the trailing windows and collects or streams the result rows.
+ * <p>
+ * The periods are either evaluated directly, from the period's own return,
+ * or {@link #aggregate aggregated} from the periods of a finer frequency,
+ * by chaining their growth factors and summing their flows and incomes.
+ */
+@SuppressWarnings("DuplicatedCode")
+final class PeriodResultChain {
+
+    private final Frequency frequency;
+    private final boolean resultRatesInPct;
+    private final int calcScale;
+    private final int resultRateScale;
+    private final int resultAmountScale;
+    private final RoundingMode roundingMode;
+    private final boolean fixedPointAmounts;
+    private final boolean calculateTrailingAvgProfit1Y;
+    private final boolean calculateTrailingAvgFlow1Y;
+    private final boolean calculateTrailingAvgIncome1Y;
+    private final List<Period> trailingTwrPeriods;
+    private final Annualizer annualizer = Annualizer.INSTANCE;
+    private final FixedStartAnnualizer cumulAnnualizer;
+
+    private final LocalDate calcStartDateIncl;
+    private final SequencedMap<String, PerfAnalysis> results;
+    private final Consumer<PerfAnalysis> resultConsumer;
+    private PerfAnalysis pendingResult;
+
+    private final int periodFrequencyPerYear;
+    private final LimitedLinkedMap<LocalDate, BigDecimal> trailingProfits1Y;
+    private final LimitedLinkedMap<LocalDate, BigDecimal> trailingFlows1Y;
+    private final LimitedLinkedMap<LocalDate, BigDecimal> trailingIncomes1Y;
+    private final int fixedTrailingTwrYears;
+    private final RollingWindowProduct fixedTrailingTwrProduct;
+    private final RollingWindowProduct[] trailingTwrPeriodProducts;
+    private final List<RollingWindowProduct> trailingTwrProducts;
+
+    /*
+    The state of the closed periods
+     */
+    private BigDecimal cumulTwrFactor = ONE;
+    private BigDecimal totalContribution;
+    private BigDecimal totalProfit = ZERO;
+    /*
+    The same totals as unscaled longs of the resultAmountScale if fixedPointAmounts, otherwise or if not representable FixedPoint.NONE
+     */
+    private long unscaledTotalContribution = FixedPoint.NONE;
+    private long unscaledTotalProfit = FixedPoint.NONE;
+
+    /*
+    The period being aggregated from the finer periods, if any
+     */
+    private LocalDate aggPeriodStartDateIncl;
+    private BigDecimal aggPeriodStartValueExcl;
+    private BigDecimal aggClosedTwrFactor = ONE;
+    private BigDecimal aggClosedFlowSum = ZERO;
+    private BigDecimal aggClosedIncomeSum = ZERO;
+
+    /**
+     * @param resultConsumer if not null, the results are not collected,
+     *                       but passed to the consumer one by one as soon as they are final
+     */
+    PeriodResultChain(
+            Frequency frequency,
+            PerfAnalysisRequest req,
+            LocalDate calcStartDateIncl,
+            Consumer<PerfAnalysis> resultConsumer
+    ) {
+        this.frequency = frequency;
+        this.calcStartDateIncl = calcStartDateIncl;
+        this.cumulAnnualizer = new FixedStartAnnualizer(calcStartDateIncl, null);
+        this.resultConsumer = resultConsumer;
+        results = resultConsumer == null ? new LinkedHashMap<>() : null;
+        resultRatesInPct = req.resultRatesInPercent();
+        calcScale = req.calcScale();
+        resultRateScale = req.resultRateScale();
+        resultAmountScale = req.resultAmountScale();
+        roundingMode = req.roundingMode();
+        fixedPointAmounts = req.fixedPointAmounts();
+        calculateTrailingAvgProfit1Y = req.calculateTrailingAvgProfit1Y();
+        calculateTrailingAvgFlow1Y = req.calculateTrailingAvgFlow1Y();
+        calculateTrailingAvgIncome1Y = req.calculateTrailingAvgIncome1Y();
+        trailingTwrPeriods = req.trailingTwrPeriods();
+
+        periodFrequencyPerYear = frequency.countPerYear();
+        trailingProfits1Y = calculateTrailingAvgProfit1Y ? new LimitedLinkedMap<>(periodFrequencyPerYear) : null;
+        trailingFlows1Y = calculateTrailingAvgFlow1Y ? new LimitedLinkedMap<>(periodFrequencyPerYear) : null;
+        trailingIncomes1Y = calculateTrailingAvgIncome1Y ? new LimitedLinkedMap<>(periodFrequencyPerYear) : null;
+        /*
+        The fixed 1Y, 2Y, 3Y, 5Y and 10Y trailing TWRs are chained, each one being based on the scaled product of the shorter ones,
+        so all the shorter windows are included even if not requested.
+        The other trailing periods are computed from the period factors each on its own, so they do not change the fixed ones.
+         */
+        fixedTrailingTwrYears = req.calculateTrailingTwr10Y() ? 10 : req.calculateTrailingTwr5Y() ? 5 : req.calculateTrailingTwr3Y() ? 3
+                : req.calculateTrailingTwr2Y() ? 2 : req.calculateTrailingTwr1Y() ? 1 : 0;
+        int[] fixedTrailingTwrWindowLengths = IntStream.of(1, 2, 3, 5, 10)
+                .filter(years -> years <= fixedTrailingTwrYears)
+                .map(years -> years * periodFrequencyPerYear)
+                .toArray();
+        fixedTrailingTwrProduct = fixedTrailingTwrWindowLengths.length == 0
+                ? null
+                : new RollingWindowProduct(fixedTrailingTwrWindowLengths, calcScale, roundingMode);
+        trailingTwrPeriodProducts = trailingTwrPeriods.stream()
+                .map(trailingTwrPeriod -> new RollingWindowProduct(
+                        new int[]{toIntExact(trailingTwrPeriod.toTotalMonths() * periodFrequencyPerYear / 12)}, calcScale, roundingMode))
+                .toArray(RollingWindowProduct[]::new);
+        trailingTwrProducts = Stream.concat(Stream.ofNullable(fixedTrailingTwrProduct), Stream.of(trailingTwrPeriodProducts)).toList();
+    }
+
+    Frequency frequency() {
+        return frequency;
+    }
+
+    @SuppressWarnings("unchecked")
+    SequencedCollection<PerfAnalysis> results() {
+        return (SequencedCollection<PerfAnalysis>) results.values();
+    }
+
+    /**
+     * Adds the empty results of the periods before the calculation start.
+     *
+     * @param assetValues if not null, the asset value at the end of the last period is included
+     */
+    void addPreCalcResults(LocalDate resultStartDateIncl, Function<LocalDate, BigDecimal> assetValues) {
+        LocalDate periodStartDateIncl = resultStartDateIncl;
+        while (periodStartDateIncl.isBefore(calcStartDateIncl)) {
+            LocalDate periodEndDateIncl = minDate(frequency.adjustToEndDateIncl(periodStartDateIncl), calcStartDateIncl.minusDays(1));
+            LocalDate periodEndDateExcl = periodEndDateIncl.plusDays(1);
+            String periodCaption = frequency.caption(periodStartDateIncl);
+            BigDecimal periodEndValueIncl;
+            if (assetValues == null || periodEndDateExcl.isBefore(calcStartDateIncl)) {
+                periodEndValueIncl = null;
+            } else {
+                periodEndValueIncl = assetValues.apply(periodEndDateIncl);
+            }
+            putResult(PerfAnalysis.builder()
+                    .periodCaption(periodCaption)
+                    .periodStartDateIncl(periodStartDateIncl)
+                    .periodEndDateIncl(periodEndDateIncl)
+                    .periodEndAssetValueIncl(periodEndValueIncl)
+                    .build(), true);
+            //For the next iteration
+            periodStartDateIncl = periodEndDateExcl;
+        }
+    }
+
+    /**
+     * Adds the empty results of the periods after the calculation end and flushes the streamed results.
+     */
+    void addPostCalcResults(LocalDate calcEndDateExcl, LocalDate resultEndDateIncl) {
+        //Without calculation, the pre-calculation results already cover everything up to calcStartDateIncl
+        LocalDate periodStartDateIncl = maxDate(calcEndDateExcl, calcStartDateIncl);
+        while (!periodStartDateIncl.isAfter(resultEndDateIncl)) {
+            LocalDate periodEndDateIncl = minDate(frequency.adjustToEndDateIncl(periodStartDateIncl), resultEndDateIncl);
+            String periodCaption = frequency.caption(periodStartDateIncl);
+            putResult(PerfAnalysis.builder()
+                    .periodStartDateIncl(periodStartDateIncl)
+                    .periodEndDateIncl(periodEndDateIncl)
+                    .periodCaption(periodCaption)
+                    .build(), false);
+            //For the next iteration
+            periodStartDateIncl = periodEndDateIncl.plusDays(1);
+        }
+        if (resultConsumer != null && pendingResult != null) {
+            resultConsumer.accept(pendingResult);
+            pendingResult = null;
+        }
+    }
+
+    void startCalculation(BigDecimal startValueExcl) {
+        totalContribution = startValueExcl;
+        if (fixedPointAmounts) {
+            unscaledTotalContribution = FixedPoint.unscaled(startValueExcl, resultAmountScale);
+            unscaledTotalProfit = 0;
+        }
+    }
+
+    /**
+     * Adds a period of a finer frequency whose periods nest in the periods of this chain.
+     * The aggregated period is evaluated only if requested or if it ends with the given finer period.
+     *
+     * @param finerPeriodTwrFactor the growth factor of the finer period
+     * @param finerPeriodIncomeSum null if the incomes are not calculated
+     * @param finerPeriodClosed    true if the finer period has reached its natural end
+     * @param evaluate             true if the aggregated period should be evaluated even if it does not end yet
+     * @return the result of the aggregated period or null if not evaluated
+     */
+    PerfAnalysis aggregate(
+            LocalDate finerPeriodStartDateIncl,
+            LocalDate finerPeriodEndDateIncl,
+            BigDecimal finerPeriodStartValueExcl,
+            BigDecimal finerPeriodEndValueIncl,
+            BigDecimal finerPeriodTwrFactor,
+            BigDecimal finerPeriodFlowSum,
+            BigDecimal finerPeriodIncomeSum,
+            BigDecimal cumulMwr,
+            BigDecimal annMwr,
+            boolean finerPeriodClosed,
+            boolean evaluate
+    ) {
+        if (aggPeriodStartDateIncl == null) {
+            aggPeriodStartDateIncl = finerPeriodStartDateIncl;
+            aggPeriodStartValueExcl = finerPeriodStartValueExcl;
+        }
+        boolean aggPeriodClosed = finerPeriodClosed && finerPeriodEndDateIncl.isEqual(frequency.adjustToEndDateIncl(aggPeriodStartDateIncl));
+        BigDecimal periodTwrFactor = aggClosedTwrFactor.multiply(finerPeriodTwrFactor).setScale(calcScale, roundingMode);
+        BigDecimal periodFlowSum = aggClosedFlowSum.add(finerPeriodFlowSum);
+        BigDecimal periodIncomeSum = finerPeriodIncomeSum == null ? null : aggClosedIncomeSum.add(finerPeriodIncomeSum);
+
+        PerfAnalysis result;
+        if (evaluate || aggPeriodClosed) {
+            PeriodAnalysis periodAnalysis = analyzePeriod(
+                    aggPeriodStartDateIncl,
+                    finerPeriodEndDateIncl,
+                    aggPeriodStartValueExcl,
+                    finerPeriodEndValueIncl,
+                    periodTwrFactor.subtract(ONE),
+                    periodFlowSum,
+                    periodIncomeSum,
+                    cumulMwr,
+                    annMwr);
+            if (aggPeriodClosed) {
+                closePeriod(periodAnalysis);
+            }
+            result = periodAnalysis.result();
+        } else {
+            result = null;
+        }
+
+        if (aggPeriodClosed) {
+            aggPeriodStartDateIncl = null;
+            aggPeriodStartValueExcl = null;
+            aggClosedTwrFactor = ONE;
+            aggClosedFlowSum = ZERO;
+            aggClosedIncomeSum = ZERO;
+        } else if (finerPeriodClosed) {
+            aggClosedTwrFactor = periodTwrFactor;
+            aggClosedFlowSum = periodFlowSum;
+            aggClosedIncomeSum = periodIncomeSum;
+        }
+        return result;
+    }
+
+    /**
+     * Results with the same caption, e.g. the pre-calculation and the calculation part of the same period,
+     * are merged the same way as in a map keyed by the caption.
+     * A streamed result is held back until a result with a different caption arrives.
+     */
+    private void putResult(PerfAnalysis result, boolean replace) {
+        String periodCaption = result.periodCaption();
+        if (resultConsumer == null) {
+            if (replace) {
+                results.put(periodCaption, result);
+            } else {
+                results.putIfAbsent(periodCaption, result);
+            }
+        } else if (pendingResult != null && pendingResult.periodCaption().equals(periodCaption)) {
+            if (replace) {
+                pendingResult = result;
+            }
+        } else {
+            if (pendingResult != null) {
+                resultConsumer.accept(pendingResult);
+            }
+            pendingResult = result;
+        }
+    }
+
+    void closePeriod(PeriodAnalysis periodAnalysis) {
+        cumulTwrFactor = periodAnalysis.cumulTwrFactor();
+        totalContribution = periodAnalysis.totalContribution();
+        totalProfit = periodAnalysis.totalProfit();
+        unscaledTotalContribution = periodAnalysis.unscaledTotalContribution();
+        unscaledTotalProfit = periodAnalysis.unscaledTotalProfit();
+        for (RollingWindowProduct trailingTwrProduct : trailingTwrProducts) {
+            trailingTwrProduct.add(periodAnalysis.periodTwrFactor());
+        }
+    }
+
+    /**
+     * @return a copy of the state of the closed periods, valid only between the periods, see {@link AnalysisCheckpoint}
+     */
+    ClosedState closedState() {
+        RollingWindowProduct longestTrailingTwrProduct = trailingTwrProducts.stream()
+                .max(Comparator.comparingInt(trailingTwrProduct -> trailingTwrProduct.windowLength(trailingTwrProduct.windowCount() - 1)))
+                .orElse(null);
+        return new ClosedState(
+                cumulTwrFactor,
+                totalContribution,
+                totalProfit,
+                trailingProfits1Y == null ? null : new LinkedHashMap<>(trailingProfits1Y),
+                trailingFlows1Y == null ? null : new LinkedHashMap<>(trailingFlows1Y),
+                trailingIncomes1Y == null ? null : new LinkedHashMap<>(trailingIncomes1Y),
+                longestTrailingTwrProduct == null ? null : longestTrailingTwrProduct.closedFactors(),
+                longestTrailingTwrProduct == null ? 0 : longestTrailingTwrProduct.closedFactorCount());
+    }
+
+    /**
+     * Continues from the state of the closed periods of a chain of the same request instead of {@link #startCalculation}.
+     */
+    void restoreClosedState(ClosedState closedState) {
+        cumulTwrFactor = closedState.cumulTwrFactor();
+        totalContribution = closedState.totalContribution();
+        totalProfit = closedState.totalProfit();
+        if (fixedPointAmounts) {
+            unscaledTotalContribution = FixedPoint.unscaled(totalContribution, resultAmountScale);
+            unscaledTotalProfit = FixedPoint.unscaled(totalProfit, resultAmountScale);
+        }
+        if (trailingProfits1Y != null) {
+            trailingProfits1Y.putAll(closedState.trailingProfits1Y());
+        }
+        if (trailingFlows1Y != null) {
+            trailingFlows1Y.putAll(closedState.trailingFlows1Y());
+        }
+        if (trailingIncomes1Y != null) {
+            trailingIncomes1Y.putAll(closedState.trailingIncomes1Y());
+        }
+        for (RollingWindowProduct trailingTwrProduct : trailingTwrProducts) {
+            trailingTwrProduct.restore(closedState.trailingTwrFactors(), closedState.trailingTwrFactorCount());
+        }
+    }
+
+    /**
+     * @param trailingProfits1Y       null if not calculated
+     * @param trailingFlows1Y         null if not calculated
+     * @param trailingIncomes1Y       null if not calculated
+     * @param trailingTwrFactors      the period growth factors within the longest trailing window, from the oldest one,
+     *                                null if no trailing TWR is calculated
+     * @param trailingTwrFactorCount  the count of all the closed periods' growth factors
+     */
+    record ClosedState(
+            BigDecimal cumulTwrFactor,
+            BigDecimal totalContribution,
+            BigDecimal totalProfit,
+            SequencedMap<LocalDate, BigDecimal> trailingProfits1Y,
+            SequencedMap<LocalDate, BigDecimal> trailingFlows1Y,
+            SequencedMap<LocalDate, BigDecimal> trailingIncomes1Y,
+            List<BigDecimal> trailingTwrFactors,
+            long trailingTwrFactorCount
+    ) {
+    }
+
+    /**
+     * @param unscaledTotalContribution the totalContribution as an unscaled long of the resultAmountScale, or {@link FixedPoint#NONE}
+     * @param unscaledTotalProfit       the totalProfit as an unscaled long of the resultAmountScale, or {@link FixedPoint#NONE}
+     */
+    record PeriodAnalysis(
+            PerfAnalysis result,
+            BigDecimal periodTwrFactor,
+            BigDecimal cumulTwrFactor,
+            BigDecimal totalContribution,
+            BigDecimal totalProfit,
+            long unscaledTotalContribution,
+            long unscaledTotalProfit
+    ) {
+    }
+
+    /**
+     * Evaluates the period on top of the closed periods' state, without changing it,
+     * except for the trailing averages keyed by the period start date.
+     *
+     * @param periodIncomeSum null if the incomes are not calculated
+     * @param cumulMwr        null if the MWR is not calculated
+     * @param annMwr          null if the MWR is not calculated
+     */
+    PeriodAnalysis analyzePeriod(
+            LocalDate periodStartDateIncl,
+            LocalDate periodEndDateIncl,
+            BigDecimal periodStartValueExcl,
+            BigDecimal periodEndValueIncl,
+            BigDecimal periodTwr,
+            BigDecimal periodFlowSum,
+            BigDecimal periodIncomeSum,
+            BigDecimal cumulMwr,
+            BigDecimal annMwr
+    ) {
+        BigDecimal periodTwrFactor = periodTwr.add(ONE);
+        BigDecimal cumulTwrFactor = this.cumulTwrFactor.multiply(periodTwrFactor).setScale(calcScale, roundingMode);
+        BigDecimal annTwrFactor = cumulAnnualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, cumulTwrFactor, periodEndDateIncl);
+
+        long unscaledTotalContribution = FixedPoint.NONE;
+        long unscaledPeriodProfit = FixedPoint.NONE;
+        long unscaledTotalProfit = FixedPoint.NONE;
+        if (fixedPointAmounts) {
+            long unscaledPeriodFlowSum = FixedPoint.unscaled(periodFlowSum, resultAmountScale);
+            unscaledTotalContribution = FixedPoint.add(this.unscaledTotalContribution, unscaledPeriodFlowSum);
+            unscaledPeriodProfit = FixedPoint.subtract(FixedPoint.subtract(
+                    FixedPoint.unscaled(periodEndValueIncl, resultAmountScale),
+                    FixedPoint.unscaled(periodStartValueExcl, resultAmountScale)), unscaledPeriodFlowSum);
+            unscaledTotalProfit = FixedPoint.add(this.unscaledTotalProfit, unscaledPeriodProfit);
+        }
+        BigDecimal totalContribution = unscaledTotalContribution == FixedPoint.NONE
+                ? this.totalContribution.add(periodFlowSum)
+                : BigDecimal.valueOf(unscaledTotalContribution, resultAmountScale);
+        BigDecimal periodProfit = unscaledPeriodProfit == FixedPoint.NONE
+                ? periodEndValueIncl.subtract(periodStartValueExcl).subtract(periodFlowSum)
+                : BigDecimal.valueOf(unscaledPeriodProfit, resultAmountScale);
+        BigDecimal totalProfit = unscaledTotalProfit == FixedPoint.NONE
+                ? this.totalProfit.add(periodProfit)
+                : BigDecimal.valueOf(unscaledTotalProfit, resultAmountScale);
+
+        BigDecimal trailingAvgProfit1Y;
+        if (calculateTrailingAvgProfit1Y) {
+            trailingProfits1Y.put(periodStartDateIncl, periodProfit);
+            trailingAvgProfit1Y = trailingProfits1Y.values()
+                    .stream()
+                    .reduce(ZERO, BigDecimal::add)
+                    .divide(BigDecimal.valueOf(periodFrequencyPerYear), resultAmountScale, roundingMode);
+        } else {
+            trailingAvgProfit1Y = null;
+        }
+
+        BigDecimal trailingAvgFlow1Y;
+        if (calculateTrailingAvgFlow1Y) {
+            trailingFlows1Y.put(periodStartDateIncl, periodFlowSum);
+            trailingAvgFlow1Y = trailingFlows1Y.values()
+                    .stream()
+                    .reduce(ZERO, BigDecimal::add)
+                    .divide(BigDecimal.valueOf(periodFrequencyPerYear), resultAmountScale, roundingMode);
+        } else {
+            trailingAvgFlow1Y = null;
+        }
+
+        BigDecimal trailingAvgIncome1Y;
+        if (calculateTrailingAvgIncome1Y) {
+            trailingIncomes1Y.put(periodStartDateIncl, periodIncomeSum);
+            trailingAvgIncome1Y = trailingIncomes1Y.values()
+                    .stream()
+                    .reduce(ZERO, BigDecimal::add)
+                    .divide(BigDecimal.valueOf(periodFrequencyPerYear), resultAmountScale, roundingMode);
+        } else {
+            trailingAvgIncome1Y = null;
+        }
+
+        BigDecimal trailTwrFactor1Y = null;
+        BigDecimal trailTwrFactor2Y = null;
+        BigDecimal trailTwrFactor3Y = null;
+        BigDecimal trailTwrFactor5Y = null;
+        BigDecimal trailTwrFactor10Y = null;
+        SequencedMap<Period, BigDecimal> trailingTwrs = null;
+        if (fixedTrailingTwrProduct != null) {
+            BigDecimal[] trailTwrFactors = fixedTrailingTwrProduct.trailingFactors(periodTwrFactor);
+            trailTwrFactor1Y = trailTwrFactors[0];
+            if (fixedTrailingTwrYears >= 2) {
+                trailTwrFactor2Y = annualizeTrailingFactor(annualizer, trailTwrFactors[1], 2);
+            }
+            if (fixedTrailingTwrYears >= 3) {
+                trailTwrFactor3Y = annualizeTrailingFactor(annualizer, trailTwrFactors[2], 3);
+            }
+            if (fixedTrailingTwrYears >= 5) {
+                trailTwrFactor5Y = annualizeTrailingFactor(annualizer, trailTwrFactors[3], 5);
+            }
+            if (fixedTrailingTwrYears >= 10) {
+                trailTwrFactor10Y = annualizeTrailingFactor(annualizer, trailTwrFactors[4], 10);
+            }
+        }
+        if (!trailingTwrPeriods.isEmpty()) {
+            trailingTwrs = new LinkedHashMap<>();
+            for (int i = 0; i < trailingTwrPeriodProducts.length; i++) {
+                Period trailingTwrPeriod = trailingTwrPeriods.get(i);
+                BigDecimal trailTwrFactor = trailingTwrPeriodProducts[i].trailingFactors(periodTwrFactor)[0];
+                trailingTwrs.put(trailingTwrPeriod, trailTwrFactor == null ? null : toPctAndScale(
+                        annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, trailTwrFactor, trailingTwrPeriod).subtract(ONE),
+                        resultRatesInPct, resultRateScale, roundingMode));
+            }
+        }
+
+        String periodCaption = frequency.caption(periodStartDateIncl);
+        PerfAnalysis result = PerfAnalysis.builder()
+                .periodStartDateIncl(periodStartDateIncl)
+                .periodEndDateIncl(periodEndDateIncl)
+                .periodCaption(periodCaption)
+                .periodStartAssetValueExcl(Num.setScale(periodStartValueExcl, resultAmountScale, roundingMode))
+                .periodEndAssetValueIncl(Num.setScale(periodEndValueIncl, resultAmountScale, roundingMode))
+                .periodFlow(Num.setScale(periodFlowSum, resultAmountScale, roundingMode))
+                .periodTwr(toPctAndScale(periodTwr, resultRatesInPct, resultRateScale, roundingMode))
+                .cumulativeTwr(toPctAndScale(cumulTwrFactor.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                .annualizedTwr(toPctAndScale(annTwrFactor.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                .cumulativeMwr(toPctAndScale(cumulMwr, resultRatesInPct, resultRateScale, roundingMode))
+                .annualizedMwr(toPctAndScale(annMwr, resultRatesInPct, resultRateScale, roundingMode))
+                .totalContribution(Num.setScale(totalContribution, resultAmountScale, roundingMode))
+                .periodProfit(Num.setScale(periodProfit, resultAmountScale, roundingMode))
+                .totalProfit(Num.setScale(totalProfit, resultAmountScale, roundingMode))
+                .trailingAvgProfit1Y(trailingAvgProfit1Y)
+                .trailingAvgFlow1Y(trailingAvgFlow1Y)
+                .periodIncome(Num.setScale(periodIncomeSum, resultAmountScale, roundingMode))
+                .trailingAvgIncome1Y(trailingAvgIncome1Y)
+                .trailingTwr1Y(toPctAndScale(trailTwrFactor1Y == null ? null : trailTwrFactor1Y.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                .trailingTwr2Y(toPctAndScale(trailTwrFactor2Y == null ? null : trailTwrFactor2Y.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                .trailingTwr3Y(toPctAndScale(trailTwrFactor3Y == null ? null : trailTwrFactor3Y.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                .trailingTwr5Y(toPctAndScale(trailTwrFactor5Y == null ? null : trailTwrFactor5Y.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                .trailingTwr10Y(toPctAndScale(trailTwrFactor10Y == null ? null : trailTwrFactor10Y.subtract(ONE), resultRatesInPct, resultRateScale, roundingMode))
+                .trailingTwrs(trailingTwrs)
+                .build();
+        putResult(result, true);
+        return new PeriodAnalysis(result, periodTwrFactor, cumulTwrFactor, totalContribution, totalProfit,
+                unscaledTotalContribution, unscaledTotalProfit);
+    }
+
+    private static BigDecimal annualizeTrailingFactor(Annualizer annualizer, BigDecimal trailingFactor, int years) {
+        return trailingFactor == null ? null : annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, trailingFactor, years);
+    }
+}
@@ -0,0 +1,277 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.PortfolioSeriesFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SequencedMap;
+import java.util.SequencedSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static java.lang.Math.toIntExact;
+
+public final class PortfolioSeriesFileImpl implements PortfolioSeriesFile {
+
+    static final int MAGIC = 0x46505842;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int SEGMENT_SIZE_LOG2 = 30;
+    /*
+    The header has to fit into the first segment
+     */
+    static final int MIN_SEGMENT_SIZE_LOG2 = 5;
+    static final byte LONG_ENCODING = 0;
+    static final byte BIG_INTEGER_ENCODING = 1;
+
+    private final Path file;
+    private final SequencedMap<String, MappedSeries[]> seriesByAccount;
+
+    private PortfolioSeriesFileImpl(Path file, SequencedMap<String, MappedSeries[]> seriesByAccount) {
+        this.file = file;
+        this.seriesByAccount = seriesByAccount;
+    }
+
+    public static void write(Path file, Collection<AccountSeries> accounts) {
+        write(file, accounts, SEGMENT_SIZE_LOG2);
+    }
+
+    /**
+     * Each column is written within a single segment, the next segment starts where a column does not fit into the current one.
+     */
+    public static void write(Path file, Collection<AccountSeries> accounts, int segmentSizeLog2) {
+        if (segmentSizeLog2 < MIN_SEGMENT_SIZE_LOG2 || segmentSizeLog2 > SEGMENT_SIZE_LOG2) {
+            throw new IllegalArgumentException("segmentSizeLog2 must be between %s and %s, given: %s"
+                    .formatted(MIN_SEGMENT_SIZE_LOG2, SEGMENT_SIZE_LOG2, segmentSizeLog2));
+        }
+        long segmentSize = 1L << segmentSizeLog2;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer index = newBuffer(64 * accounts.size() + 64);
+            Map<String, Boolean> writtenAccounts = new LinkedHashMap<>();
+            long position = HEADER_SIZE;
+            for (AccountSeries account : accounts) {
+                if (writtenAccounts.put(account.account(), Boolean.TRUE) != null) {
+                    throw new IllegalArgumentException("The accounts must be unique, given: %s".formatted(account.account()));
+                }
+                byte[] name = account.account().getBytes(StandardCharsets.UTF_8);
+                index = ensureRemaining(index, 4 + name.length + 3 * 17);
+                index.putInt(name.length).put(name);
+                for (Map<LocalDate, BigDecimal> series : List.of(account.assetValues(), account.flows(), account.incomes())) {
+                    ByteBuffer column = encode(account.account(), series, index);
+                    int columnSize = column.remaining();
+                    if (columnSize > segmentSize) {
+                        throw new IllegalArgumentException("The series must be shorter than %s bytes, given: %s, %s"
+                                .formatted(segmentSize, account.account(), columnSize));
+                    }
+                    if ((position & (segmentSize - 1)) + columnSize > segmentSize) {
+                        position = (position + segmentSize) & -segmentSize;
+                    }
+                    index.putLong(position);
+                    writeFully(channel, column, position);
+                    position = align8(position + columnSize);
+                }
+            }
+            index.flip();
+            writeFully(channel, index, position);
+
+            ByteBuffer header = newBuffer(HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(writtenAccounts.size())
+                    .putInt(segmentSizeLog2)
+                    .putLong(position)
+                    .flip();
+            writeFully(channel, header, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static PortfolioSeriesFile open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = newBuffer(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (fileSize < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IllegalArgumentException("The file must be a portfolio series file, given: %s".formatted(file));
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("The version of the file must be %s, given: %s, %s".formatted(VERSION, file, version));
+            }
+            int accountCount = header.getInt();
+            int segmentSizeLog2 = header.getInt();
+            long indexOffset = header.getLong();
+
+            //The columns are mapped segment by segment, the index is read at once
+            long segmentSize = 1L << segmentSizeLog2;
+            MemorySegment[] segments = new MemorySegment[toIntExact((indexOffset + segmentSize - 1) >>> segmentSizeLog2)];
+            for (int i = 0; i < segments.length; i++) {
+                long segmentStart = (long) i << segmentSizeLog2;
+                segments[i] = MemorySegment.ofBuffer(
+                        channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(segmentSize, indexOffset - segmentStart)));
+            }
+            ByteBuffer index = newBuffer(toIntExact(fileSize - indexOffset));
+            readFully(channel, index, indexOffset);
+            index.flip();
+
+            SequencedMap<String, MappedSeries[]> seriesByAccount = new LinkedHashMap<>();
+            for (int i = 0; i < accountCount; i++) {
+                byte[] name = new byte[index.getInt()];
+                index.get(name);
+                MappedSeries[] series = new MappedSeries[3];
+                for (int j = 0; j < series.length; j++) {
+                    int count = index.getInt();
+                    int scale = index.getInt();
+                    byte encoding = index.get();
+                    long offset = index.getLong();
+                    series[j] = count == 0
+                            ? new MappedSeries(MemorySegment.NULL, 0, 0, scale, false)
+                            : new MappedSeries(segments[toIntExact(offset >>> segmentSizeLog2)], offset & (segmentSize - 1), count, scale,
+                            encoding == BIG_INTEGER_ENCODING);
+                }
+                seriesByAccount.put(new String(name, StandardCharsets.UTF_8), series);
+            }
+            return new PortfolioSeriesFileImpl(file, seriesByAccount);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public SequencedSet<String> accounts() {
+        return Collections.unmodifiableSequencedSet(seriesByAccount.sequencedKeySet());
+    }
+
+    @Override
+    public Function<LocalDate, BigDecimal> assetValues(String account) {
+        MappedSeries assetValues = series(account)[0];
+        return date -> assetValues.get(date.toEpochDay());
+    }
+
+    @Override
+    public SortedMap<LocalDate, BigDecimal> flows(String account, LocalDate startDateIncl, LocalDate endDateIncl) {
+        return series(account)[1].toFlowIndex(startDateIncl, endDateIncl);
+    }
+
+    @Override
+    public SortedMap<LocalDate, BigDecimal> incomes(String account, LocalDate startDateIncl, LocalDate endDateIncl) {
+        return series(account)[2].toFlowIndex(startDateIncl, endDateIncl);
+    }
+
+    private MappedSeries[] series(String account) {
+        MappedSeries[] series = seriesByAccount.get(account);
+        if (series == null) {
+            throw new IllegalArgumentException("The account must be in the file, given: %s, %s".formatted(account, file));
+        }
+        return series;
+    }
+
+    /**
+     * Encodes the given series into a column and appends its count, scale and encoding to the given index.
+     */
+    private static ByteBuffer encode(String account, Map<LocalDate, BigDecimal> series, ByteBuffer index) {
+        SortedMap<LocalDate, BigDecimal> sortedSeries = series instanceof SortedMap<LocalDate, BigDecimal> sortedMap && sortedMap.comparator() == null
+                ? sortedMap : new TreeMap<>(series);
+        int count = sortedSeries.size();
+        int scale = Integer.MIN_VALUE;
+        for (Map.Entry<LocalDate, BigDecimal> e : sortedSeries.entrySet()) {
+            if (e.getValue() == null) {
+                throw new IllegalArgumentException("The amount must not be null, given: %s, %s".formatted(account, e.getKey()));
+            }
+            scale = Math.max(scale, e.getValue().scale());
+        }
+        scale = count == 0 ? 0 : scale;
+
+        BigInteger[] unscaledAmounts = new BigInteger[count];
+        boolean fitLong = true;
+        int bigIntegerBytes = 0;
+        int i = 0;
+        for (BigDecimal amount : sortedSeries.values()) {
+            BigInteger unscaledAmount = amount.setScale(scale).unscaledValue();
+            unscaledAmounts[i++] = unscaledAmount;
+            fitLong &= unscaledAmount.bitLength() < Long.SIZE;
+            bigIntegerBytes += unscaledAmount.bitLength() / 8 + 1;
+        }
+        int amountsOffset = toIntExact(align8(4L * count));
+        int columnSize = fitLong
+                ? toIntExact(amountsOffset + 8L * count)
+                : toIntExact(amountsOffset + 4L * (count + 1) + bigIntegerBytes);
+
+        ByteBuffer column = newBuffer(columnSize);
+        for (LocalDate date : sortedSeries.keySet()) {
+            column.putInt(toIntExact(date.toEpochDay()));
+        }
+        column.position(amountsOffset);
+        if (fitLong) {
+            for (BigInteger unscaledAmount : unscaledAmounts) {
+                column.putLong(unscaledAmount.longValue());
+            }
+        } else {
+            //The offsets of the two's-complement bytes of each amount relative to the end of the offsets, then the bytes
+            int bytesStart = amountsOffset + 4 * (count + 1);
+            int bytesOffset = 0;
+            for (BigInteger unscaledAmount : unscaledAmounts) {
+                column.putInt(bytesOffset);
+                byte[] bytes = unscaledAmount.toByteArray();
+                column.put(bytesStart + bytesOffset, bytes);
+                bytesOffset += bytes.length;
+            }
+            column.putInt(bytesOffset);
+        }
+        column.position(0);
+
+        index.putInt(count).putInt(scale).put(fitLong ? LONG_ENCODING : BIG_INTEGER_ENCODING);
+        return column;
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer ensureRemaining(ByteBuffer buffer, int remaining) {
+        if (buffer.remaining() >= remaining) {
+            return buffer;
+        }
+        ByteBuffer newBuffer = newBuffer(Math.max(buffer.capacity() * 2, buffer.position() + remaining));
+        return newBuffer.put(buffer.flip());
+    }
+
+    private static long align8(long position) {
+        return (position + 7) & -8L;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+    }
+}
@@ -1,18 +1,16 @@
 package com.brinvex.investperf.internal;
 
 import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.DailySeries;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedMap;
-import java.util.TreeMap;
 import java.util.function.Function;
 
 import static java.util.Collections.emptySortedMap;
-import static java.util.stream.Collectors.toMap;
 
 public class RequestSanitizer {
 
@@ -28,42 +26,32 @@ public class RequestSanitizer {
             sanitizedAssetValues = assetValuesProvider;
         } else if (assetValuesMap != null) {
             sanitizedAssetValues = assetValuesMap::get;
+        } else if (assetValuesCollection != null) {
+            sanitizedAssetValues = DailySeries.of(assetValuesCollection, startDateIncl.minusDays(1), endDateIncl);
         } else {
-            HashMap<LocalDate, BigDecimal> sanitizedAssetValuesMap = new HashMap<>();
-            if (assetValuesCollection != null) {
-                LocalDate startDateExcl = startDateIncl.minusDays(1);
-                for (DateAmount dateAssetValue : assetValuesCollection) {
-                    LocalDate date = dateAssetValue.date();
-                    BigDecimal assetValue = dateAssetValue.amount();
-                    if (!date.isBefore(startDateExcl) && !date.isAfter(endDateIncl)) {
-                        BigDecimal oldAssetValue = sanitizedAssetValuesMap.put(date, assetValue);
-                        if (oldAssetValue != null && oldAssetValue.compareTo(assetValue) != 0) {
-                            throw new IllegalArgumentException((
-                                    "The assetValues collection must not contain different entries for the same date; " +
-                                    "given: %s, %s, %s")
-                                    .formatted(date, oldAssetValue, assetValue));
-                        }
-                    }
-                }
-            }
-            sanitizedAssetValues = sanitizedAssetValuesMap::get;
+            sanitizedAssetValues = _ -> null;
         }
         return sanitizedAssetValues;
     }
 
+    /**
+     * @param fixedPointAmounts whether the flows are indexed with the fixed-point sums, see {@link FlowIndex#withFixedPointSums()},
+     *                          otherwise a sorted map is only narrowed to the date range
+     */
     public static SortedMap<LocalDate, BigDecimal> sanitizeFlows(
             Map<LocalDate, BigDecimal> flowsMap,
             Collection<DateAmount> flowsCollection,
             LocalDate startDateIncl,
-            LocalDate endDateIncl
+            LocalDate endDateIncl,
+            boolean fixedPointAmounts
     ) {
         SortedMap<LocalDate, BigDecimal> sanitizedFlows;
-        if (flowsMap != null) {
-            if (flowsMap instanceof SortedMap) {
-                sanitizedFlows = ((SortedMap<LocalDate, BigDecimal>) flowsMap);
-            } else {
-                sanitizedFlows = new TreeMap<>(flowsMap);
-            }
+        if (flowsMap instanceof FlowIndex flowIndex) {
+            sanitizedFlows = startDateIncl.isAfter(endDateIncl)
+                    ? emptySortedMap()
+                    : withFixedPointSums(flowIndex, fixedPointAmounts).subMap(startDateIncl, endDateIncl.plusDays(1));
+        } else if (flowsMap instanceof SortedMap) {
+            sanitizedFlows = ((SortedMap<LocalDate, BigDecimal>) flowsMap);
             if (!sanitizedFlows.isEmpty()) {
                 LocalDate firstKey = sanitizedFlows.firstKey();
                 LocalDate lastKey = sanitizedFlows.lastKey();
@@ -71,20 +59,26 @@ public class RequestSanitizer {
                 LocalDate subLastKey = endDateIncl.isAfter(lastKey) ? lastKey : endDateIncl;
                 if (subFirstKey.isAfter(subLastKey)) {
                     sanitizedFlows = emptySortedMap();
+                } else if (fixedPointAmounts) {
+                    //Only the flows within the range are indexed, the sorted input takes the linear path
+                    sanitizedFlows = FlowIndex.of(sanitizedFlows.subMap(subFirstKey, subLastKey.plusDays(1))).withFixedPointSums();
                 } else {
                     sanitizedFlows = sanitizedFlows.subMap(subFirstKey, subLastKey.plusDays(1));
                 }
             }
+        } else if (startDateIncl.isAfter(endDateIncl)) {
+            sanitizedFlows = emptySortedMap();
+        } else if (flowsMap != null) {
+            sanitizedFlows = withFixedPointSums(FlowIndex.of(flowsMap), fixedPointAmounts).subMap(startDateIncl, endDateIncl.plusDays(1));
+        } else if (flowsCollection != null) {
+            sanitizedFlows = withFixedPointSums(FlowIndex.of(flowsCollection), fixedPointAmounts).subMap(startDateIncl, endDateIncl.plusDays(1));
         } else {
-            if (flowsCollection != null) {
-                sanitizedFlows = flowsCollection
-                        .stream()
-                        .filter(dateAmount -> !dateAmount.isBefore(startDateIncl) && !dateAmount.isAfter(endDateIncl))
-                        .collect(toMap(DateAmount::date, DateAmount::amount, BigDecimal::add, TreeMap::new));
-            } else {
-                sanitizedFlows = emptySortedMap();
-            }
+            sanitizedFlows = emptySortedMap();
         }
         return sanitizedFlows;
     }
+
+    private static FlowIndex withFixedPointSums(FlowIndex flowIndex, boolean fixedPointAmounts) {
+        return fixedPointAmounts ? flowIndex.withFixedPointSums() : flowIndex;
+    }
 }
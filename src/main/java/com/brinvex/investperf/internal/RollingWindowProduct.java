@@ -0,0 +1,177 @@
+package com.brinvex.investperf.internal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.math.BigDecimal.ONE;
+
+/**
+ * Trailing products of growth factors over several window lengths at once.
+ * <p>
+ * The windows are chained: the product of a longer window is the scaled product of the next shorter window
+ * multiplied by the exact product of the factors the longer window adds on top of it.
+ * Each such window segment is a two-stack queue, and a factor dropping out of one segment enters the next one,
+ * so adding a factor costs amortized O(1) multiplications regardless of the window lengths.
+ * <p>
+ * The newest factor of each window is passed to {@link #trailingFactors(BigDecimal)} separately,
+ * so that a not yet closed period can be evaluated without changing the state.
+ */
+final class RollingWindowProduct {
+
+    private final int[] windowLengths;
+    private final Segment[] segments;
+    private final int calcScale;
+    private final RoundingMode roundingMode;
+    private long closedFactorCount;
+
+    /**
+     * @param windowLengths window lengths in number of factors, positive and strictly ascending
+     */
+    RollingWindowProduct(int[] windowLengths, int calcScale, RoundingMode roundingMode) {
+        int windowCount = windowLengths.length;
+        this.windowLengths = windowLengths.clone();
+        this.segments = new Segment[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            int prevWindowLength = i == 0 ? 1 : windowLengths[i - 1];
+            int windowLength = windowLengths[i];
+            if (windowLength < prevWindowLength || (i > 0 && windowLength == prevWindowLength)) {
+                throw new IllegalArgumentException("windowLengths must be positive and strictly ascending, given: %s"
+                        .formatted(Arrays.toString(windowLengths)));
+            }
+            segments[i] = new Segment(windowLength - prevWindowLength);
+        }
+        this.calcScale = calcScale;
+        this.roundingMode = roundingMode;
+    }
+
+    int windowCount() {
+        return windowLengths.length;
+    }
+
+    int windowLength(int windowIndex) {
+        return windowLengths[windowIndex];
+    }
+
+    void add(BigDecimal closedFactor) {
+        closedFactorCount++;
+        BigDecimal droppedFactor = closedFactor;
+        for (Segment segment : segments) {
+            droppedFactor = segment.push(droppedFactor);
+            if (droppedFactor == null) {
+                break;
+            }
+        }
+    }
+
+    long closedFactorCount() {
+        return closedFactorCount;
+    }
+
+    /**
+     * @return the added factors still within the longest window, from the oldest one
+     */
+    List<BigDecimal> closedFactors() {
+        List<BigDecimal> closedFactors = new ArrayList<>();
+        for (int i = segments.length - 1; i >= 0; i--) {
+            segments[i].collectFactors(closedFactors);
+        }
+        return closedFactors;
+    }
+
+    /**
+     * Restores the state of a product with the given factors {@link #closedFactors()} and count,
+     * the products of the windows being exact, they come out the same as when the factors were added one by one.
+     */
+    void restore(List<BigDecimal> closedFactors, long closedFactorCount) {
+        for (BigDecimal closedFactor : closedFactors) {
+            add(closedFactor);
+        }
+        this.closedFactorCount = closedFactorCount;
+    }
+
+    /**
+     * @param currentFactor the newest factor, not yet {@link #add(BigDecimal) added}
+     * @return the scaled trailing product for each window,
+     * or null elements for the windows not yet covered by the added factors and the current one
+     */
+    BigDecimal[] trailingFactors(BigDecimal currentFactor) {
+        int windowCount = windowLengths.length;
+        BigDecimal[] trailingFactors = new BigDecimal[windowCount];
+        BigDecimal chainedFactor = currentFactor;
+        for (int i = 0; i < windowCount; i++) {
+            if (closedFactorCount + 1 < windowLengths[i]) {
+                break;
+            }
+            chainedFactor = chainedFactor.multiply(segments[i].product()).setScale(calcScale, roundingMode);
+            trailingFactors[i] = chainedFactor;
+        }
+        return trailingFactors;
+    }
+
+    /**
+     * Sliding exact product of the last {@code capacity} pushed factors.
+     */
+    private static final class Segment {
+        private final int capacity;
+        private final ArrayDeque<BigDecimal> backFactors = new ArrayDeque<>();
+        private final ArrayDeque<BigDecimal> frontFactors = new ArrayDeque<>();
+        private final ArrayDeque<BigDecimal> frontProducts = new ArrayDeque<>();
+        private BigDecimal backProduct = ONE;
+        private BigDecimal product = ONE;
+        private int size;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return the factor dropped out of the segment or null if the segment is not full yet
+         */
+        private BigDecimal push(BigDecimal factor) {
+            if (capacity == 0) {
+                return factor;
+            }
+            backFactors.push(factor);
+            backProduct = backProduct.multiply(factor);
+            BigDecimal droppedFactor;
+            if (size < capacity) {
+                size++;
+                droppedFactor = null;
+            } else {
+                droppedFactor = popOldest();
+            }
+            product = frontProducts.isEmpty() ? backProduct : frontProducts.peek().multiply(backProduct);
+            return droppedFactor;
+        }
+
+        private BigDecimal popOldest() {
+            if (frontFactors.isEmpty()) {
+                //Move the back stack to the front stack, the oldest factor ends up on the top
+                BigDecimal frontProduct = ONE;
+                while (!backFactors.isEmpty()) {
+                    BigDecimal factor = backFactors.pop();
+                    frontProduct = frontProduct.multiply(factor);
+                    frontFactors.push(factor);
+                    frontProducts.push(frontProduct);
+                }
+                backProduct = ONE;
+            }
+            frontProducts.pop();
+            return frontFactors.pop();
+        }
+
+        private BigDecimal product() {
+            return product;
+        }
+
+        private void collectFactors(List<BigDecimal> factors) {
+            //The oldest factor is on the top of the front stack and the newest one on the top of the back stack
+            factors.addAll(frontFactors);
+            backFactors.descendingIterator().forEachRemaining(factors::add);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.brinvex.investperf.internal;
 
 
-import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.FlowTiming;
 import com.brinvex.investperf.api.PerformanceCalculator;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.SortedMap;
+import java.util.function.Function;
 
 import static java.math.BigDecimal.ONE;
 import static java.math.BigDecimal.ZERO;
@@ -18,12 +21,42 @@ public class SimpleReturnCalculatorImpl extends BaseCalculatorImpl implements Pe
     }
 
     @Override
-    protected BigDecimal calculateCumulativeReturn(PerfCalcRequest calcReq) {
+    protected BigDecimal calculateCumulativeReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
         return calculateSimpleCumulReturn(
-                calcReq.startAssetValueExcl(),
-                calcReq.endAssetValueIncl(),
-                calcReq.calcScale(),
-                calcReq.roundingMode());
+                startValueExcl,
+                endValueIncl,
+                calcScale,
+                roundingMode);
+    }
+
+    @Override
+    protected DoubleReturn calculateCumulativeReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        return calculateSimpleCumulReturnInDouble(
+                startValueExcl,
+                endValueIncl,
+                calcScale);
     }
 
     protected static BigDecimal calculateSimpleCumulReturn(
@@ -44,4 +77,25 @@ public class SimpleReturnCalculatorImpl extends BaseCalculatorImpl implements Pe
 
         return cumulReturn;
     }
+
+    static DoubleReturn calculateSimpleCumulReturnInDouble(
+            BigDecimal startAssetValueExcl,
+            BigDecimal endAssetValueIncl,
+            int calcScale
+    ) {
+        if (startAssetValueExcl.compareTo(ZERO) == 0) {
+            throw new IllegalArgumentException("startAssetValueExcl must not be zero");
+        } else if (endAssetValueIncl.compareTo(ZERO) == 0) {
+            return new DoubleReturn(-1, 0);
+        } else {
+            double startValue = startAssetValueExcl.doubleValue();
+            double endValue = endAssetValueIncl.doubleValue();
+            double cumulReturn = (endValue - startValue) / startValue;
+            double u = DoubleReturn.UNIT_ROUNDOFF;
+            double errorBound = 2 * u * (Math.abs(endValue) + Math.abs(startValue)) / Math.abs(startValue)
+                                + 2 * u * Math.abs(cumulReturn)
+                                + DoubleReturn.bigDecimalRoundingBound(1, calcScale);
+            return new DoubleReturn(cumulReturn, errorBound);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.brinvex.investperf.internal;
 
+import com.brinvex.investperf.api.DateRange;
 import com.brinvex.investperf.api.FlowTiming;
 import com.brinvex.investperf.api.PerfCalcRequest;
 import com.brinvex.investperf.api.PerformanceCalculator;
@@ -8,6 +9,8 @@ import com.brinvex.java.validation.Assert;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.function.Function;
@@ -26,24 +29,42 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
     private TrueTwrCalculatorImpl() {
     }
 
+    /**
+     * Divides the growth factor of each sub-period between the flows of the request once, see {@link TwrIndexImpl},
+     * and chains the factors of each range from left to right, so the results are the same as the ones of the single ranges
+     * in {@link com.brinvex.investperf.api.NumericMode#BIG_DECIMAL}.
+     */
     @Override
-    protected BigDecimal calculateCumulativeReturn(PerfCalcRequest calcReq) {
-        LocalDate startDateIncl = calcReq.startDateIncl();
-        LocalDate endDateIncl = calcReq.endDateIncl();
-        BigDecimal startAssetValueExcl = calcReq.startAssetValueExcl();
-        BigDecimal endAssetValueIncl = calcReq.endAssetValueIncl();
-        Function<LocalDate, BigDecimal> assetValues = calcReq.assetValues();
-        SortedMap<LocalDate, BigDecimal> flows = calcReq.flows();
-        FlowTiming flowTiming = calcReq.flowTiming();
-        int calcScale = calcReq.calcScale();
-        RoundingMode roundingMode = calcReq.roundingMode();
+    public List<BigDecimal> calculateReturns(PerfCalcRequest perfCalcRequest, List<DateRange> dateRanges) {
+        TwrIndexImpl twrIndex = TwrIndexImpl.of(perfCalcRequest, true);
+        List<BigDecimal> returns = new ArrayList<>(dateRanges.size());
+        for (DateRange dateRange : dateRanges) {
+            validateDateRange(perfCalcRequest, dateRange);
+            returns.add(twrIndex.twr(dateRange.startDateIncl(), dateRange.endDateIncl()));
+        }
+        return returns;
+    }
+
+    @Override
+    protected BigDecimal calculateCumulativeReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
 
         BigDecimal cumulFactor = switch (flowTiming) {
             case BEGINNING_OF_DAY -> calculateCumulTwrFactorWithFlowsAtBeginningOfDay(
                     startDateIncl,
                     endDateIncl,
-                    startAssetValueExcl,
-                    endAssetValueIncl,
+                    startValueExcl,
+                    endValueIncl,
                     assetValues,
                     flows,
                     calcScale,
@@ -52,8 +73,8 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
             case END_OF_DAY -> calculateCumulTwrFactorWithFlowsAtEndOfDay(
                     startDateIncl,
                     endDateIncl,
-                    startAssetValueExcl,
-                    endAssetValueIncl,
+                    startValueExcl,
+                    endValueIncl,
                     assetValues,
                     flows,
                     calcScale,
@@ -63,6 +84,41 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
         return cumulFactor.subtract(ONE);
     }
 
+    @Override
+    protected DoubleReturn calculateCumulativeReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        return switch (flowTiming) {
+            case BEGINNING_OF_DAY -> calculateCumulTwrInDoubleWithFlowsAtBeginningOfDay(
+                    startDateIncl,
+                    endDateIncl,
+                    startValueExcl,
+                    endValueIncl,
+                    assetValues,
+                    flows,
+                    calcScale
+            );
+            case END_OF_DAY -> calculateCumulTwrInDoubleWithFlowsAtEndOfDay(
+                    startDateIncl,
+                    endDateIncl,
+                    startValueExcl,
+                    endValueIncl,
+                    assetValues,
+                    flows,
+                    calcScale
+            );
+        };
+    }
+
     private static BigDecimal calculateCumulTwrFactorWithFlowsAtBeginningOfDay(
             LocalDate startDateIncl,
             LocalDate endDateIncl,
@@ -95,7 +151,7 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
             if (i == 1) {
                 subPeriodStartValue = startAssetValueExcl;
             } else {
-                subPeriodStartValue = assetValues.apply(subPeriodStartDateExcl);
+                subPeriodStartValue = assetValue(assetValues, subPeriodStartDateExcl);
 
                 Assert.notNull(subPeriodStartValue,
                         () -> "subPeriodStartValue must not be null, missing assetValue for subPeriodStartDateExcl %s".formatted(subPeriodStartDateExcl));
@@ -105,7 +161,7 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
                 subPeriodEndValue = endAssetValueIncl;
             } else {
                 subPeriodEndDateIncl = flows.firstKey().minusDays(1);
-                subPeriodEndValue = assetValues.apply(subPeriodEndDateIncl);
+                subPeriodEndValue = assetValue(assetValues, subPeriodEndDateIncl);
 
                 requireNonNull(subPeriodEndValue,
                         () -> "subPeriodEndValue must not be null, missing assetValue for subPeriodEndDateIncl %s".formatted(subPeriodEndDateIncl));
@@ -180,7 +236,7 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
             if (i == 1) {
                 subPeriodStartValue = startAssetValueExcl;
             } else {
-                subPeriodStartValue = assetValues.apply(subPeriodStartDateExcl);
+                subPeriodStartValue = assetValue(assetValues, subPeriodStartDateExcl);
 
                 requireNonNull(subPeriodStartValue,
                         () -> "subPeriodStartValue must not be null, missing assetValue for subPeriodStartDateExcl %s".formatted(subPeriodStartDateExcl));
@@ -193,7 +249,7 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
                 Entry<LocalDate, BigDecimal> flowEntry = flows.firstEntry();
                 flow = flowEntry.getValue();
                 subPeriodEndDateIncl = flowEntry.getKey();
-                subPeriodEndValue = assetValues.apply(subPeriodEndDateIncl);
+                subPeriodEndValue = assetValue(assetValues, subPeriodEndDateIncl);
 
                 requireNonNull(subPeriodEndValue,
                         () -> "subPeriodEndValue must not be null, missing assetValue for subPeriodEndDateIncl %s".formatted(subPeriodEndDateIncl));
@@ -231,4 +287,165 @@ public class TrueTwrCalculatorImpl extends BaseCalculatorImpl implements Perform
 
         return cumulGrowthFactor;
     }
+
+    /**
+     * The growth factors are chained as a compensated sum of their logarithms.
+     * The end value of a sub-period is the start value of the next one, so each flow costs a single asset value lookup.
+     * The sub-periods are validated and gathered into primitive arrays first, then the {@link LogRatioKernel} divides
+     * and takes the logarithms in a tight loop.
+     * The flow on the start date is expected to be already added to the start value, see {@link BaseCalculatorImpl}.
+     */
+    private static DoubleReturn calculateCumulTwrInDoubleWithFlowsAtBeginningOfDay(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startAssetValueExcl,
+            BigDecimal endAssetValueIncl,
+            Function<LocalDate, BigDecimal> assetValues,
+            SortedMap<LocalDate, BigDecimal> flows,
+            int calcScale
+    ) {
+        double bankruptcyFactor = DoubleReturn.bankruptcyFactor(calcScale);
+        double[] subPeriodEndValues = new double[flows.size() + 1];
+        double[] subPeriodStartValuesWithFlow = new double[flows.size() + 1];
+        int factorCount = 0;
+        //In units of the unit roundoff
+        double relErrorSum = 0;
+        int periodCount = 0;
+
+        FlowIndex flowIndex = FlowIndex.of(flows);
+        int[] flowEpochDays = flowIndex.epochDays();
+        BigDecimal[] flowAmounts = flowIndex.amounts();
+        int flowCursor = flowIndex.fromIndex();
+        int flowEnd = flowIndex.toIndex();
+        LocalDate subPeriodStartDateIncl = startDateIncl;
+        double subPeriodStartValue = startAssetValueExcl.doubleValue();
+        double flow = 0;
+        while (true) {
+            LocalDate subPeriodStartDateExcl = subPeriodStartDateIncl.minusDays(1);
+            boolean lastPeriod = flowCursor == flowEnd;
+            LocalDate subPeriodEndDateIncl;
+            double subPeriodEndValue;
+            if (!lastPeriod) {
+                subPeriodEndDateIncl = LocalDate.ofEpochDay(flowEpochDays[flowCursor] - 1L);
+                subPeriodEndValue = assetValueInDouble(assetValues, subPeriodEndDateIncl);
+                if (Double.isNaN(subPeriodEndValue)) {
+                    throw new NullPointerException(
+                            "subPeriodEndValue must not be null, missing assetValue for subPeriodEndDateIncl %s".formatted(subPeriodEndDateIncl));
+                }
+            } else {
+                subPeriodEndDateIncl = endDateIncl;
+                subPeriodEndValue = endAssetValueIncl.doubleValue();
+            }
+            periodCount++;
+
+            double subPeriodStartValueWithFlow = subPeriodStartValue + flow;
+            if (subPeriodStartValueWithFlow == 0) {
+                if (subPeriodEndValue != 0) {
+                    throw new IllegalArgumentException((
+                            "subPeriodStartValueWithFlow must not be zero; " +
+                            "given: subPeriodEndValue=%s, subPeriodStartDateExcl=%s, subPeriodEndDateIncl=%s")
+                            .formatted(subPeriodEndValue, subPeriodStartDateExcl, subPeriodEndDateIncl));
+                }
+            } else {
+                //The factor is compared without dividing, the kernel divides
+                if (Math.abs(subPeriodEndValue) < bankruptcyFactor * Math.abs(subPeriodStartValueWithFlow)) {
+                    //Bankruptcy
+                    return new DoubleReturn(-1, 0);
+                }
+                Assert.isTrue((subPeriodEndValue > 0) == (subPeriodStartValueWithFlow > 0));
+                //Converting the three values, adding the flow and dividing, the addition amplified by its condition number
+                relErrorSum += 3 + (Math.abs(subPeriodStartValue) + Math.abs(flow)) / Math.abs(subPeriodStartValueWithFlow);
+                subPeriodEndValues[factorCount] = subPeriodEndValue;
+                subPeriodStartValuesWithFlow[factorCount] = subPeriodStartValueWithFlow;
+                factorCount++;
+            }
+
+            if (lastPeriod) {
+                break;
+            }
+            subPeriodStartDateIncl = subPeriodEndDateIncl.plusDays(1);
+            subPeriodStartValue = subPeriodEndValue;
+            flow = flowAmounts[flowCursor++].doubleValue();
+        }
+
+        CompensatedSum logSum = new CompensatedSum();
+        LogRatioKernel.INSTANCE.addLogRatios(subPeriodEndValues, subPeriodStartValuesWithFlow, factorCount, logSum);
+        return DoubleReturn.ofLogSum(logSum, relErrorSum * DoubleReturn.UNIT_ROUNDOFF, 2 * periodCount, calcScale);
+    }
+
+    /**
+     * The flow on the end date is expected to be already subtracted from the end value, see {@link BaseCalculatorImpl}.
+     */
+    private static DoubleReturn calculateCumulTwrInDoubleWithFlowsAtEndOfDay(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startAssetValueExcl,
+            BigDecimal endAssetValueIncl,
+            Function<LocalDate, BigDecimal> assetValues,
+            SortedMap<LocalDate, BigDecimal> flows,
+            int calcScale
+    ) {
+        double bankruptcyFactor = DoubleReturn.bankruptcyFactor(calcScale);
+        double[] subPeriodEndValuesWithoutFlow = new double[flows.size() + 1];
+        double[] subPeriodStartValues = new double[flows.size() + 1];
+        //In units of the unit roundoff
+        double relErrorSum = 0;
+        int periodCount = 0;
+
+        FlowIndex flowIndex = FlowIndex.of(flows);
+        int[] flowEpochDays = flowIndex.epochDays();
+        BigDecimal[] flowAmounts = flowIndex.amounts();
+        int flowCursor = flowIndex.fromIndex();
+        int flowEnd = flowIndex.toIndex();
+        LocalDate subPeriodStartDateIncl = startDateIncl;
+        double subPeriodStartValue = startAssetValueExcl.doubleValue();
+        while (true) {
+            LocalDate subPeriodStartDateExcl = subPeriodStartDateIncl.minusDays(1);
+            LocalDate subPeriodEndDateIncl;
+            double subPeriodEndValue;
+            double flow;
+            boolean lastPeriod = flowCursor == flowEnd;
+            if (!lastPeriod) {
+                flow = flowAmounts[flowCursor].doubleValue();
+                subPeriodEndDateIncl = LocalDate.ofEpochDay(flowEpochDays[flowCursor++]);
+                subPeriodEndValue = assetValueInDouble(assetValues, subPeriodEndDateIncl);
+                if (Double.isNaN(subPeriodEndValue)) {
+                    throw new NullPointerException(
+                            "subPeriodEndValue must not be null, missing assetValue for subPeriodEndDateIncl %s".formatted(subPeriodEndDateIncl));
+                }
+            } else {
+                flow = 0;
+                subPeriodEndDateIncl = endDateIncl;
+                subPeriodEndValue = endAssetValueIncl.doubleValue();
+            }
+            periodCount++;
+
+            double subPeriodEndValueWithoutFlow = subPeriodEndValue - flow;
+            if (subPeriodStartValue == 0) {
+                throw new IllegalArgumentException((
+                        "subPeriodStartValue must not be zero; " +
+                        "given: subPeriodEndValueWithoutFlow=%s, subPeriodStartDateExcl=%s, subPeriodEndDateIncl=%s")
+                        .formatted(subPeriodEndValueWithoutFlow, subPeriodStartDateExcl, subPeriodEndDateIncl));
+            }
+            if (Math.abs(subPeriodEndValueWithoutFlow) < bankruptcyFactor * Math.abs(subPeriodStartValue)) {
+                //Bankruptcy
+                return new DoubleReturn(-1, 0);
+            }
+            Assert.isTrue((subPeriodEndValueWithoutFlow > 0) == (subPeriodStartValue > 0));
+            //Converting the three values, subtracting the flow and dividing, the subtraction amplified by its condition number
+            relErrorSum += 3 + (Math.abs(subPeriodEndValue) + Math.abs(flow)) / Math.abs(subPeriodEndValueWithoutFlow);
+            subPeriodEndValuesWithoutFlow[periodCount - 1] = subPeriodEndValueWithoutFlow;
+            subPeriodStartValues[periodCount - 1] = subPeriodStartValue;
+
+            if (lastPeriod) {
+                break;
+            }
+            subPeriodStartDateIncl = subPeriodEndDateIncl.plusDays(1);
+            subPeriodStartValue = subPeriodEndValue;
+        }
+
+        CompensatedSum logSum = new CompensatedSum();
+        LogRatioKernel.INSTANCE.addLogRatios(subPeriodEndValuesWithoutFlow, subPeriodStartValues, periodCount, logSum);
+        return DoubleReturn.ofLogSum(logSum, relErrorSum * DoubleReturn.UNIT_ROUNDOFF, 2 * periodCount, calcScale);
+    }
 }
@@ -0,0 +1,284 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerfCalcResult;
+import com.brinvex.investperf.api.TwrIndex;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.Math.toIntExact;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * The factor k is the growth factor of the sub-period between the flow k and the flow k + 1,
+ * i.e. from the flow date k to the day before the flow date k + 1 for the beginning of day timing
+ * and from the day after the flow date k to the flow date k + 1 for the end of day timing.
+ * A range consists of a partial sub-period up to its first flow, the factors between its first and last flow
+ * and a partial sub-period after its last flow, the same sub-periods {@link TrueTwrCalculatorImpl} splits it into.
+ * The subclasses keep the factors and chain them.
+ */
+public abstract sealed class TwrIndexImpl implements TwrIndex permits BigDecimalTwrIndex, DoubleTwrIndex {
+
+    final PerfCalcRequest perfCalcRequest;
+    final FlowTiming flowTiming;
+    final int calcScale;
+    final RoundingMode roundingMode;
+
+    final int[] flowEpochDays;
+    final BigDecimal[] flows;
+    /**
+     * The asset value on the day before each flow for the beginning of day timing and on the day of each flow for the end of day timing,
+     * null if it is missing.
+     */
+    final BigDecimal[] flowDayValues;
+
+    private final Map<LocalDate, BigDecimal> correctedAssetValues = new HashMap<>();
+
+    TwrIndexImpl(PerfCalcRequest perfCalcRequest, int[] flowEpochDays, BigDecimal[] flows) {
+        this.perfCalcRequest = perfCalcRequest;
+        this.flowTiming = perfCalcRequest.flowTiming();
+        this.calcScale = perfCalcRequest.calcScale();
+        this.roundingMode = perfCalcRequest.roundingMode();
+        this.flowEpochDays = flowEpochDays;
+        this.flows = flows;
+        this.flowDayValues = new BigDecimal[flowEpochDays.length];
+        for (int k = 0; k < flowEpochDays.length; k++) {
+            flowDayValues[k] = assetValue(subPeriodEndDateIncl(k));
+        }
+    }
+
+    public static TwrIndex of(PerfCalcRequest perfCalcRequest) {
+        return of(perfCalcRequest, false);
+    }
+
+    /**
+     * @param leftToRight whether the factors of a range are chained from left to right in {@link com.brinvex.investperf.api.NumericMode#BIG_DECIMAL},
+     *                    to give exactly the calculator's result, see {@link BigDecimalTwrIndex}
+     */
+    static TwrIndexImpl of(PerfCalcRequest perfCalcRequest, boolean leftToRight) {
+        FlowIndex flows = FlowIndex.of(perfCalcRequest.flows());
+        int[] flowEpochDays = flows.viewEpochDays();
+        BigDecimal[] flowAmounts = flows.viewAmounts();
+        return switch (perfCalcRequest.numericMode()) {
+            case BIG_DECIMAL -> new BigDecimalTwrIndex(perfCalcRequest, flowEpochDays, flowAmounts, leftToRight);
+            case DOUBLE -> new DoubleTwrIndex(perfCalcRequest, flowEpochDays, flowAmounts);
+        };
+    }
+
+    @Override
+    public final LocalDate startDateIncl() {
+        return perfCalcRequest.startDateIncl();
+    }
+
+    @Override
+    public final LocalDate endDateIncl() {
+        return perfCalcRequest.endDateIncl();
+    }
+
+    @Override
+    public final BigDecimal twr(LocalDate startDateIncl, LocalDate endDateIncl) {
+        return twrWithErrorBound(startDateIncl, endDateIncl).value();
+    }
+
+    @Override
+    public final PerfCalcResult twrWithErrorBound(LocalDate startDateIncl, LocalDate endDateIncl) {
+        if (startDateIncl == null) {
+            throw new IllegalArgumentException("startDateIncl must not be null");
+        }
+        if (endDateIncl == null) {
+            throw new IllegalArgumentException("endDateIncl must not be null");
+        }
+        if (startDateIncl.isAfter(endDateIncl)) {
+            throw new IllegalArgumentException("startDateIncl must be before endDateIncl, given: %s, %s"
+                    .formatted(startDateIncl, endDateIncl));
+        }
+        if (startDateIncl.isBefore(startDateIncl()) || endDateIncl.isAfter(endDateIncl())) {
+            throw new IllegalArgumentException("The date range must be within the date range of the index %s - %s, given: %s, %s"
+                    .formatted(startDateIncl(), endDateIncl(), startDateIncl, endDateIncl));
+        }
+
+        BigDecimal startValueExcl = assetValue(startDateIncl.minusDays(1));
+        if (startValueExcl == null) {
+            throw new IllegalArgumentException("startAssetValueExcl must not be null, missing assetValue for %s"
+                    .formatted(startDateIncl.minusDays(1)));
+        }
+        if (startValueExcl.compareTo(ZERO) < 0) {
+            throw new IllegalArgumentException("startAssetValueExcl must be greater than or equal to zero");
+        }
+        BigDecimal endValueIncl = assetValue(endDateIncl);
+        if (endValueIncl == null) {
+            throw new IllegalArgumentException("endAssetValueIncl must not be null, missing assetValue for %s"
+                    .formatted(endDateIncl));
+        }
+        if (endValueIncl.compareTo(ZERO) < 0) {
+            throw new IllegalArgumentException("endAssetValueIncl must be greater than or equal to zero");
+        }
+
+        int periodFromIndex = ceilingIndex(startDateIncl.toEpochDay());
+        int periodToIndex = ceilingIndex(endDateIncl.toEpochDay() + 1);
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.of(
+                startDateIncl, endDateIncl, startValueExcl, endValueIncl, flowEpochDays, flows, periodFromIndex, periodToIndex, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        int fromIndex = adjustment.fromIndex(periodFromIndex);
+        int toIndex = adjustment.toIndex(periodToIndex);
+        if (fromIndex == toIndex) {
+            return calculateSimpleReturn(startDateIncl, endDateIncl, startValueExcl, endValueIncl);
+        }
+        return calculateChainedReturn(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                flowTiming == FlowTiming.BEGINNING_OF_DAY ? ZERO : flows[fromIndex],
+                fromIndex,
+                toIndex - 1,
+                flowTiming == FlowTiming.BEGINNING_OF_DAY ? flows[toIndex - 1] : ZERO,
+                endValueIncl
+        );
+    }
+
+    @Override
+    public final void updateAssetValue(LocalDate date, BigDecimal assetValue) {
+        if (date == null) {
+            throw new IllegalArgumentException("date must not be null");
+        }
+        if (assetValue == null) {
+            throw new IllegalArgumentException("assetValue must not be null");
+        }
+        if (date.isBefore(startDateIncl().minusDays(1)) || date.isAfter(endDateIncl())) {
+            throw new IllegalArgumentException("The date must be within the date range of the index %s - %s or the day before, given: %s"
+                    .formatted(startDateIncl(), endDateIncl(), date));
+        }
+        correctedAssetValues.put(date, assetValue);
+
+        long flowEpochDay = flowTiming == FlowTiming.BEGINNING_OF_DAY ? date.toEpochDay() + 1 : date.toEpochDay();
+        int flowIndex = ceilingIndex(flowEpochDay);
+        if (flowIndex < flowEpochDays.length && flowEpochDays[flowIndex] == flowEpochDay) {
+            flowDayValues[flowIndex] = assetValue;
+            flowDayValueChanged(flowIndex);
+        }
+    }
+
+    /**
+     * @param startValueExcl the start value with the flow on the start date for the beginning of day timing
+     * @param endValueIncl   the end value without the flow on the end date for the end of day timing
+     */
+    abstract PerfCalcResult calculateSimpleReturn(LocalDate startDateIncl, LocalDate endDateIncl, BigDecimal startValueExcl, BigDecimal endValueIncl);
+
+    /**
+     * The first sub-period ends with the flow day value of the fromFactor and the last one starts with the flow day value of the toFactor.
+     *
+     * @param fromFactor the first factor of the range, inclusive, which is also the index of its first flow
+     * @param toFactor   the last factor of the range, exclusive, which is also the index of its last flow
+     */
+    abstract PerfCalcResult calculateChainedReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal firstStartValue,
+            BigDecimal firstFlow,
+            int fromFactor,
+            int toFactor,
+            BigDecimal lastFlow,
+            BigDecimal lastEndValue
+    );
+
+    /**
+     * Called after the flow day value of the given flow has been corrected, so the factors k - 1 and k have to be recalculated.
+     */
+    abstract void flowDayValueChanged(int flowIndex);
+
+    final int factorCount() {
+        return Math.max(flowEpochDays.length - 1, 0);
+    }
+
+    /**
+     * @return the flow added to the start value of the factor k for the beginning of day timing,
+     * or subtracted from its end value for the end of day timing
+     */
+    final BigDecimal factorFlow(int k) {
+        return flowTiming == FlowTiming.BEGINNING_OF_DAY ? flows[k] : flows[k + 1];
+    }
+
+    /**
+     * @return the start date of the sub-period after the given flow
+     */
+    final LocalDate subPeriodStartDateIncl(int flowIndex) {
+        return LocalDate.ofEpochDay(flowTiming == FlowTiming.BEGINNING_OF_DAY ? flowEpochDays[flowIndex] : flowEpochDays[flowIndex] + 1);
+    }
+
+    /**
+     * @return the end date of the sub-period before the given flow
+     */
+    final LocalDate subPeriodEndDateIncl(int flowIndex) {
+        return LocalDate.ofEpochDay(flowTiming == FlowTiming.BEGINNING_OF_DAY ? flowEpochDays[flowIndex] - 1 : flowEpochDays[flowIndex]);
+    }
+
+    final PerfCalcResult toPerfCalcResult(LocalDate startDateIncl, LocalDate endDateIncl, BigDecimal cumulReturn, double errorBound) {
+        return BaseCalculatorImpl.toPerfCalcResult(perfCalcRequest, startDateIncl, endDateIncl, cumulReturn, errorBound);
+    }
+
+    /**
+     * The same failures as {@link TrueTwrCalculatorImpl} reports for a sub-period.
+     */
+    final RuntimeException subPeriodFailure(
+            LocalDate subPeriodStartDateIncl,
+            LocalDate subPeriodEndDateIncl,
+            BigDecimal startValue,
+            BigDecimal flow,
+            BigDecimal endValue
+    ) {
+        LocalDate subPeriodStartDateExcl = subPeriodStartDateIncl.minusDays(1);
+        if (startValue == null) {
+            return new NullPointerException("subPeriodStartValue must not be null, missing assetValue for subPeriodStartDateExcl %s"
+                    .formatted(subPeriodStartDateExcl));
+        }
+        if (endValue == null) {
+            return new NullPointerException("subPeriodEndValue must not be null, missing assetValue for subPeriodEndDateIncl %s"
+                    .formatted(subPeriodEndDateIncl));
+        }
+        if (flowTiming == FlowTiming.BEGINNING_OF_DAY && startValue.add(flow).compareTo(ZERO) == 0) {
+            return new IllegalArgumentException((
+                    "subPeriodStartValueWithFlow must not be zero; " +
+                    "given: subPeriodEndValue=%s, subPeriodStartDateExcl=%s, subPeriodEndDateIncl=%s")
+                    .formatted(endValue, subPeriodStartDateExcl, subPeriodEndDateIncl));
+        }
+        if (flowTiming == FlowTiming.END_OF_DAY && startValue.compareTo(ZERO) == 0) {
+            return new IllegalArgumentException((
+                    "subPeriodStartValue must not be zero; " +
+                    "given: subPeriodEndValueWithoutFlow=%s, subPeriodStartDateExcl=%s, subPeriodEndDateIncl=%s")
+                    .formatted(endValue.subtract(flow), subPeriodStartDateExcl, subPeriodEndDateIncl));
+        }
+        return new IllegalArgumentException((
+                "The growth factor must be positive; " +
+                "given: subPeriodStartValue=%s, flow=%s, subPeriodEndValue=%s, subPeriodStartDateExcl=%s, subPeriodEndDateIncl=%s")
+                .formatted(startValue, flow, endValue, subPeriodStartDateExcl, subPeriodEndDateIncl));
+    }
+
+    private BigDecimal assetValue(LocalDate date) {
+        BigDecimal correctedAssetValue = correctedAssetValues.get(date);
+        if (correctedAssetValue != null) {
+            return correctedAssetValue;
+        }
+        if (date.isEqual(startDateIncl().minusDays(1))) {
+            return perfCalcRequest.startAssetValueExcl();
+        }
+        if (date.isEqual(endDateIncl())) {
+            return perfCalcRequest.endAssetValueIncl();
+        }
+        return perfCalcRequest.assetValues().apply(date);
+    }
+
+    /**
+     * @return the index of the first flow on or after the given epoch day
+     */
+    private int ceilingIndex(long epochDay) {
+        int index = Arrays.binarySearch(flowEpochDays, toIntExact(epochDay));
+        return index >= 0 ? index : -(index + 1);
+    }
+}
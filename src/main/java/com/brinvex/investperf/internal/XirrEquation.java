@@ -0,0 +1,319 @@
+package com.brinvex.investperf.internal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.ZERO;
+
+/**
+ * {@code startValue * g^totalDays + Σ(flow * g^weightNumerator) = endValue} for the growth factor g per day,
+ * with the weight numerators of {@link ModifiedDietzMwrCalculatorImpl}, over the flows between the given indexes of the given arrays,
+ * which are not copied.
+ * <p>
+ * The root is searched in double for the cumulative log growth {@code z = totalDays * ln(g)}
+ * by the Newton method from the initial guess, which falls back to the Newton method safeguarded by bisection
+ * within the nearest bracket around the initial guess.
+ * If there are more roots, the one the search ends in is taken.
+ */
+final class XirrEquation {
+
+    /**
+     * Keeps the terms far from the double overflow, it is the cumulative growth factor of about e^600 or e^-600.
+     */
+    private static final double MAX_LOG_GROWTH = 600;
+    private static final int MAX_NEWTON_ITERATIONS = 20;
+    private static final int MAX_SAFEGUARDED_ITERATIONS = 200;
+    private static final int MAX_BIG_DECIMAL_ITERATIONS = 20;
+
+    private final LocalDate startDateIncl;
+    private final LocalDate endDateIncl;
+    private final BigDecimal startValueExcl;
+    private final BigDecimal endValueIncl;
+    private final double startValue;
+    private final double endValue;
+    private final int[] flowEpochDays;
+    private final BigDecimal[] flows;
+    private final double[] flowsInDouble;
+    private final int fromIndex;
+    private final int toIndex;
+    /**
+     * The weight numerator of a flow is {@code weightNumeratorBase - flowEpochDay}.
+     */
+    private final long weightNumeratorBase;
+    private final int totalDays;
+
+    /*
+    The last evaluation
+     */
+    private double value;
+    private double derivative;
+    private double absTermSum;
+
+    /**
+     * @param startValueExcl the start value with the flow on the start date for the beginning of day timing
+     * @param endValueIncl   the end value without the flow on the end date for the end of day timing
+     * @param fromIndex      the first flow, inclusive
+     * @param toIndex        the last flow, exclusive
+     */
+    XirrEquation(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            int[] flowEpochDays,
+            BigDecimal[] flows,
+            double[] flowsInDouble,
+            int fromIndex,
+            int toIndex,
+            int flowTimingWeightAdjuster
+    ) {
+        this.startDateIncl = startDateIncl;
+        this.endDateIncl = endDateIncl;
+        this.startValueExcl = startValueExcl;
+        this.endValueIncl = endValueIncl;
+        this.startValue = startValueExcl.doubleValue();
+        this.endValue = endValueIncl.doubleValue();
+        this.flowEpochDays = flowEpochDays;
+        this.flows = flows;
+        this.flowsInDouble = flowsInDouble;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+        long endEpochDayExcl = endDateIncl.toEpochDay() + 1;
+        this.weightNumeratorBase = endEpochDayExcl + flowTimingWeightAdjuster;
+        this.totalDays = Math.toIntExact(endEpochDayExcl - startDateIncl.toEpochDay());
+    }
+
+    int totalDays() {
+        return totalDays;
+    }
+
+    /**
+     * @return the Modified Dietz estimate of the cumulative log growth, zero if there is none
+     */
+    double initialLogGrowth() {
+        double flowSum = 0;
+        double weightedFlowNumeratorSum = 0;
+        for (int i = fromIndex; i < toIndex; i++) {
+            flowSum += flowsInDouble[i];
+            weightedFlowNumeratorSum += flowsInDouble[i] * (weightNumeratorBase - flowEpochDays[i]);
+        }
+        double cumulReturn = (endValue - startValue - flowSum) / (startValue + weightedFlowNumeratorSum / totalDays);
+        return cumulReturn > -1 && Double.isFinite(cumulReturn) ? Math.log1p(cumulReturn) : 0;
+    }
+
+    /**
+     * @return the cumulative log growth, NaN if no root has been found
+     */
+    double solveLogGrowth(double initialLogGrowth) {
+        double logGrowth = Double.isFinite(initialLogGrowth)
+                ? Math.clamp(initialLogGrowth, -MAX_LOG_GROWTH, MAX_LOG_GROWTH)
+                : initialLogGrowth();
+        double z = logGrowth;
+        for (int i = 0; i < MAX_NEWTON_ITERATIONS; i++) {
+            evaluate(z);
+            if (isResidualNegligible()) {
+                return z;
+            }
+            double nextZ = z - value / derivative;
+            if (!(Math.abs(nextZ) <= MAX_LOG_GROWTH)) {
+                break;
+            }
+            if (Math.abs(nextZ - z) <= 4 * DoubleReturn.UNIT_ROUNDOFF * Math.abs(nextZ)) {
+                return nextZ;
+            }
+            z = nextZ;
+        }
+        return solveLogGrowthSafeguarded(logGrowth);
+    }
+
+    private double solveLogGrowthSafeguarded(double initialLogGrowth) {
+        evaluate(initialLogGrowth);
+        if (isResidualNegligible()) {
+            return initialLogGrowth;
+        }
+        boolean initialPositive = value > 0;
+
+        //The nearest bracket, widened on both sides in turn
+        double lo = Double.NaN;
+        double hi = Double.NaN;
+        double innerLo = initialLogGrowth;
+        double innerHi = initialLogGrowth;
+        for (double width = 0.01; ; width *= 2) {
+            double outerLo = Math.max(initialLogGrowth - width, -MAX_LOG_GROWTH);
+            double outerHi = Math.min(initialLogGrowth + width, MAX_LOG_GROWTH);
+            if (outerLo < innerLo) {
+                evaluate(outerLo);
+                if (value > 0 != initialPositive) {
+                    lo = outerLo;
+                    hi = innerLo;
+                    break;
+                }
+            }
+            if (outerHi > innerHi) {
+                evaluate(outerHi);
+                if (value > 0 != initialPositive) {
+                    lo = innerHi;
+                    hi = outerHi;
+                    break;
+                }
+            }
+            if (outerLo == -MAX_LOG_GROWTH && outerHi == MAX_LOG_GROWTH) {
+                return Double.NaN;
+            }
+            innerLo = outerLo;
+            innerHi = outerHi;
+        }
+
+        //The value is positive at the bracket side of the same sign as the initial one
+        boolean loPositive = (lo < initialLogGrowth) != initialPositive;
+        double z = 0.5 * (lo + hi);
+        for (int i = 0; i < MAX_SAFEGUARDED_ITERATIONS; i++) {
+            evaluate(z);
+            if (isResidualNegligible()) {
+                return z;
+            }
+            if (value > 0 == loPositive) {
+                lo = z;
+            } else {
+                hi = z;
+            }
+            double nextZ = z - value / derivative;
+            if (!(nextZ > lo && nextZ < hi)) {
+                nextZ = 0.5 * (lo + hi);
+            }
+            if (Math.abs(nextZ - z) <= 4 * DoubleReturn.UNIT_ROUNDOFF * Math.abs(nextZ) || hi - lo <= 4 * DoubleReturn.UNIT_ROUNDOFF * Math.abs(z)) {
+                return nextZ;
+            }
+            z = nextZ;
+        }
+        return z;
+    }
+
+    /**
+     * @return the estimated bound of the error of the cumulative return of the given root
+     * against its exact value rounded to the calcScale
+     */
+    double cumulReturnErrorBound(double logGrowth, int calcScale) {
+        evaluate(logGrowth);
+        double cumulReturn = Math.expm1(logGrowth);
+        double logGrowthErrorBound = (Math.abs(value) + evaluationErrorBound(logGrowth)) / Math.abs(derivative);
+        return (1 + cumulReturn) * logGrowthErrorBound
+               + DoubleReturn.UNIT_ROUNDOFF * Math.abs(cumulReturn)
+               + DoubleReturn.bigDecimalRoundingBound(1, calcScale);
+    }
+
+    /**
+     * Refines the given double root by the Newton method on the growth factor per day with its integer powers in BigDecimal,
+     * so that the result does not depend on the initial guess of the double search.
+     * The powers are built from the latest flow backwards, each from the previous one and the power of the days between them,
+     * so that an iteration costs a few multiplications per flow however long the period is.
+     *
+     * @return the cumulative return
+     */
+    BigDecimal refineCumulReturn(double logGrowth, int calcScale, RoundingMode roundingMode) {
+        //The integer digits of the cumulative growth factor, which the precision has to cover on top of the calcScale
+        int growthDigits = Math.max(0, (int) Math.ceil(logGrowth / Math.log(10)));
+        MathContext mc = new MathContext(calcScale + 30 + growthDigits, roundingMode);
+        BigDecimal bigTotalDays = BigDecimal.valueOf(totalDays);
+        BigDecimal tolerance = ONE.scaleByPowerOfTen(-(calcScale + 5 + growthDigits));
+        BigDecimal growthFactor = new BigDecimal(Math.exp(logGrowth / totalDays));
+        boolean converged = false;
+        for (int i = 0; i < MAX_BIG_DECIMAL_ITERATIONS; i++) {
+            BigDecimal value = endValueIncl.negate();
+            //The derivative multiplied by the growth factor
+            BigDecimal scaledDerivative = ZERO;
+            BigDecimal growth = ONE;
+            int lastWeightNumerator = 0;
+            for (int j = toIndex - 1; j >= fromIndex; j--) {
+                int weightNumerator = Math.toIntExact(weightNumeratorBase - flowEpochDays[j]);
+                growth = growth.multiply(growthFactor.pow(weightNumerator - lastWeightNumerator, mc), mc);
+                lastWeightNumerator = weightNumerator;
+                BigDecimal flowGrowth = flows[j].multiply(growth, mc);
+                value = value.add(flowGrowth, mc);
+                scaledDerivative = scaledDerivative.add(flowGrowth.multiply(BigDecimal.valueOf(weightNumerator)), mc);
+            }
+            BigDecimal startGrowth = startValueExcl.multiply(growth.multiply(growthFactor.pow(totalDays - lastWeightNumerator, mc), mc), mc);
+            value = value.add(startGrowth, mc);
+            scaledDerivative = scaledDerivative.add(startGrowth.multiply(bigTotalDays), mc);
+            if (scaledDerivative.signum() == 0) {
+                break;
+            }
+            BigDecimal step = value.multiply(growthFactor).divide(scaledDerivative, mc);
+            growthFactor = growthFactor.subtract(step, mc);
+            if (growthFactor.signum() <= 0) {
+                break;
+            }
+            if (converged) {
+                //One more step after the tolerance has been reached doubles the valid digits
+                return growthFactor.pow(totalDays, mc).subtract(ONE).setScale(calcScale, roundingMode);
+            }
+            converged = step.abs().multiply(bigTotalDays).compareTo(tolerance) < 0;
+        }
+        throw couldNotCalculate();
+    }
+
+    /**
+     * Whether the equation has at most one root, by the Descartes' rule of signs
+     * over its terms ordered by the power of the growth factor: the start value, the flows and the subtracted end value.
+     * Only then does the search end in the same root whatever the initial guess is.
+     */
+    boolean hasSingleRoot() {
+        int signChanges = 0;
+        int lastSignum = startValueExcl.signum();
+        for (int i = fromIndex; i < toIndex; i++) {
+            int signum = flows[i].signum();
+            if (signum != 0 && signum != lastSignum) {
+                signChanges++;
+                lastSignum = signum;
+            }
+        }
+        int endSignum = -endValueIncl.signum();
+        if (endSignum != 0 && endSignum != lastSignum) {
+            signChanges++;
+        }
+        return signChanges <= 1;
+    }
+
+    IllegalStateException couldNotCalculate() {
+        return new IllegalStateException((
+                "Could not calculate XIRR return of given data: " +
+                "adjStartValueExcl=%s, adjEndValueIncl=%s, flowCount=%s, " +
+                "startDateIncl=%s, endDateIncl=%s")
+                .formatted(
+                        startValueExcl, endValueIncl, toIndex - fromIndex,
+                        startDateIncl, endDateIncl
+                ));
+    }
+
+    private void evaluate(double logGrowth) {
+        double startGrowth = startValue * Math.exp(logGrowth);
+        double logGrowthPerDay = logGrowth / totalDays;
+        double value = startGrowth - endValue;
+        double flowDerivativeNumerator = 0;
+        double absTermSum = startGrowth + Math.abs(endValue);
+        for (int i = fromIndex; i < toIndex; i++) {
+            double weightNumerator = weightNumeratorBase - flowEpochDays[i];
+            double term = flowsInDouble[i] * Math.exp(logGrowthPerDay * weightNumerator);
+            value += term;
+            flowDerivativeNumerator += term * weightNumerator;
+            absTermSum += Math.abs(term);
+        }
+        this.value = value;
+        this.derivative = startGrowth + flowDerivativeNumerator / totalDays;
+        this.absTermSum = absTermSum;
+    }
+
+    /**
+     * The value is the sum of terms, each converted, exponentiated and multiplied, and summed up naively.
+     */
+    private double evaluationErrorBound(double logGrowth) {
+        return (toIndex - fromIndex + 6 + Math.abs(logGrowth)) * DoubleReturn.UNIT_ROUNDOFF * absTermSum;
+    }
+
+    private boolean isResidualNegligible() {
+        return Math.abs(value) <= evaluationErrorBound(0) * 0.25;
+    }
+}
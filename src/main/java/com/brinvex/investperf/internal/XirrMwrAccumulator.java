@@ -0,0 +1,128 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.Math.toIntExact;
+
+/**
+ * Keeps the forward-appended flows in primitive arrays and the root of the last evaluation,
+ * which is the initial guess of the next one, as the return of a growing date range changes only a little from one end date to the next,
+ * so an evaluation costs a few Newton iterations, unless the flows change their sign and the equation might have more roots.
+ * The result is the same as {@link XirrMwrCalculatorImpl} gives for the same flows,
+ * in {@link NumericMode#DOUBLE} within the error bound.
+ */
+final class XirrMwrAccumulator implements MwrAccumulator {
+
+    private final FlowTiming flowTiming;
+    private final int calcScale;
+    private final RoundingMode roundingMode;
+    private final NumericMode numericMode;
+
+    private int flowCount;
+    private int[] flowEpochDays = new int[16];
+    private BigDecimal[] flows = new BigDecimal[16];
+    private double[] flowsInDouble = new double[16];
+    /**
+     * The cumulative log growth per day of the last evaluation, NaN if there is none.
+     */
+    private double lastLogGrowthPerDay = Double.NaN;
+
+    XirrMwrAccumulator(FlowTiming flowTiming, int calcScale, RoundingMode roundingMode, NumericMode numericMode) {
+        this.flowTiming = flowTiming;
+        this.calcScale = calcScale;
+        this.roundingMode = roundingMode;
+        this.numericMode = numericMode;
+    }
+
+    @Override
+    public void addFlow(LocalDate flowDate, BigDecimal flow) {
+        int flowEpochDay = toIntExact(flowDate.toEpochDay());
+        if (flowCount > 0 && flowEpochDay <= flowEpochDays[flowCount - 1]) {
+            throw new IllegalArgumentException("flowDate must be after lastFlowDate, given: %s, %s"
+                    .formatted(flowDate, LocalDate.ofEpochDay(flowEpochDays[flowCount - 1])));
+        }
+        if (flowCount == flowEpochDays.length) {
+            flowEpochDays = Arrays.copyOf(flowEpochDays, 2 * flowCount);
+            flows = Arrays.copyOf(flows, 2 * flowCount);
+            flowsInDouble = Arrays.copyOf(flowsInDouble, 2 * flowCount);
+        }
+        flowEpochDays[flowCount] = flowEpochDay;
+        flows[flowCount] = flow;
+        flowsInDouble[flowCount] = flow.doubleValue();
+        flowCount++;
+    }
+
+    @Override
+    public State state() {
+        return new State(Arrays.copyOf(flowEpochDays, flowCount), Arrays.copyOf(flows, flowCount), List.of(), lastLogGrowthPerDay);
+    }
+
+    @Override
+    public void restore(State state) {
+        if (flowCount > 0) {
+            throw new IllegalStateException("No flow must have been added, given: %s".formatted(flowCount));
+        }
+        flowCount = state.flows().length;
+        flowEpochDays = Arrays.copyOf(state.flowEpochDays(), Math.max(16, flowCount));
+        flows = Arrays.copyOf(state.flows(), flowEpochDays.length);
+        flowsInDouble = new double[flowEpochDays.length];
+        for (int i = 0; i < flowCount; i++) {
+            flowsInDouble[i] = flows[i].doubleValue();
+        }
+        lastLogGrowthPerDay = state.lastLogGrowthPerDay();
+    }
+
+    @Override
+    public BigDecimal calculateCumulReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl
+    ) {
+        FlowTimingAdjustment adjustment = FlowTimingAdjustment.of(
+                startDateIncl, endDateIncl, startValueExcl, endValueIncl, flowEpochDays, flows, 0, flowCount, flowTiming);
+        startValueExcl = adjustment.startValueExcl();
+        endValueIncl = adjustment.endValueIncl();
+        int fromIndex = adjustment.fromIndex(0);
+        int toIndex = adjustment.toIndex(flowCount);
+
+        if (fromIndex == toIndex) {
+            return switch (numericMode) {
+                case BIG_DECIMAL -> SimpleReturnCalculatorImpl.calculateSimpleCumulReturn(startValueExcl, endValueIncl, calcScale, roundingMode)
+                        .setScale(calcScale, roundingMode);
+                case DOUBLE -> SimpleReturnCalculatorImpl.calculateSimpleCumulReturnInDouble(startValueExcl, endValueIncl, calcScale)
+                        .bigDecimalCumulReturn().setScale(calcScale, roundingMode);
+            };
+        }
+        XirrEquation equation = new XirrEquation(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                flowEpochDays,
+                flows,
+                flowsInDouble,
+                fromIndex,
+                toIndex,
+                ModifiedDietzMwrCalculatorImpl.flowTimingWeightAdjuster(flowTiming)
+        );
+        //With more roots possible, the root is searched from the same initial guess as the calculator does, so that it ends in the same one
+        double logGrowth = equation.solveLogGrowth(equation.hasSingleRoot() ? lastLogGrowthPerDay * equation.totalDays() : Double.NaN);
+        if (!Double.isNaN(logGrowth)) {
+            lastLogGrowthPerDay = logGrowth / equation.totalDays();
+        }
+        return switch (numericMode) {
+            case BIG_DECIMAL -> XirrMwrCalculatorImpl.calculateCumulReturn(equation, logGrowth, endValueIncl, calcScale, roundingMode)
+                    .setScale(calcScale, roundingMode);
+            case DOUBLE -> XirrMwrCalculatorImpl.calculateCumulReturnInDouble(equation, logGrowth, endValueIncl, calcScale)
+                    .bigDecimalCumulReturn().setScale(calcScale, roundingMode);
+        };
+    }
+}
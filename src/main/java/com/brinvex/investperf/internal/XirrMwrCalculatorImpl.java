@@ -0,0 +1,115 @@
+package com.brinvex.investperf.internal;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.PerformanceCalculator;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+
+/**
+ * The cumulative return is {@code g^totalDays - 1} for the root g of {@link XirrEquation},
+ * the Modified Dietz return being its initial guess.
+ * The root is searched in double, in {@link com.brinvex.investperf.api.NumericMode#BIG_DECIMAL} it is then refined in BigDecimal.
+ * The total loss is returned if there is no root and the end value is zero.
+ */
+public class XirrMwrCalculatorImpl extends BaseCalculatorImpl implements PerformanceCalculator.XirrMwrCalculator {
+
+    public static final XirrMwrCalculatorImpl INSTANCE = new XirrMwrCalculatorImpl();
+
+    private XirrMwrCalculatorImpl() {
+    }
+
+    @Override
+    protected BigDecimal calculateCumulativeReturn(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        XirrEquation equation = toEquation(startDateIncl, endDateIncl, startValueExcl, endValueIncl, flows, flowTiming);
+        return calculateCumulReturn(equation, equation.solveLogGrowth(Double.NaN), endValueIncl, calcScale, roundingMode);
+    }
+
+    @Override
+    protected DoubleReturn calculateCumulativeReturnInDouble(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            Function<LocalDate, BigDecimal> assetValues,
+            FlowTiming flowTiming,
+            int largeFlowLevelInPercent,
+            int calcScale,
+            RoundingMode roundingMode
+    ) {
+        XirrEquation equation = toEquation(startDateIncl, endDateIncl, startValueExcl, endValueIncl, flows, flowTiming);
+        return calculateCumulReturnInDouble(equation, equation.solveLogGrowth(Double.NaN), endValueIncl, calcScale);
+    }
+
+    /**
+     * @param logGrowth the root found by {@link XirrEquation#solveLogGrowth}
+     */
+    static BigDecimal calculateCumulReturn(XirrEquation equation, double logGrowth, BigDecimal endValueIncl, int calcScale, RoundingMode roundingMode) {
+        if (Double.isNaN(logGrowth)) {
+            if (endValueIncl.signum() == 0) {
+                return BigDecimal.ONE.negate();
+            }
+            throw equation.couldNotCalculate();
+        }
+        return equation.refineCumulReturn(logGrowth, calcScale, roundingMode);
+    }
+
+    /**
+     * The same as {@link #calculateCumulReturn} in {@link com.brinvex.investperf.api.NumericMode#DOUBLE}, with the error bound.
+     */
+    static DoubleReturn calculateCumulReturnInDouble(XirrEquation equation, double logGrowth, BigDecimal endValueIncl, int calcScale) {
+        if (Double.isNaN(logGrowth)) {
+            if (endValueIncl.signum() == 0) {
+                return new DoubleReturn(-1, 0);
+            }
+            throw equation.couldNotCalculate();
+        }
+        return new DoubleReturn(Math.expm1(logGrowth), equation.cumulReturnErrorBound(logGrowth, calcScale));
+    }
+
+    private static XirrEquation toEquation(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            BigDecimal startValueExcl,
+            BigDecimal endValueIncl,
+            SortedMap<LocalDate, BigDecimal> flows,
+            FlowTiming flowTiming
+    ) {
+        FlowIndex flowIndex = FlowIndex.of(flows);
+        BigDecimal[] flowAmounts = flowIndex.amounts();
+        int fromIndex = flowIndex.fromIndex();
+        int toIndex = flowIndex.toIndex();
+        double[] flowsInDouble = new double[toIndex];
+        for (int i = fromIndex; i < toIndex; i++) {
+            flowsInDouble[i] = flowAmounts[i].doubleValue();
+        }
+        return new XirrEquation(
+                startDateIncl,
+                endDateIncl,
+                startValueExcl,
+                endValueIncl,
+                flowIndex.epochDays(),
+                flowAmounts,
+                flowsInDouble,
+                fromIndex,
+                toIndex,
+                ModifiedDietzMwrCalculatorImpl.flowTimingWeightAdjuster(flowTiming)
+        );
+    }
+}
@@ -1,13 +1,25 @@
 package test.com.brinvex.investperf;
 
+import com.brinvex.investperf.api.AnnualizationOption;
 import com.brinvex.investperf.api.Annualizer;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE;
 import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR;
 import static java.time.LocalDate.parse;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class AnnualizationTest {
 
@@ -48,4 +60,94 @@ class AnnualizationTest {
             assertEquals("1.0", cumRet.toPlainString());
         }
     }
+
+    @Test
+    void annualizePeriod() {
+        Annualizer annualizer = Annualizer.INSTANCE;
+        BigDecimal factor = new BigDecimal("1.44");
+        assertEquals("1.44", annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, factor, Period.ofMonths(6)).toPlainString());
+        assertEquals("1.44", annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, factor, Period.ofYears(1)).toPlainString());
+        assertEquals("1.2", annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, factor, Period.ofMonths(24)).toPlainString());
+        assertEquals(
+                annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, factor, 7),
+                annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, factor, Period.ofYears(7)));
+        assertEquals("1.2751902830191333", annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, factor, Period.ofMonths(18)).toPlainString());
+    }
+
+    @Test
+    void annualizeBatch() {
+        Annualizer annualizer = Annualizer.INSTANCE;
+        LocalDate startDateIncl = parse("2020-02-29");
+        LocalDate[] endDatesIncl = {
+                parse("2020-12-31"), parse("2021-02-27"), parse("2021-02-28"), parse("2021-03-01"), parse("2021-03-01"),
+                parse("2024-02-28"), parse("2024-02-29"), parse("2022-06-30"), parse("2030-01-15"), parse("2020-02-29")
+        };
+        BigDecimal[] cumulGrowthFactors = new BigDecimal[endDatesIncl.length];
+        for (int i = 0; i < cumulGrowthFactors.length; i++) {
+            cumulGrowthFactors[i] = new BigDecimal("1.1").add(BigDecimal.valueOf(i, 2));
+        }
+        cumulGrowthFactors[4] = null;
+
+        BigDecimal[] annGrowthFactors = annualizer.annualizeGrowthFactors(ANNUALIZE_IF_OVER_ONE_YEAR, cumulGrowthFactors, startDateIncl, endDatesIncl);
+        for (int i = 0; i < endDatesIncl.length; i++) {
+            if (cumulGrowthFactors[i] == null) {
+                assertNull(annGrowthFactors[i]);
+            } else {
+                assertEquals(
+                        annualizer.annualizeGrowthFactor(ANNUALIZE_IF_OVER_ONE_YEAR, cumulGrowthFactors[i], startDateIncl, endDatesIncl[i]),
+                        annGrowthFactors[i]);
+            }
+        }
+        assertEquals(cumulGrowthFactors[1], annGrowthFactors[1]);
+        assertEquals("1.9962158948735884", annualizer.annualizeGrowthFactors(
+                ANNUALIZE_IF_OVER_ONE_YEAR, new BigDecimal[]{new BigDecimal("2.0"), new BigDecimal("2.0")}, startDateIncl,
+                new LocalDate[]{parse("2021-02-27"), parse("2021-02-28")})[1].toPlainString());
+
+        assertThrows(IllegalArgumentException.class, () -> annualizer.annualizeGrowthFactors(
+                ANNUALIZE_IF_OVER_ONE_YEAR, cumulGrowthFactors, startDateIncl, new LocalDate[]{parse("2021-02-27")}));
+
+        //A single period is split on its own, the same as a batch splits it
+        MathContext mc = new MathContext(20, RoundingMode.HALF_UP);
+        for (LocalDate batchStartDateIncl : List.of(parse("2020-02-29"), parse("2019-03-01"), parse("2021-02-28"), parse("2022-07-15"))) {
+            List<LocalDate> batchEndDatesIncl = new ArrayList<>();
+            for (LocalDate endDateIncl = batchStartDateIncl.minusDays(20); endDateIncl.isBefore(batchStartDateIncl.plusYears(6)); endDateIncl = endDateIncl.plusDays(13)) {
+                if (!endDateIncl.isEqual(batchStartDateIncl.minusDays(1))) {
+                    batchEndDatesIncl.add(endDateIncl);
+                }
+            }
+            BigDecimal[] batchGrowthFactors = new BigDecimal[batchEndDatesIncl.size()];
+            Arrays.fill(batchGrowthFactors, new BigDecimal("1.37"));
+            for (AnnualizationOption annualizationOption : AnnualizationOption.values()) {
+                for (MathContext mathContext : Arrays.asList(null, mc)) {
+                    BigDecimal[] batchAnnGrowthFactors = annualizer.annualizeGrowthFactors(
+                            annualizationOption, batchGrowthFactors, batchStartDateIncl, batchEndDatesIncl.toArray(LocalDate[]::new), mathContext);
+                    for (int i = 0; i < batchEndDatesIncl.size(); i++) {
+                        assertEquals(
+                                annualizer.annualizeGrowthFactor(annualizationOption, batchGrowthFactors[i], batchStartDateIncl, batchEndDatesIncl.get(i), mathContext),
+                                batchAnnGrowthFactors[i],
+                                "%s %s %s %s".formatted(annualizationOption, mathContext, batchStartDateIncl, batchEndDatesIncl.get(i)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void annualizeInBigDecimal() {
+        Annualizer annualizer = Annualizer.INSTANCE;
+        MathContext mc = new MathContext(34, RoundingMode.HALF_UP);
+        assertEquals("1.414213562373095048801688724209698",
+                annualizer.annualizeGrowthFactor(ANNUALIZE, new BigDecimal("2"), parse("2021-01-01"), parse("2022-12-31"), mc).toPlainString());
+        assertEquals(new BigDecimal("1.44"),
+                annualizer.annualizeGrowthFactor(ANNUALIZE, new BigDecimal("1.44"), parse("2021-01-01"), parse("2021-12-31"), mc));
+
+        BigDecimal cumulGrowthFactor = new BigDecimal("1.7513");
+        LocalDate startDateIncl = parse("2015-03-10");
+        for (LocalDate endDateIncl = parse("2016-03-10"); endDateIncl.isBefore(parse("2025-01-01")); endDateIncl = endDateIncl.plusDays(37)) {
+            BigDecimal bigDecimalRoot = annualizer.annualizeGrowthFactor(ANNUALIZE, cumulGrowthFactor, startDateIncl, endDateIncl, mc);
+            BigDecimal doubleRoot = annualizer.annualizeGrowthFactor(ANNUALIZE, cumulGrowthFactor, startDateIncl, endDateIncl);
+            assertEquals(34, bigDecimalRoot.precision());
+            assertTrue(doubleRoot.subtract(bigDecimalRoot).abs().compareTo(new BigDecimal("1E-15")) < 0);
+        }
+    }
 }
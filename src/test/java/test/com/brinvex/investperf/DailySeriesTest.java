@@ -0,0 +1,123 @@
+package test.com.brinvex.investperf;
+
+import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.DailySeries;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerformanceAnalyzer;
+import com.brinvex.investperf.api.PerformanceCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.brinvex.fintypes.enu.Frequency.DAY;
+import static com.brinvex.fintypes.enu.Frequency.MONTH;
+import static java.time.LocalDate.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DailySeriesTest {
+
+    @Test
+    void get() {
+        DailySeries series = DailySeries.of(Map.of(
+                parse("2023-01-31"), new BigDecimal("10"),
+                parse("2023-02-02"), new BigDecimal("12")));
+        assertEquals(parse("2023-01-31"), series.startDateIncl());
+        assertEquals(parse("2023-02-02"), series.endDateIncl());
+        assertEquals(new BigDecimal("10"), series.get(parse("2023-01-31")));
+        assertNull(series.get(parse("2023-02-01")));
+        assertEquals(new BigDecimal("12"), series.apply(parse("2023-02-02")));
+        assertNull(series.get(parse("2023-01-30")));
+        assertNull(series.get(parse("2023-02-03")));
+
+        DailySeries consecutiveSeries = DailySeries.of(parse("2023-01-31"), Arrays.asList(new BigDecimal("10"), null, new BigDecimal("12")));
+        assertNull(consecutiveSeries.get(parse("2023-02-01")));
+        assertEquals(new BigDecimal("12"), consecutiveSeries.get(parse("2023-02-02").toEpochDay()));
+
+        DailySeries emptySeries = DailySeries.of(List.<DateAmount>of());
+        assertNull(emptySeries.startDateIncl());
+        assertNull(emptySeries.get(parse("2023-02-02")));
+
+        assertThrows(IllegalArgumentException.class, () -> DailySeries.of(List.of(
+                new DateAmount("2023-01-31", "10"),
+                new DateAmount("2023-01-31", "11"))));
+    }
+
+    @Test
+    void analyzePerformance() {
+        LocalDate startDateIncl = parse("2021-01-01");
+        LocalDate endDateIncl = parse("2022-06-30");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("5000");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+        }
+        Map<LocalDate, BigDecimal> flows = Map.of(parse("2021-05-13"), new BigDecimal("700"), parse("2022-02-03"), new BigDecimal("-300"));
+        for (var frequency : List.of(DAY, MONTH)) {
+            PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                    .resultFrequency(frequency)
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .flows(flows)
+                    .calculateMwr(true)
+                    .calculateTrailingTwr1Y(true);
+            List<PerfAnalysis> expected = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.assetValues(assetValues).build()));
+            List<PerfAnalysis> actual = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.assetValues(DailySeries.of(assetValues)).build()));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void calculateReturn() {
+        LocalDate startDateIncl = parse("2021-01-01");
+        LocalDate endDateIncl = parse("2021-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("5000");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            if (date.getDayOfMonth() == 13) {
+                BigDecimal flow = new BigDecimal(date.getMonthValue() % 2 == 0 ? "-450" : "700");
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+        }
+        DailySeries assetValueSeries = DailySeries.of(assetValues);
+        for (PerformanceCalculator calculator : List.of(
+                PerformanceCalculator.truetwrCalculator(),
+                PerformanceCalculator.linkedModifiedDietzTwrCalculator(),
+                PerformanceCalculator.modifiedDietzMwrCalculator(),
+                PerformanceCalculator.xirrMwrCalculator())) {
+            for (FlowTiming flowTiming : FlowTiming.values()) {
+                for (NumericMode numericMode : NumericMode.values()) {
+                    PerfCalcRequest.PerfCalcRequestBuilder reqBuilder = PerfCalcRequest.builder()
+                            .startDateIncl(startDateIncl)
+                            .endDateIncl(endDateIncl)
+                            .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                            .endAssetValueIncl(assetValues.get(endDateIncl))
+                            .flows(flows)
+                            .flowTiming(flowTiming)
+                            .numericMode(numericMode);
+                    PerfCalcRequest seriesReq = reqBuilder.assetValues(assetValueSeries).build();
+                    assertSame(assetValueSeries, seriesReq.assetValues());
+                    assertEquals(
+                            calculator.calculateReturn(reqBuilder.assetValues(assetValues).build()),
+                            calculator.calculateReturn(seriesReq));
+                }
+            }
+        }
+    }
+}
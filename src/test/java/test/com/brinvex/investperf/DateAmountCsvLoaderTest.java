@@ -0,0 +1,214 @@
+package test.com.brinvex.investperf;
+
+import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.DailySeries;
+import com.brinvex.investperf.api.DateAmountCsvLoader;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerformanceCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.SequencedMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static java.time.LocalDate.parse;
+import static java.util.function.Predicate.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DateAmountCsvLoaderTest {
+
+    private static final DateAmountCsvLoader loader = DateAmountCsvLoader.INSTANCE;
+
+    @TempDir
+    private Path tempDir;
+
+    private static List<DateAmount> readLines(Path file) throws IOException {
+        try (var lines = Files.lines(file)) {
+            return lines
+                    .filter(not(String::isBlank))
+                    .map(line -> {
+                        String[] lineParts = line.split(",");
+                        return new DateAmount(lineParts[0].strip(), lineParts[1].strip());
+                    })
+                    .toList();
+        }
+    }
+
+    @Test
+    void loadAssetValues() throws IOException {
+        Path file = tempDir.resolve("assetValues.txt");
+        Files.writeString(file, """
+                2023-10-16,10000
+                2023-10-17,10050.25
+                
+                2023-10-19, -0.50\r
+                 2023-10-20 ,1E+3
+                2023-10-23,+12345678901234567890.123""");
+
+        DailySeries assetValues = loader.loadAssetValues(file);
+        DailySeries expected = DailySeries.of(readLines(file));
+        assertEquals(parse("2023-10-16"), assetValues.startDateIncl());
+        assertEquals(parse("2023-10-23"), assetValues.endDateIncl());
+        for (LocalDate date = parse("2023-10-15"); !date.isAfter(parse("2023-10-24")); date = date.plusDays(1)) {
+            assertEquals(expected.get(date), assetValues.get(date));
+        }
+        assertEquals("10050.25", assetValues.get(parse("2023-10-17")).toPlainString());
+        assertEquals("-0.50", assetValues.get(parse("2023-10-19")).toPlainString());
+        assertNull(assetValues.get(parse("2023-10-18")));
+    }
+
+    @Test
+    void loadFlows() throws IOException {
+        Path file = tempDir.resolve("flows.txt");
+        StringBuilder sb = new StringBuilder();
+        for (LocalDate date = parse("2020-01-01"); date.isBefore(parse("2024-01-01")); date = date.plusDays(3)) {
+            sb.append(date).append(',').append(date.getDayOfMonth() % 2 == 0 ? "-" : "").append(date.getDayOfYear()).append(".").append(date.getMonthValue()).append('\n');
+        }
+        //An earlier date and a repeated one
+        sb.append("2020-01-02,7\n2020-01-01,0.5\n");
+        Files.writeString(file, sb);
+
+        SortedMap<LocalDate, BigDecimal> flows = loader.loadFlows(file);
+        TreeMap<LocalDate, BigDecimal> expected = new TreeMap<>();
+        for (DateAmount flow : readLines(file)) {
+            expected.merge(flow.date(), flow.amount(), BigDecimal::add);
+        }
+        assertEquals(expected, flows);
+        assertEquals(new BigDecimal("1.6"), flows.get(parse("2020-01-01")));
+
+        //The loaded flows are taken by the requests as they are
+        BigDecimal expectedReturn = PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(PerfCalcRequest.builder()
+                .startDateIncl(parse("2020-01-01"))
+                .endDateIncl(parse("2023-12-31"))
+                .startAssetValueExcl(new BigDecimal("100000"))
+                .endAssetValueIncl(new BigDecimal("120000"))
+                .flows(expected)
+                .build());
+        assertEquals(expectedReturn, PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(PerfCalcRequest.builder()
+                .startDateIncl(parse("2020-01-01"))
+                .endDateIncl(parse("2023-12-31"))
+                .startAssetValueExcl(new BigDecimal("100000"))
+                .endAssetValueIncl(new BigDecimal("120000"))
+                .flows(flows)
+                .build()));
+    }
+
+    @Test
+    void loadByAccount() throws IOException {
+        Path file = tempDir.resolve("accounts.txt");
+        Files.writeString(file, """
+                U1,2023-10-16,100
+                U1,2023-10-17,101
+                U2,2023-10-17,-5
+                U1,2023-10-18,102
+                U2 ,2023-10-17,-5.0
+                """);
+
+        SequencedMap<String, DailySeries> assetValues = loader.loadAssetValuesByAccount(file);
+        assertEquals(List.of("U1", "U2"), List.copyOf(assetValues.keySet()));
+        assertEquals(new BigDecimal("102"), assetValues.get("U1").get(parse("2023-10-18")));
+        assertEquals(parse("2023-10-17"), assetValues.get("U2").startDateIncl());
+        assertEquals(parse("2023-10-17"), assetValues.get("U2").endDateIncl());
+
+        SequencedMap<String, SortedMap<LocalDate, BigDecimal>> flows = loader.loadFlowsByAccount(file);
+        assertEquals(List.of("U1", "U2"), List.copyOf(flows.keySet()));
+        assertEquals(new TreeMap<>(Map.of(
+                parse("2023-10-16"), new BigDecimal("100"),
+                parse("2023-10-17"), new BigDecimal("101"),
+                parse("2023-10-18"), new BigDecimal("102"))), flows.get("U1"));
+        assertEquals(new TreeMap<>(Map.of(parse("2023-10-17"), new BigDecimal("-10.0"))), flows.get("U2"));
+
+        Files.writeString(file, "U1,2023-10-16,100\nU1,2023-10-16,101\n");
+        assertThrows(IllegalArgumentException.class, () -> loader.loadAssetValuesByAccount(file));
+        Files.writeString(file, "2023-10-16,100\n");
+        assertThrows(IllegalArgumentException.class, () -> loader.loadFlowsByAccount(file));
+    }
+
+    @Test
+    void loadInvalidLine() throws IOException {
+        Path file = tempDir.resolve("invalid.txt");
+        Files.writeString(file, "2023-10-16,100\n2023-02-30,100\n");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> loader.loadFlows(file));
+        assertTrue(e.getMessage().startsWith("Invalid line 2 of "), e.getMessage());
+
+        Files.writeString(file, "2023-10-16;100\n");
+        assertThrows(IllegalArgumentException.class, () -> loader.loadFlows(file));
+        Files.writeString(file, "2023-10-16,100,1\n");
+        assertThrows(IllegalArgumentException.class, () -> loader.loadFlows(file));
+        Files.writeString(file, "2023-10-16,abc\n");
+        assertThrows(IllegalArgumentException.class, () -> loader.loadFlows(file));
+    }
+
+    @Test
+    void loadFlows_smallWindows() throws IOException {
+        Path file = tempDir.resolve("flows.txt");
+        String content = """
+                2023-10-16,+12345678901234567890.123
+                2023-10-17,10050.25
+
+                2023-10-19, -0.50\r
+                 2023-10-20 ,1E+3
+                2023-10-23,10000
+                2023-10-24,7""";
+        Files.writeString(file, content);
+        SortedMap<LocalDate, BigDecimal> expected = loader.loadFlows(file);
+        assertEquals(6, expected.size());
+
+        //The first window ends right after the line break of the first line, which is the longest one
+        int firstLineLength = content.indexOf('\n') + 1;
+        assertEquals(expected, DateAmountCsvLoader.withWindowSize(firstLineLength).loadFlows(file));
+        //The first window ends right before the line break of the first line, so the line does not fit into it
+        assertThrows(IllegalArgumentException.class, () -> DateAmountCsvLoader.withWindowSize(firstLineLength - 1).loadFlows(file));
+
+        //Every window boundary, from the windows of the longest line up to the whole file
+        for (int windowSize = firstLineLength; windowSize <= content.length() + 1; windowSize++) {
+            DateAmountCsvLoader windowLoader = DateAmountCsvLoader.withWindowSize(windowSize);
+            assertEquals(expected, windowLoader.loadFlows(file), "windowSize=" + windowSize);
+            DailySeries assetValues = windowLoader.loadAssetValues(file);
+            for (Map.Entry<LocalDate, BigDecimal> e : expected.entrySet()) {
+                assertEquals(e.getValue(), assetValues.get(e.getKey()), "windowSize=%s, %s".formatted(windowSize, e.getKey()));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> DateAmountCsvLoader.withWindowSize(0));
+    }
+
+    @Test
+    void loadByAccount_smallWindows() throws IOException {
+        Path file = tempDir.resolve("accounts.txt");
+        String content = """
+                U1,2023-10-16,100
+                U22,2023-10-17,-5.0
+                U1 ,2023-10-18,101
+                """;
+        Files.writeString(file, content);
+        Map<String, Map<LocalDate, BigDecimal>> expected = Map.of(
+                "U1", Map.of(parse("2023-10-16"), new BigDecimal("100"), parse("2023-10-18"), new BigDecimal("101")),
+                "U22", Map.of(parse("2023-10-17"), new BigDecimal("-5.0")));
+        int longestLineLength = "U22,2023-10-17,-5.0\n".length();
+        for (int windowSize = longestLineLength; windowSize <= content.length() + 1; windowSize++) {
+            SequencedMap<String, SortedMap<LocalDate, BigDecimal>> flows = DateAmountCsvLoader.withWindowSize(windowSize).loadFlowsByAccount(file);
+            assertEquals(List.of("U1", "U22"), List.copyOf(flows.keySet()), "windowSize=" + windowSize);
+            assertEquals(expected, flows, "windowSize=" + windowSize);
+        }
+    }
+
+    @Test
+    void loadInvalidLine_lineNumberAcrossWindows() throws IOException {
+        Path file = tempDir.resolve("invalid.txt");
+        Files.writeString(file, "2023-10-16,100\n2023-10-17,100\n2023-02-30,100\n");
+        //Each line in a window of its own
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> DateAmountCsvLoader.withWindowSize(15).loadFlows(file));
+        assertTrue(e.getMessage().startsWith("Invalid line 3 of "), e.getMessage());
+    }
+}
@@ -1,16 +1,24 @@
 package test.com.brinvex.investperf;
 
 import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerfCalcRequest.PerfCalcRequestBuilder;
+import com.brinvex.investperf.api.PerfCalcResult;
 import com.brinvex.investperf.api.PerformanceCalculator;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.TreeMap;
 
 import static com.brinvex.investperf.api.AnnualizationOption.DO_NOT_ANNUALIZE;
 import static com.brinvex.investperf.api.FlowTiming.BEGINNING_OF_DAY;
 import static java.time.LocalDate.parse;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class LinkedModifiedDietzTwrCalculatorTest {
 
@@ -34,4 +42,85 @@ class LinkedModifiedDietzTwrCalculatorTest {
                 .build());
         assertEquals("0.0100004877", twrReturn.toPlainString());
     }
+
+    /**
+     * The flow of 2023-03-10 is at, just below or just past the large flow level of 5% of the start value 10000, inflowing and outflowing.
+     * Past the level, it splits March into two sub-periods, which only the flows beyond the calcScale of the level reach with calcScale 12.
+     * The expected returns are the ones of the implementation before the flows were walked once.
+     */
+    @Test
+    void linkedModifiedDietzTwr_largeFlowLevel() {
+        List<String> cases = List.of(
+                "499.99 BEGINNING_OF_DAY 20 0.005757629069",
+                "499.99 BEGINNING_OF_DAY 12 0.005757629068",
+                "499.99 END_OF_DAY 20 0.005762022759",
+                "499.99 END_OF_DAY 12 0.005762022759",
+                "500 BEGINNING_OF_DAY 20 0.005757624357",
+                "500 BEGINNING_OF_DAY 12 0.005757624357",
+                "500 END_OF_DAY 20 0.005762018133",
+                "500 END_OF_DAY 12 0.005762018133",
+                "500.000000000001 BEGINNING_OF_DAY 20 0.005769848465",
+                "500.000000000001 BEGINNING_OF_DAY 12 0.005757624357",
+                "500.000000000001 END_OF_DAY 20 0.005765101257",
+                "500.000000000001 END_OF_DAY 12 0.005762018133",
+                "500.01 BEGINNING_OF_DAY 20 0.005769844018",
+                "500.01 BEGINNING_OF_DAY 12 0.005769844019",
+                "500.01 END_OF_DAY 20 0.005765096719",
+                "500.01 END_OF_DAY 12 0.005765096719",
+                "-499.99 BEGINNING_OF_DAY 20 0.006272042265",
+                "-499.99 BEGINNING_OF_DAY 12 0.006272042265",
+                "-499.99 END_OF_DAY 20 0.006266680987",
+                "-499.99 END_OF_DAY 12 0.006266680987",
+                "-500 BEGINNING_OF_DAY 20 0.006272047883",
+                "-500 BEGINNING_OF_DAY 12 0.006272047883",
+                "-500 END_OF_DAY 20 0.006266686494",
+                "-500 END_OF_DAY 12 0.006266686493",
+                "-500.000000000001 BEGINNING_OF_DAY 20 0.006261400782",
+                "-500.000000000001 BEGINNING_OF_DAY 12 0.006272047883",
+                "-500.000000000001 END_OF_DAY 20 0.006266685603",
+                "-500.000000000001 END_OF_DAY 12 0.006266686493",
+                "-500.01 BEGINNING_OF_DAY 20 0.006261406215",
+                "-500.01 BEGINNING_OF_DAY 12 0.006261406214",
+                "-500.01 END_OF_DAY 20 0.006266691147",
+                "-500.01 END_OF_DAY 12 0.006266691146"
+        );
+        PerformanceCalculator.LinkedModifiedDietzTwrCalculator linkedTwrCalculator = PerformanceCalculator.linkedModifiedDietzTwrCalculator();
+        LocalDate startDateIncl = parse("2023-03-01");
+        LocalDate endDateIncl = parse("2023-04-30");
+        for (String c : cases) {
+            String[] parts = c.split(" ");
+            FlowTiming flowTiming = FlowTiming.valueOf(parts[1]);
+            int calcScale = Integer.parseInt(parts[2]);
+            BigDecimal expected = new BigDecimal(parts[3]);
+
+            TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+            flows.put(parse("2023-03-06"), new BigDecimal("20"));
+            flows.put(parse("2023-03-10"), new BigDecimal(parts[0]));
+            flows.put(parse("2023-03-20"), new BigDecimal("-35"));
+            TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+            BigDecimal assetValue = new BigDecimal("10000");
+            assetValues.put(startDateIncl.minusDays(1), assetValue);
+            for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+                assetValue = assetValue.add(new BigDecimal(date.getDayOfMonth() % 5 - 1)).add(flows.getOrDefault(date, BigDecimal.ZERO));
+                assetValues.put(date, assetValue);
+            }
+
+            PerfCalcRequestBuilder req = PerfCalcRequest.builder()
+                    .startDateIncl(startDateIncl)
+                    .endDateIncl(endDateIncl)
+                    .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                    .endAssetValueIncl(assetValues.get(endDateIncl))
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .flowTiming(flowTiming)
+                    .calcScale(calcScale)
+                    .resultScale(12)
+                    .annualization(DO_NOT_ANNUALIZE);
+            assertEquals(expected, linkedTwrCalculator.calculateReturn(req.copy().build()), c);
+
+            PerfCalcResult doubleResult = linkedTwrCalculator.calculateReturnWithErrorBound(req.copy().numericMode(NumericMode.DOUBLE).build());
+            BigDecimal tolerance = doubleResult.errorBound().add(new BigDecimal("1E-12"));
+            assertTrue(doubleResult.value().subtract(expected).abs().compareTo(tolerance) <= 0, "%s %s".formatted(c, doubleResult));
+        }
+    }
 }
@@ -2,6 +2,7 @@ package test.com.brinvex.investperf;
 
 import com.brinvex.fintypes.vo.DateAmount;
 import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.ModifiedDietzIndex;
 import com.brinvex.investperf.api.PerfCalcRequest;
 import com.brinvex.investperf.api.PerfCalcRequest.PerfCalcRequestBuilder;
 import com.brinvex.investperf.api.PerformanceCalculator;
@@ -9,11 +10,15 @@ import com.brinvex.investperf.api.PerformanceCalculator.ModifiedDietzMwrCalculat
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR;
 import static com.brinvex.investperf.api.AnnualizationOption.DO_NOT_ANNUALIZE;
 import static com.brinvex.investperf.api.FlowTiming.BEGINNING_OF_DAY;
+import static com.brinvex.investperf.api.FlowTiming.END_OF_DAY;
 import static java.math.RoundingMode.HALF_UP;
 import static java.time.LocalDate.parse;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -370,5 +375,101 @@ class ModifiedDietzMwrCalculatorTest {
         assertEquals("0.0000000000", ret3.toPlainString());
         assertEquals(0, ret1.compareTo(ret3));
     }
-}
 
+    /**
+     * With a low calcScale, the weights rounded one by one give another return than the exact weights would.
+     * The expected values were calculated by the calculator before the running sums were introduced.
+     */
+    @Test
+    void mDietz_roundedWeights() {
+        record Case(String endDateIncl, String endValueIncl, FlowTiming flowTiming, int calcScale, Map<String, String> flows, String expected) {
+        }
+        List<Case> cases = List.of(
+                new Case("2020-05-17", "41777.27", BEGINNING_OF_DAY, 2, Map.of(
+                        "2020-01-11", "107.56", "2020-01-27", "-370.87", "2020-03-08", "7982.46", "2020-03-11", "-1925.42",
+                        "2020-03-21", "-1721.37", "2020-03-24", "152.41", "2020-04-13", "10722.09"), "1.13"),
+                new Case("2020-05-19", "14778.82", BEGINNING_OF_DAY, 2, Map.of(
+                        "2020-01-11", "14028.66", "2020-01-13", "-558.63", "2020-01-20", "9657.88", "2020-02-15", "11745.90"), "-0.78"),
+                new Case("2020-04-30", "48700.65", END_OF_DAY, 4, Map.of(
+                        "2020-02-07", "8256.16"), "1.9436")
+        );
+        for (Case c : cases) {
+            Map<LocalDate, BigDecimal> flows = new HashMap<>();
+            c.flows().forEach((date, flow) -> flows.put(parse(date), new BigDecimal(flow)));
+            PerfCalcRequest req = PerfCalcRequest.builder()
+                    .startDateIncl(parse("2020-01-01"))
+                    .endDateIncl(parse(c.endDateIncl()))
+                    .startAssetValueExcl(new BigDecimal("10000"))
+                    .endAssetValueIncl(new BigDecimal(c.endValueIncl()))
+                    .flows(flows)
+                    .flowTiming(c.flowTiming())
+                    .annualization(DO_NOT_ANNUALIZE)
+                    .calcScale(c.calcScale())
+                    .resultScale(c.calcScale())
+                    .build();
+            assertEquals(c.expected(), modifiedDietzMwrCalculator.calculateReturn(req).toPlainString(), c.toString());
+            assertEquals(c.expected(), ModifiedDietzIndex.of(req).mwr(req.startDateIncl(), req.endDateIncl()).toPlainString(), c.toString());
+        }
+    }
+
+    @Test
+    void mDietzIndex() {
+        LocalDate startDateIncl = parse("2023-01-01");
+        LocalDate endDateIncl = parse("2023-02-28");
+        Map<LocalDate, BigDecimal> assetValues = new HashMap<>();
+        Map<LocalDate, BigDecimal> flows = new HashMap<>();
+        BigDecimal assetValue = new BigDecimal("500.00");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            int day = date.getDayOfMonth();
+            assetValue = assetValue.add(new BigDecimal(day % 5 - 2));
+            if (day % 6 == 0) {
+                BigDecimal flow = new BigDecimal(day % 12 == 0 ? "-480.10" : "450");
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            //The low start values followed by a large withdrawal make the average capital of some ranges negative
+            assetValues.put(date, day % 11 == 0 ? new BigDecimal("10.00") : assetValue);
+        }
+        int negativeCapitalCount = 0;
+        for (int calcScale : List.of(20, 3)) {
+            for (FlowTiming flowTiming : FlowTiming.values()) {
+                PerfCalcRequestBuilder calcReqBuilder = PerfCalcRequest.builder()
+                        .startDateIncl(startDateIncl)
+                        .endDateIncl(endDateIncl)
+                        .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                        .endAssetValueIncl(assetValues.get(endDateIncl))
+                        .assetValues(assetValues)
+                        .flows(flows)
+                        .flowTiming(flowTiming)
+                        .annualization(ANNUALIZE_IF_OVER_ONE_YEAR)
+                        .calcScale(calcScale)
+                        .resultScale(12);
+                ModifiedDietzIndex mDietzIndex = ModifiedDietzIndex.of(calcReqBuilder.copy().build());
+                for (LocalDate rangeStartDateIncl = startDateIncl; !rangeStartDateIncl.isAfter(endDateIncl); rangeStartDateIncl = rangeStartDateIncl.plusDays(1)) {
+                    for (LocalDate rangeEndDateIncl = rangeStartDateIncl; !rangeEndDateIncl.isAfter(endDateIncl); rangeEndDateIncl = rangeEndDateIncl.plusDays(1)) {
+                        PerfCalcRequest rangeReq = calcReqBuilder.copy()
+                                .startDateIncl(rangeStartDateIncl)
+                                .endDateIncl(rangeEndDateIncl)
+                                .startAssetValueExcl(assetValues.get(rangeStartDateIncl.minusDays(1)))
+                                .endAssetValueIncl(assetValues.get(rangeEndDateIncl))
+                                .build();
+                        LocalDate s = rangeStartDateIncl;
+                        LocalDate e = rangeEndDateIncl;
+                        BigDecimal expected;
+                        try {
+                            expected = modifiedDietzMwrCalculator.calculateReturn(rangeReq);
+                        } catch (RuntimeException failure) {
+                            if (failure instanceof IllegalStateException) {
+                                negativeCapitalCount++;
+                            }
+                            assertThrows(failure.getClass(), () -> mDietzIndex.mwr(s, e));
+                            continue;
+                        }
+                        assertEquals(expected, mDietzIndex.mwr(s, e), "%s %s %s %s".formatted(calcScale, flowTiming, s, e));
+                    }
+                }
+            }
+        }
+        assertTrue(negativeCapitalCount > 0);
+    }
+}
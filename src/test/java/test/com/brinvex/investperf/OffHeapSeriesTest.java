@@ -0,0 +1,178 @@
+package test.com.brinvex.investperf;
+
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+import com.brinvex.investperf.api.OffHeapSeries;
+import com.brinvex.investperf.api.OffHeapSeries.OffHeapSeriesBuilder;
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerformanceAnalyzer;
+import com.brinvex.investperf.api.PerformanceCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.Arena;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static com.brinvex.fintypes.enu.Frequency.DAY;
+import static com.brinvex.fintypes.enu.Frequency.MONTH;
+import static java.time.LocalDate.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapSeriesTest {
+
+    @Test
+    void read() {
+        Map<LocalDate, BigDecimal> values = new HashMap<>();
+        values.put(parse("2023-10-16"), new BigDecimal("10000"));
+        values.put(parse("2023-10-17"), new BigDecimal("10050.25"));
+        values.put(parse("2023-10-20"), new BigDecimal("-0.5"));
+        try (Arena arena = Arena.ofConfined()) {
+            OffHeapSeries series = OffHeapSeries.of(arena, 2, values);
+            assertEquals(3, series.size());
+            assertEquals(parse("2023-10-16"), series.startDateIncl());
+            assertEquals(parse("2023-10-20"), series.endDateIncl());
+            for (LocalDate date = parse("2023-10-15"); !date.isAfter(parse("2023-10-21")); date = date.plusDays(1)) {
+                BigDecimal expected = values.get(date);
+                BigDecimal actual = series.apply(date);
+                long actualUnscaled = series.getUnscaled(date.toEpochDay());
+                if (expected == null) {
+                    assertNull(actual);
+                    assertEquals(OffHeapSeries.NO_AMOUNT, actualUnscaled, date.toString());
+                } else {
+                    assertEquals(expected.setScale(2), actual, date.toString());
+                    assertEquals(expected.setScale(2).unscaledValue().longValueExact(), actualUnscaled, date.toString());
+                }
+            }
+
+            SortedMap<LocalDate, BigDecimal> subMap = series.subMap(parse("2023-10-17"), parse("2023-10-19"));
+            assertEquals(Map.of(parse("2023-10-17"), new BigDecimal("10050.25")), subMap);
+            assertEquals(3, series.subMap(parse("2023-10-01"), parse("2023-10-31")).size());
+            assertTrue(series.subMap(parse("2023-10-21"), parse("2023-10-31")).isEmpty());
+
+            OffHeapSeries emptySeries = OffHeapSeries.builder(arena, 2).build();
+            assertEquals(0, emptySeries.size());
+            assertNull(emptySeries.startDateIncl());
+            assertNull(emptySeries.apply(parse("2023-10-16")));
+            assertEquals(OffHeapSeries.NO_AMOUNT, emptySeries.getUnscaled(parse("2023-10-16").toEpochDay()));
+            assertTrue(emptySeries.subMap(parse("2023-10-01"), parse("2023-10-31")).isEmpty());
+        }
+    }
+
+    @Test
+    void build() {
+        try (Arena arena = Arena.ofConfined()) {
+            OffHeapSeriesBuilder builder = OffHeapSeries.builder(arena, 2);
+            LocalDate startDateIncl = parse("2000-01-01");
+            for (int i = 0; i < 100_000; i++) {
+                builder.add(startDateIncl.toEpochDay() + i, i);
+            }
+            OffHeapSeries series = builder.build();
+            assertEquals(100_000, series.size());
+            assertEquals(new BigDecimal("999.99"), series.apply(startDateIncl.plusDays(99_999)));
+            assertEquals(new BigDecimal("0.00"), series.apply(startDateIncl));
+            assertThrows(IllegalStateException.class, () -> builder.add(startDateIncl.plusDays(100_000), BigDecimal.ONE));
+
+            OffHeapSeriesBuilder invalidBuilder = OffHeapSeries.builder(arena, 2).add(startDateIncl, BigDecimal.ONE);
+            assertThrows(IllegalArgumentException.class, () -> invalidBuilder.add(startDateIncl, BigDecimal.ONE));
+            assertThrows(IllegalArgumentException.class, () -> invalidBuilder.add(startDateIncl.plusDays(1), new BigDecimal("0.001")));
+            assertThrows(IllegalArgumentException.class, () -> invalidBuilder.add(startDateIncl.plusDays(1), new BigDecimal("1E+18")));
+            assertThrows(IllegalArgumentException.class, () -> invalidBuilder.add(startDateIncl.plusDays(1).toEpochDay(), OffHeapSeries.NO_AMOUNT));
+        }
+
+        Arena arena = Arena.ofConfined();
+        OffHeapSeries series = OffHeapSeries.of(arena, 0, Map.of(parse("2023-10-16"), BigDecimal.ONE));
+        arena.close();
+        assertThrows(IllegalStateException.class, () -> series.apply(parse("2023-10-16")));
+    }
+
+    @Test
+    void calculateAndAnalyzePerformance() {
+        LocalDate startDateIncl = parse("2021-01-01");
+        LocalDate endDateIncl = parse("2022-06-30");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("5000.00");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3).movePointLeft(1));
+        }
+        Map<LocalDate, BigDecimal> flows = Map.of(parse("2021-05-13"), new BigDecimal("700.00"), parse("2022-02-03"), new BigDecimal("-300.00"));
+        Map<LocalDate, BigDecimal> incomes = Map.of(parse("2021-09-15"), new BigDecimal("25.00"));
+
+        try (Arena arena = Arena.ofShared()) {
+            OffHeapSeries assetValueSeries = OffHeapSeries.of(arena, 2, assetValues);
+            OffHeapSeries flowSeries = OffHeapSeries.of(arena, 2, flows);
+            OffHeapSeries incomeSeries = OffHeapSeries.of(arena, 2, incomes);
+
+            for (var frequency : List.of(DAY, MONTH)) {
+                PerfAnalysisRequest expectedReq = PerfAnalysisRequest.builder()
+                        .resultFrequency(frequency)
+                        .resultStartDateIncl(startDateIncl)
+                        .resultEndDateIncl(parse("2022-06-26"))
+                        .assetValues(assetValues)
+                        .flows(flows)
+                        .incomes(incomes)
+                        .calculateMwr(true)
+                        .calculateTrailingTwr1Y(true)
+                        .build();
+                PerfAnalysisRequest actualReq = PerfAnalysisRequest.builder()
+                        .resultFrequency(frequency)
+                        .resultStartDateIncl(startDateIncl)
+                        .resultEndDateIncl(parse("2022-06-26"))
+                        .assetValues(assetValueSeries)
+                        .flows(flowSeries::subMap)
+                        .incomes(incomeSeries::subMap)
+                        .calculateMwr(true)
+                        .calculateTrailingTwr1Y(true)
+                        .build();
+                List<PerfAnalysis> expected = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(expectedReq));
+                List<PerfAnalysis> actual = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(actualReq));
+                assertEquals(expected, actual);
+            }
+
+            PerfCalcRequest expectedCalcReq = PerfCalcRequest.builder()
+                    .startDateIncl(parse("2021-03-01"))
+                    .endDateIncl(parse("2022-02-27"))
+                    .startAssetValueExcl(assetValues.get(parse("2021-02-28")))
+                    .endAssetValueIncl(assetValues.get(parse("2022-02-27")))
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .build();
+            PerfCalcRequest actualCalcReq = PerfCalcRequest.builder()
+                    .startDateIncl(parse("2021-03-01"))
+                    .endDateIncl(parse("2022-02-27"))
+                    .startAssetValueExcl(assetValueSeries.apply(parse("2021-02-28")))
+                    .endAssetValueIncl(assetValueSeries.apply(parse("2022-02-27")))
+                    .assetValues(assetValueSeries)
+                    .flows(flowSeries.subMap(parse("2021-03-01"), parse("2022-02-27")))
+                    .build();
+            assertEquals(
+                    PerformanceCalculator.truetwrCalculator().calculateReturn(expectedCalcReq),
+                    PerformanceCalculator.truetwrCalculator().calculateReturn(actualCalcReq));
+            assertEquals(
+                    PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(expectedCalcReq),
+                    PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(actualCalcReq));
+            for (FlowTiming flowTiming : FlowTiming.values()) {
+                for (NumericMode numericMode : NumericMode.values()) {
+                    PerfCalcRequest expectedModeReq = expectedCalcReq.toBuilder().flowTiming(flowTiming).numericMode(numericMode).build();
+                    PerfCalcRequest actualModeReq = actualCalcReq.toBuilder().flowTiming(flowTiming).numericMode(numericMode).build();
+                    assertEquals(
+                            PerformanceCalculator.truetwrCalculator().calculateReturn(expectedModeReq),
+                            PerformanceCalculator.truetwrCalculator().calculateReturn(actualModeReq));
+                    assertEquals(
+                            PerformanceCalculator.linkedModifiedDietzTwrCalculator().calculateReturn(expectedModeReq),
+                            PerformanceCalculator.linkedModifiedDietzTwrCalculator().calculateReturn(actualModeReq));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package test.com.brinvex.investperf;
+
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerformanceAnalyzer;
+import com.brinvex.investperf.api.PerformanceCalculator.LinkedModifiedDietzTwrCalculator;
+import com.brinvex.investperf.api.PerformanceCalculator.TrueTwrCalculator;
+import com.brinvex.investperf.api.PerformanceCalculator.TwrCalculator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.brinvex.fintypes.enu.Frequency.DAY;
+import static com.brinvex.fintypes.enu.Frequency.MONTH;
+import static com.brinvex.fintypes.enu.Frequency.QUARTER;
+import static java.time.LocalDate.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerfAnalysisCheckpointTest {
+
+    private static final PerformanceAnalyzer analyzer = PerformanceAnalyzer.INSTANCE;
+
+    @TempDir
+    private Path tempDir;
+
+    private static TreeMap<LocalDate, BigDecimal> assetValues() {
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("5000");
+        for (LocalDate date = parse("2018-12-31"); date.isBefore(parse("2024-01-01")); date = date.plusDays(1)) {
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3).movePointLeft(1));
+            if (date.getDayOfMonth() == 13) {
+                assetValue = assetValue.add(new BigDecimal("100"));
+            }
+        }
+        return assetValues;
+    }
+
+    private static Map<LocalDate, BigDecimal> flows() {
+        Map<LocalDate, BigDecimal> flows = new TreeMap<>();
+        for (LocalDate date = parse("2019-01-13"); date.isBefore(parse("2024-01-01")); date = date.plusMonths(1)) {
+            flows.put(date, new BigDecimal("100"));
+        }
+        return flows;
+    }
+
+    private static PerfAnalysisRequest.PerfAnalysisRequestBuilder requestBuilder(Map<LocalDate, BigDecimal> assetValues, String mwrCalculatorType) {
+        return PerfAnalysisRequest.builder()
+                .resultFrequency(MONTH)
+                .resultStartDateIncl(parse("2019-01-01"))
+                .assetValues(assetValues)
+                .flows(flows())
+                .incomes(Map.of(parse("2019-06-10"), new BigDecimal("12.5"), parse("2022-09-15"), new BigDecimal("20")))
+                .mwrCalculatorType(mwrCalculatorType)
+                .calculateMwr(true)
+                .calculateTrailingAvgProfit1Y(true)
+                .calculateTrailingAvgFlow1Y(true)
+                .calculatePeriodIncome(true)
+                .calculateTrailingAvgIncome1Y(true)
+                .calculateTrailingTwr2Y(true)
+                .trailingTwrPeriods(List.of(Period.ofMonths(18)));
+    }
+
+    private static List<PerfAnalysis> analyze(PerfAnalysisRequest req, Path checkpointFile, LocalDate expectedFirstResultDate) {
+        List<PerfAnalysis> results = new ArrayList<>();
+        assertEquals(expectedFirstResultDate, analyzer.analyzePerformance(req, checkpointFile, results::add));
+        return results;
+    }
+
+    private static List<PerfAnalysis> resultsFrom(PerfAnalysisRequest req, LocalDate startDateIncl) {
+        return analyzer.analyzePerformance(req)
+                .stream()
+                .filter(perfAnalysis -> !perfAnalysis.periodStartDateIncl().isBefore(startDateIncl))
+                .toList();
+    }
+
+    @Test
+    void resume() {
+        TreeMap<LocalDate, BigDecimal> assetValues = assetValues();
+        for (String mwrCalculatorType : List.of("ModifiedDietzMwrCalculator", "XirrMwrCalculator")) {
+            Path checkpointFile = tempDir.resolve(mwrCalculatorType + ".checkpoint");
+            PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = requestBuilder(assetValues, mwrCalculatorType);
+
+            PerfAnalysisRequest req1 = reqBuilder.resultEndDateIncl(parse("2022-08-20")).build();
+            assertEquals(List.copyOf(analyzer.analyzePerformance(req1)), analyze(req1, checkpointFile, parse("2019-01-01")));
+            assertTrue(Files.exists(checkpointFile));
+
+            PerfAnalysisRequest req2 = reqBuilder.resultEndDateIncl(parse("2023-06-15")).build();
+            assertEquals(resultsFrom(req2, parse("2022-08-01")), analyze(req2, checkpointFile, parse("2022-08-01")));
+
+            PerfAnalysisRequest req3 = reqBuilder.resultEndDateIncl(parse("2023-12-31")).build();
+            assertEquals(resultsFrom(req3, parse("2023-06-01")), analyze(req3, checkpointFile, parse("2023-06-01")));
+        }
+    }
+
+    @Test
+    void invalidate() throws IOException {
+        TreeMap<LocalDate, BigDecimal> assetValues = assetValues();
+        Path checkpointFile = tempDir.resolve("U1.checkpoint");
+        PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = requestBuilder(assetValues, "ModifiedDietzMwrCalculator");
+        analyze(reqBuilder.resultEndDateIncl(parse("2022-08-20")).build(), checkpointFile, parse("2019-01-01"));
+        byte[] checkpoint = Files.readAllBytes(checkpointFile);
+
+        //An asset value before the checkpoint which no period consumed has changed
+        assetValues.put(parse("2020-02-11"), assetValues.get(parse("2020-02-11")).add(BigDecimal.ONE));
+        PerfAnalysisRequest req = reqBuilder.resultEndDateIncl(parse("2023-06-15")).build();
+        assertEquals(resultsFrom(req, parse("2022-08-01")), analyze(req, checkpointFile, parse("2022-08-01")));
+
+        //An asset value of a flow day and a period end before the checkpoint have changed
+        for (String date : List.of("2020-02-13", "2021-03-31")) {
+            Files.write(checkpointFile, checkpoint);
+            TreeMap<LocalDate, BigDecimal> changedAssetValues = assetValues();
+            changedAssetValues.put(parse(date), changedAssetValues.get(parse(date)).add(BigDecimal.ONE));
+            req = requestBuilder(changedAssetValues, "ModifiedDietzMwrCalculator").resultEndDateIncl(parse("2023-06-15")).build();
+            assertEquals(List.copyOf(analyzer.analyzePerformance(req)), analyze(req, checkpointFile, parse("2019-01-01")));
+        }
+
+        //A different setting
+        Files.write(checkpointFile, checkpoint);
+        req = requestBuilder(assetValues(), "ModifiedDietzMwrCalculator").resultEndDateIncl(parse("2023-06-15")).calcScale(16).build();
+        assertEquals(List.copyOf(analyzer.analyzePerformance(req)), analyze(req, checkpointFile, parse("2019-01-01")));
+
+        //Another version
+        checkpoint[7]++;
+        Files.write(checkpointFile, checkpoint);
+        req = requestBuilder(assetValues(), "ModifiedDietzMwrCalculator").resultEndDateIncl(parse("2023-06-15")).build();
+        assertEquals(List.copyOf(analyzer.analyzePerformance(req)), analyze(req, checkpointFile, parse("2019-01-01")));
+        assertEquals(resultsFrom(req, parse("2023-06-01")), analyze(req, checkpointFile, parse("2023-06-01")));
+
+        PerfAnalysisRequest dailyReq = requestBuilder(assetValues(), "ModifiedDietzMwrCalculator")
+                .resultFrequency(DAY)
+                .resultEndDateIncl(parse("2023-06-15"))
+                .build();
+        assertThrows(IllegalArgumentException.class, () -> analyzer.analyzePerformance(dailyReq, checkpointFile, _ -> {
+        }));
+    }
+
+    @Test
+    void invalidate_subPeriodValues() throws IOException {
+        //A month end within a quarter is a sub-period end for the linked Modified Dietz TWR but not for the true TWR
+        LocalDate monthEndDate = parse("2020-02-29");
+        for (Class<? extends TwrCalculator> twrCalculatorType : List.of(LinkedModifiedDietzTwrCalculator.class, TrueTwrCalculator.class)) {
+            Path checkpointFile = tempDir.resolve(twrCalculatorType.getSimpleName() + ".checkpoint");
+            analyze(requestBuilder(assetValues(), "ModifiedDietzMwrCalculator")
+                    .resultFrequency(QUARTER)
+                    .twrCalculatorType(twrCalculatorType)
+                    .resultEndDateIncl(parse("2022-08-20"))
+                    .build(), checkpointFile, parse("2019-01-01"));
+
+            TreeMap<LocalDate, BigDecimal> changedAssetValues = assetValues();
+            changedAssetValues.put(monthEndDate, changedAssetValues.get(monthEndDate).add(BigDecimal.ONE));
+            PerfAnalysisRequest req = requestBuilder(changedAssetValues, "ModifiedDietzMwrCalculator")
+                    .resultFrequency(QUARTER)
+                    .twrCalculatorType(twrCalculatorType)
+                    .resultEndDateIncl(parse("2023-06-15"))
+                    .build();
+            if (twrCalculatorType == LinkedModifiedDietzTwrCalculator.class) {
+                assertEquals(List.copyOf(analyzer.analyzePerformance(req)), analyze(req, checkpointFile, parse("2019-01-01")));
+            } else {
+                assertEquals(resultsFrom(req, parse("2022-07-01")), analyze(req, checkpointFile, parse("2022-07-01")));
+            }
+        }
+    }
+}
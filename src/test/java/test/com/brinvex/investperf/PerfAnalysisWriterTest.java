@@ -0,0 +1,188 @@
+package test.com.brinvex.investperf;
+
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisColumn;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerfAnalysisWriter;
+import com.brinvex.investperf.api.PerformanceAnalyzer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.brinvex.fintypes.enu.Frequency.DAY;
+import static com.brinvex.investperf.api.PerfAnalysisColumn.CUMULATIVE_TWR;
+import static com.brinvex.investperf.api.PerfAnalysisColumn.PERIOD_CAPTION;
+import static com.brinvex.investperf.api.PerfAnalysisColumn.PERIOD_END_ASSET_VALUE_INCL;
+import static com.brinvex.investperf.api.PerfAnalysisColumn.PERIOD_END_DATE_INCL;
+import static com.brinvex.investperf.api.PerfAnalysisColumn.TRAILING_TWR_1Y;
+import static java.time.LocalDate.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PerfAnalysisWriterTest {
+
+    private static final List<PerfAnalysisColumn> columns = List.of(PERIOD_END_DATE_INCL, PERIOD_CAPTION, PERIOD_END_ASSET_VALUE_INCL, CUMULATIVE_TWR, TRAILING_TWR_1Y);
+
+    private static PerfAnalysisRequest request() {
+        LocalDate startDateIncl = parse("2012-01-01");
+        LocalDate endDateIncl = parse("2023-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("5000");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3).movePointLeft(1));
+        }
+        return PerfAnalysisRequest.builder()
+                .resultFrequency(DAY)
+                .resultStartDateIncl(startDateIncl)
+                .resultEndDateIncl(endDateIncl)
+                .assetValues(assetValues)
+                .flows(Map.of(parse("2015-05-13"), new BigDecimal("700"), parse("2020-02-03"), new BigDecimal("-300")))
+                .calculateTrailingTwr1Y(true)
+                .build();
+    }
+
+    private static String plain(Object value) {
+        return value == null ? "" : value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+    }
+
+    @Test
+    void csv() {
+        PerfAnalysisRequest req = request();
+        List<PerfAnalysis> perfAnalyses = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(req));
+        StringBuilder expected = new StringBuilder("periodEndDateIncl,periodCaption,periodEndAssetValueIncl,cumulativeTwr,trailingTwr1Y\n");
+        for (PerfAnalysis a : perfAnalyses) {
+            expected.append(String.join(",", plain(a.periodEndDateIncl()), plain(a.periodCaption()),
+                    plain(a.periodEndAssetValueIncl()), plain(a.cumulativeTwr()), plain(a.trailingTwr1Y()))).append('\n');
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PerfAnalysisWriter writer = PerfAnalysisWriter.csv(out, columns)) {
+            PerformanceAnalyzer.INSTANCE.analyzePerformance(req, writer);
+        }
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void jsonLines() {
+        List<PerfAnalysis> perfAnalyses = List.of(
+                PerfAnalysis.builder()
+                        .periodEndDateIncl(parse("2023-01-31"))
+                        .periodCaption("Q\"1\\")
+                        .periodEndAssetValueIncl(new BigDecimal("-0.0012"))
+                        .cumulativeTwr(new BigDecimal("1.2E+3"))
+                        .build(),
+                PerfAnalysis.builder()
+                        .periodEndAssetValueIncl(new BigDecimal("123456789012345678901234.5"))
+                        .cumulativeTwr(BigDecimal.valueOf(Long.MIN_VALUE, 3))
+                        .build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PerfAnalysisWriter writer = PerfAnalysisWriter.jsonLines(Channels.newChannel(out), columns)) {
+            perfAnalyses.forEach(writer);
+        }
+        assertEquals("""
+                {"periodEndDateIncl":"2023-01-31","periodCaption":"Q\\"1\\\\","periodEndAssetValueIncl":-0.0012,"cumulativeTwr":1200,"trailingTwr1Y":null}
+                {"periodEndDateIncl":null,"periodCaption":null,"periodEndAssetValueIncl":123456789012345678901234.5,"cumulativeTwr":-9223372036854775.808,"trailingTwr1Y":null}
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void columnar() {
+        PerfAnalysisRequest req = request();
+        List<PerfAnalysis> perfAnalyses = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(req));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PerfAnalysisWriter writer = PerfAnalysisWriter.columnar(out, List.of(PERIOD_END_DATE_INCL, PERIOD_CAPTION, TRAILING_TWR_1Y))) {
+            PerformanceAnalyzer.INSTANCE.analyzePerformance(req, writer);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x41505842, in.getInt());
+        assertEquals(1, in.getInt());
+        assertEquals(3, in.getInt());
+        List<String> columnNames = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            in.get();
+            byte[] name = new byte[in.getInt()];
+            in.get(name);
+            columnNames.add(new String(name, StandardCharsets.UTF_8));
+        }
+        assertEquals(List.of("periodEndDateIncl", "periodCaption", "trailingTwr1Y"), columnNames);
+
+        List<String> actual = new ArrayList<>();
+        for (int rowCount = in.getInt(); rowCount > 0; rowCount = in.getInt()) {
+            String[][] values = new String[3][rowCount];
+            long[] missingBits = readMissingBits(in, rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                int epochDay = in.getInt();
+                values[0][r] = isMissing(missingBits, r) ? "" : LocalDate.ofEpochDay(epochDay).toString();
+            }
+            missingBits = readMissingBits(in, rowCount);
+            byte[][] texts = readBytesWithOffsets(in, rowCount);
+            for (int r = 0; r < rowCount; r++) {
+                values[1][r] = isMissing(missingBits, r) ? "" : new String(texts[r], StandardCharsets.UTF_8);
+            }
+            missingBits = readMissingBits(in, rowCount);
+            int scale = in.getInt();
+            byte encoding = in.get();
+            assertEquals(0, encoding);
+            for (int r = 0; r < rowCount; r++) {
+                BigDecimal decimal = BigDecimal.valueOf(in.getLong(), scale);
+                values[2][r] = isMissing(missingBits, r) ? "" : decimal.stripTrailingZeros().toPlainString();
+            }
+            for (int r = 0; r < rowCount; r++) {
+                actual.add(String.join(",", values[0][r], values[1][r], values[2][r]));
+            }
+        }
+        assertEquals(0, in.remaining());
+
+        List<String> expected = perfAnalyses.stream()
+                .map(a -> String.join(",", plain(a.periodEndDateIncl()), plain(a.periodCaption()),
+                        a.trailingTwr1Y() == null ? "" : a.trailingTwr1Y().stripTrailingZeros().toPlainString()))
+                .toList();
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void invalidColumns() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThrows(IllegalArgumentException.class, () -> PerfAnalysisWriter.csv(out, List.of()));
+        assertThrows(IllegalArgumentException.class, () -> PerfAnalysisWriter.csv(out, List.of(CUMULATIVE_TWR, CUMULATIVE_TWR)));
+    }
+
+    private static long[] readMissingBits(ByteBuffer in, int rowCount) {
+        long[] missingBits = new long[(rowCount + 63) >>> 6];
+        for (int w = 0; w < missingBits.length; w++) {
+            missingBits[w] = in.getLong();
+        }
+        return missingBits;
+    }
+
+    private static boolean isMissing(long[] missingBits, int r) {
+        return (missingBits[r >>> 6] & (1L << r)) != 0;
+    }
+
+    private static byte[][] readBytesWithOffsets(ByteBuffer in, int rowCount) {
+        int[] offsets = new int[rowCount + 1];
+        for (int r = 0; r <= rowCount; r++) {
+            offsets[r] = in.getInt();
+        }
+        byte[][] rowBytes = new byte[rowCount][];
+        for (int r = 0; r < rowCount; r++) {
+            rowBytes[r] = new byte[offsets[r + 1] - offsets[r]];
+            in.get(rowBytes[r]);
+        }
+        return rowBytes;
+    }
+}
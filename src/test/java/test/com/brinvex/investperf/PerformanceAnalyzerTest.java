@@ -1,29 +1,55 @@
 package test.com.brinvex.investperf;
 
+import com.brinvex.fintypes.enu.Frequency;
 import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
 import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisBatch;
 import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerfAnalysisSession;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerfCalcResult;
 import com.brinvex.investperf.api.PerformanceAnalyzer;
+import com.brinvex.investperf.api.PerformanceCalculator;
 import com.brinvex.investperf.api.PerformanceCalculator.LinkedModifiedDietzTwrCalculator;
 import com.brinvex.investperf.api.PerformanceCalculator.ModifiedDietzMwrCalculator;
 import com.brinvex.investperf.api.PerformanceCalculator.TrueTwrCalculator;
+import com.brinvex.investperf.api.PerformanceCalculator.TwrCalculator;
 import com.brinvex.java.collection.CollectionPrintUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SequencedCollection;
+import java.util.SequencedMap;
 import java.util.TreeMap;
 
+import static com.brinvex.fintypes.enu.Frequency.DAY;
 import static com.brinvex.fintypes.enu.Frequency.MONTH;
+import static com.brinvex.fintypes.enu.Frequency.QUARTER;
+import static com.brinvex.fintypes.enu.Frequency.WEEK;
+import static com.brinvex.fintypes.enu.Frequency.YEAR;
+import static com.brinvex.investperf.api.AnnualizationOption.DO_NOT_ANNUALIZE;
 import static com.brinvex.investperf.api.FlowTiming.BEGINNING_OF_DAY;
 import static com.brinvex.investperf.api.FlowTiming.END_OF_DAY;
 import static java.time.LocalDate.now;
 import static java.time.LocalDate.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PerformanceAnalyzerTest {
 
@@ -1018,6 +1044,722 @@ public class PerformanceAnalyzerTest {
                 ));
     }
 
+    @Test
+    void analyzePerformance_cumulativeMwrMatchesCalculator() {
+        LocalDate startDateIncl = parse("2015-01-01");
+        LocalDate endDateIncl = parse("2019-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            BigDecimal flow = date.getDayOfMonth() % 7 == 0 ? new BigDecimal("-40.50") : new BigDecimal("25.10");
+            flows.put(date, flow);
+            assetValue = assetValue.add(flow).add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+            assetValues.put(date, assetValue);
+        }
+
+        //A low calcScale makes the rounding of the single flow weights matter
+        for (int calcScale : List.of(20, 2)) {
+            for (FlowTiming mwrFlowTiming : FlowTiming.values()) {
+                SequencedCollection<PerfAnalysis> perfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(PerfAnalysisRequest.builder()
+                        .resultStartDateIncl(startDateIncl)
+                        .resultEndDateIncl(endDateIncl)
+                        .assetValues(assetValues)
+                        .flows(flows)
+                        .mwrFlowTiming(mwrFlowTiming)
+                        .resultFrequency(MONTH)
+                        .calculateMwr(true)
+                        .calcScale(calcScale)
+                        .build());
+                assertEquals(60, perfAnalyses.size());
+                for (PerfAnalysis perfAnalysis : perfAnalyses) {
+                    BigDecimal expectedCumulMwr = PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(PerfCalcRequest.builder()
+                            .startDateIncl(startDateIncl)
+                            .endDateIncl(perfAnalysis.periodEndDateIncl())
+                            .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                            .endAssetValueIncl(assetValues.get(perfAnalysis.periodEndDateIncl()))
+                            .flows(flows)
+                            .flowTiming(mwrFlowTiming)
+                            .calcScale(calcScale)
+                            .build());
+                    assertEquals(expectedCumulMwr, perfAnalysis.cumulativeMwr());
+                }
+            }
+        }
+    }
+
+    /**
+     * With a calcScale this low, the bound of the weight rounding of so many flows covers the return,
+     * so the cumulative MWR of most of the days has to sum up the flows with their rounded weights.
+     */
+    @Test
+    void analyzePerformance_cumulativeMwrMatchesCalculatorAtLowCalcScale() {
+        LocalDate startDateIncl = parse("2020-01-01");
+        LocalDate endDateIncl = parse("2021-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("50000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            BigDecimal flow = date.getDayOfMonth() % 3 == 0 ? new BigDecimal("-310.70") : new BigDecimal("245.30");
+            flows.put(date, flow);
+            assetValue = assetValue.add(flow).add(new BigDecimal(7 * (date.getDayOfWeek().getValue() - 3)));
+            assetValues.put(date, assetValue);
+        }
+
+        for (int calcScale : List.of(1, 3)) {
+            for (FlowTiming mwrFlowTiming : FlowTiming.values()) {
+                for (Frequency frequency : List.of(DAY, WEEK)) {
+                    SequencedCollection<PerfAnalysis> perfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(PerfAnalysisRequest.builder()
+                            .resultStartDateIncl(startDateIncl)
+                            .resultEndDateIncl(endDateIncl)
+                            .assetValues(assetValues)
+                            .flows(flows)
+                            .mwrFlowTiming(mwrFlowTiming)
+                            .resultFrequency(frequency)
+                            .calculateMwr(true)
+                            .calcScale(calcScale)
+                            .resultRateScale(calcScale)
+                            .build());
+                    for (PerfAnalysis perfAnalysis : perfAnalyses) {
+                        BigDecimal expectedCumulMwr = PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(PerfCalcRequest.builder()
+                                .startDateIncl(startDateIncl)
+                                .endDateIncl(perfAnalysis.periodEndDateIncl())
+                                .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                                .endAssetValueIncl(assetValues.get(perfAnalysis.periodEndDateIncl()))
+                                .flows(flows)
+                                .flowTiming(mwrFlowTiming)
+                                .calcScale(calcScale)
+                                .resultScale(calcScale)
+                                .build());
+                        assertEquals(expectedCumulMwr, perfAnalysis.cumulativeMwr(), "%s, %s, %s, %s"
+                                .formatted(calcScale, mwrFlowTiming, frequency, perfAnalysis.periodEndDateIncl()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void analyzePerformance_largeFlowLevelMatchesCalculator() {
+        LocalDate startDateIncl = parse("2021-01-01");
+        LocalDate endDateIncl = parse("2021-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            if (date.getDayOfMonth() == 10) {
+                //Over 5% but under 50% of the asset value
+                BigDecimal flow = new BigDecimal(date.getMonthValue() % 2 == 0 ? "-1500" : "2000");
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3).multiply(BigDecimal.TEN));
+            assetValues.put(date, assetValue);
+        }
+
+        List<List<BigDecimal>> periodTwrsByLevel = new ArrayList<>();
+        for (int largeFlowLevelInPercent : List.of(5, 50)) {
+            SequencedCollection<PerfAnalysis> perfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(PerfAnalysisRequest.builder()
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .resultFrequency(MONTH)
+                    .twrCalculatorType(LinkedModifiedDietzTwrCalculator.class)
+                    .largeFlowLevelInPercent(largeFlowLevelInPercent)
+                    .build());
+            assertEquals(12, perfAnalyses.size());
+            for (PerfAnalysis perfAnalysis : perfAnalyses) {
+                BigDecimal expectedPeriodTwr = PerformanceCalculator.linkedModifiedDietzTwrCalculator().calculateReturn(PerfCalcRequest.builder()
+                        .startDateIncl(perfAnalysis.periodStartDateIncl())
+                        .endDateIncl(perfAnalysis.periodEndDateIncl())
+                        .startAssetValueExcl(assetValues.get(perfAnalysis.periodStartDateIncl().minusDays(1)))
+                        .endAssetValueIncl(assetValues.get(perfAnalysis.periodEndDateIncl()))
+                        .assetValues(assetValues)
+                        .flows(flows.subMap(perfAnalysis.periodStartDateIncl(), perfAnalysis.periodEndDateIncl().plusDays(1)))
+                        .largeFlowLevelInPercent(largeFlowLevelInPercent)
+                        .build());
+                assertEquals(expectedPeriodTwr, perfAnalysis.periodTwr());
+            }
+            periodTwrsByLevel.add(perfAnalyses.stream().map(PerfAnalysis::periodTwr).toList());
+        }
+        assertNotEquals(periodTwrsByLevel.get(0), periodTwrsByLevel.get(1));
+    }
+
+    /**
+     * The analyzer calculates the period TWRs without building a {@link PerfCalcRequest}, which must not change them.
+     */
+    @Test
+    void analyzePerformance_periodTwrMatchesCalculator() {
+        LocalDate startDateIncl = parse("2022-01-01");
+        LocalDate endDateIncl = parse("2022-09-30");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("20000");
+        for (LocalDate date = startDateIncl.minusDays(10); !date.isAfter(endDateIncl.plusDays(10)); date = date.plusDays(1)) {
+            if (date.getDayOfMonth() == 7 || date.getDayOfMonth() == 22) {
+                //Both small flows and flows above the large flow level
+                BigDecimal flow = new BigDecimal(date.getMonthValue() % 3 == 0 ? "-2500" : "180.40");
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3).movePointLeft(1));
+            assetValues.put(date, assetValue);
+        }
+
+        Map<Class<? extends TwrCalculator>, TwrCalculator> calculators = Map.of(
+                TrueTwrCalculator.class, PerformanceCalculator.truetwrCalculator(),
+                LinkedModifiedDietzTwrCalculator.class, PerformanceCalculator.linkedModifiedDietzTwrCalculator());
+        for (Class<? extends TwrCalculator> twrCalculatorType : calculators.keySet()) {
+            TwrCalculator calculator = calculators.get(twrCalculatorType);
+            for (NumericMode numericMode : NumericMode.values()) {
+                for (FlowTiming flowTiming : FlowTiming.values()) {
+                    for (int largeFlowLevelInPercent : List.of(5, 50)) {
+                        //The flows out of the date range are ignored
+                        SequencedCollection<PerfAnalysis> perfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(PerfAnalysisRequest.builder()
+                                .resultStartDateIncl(startDateIncl)
+                                .resultEndDateIncl(endDateIncl)
+                                .assetValues(assetValues)
+                                .flows(flows)
+                                .resultFrequency(MONTH)
+                                .twrCalculatorType(twrCalculatorType)
+                                .twrFlowTiming(flowTiming)
+                                .largeFlowLevelInPercent(largeFlowLevelInPercent)
+                                .numericMode(numericMode)
+                                .calcScale(12)
+                                .resultRateScale(12)
+                                .resultRatesInPercent(false)
+                                .build());
+                        assertEquals(9, perfAnalyses.size());
+                        for (PerfAnalysis perfAnalysis : perfAnalyses) {
+                            LocalDate periodStartDateIncl = perfAnalysis.periodStartDateIncl();
+                            LocalDate periodEndDateIncl = perfAnalysis.periodEndDateIncl();
+                            BigDecimal expectedPeriodTwr = calculator.calculateReturn(PerfCalcRequest.builder()
+                                    .startDateIncl(periodStartDateIncl)
+                                    .endDateIncl(periodEndDateIncl)
+                                    .startAssetValueExcl(assetValues.get(periodStartDateIncl.minusDays(1)))
+                                    .endAssetValueIncl(assetValues.get(periodEndDateIncl))
+                                    .assetValues(assetValues)
+                                    .flows(flows.subMap(periodStartDateIncl, periodEndDateIncl.plusDays(1)))
+                                    .flowTiming(flowTiming)
+                                    .largeFlowLevelInPercent(largeFlowLevelInPercent)
+                                    .numericMode(numericMode)
+                                    .calcScale(12)
+                                    .resultScale(12)
+                                    .annualization(DO_NOT_ANNUALIZE)
+                                    .build());
+                            assertEquals(expectedPeriodTwr, perfAnalysis.periodTwr(), "%s %s %s %s %s"
+                                    .formatted(calculator, numericMode, flowTiming, largeFlowLevelInPercent, periodEndDateIncl));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void analyzePerformance_negativeAssetValue() {
+        LocalDate startDateIncl = parse("2022-01-01");
+        LocalDate endDateIncl = parse("2022-02-28");
+        for (LocalDate negativeValueDate : List.of(startDateIncl.minusDays(1), parse("2022-01-31"), endDateIncl)) {
+            TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+            for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+                assetValues.put(date, date.isEqual(negativeValueDate) ? new BigDecimal("-1") : BigDecimal.TEN);
+            }
+            for (NumericMode numericMode : NumericMode.values()) {
+                PerfAnalysisRequest req = PerfAnalysisRequest.builder()
+                        .resultStartDateIncl(startDateIncl)
+                        .resultEndDateIncl(endDateIncl)
+                        .assetValues(assetValues)
+                        .flows(Map.of(parse("2022-01-15"), BigDecimal.ONE))
+                        .resultFrequency(MONTH)
+                        .numericMode(numericMode)
+                        .build();
+                assertThrows(IllegalArgumentException.class, () -> PerformanceAnalyzer.INSTANCE.analyzePerformance(req),
+                        "%s %s".formatted(negativeValueDate, numericMode));
+            }
+        }
+    }
+
+    @Test
+    void analyzePerformance_outOfDoubleRange() {
+        LocalDate startDateIncl = parse("2022-01-01");
+        LocalDate endDateIncl = parse("2022-01-31");
+        //The end value overflows a double, so the DOUBLE mode falls back to BIG_DECIMAL
+        BigDecimal endValueIncl = new BigDecimal("1E+400");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        assetValues.put(startDateIncl.minusDays(1), BigDecimal.ONE);
+        assetValues.put(endDateIncl, endValueIncl);
+        List<PerformanceCalculator> calculators = List.of(
+                PerformanceCalculator.truetwrCalculator(),
+                PerformanceCalculator.linkedModifiedDietzTwrCalculator(),
+                PerformanceCalculator.modifiedDietzMwrCalculator(),
+                PerformanceCalculator.xirrMwrCalculator());
+        for (PerformanceCalculator calculator : calculators) {
+            PerfCalcRequest.PerfCalcRequestBuilder req = PerfCalcRequest.builder()
+                    .startDateIncl(startDateIncl)
+                    .endDateIncl(endDateIncl)
+                    .startAssetValueExcl(BigDecimal.ONE)
+                    .endAssetValueIncl(endValueIncl)
+                    .assetValues(assetValues)
+                    .annualization(DO_NOT_ANNUALIZE);
+            BigDecimal expected = calculator.calculateReturn(req.copy().build());
+            PerfCalcResult actual = calculator.calculateReturnWithErrorBound(req.copy().numericMode(NumericMode.DOUBLE).build());
+            assertEquals(expected, actual.value(), calculator.toString());
+            assertEquals(0, actual.errorBound().signum(), calculator.toString());
+        }
+
+        for (Class<? extends TwrCalculator> twrCalculatorType : List.of(TrueTwrCalculator.class, LinkedModifiedDietzTwrCalculator.class)) {
+            PerfAnalysisRequest.PerfAnalysisRequestBuilder req = PerfAnalysisRequest.builder()
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .assetValues(assetValues)
+                    .resultFrequency(MONTH)
+                    .twrCalculatorType(twrCalculatorType)
+                    .calculateMwr(true);
+            PerfAnalysis expected = PerformanceAnalyzer.INSTANCE.analyzePerformance(req.numericMode(NumericMode.BIG_DECIMAL).build()).getFirst();
+            PerfAnalysis actual = PerformanceAnalyzer.INSTANCE.analyzePerformance(req.numericMode(NumericMode.DOUBLE).build()).getFirst();
+            assertEquals(expected, actual, twrCalculatorType.getSimpleName());
+        }
+    }
+
+    @Test
+    void analyzePerformance_trailingTwrPeriods() {
+        LocalDate startDateIncl = parse("2005-01-01");
+        LocalDate endDateIncl = parse("2020-06-30");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1).plusMonths(1).minusDays(1)) {
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.multiply(new BigDecimal(date.getMonthValue() % 4 == 0 ? "0.97" : "1.015")).setScale(2, RoundingMode.HALF_UP);
+        }
+        List<Period> trailingTwrPeriods = List.of(Period.ofMonths(6), Period.ofYears(1), Period.ofYears(7), Period.ofYears(15));
+        SequencedCollection<PerfAnalysis> perfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(PerfAnalysisRequest.builder()
+                .resultStartDateIncl(startDateIncl)
+                .resultEndDateIncl(endDateIncl)
+                .assetValues(assetValues)
+                .resultFrequency(MONTH)
+                .calculateTrailingTwr10Y(true)
+                .trailingTwrPeriods(trailingTwrPeriods)
+                .build());
+
+        List<PerfAnalysis> perfAnalysisList = List.copyOf(perfAnalyses);
+        for (int i = 0; i < perfAnalysisList.size(); i++) {
+            PerfAnalysis perfAnalysis = perfAnalysisList.get(i);
+            assertEquals(trailingTwrPeriods, List.copyOf(perfAnalysis.trailingTwrs().keySet()));
+            assertEquals(perfAnalysis.trailingTwr1Y(), perfAnalysis.trailingTwrs().get(Period.ofYears(1)));
+            assertEquals(i >= 5, perfAnalysis.trailingTwrs().get(Period.ofMonths(6)) != null);
+            assertEquals(i >= 7 * 12 - 1, perfAnalysis.trailingTwrs().get(Period.ofYears(7)) != null);
+            assertEquals(i >= 15 * 12 - 1, perfAnalysis.trailingTwrs().get(Period.ofYears(15)) != null);
+            if (i >= 5) {
+                BigDecimal expectedTrailingTwr6M = perfAnalysisList.subList(i - 5, i + 1)
+                        .stream()
+                        .map(pa -> pa.periodEndAssetValueIncl().divide(pa.periodStartAssetValueExcl(), 20, RoundingMode.HALF_UP))
+                        .reduce(BigDecimal.ONE, BigDecimal::multiply)
+                        .subtract(BigDecimal.ONE)
+                        .setScale(6, RoundingMode.HALF_UP);
+                assertEquals(expectedTrailingTwr6M, perfAnalysis.trailingTwrs().get(Period.ofMonths(6)));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> PerfAnalysisRequest.builder()
+                .resultStartDateIncl(startDateIncl)
+                .resultEndDateIncl(endDateIncl)
+                .resultFrequency(QUARTER)
+                .trailingTwrPeriods(List.of(Period.ofMonths(4)))
+                .build());
+    }
+
+    @Test
+    void analyzePerformance_trailingTwrPeriodsDoNotChangeFixedTrailingTwrs() {
+        LocalDate startDateIncl = parse("2005-01-01");
+        LocalDate endDateIncl = parse("2020-06-30");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.multiply(new BigDecimal((date.getDayOfYear() * 7 % 13) - 6).movePointLeft(3).add(BigDecimal.ONE))
+                    .setScale(2, RoundingMode.HALF_UP);
+        }
+        for (Frequency frequency : List.of(MONTH, QUARTER)) {
+            //A low calcScale makes the rounding of the chained trailing products matter
+            PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .assetValues(assetValues)
+                    .resultFrequency(frequency)
+                    .calcScale(4)
+                    .resultScale(8)
+                    .calculateTrailingTwr10Y(true);
+            List<PerfAnalysis> expectedPerfAnalyses = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.build()));
+            List<PerfAnalysis> perfAnalyses = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder
+                    .trailingTwrPeriods(List.of(Period.ofMonths(6), Period.ofYears(4), Period.ofYears(7), Period.ofYears(15)))
+                    .build()));
+            assertEquals(expectedPerfAnalyses.size(), perfAnalyses.size());
+            for (int i = 0; i < perfAnalyses.size(); i++) {
+                PerfAnalysis expected = expectedPerfAnalyses.get(i);
+                PerfAnalysis actual = perfAnalyses.get(i);
+                assertEquals(expected.trailingTwr1Y(), actual.trailingTwr1Y());
+                assertEquals(expected.trailingTwr2Y(), actual.trailingTwr2Y());
+                assertEquals(expected.trailingTwr3Y(), actual.trailingTwr3Y());
+                assertEquals(expected.trailingTwr5Y(), actual.trailingTwr5Y());
+                assertEquals(expected.trailingTwr10Y(), actual.trailingTwr10Y());
+                assertNull(expected.trailingTwrs());
+                assertEquals(expected, new PerfAnalysis(
+                        actual.periodStartDateIncl(), actual.periodEndDateIncl(), actual.periodCaption(),
+                        actual.periodStartAssetValueExcl(), actual.periodEndAssetValueIncl(), actual.periodFlow(),
+                        actual.periodTwr(), actual.cumulativeTwr(), actual.annualizedTwr(), actual.cumulativeMwr(), actual.annualizedMwr(),
+                        actual.totalContribution(), actual.periodProfit(), actual.totalProfit(), actual.periodIncome(),
+                        actual.trailingAvgProfit1Y(), actual.trailingAvgFlow1Y(), actual.trailingAvgIncome1Y(),
+                        actual.trailingTwr1Y(), actual.trailingTwr2Y(), actual.trailingTwr3Y(), actual.trailingTwr5Y(), actual.trailingTwr10Y()));
+            }
+        }
+    }
+
+    @Test
+    void openSession_appendMatchesAnalyzePerformance() {
+        LocalDate startDateIncl = parse("2017-01-01");
+        LocalDate sessionEndDateIncl = parse("2019-03-14");
+        LocalDate endDateIncl = parse("2020-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> incomes = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            if (date.getDayOfMonth() % 9 == 1) {
+                BigDecimal flow = date.getDayOfMonth() == 1 ? new BigDecimal("-120.50") : new BigDecimal("300");
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            if (date.getDayOfMonth() == 15) {
+                incomes.put(date, new BigDecimal("12.30"));
+            }
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+            assetValues.put(date, assetValue);
+        }
+
+        for (FlowTiming flowTiming : FlowTiming.values()) {
+            PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                    .resultStartDateIncl(startDateIncl)
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .incomes(incomes)
+                    .flowTiming(flowTiming)
+                    .resultFrequency(MONTH)
+                    .calculateMwr(true)
+                    .calculateTrailingAvgProfit1Y(true)
+                    .calculateTrailingAvgFlow1Y(true)
+                    .calculateTrailingAvgIncome1Y(true)
+                    .calculatePeriodIncome(true)
+                    .calculateTrailingTwr2Y(true)
+                    .trailingTwrPeriods(List.of(Period.ofMonths(3)));
+
+            PerfAnalysisSession session = PerformanceAnalyzer.INSTANCE.openSession(reqBuilder.resultEndDateIncl(sessionEndDateIncl).build());
+            for (LocalDate date = sessionEndDateIncl.plusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+                PerfAnalysis perfAnalysis = session.append(date, assetValues.get(date), flows.get(date), incomes.get(date));
+                assertEquals(date, perfAnalysis.periodEndDateIncl());
+                assertEquals(perfAnalysis, session.results().getLast());
+            }
+            SequencedCollection<PerfAnalysis> expectedPerfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(
+                    reqBuilder.resultEndDateIncl(endDateIncl).build());
+            assertEquals(48, session.results().size());
+            assertEquals(List.copyOf(expectedPerfAnalyses), List.copyOf(session.results()));
+        }
+
+        PerfAnalysisSession session = PerformanceAnalyzer.INSTANCE.openSession(PerfAnalysisRequest.builder()
+                .resultStartDateIncl(startDateIncl)
+                .resultEndDateIncl(sessionEndDateIncl)
+                .assetValues(assetValues)
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> session.append(sessionEndDateIncl.plusDays(2), BigDecimal.TEN, null, null));
+    }
+
+    @Test
+    void analyzePerformance_resultConsumer() {
+        PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                .resultStartDateIncl(parse("2022-11-15"))
+                .resultEndDateIncl(parse("2023-08-20"))
+                .performanceMeasureStartDateIncl(parse("2023-01-20"))
+                .performanceMeasureEndDateIncl(parse("2023-06-10"))
+                .assetValues(Map.of(
+                        parse("2023-01-19"), new BigDecimal("1000"),
+                        parse("2023-01-31"), new BigDecimal("1010"),
+                        parse("2023-02-28"), new BigDecimal("1050"),
+                        parse("2023-03-31"), new BigDecimal("1020"),
+                        parse("2023-04-30"), new BigDecimal("1080"),
+                        parse("2023-05-31"), new BigDecimal("1100"),
+                        parse("2023-06-10"), new BigDecimal("1090")
+                ))
+                .flows(Map.of(parse("2023-03-01"), new BigDecimal("20")))
+                .calculateMwr(true)
+                .calculateTrailingTwr1Y(true);
+        for (PerfAnalysisRequest req : List.of(
+                reqBuilder.build(),
+                reqBuilder.resultFrequency(QUARTER).build(),
+                reqBuilder.performanceMeasureStartDateIncl(parse("2023-09-01")).build())) {
+            List<PerfAnalysis> streamedPerfAnalyses = new ArrayList<>();
+            PerformanceAnalyzer.INSTANCE.analyzePerformance(req, streamedPerfAnalyses::add);
+            assertEquals(List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(req)), streamedPerfAnalyses);
+        }
+    }
+
+    @Test
+    void analyzePerformance_flowSums() {
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        for (LocalDate date = parse("2023-01-03"); date.getYear() == 2023; date = date.plusDays(7)) {
+            flows.put(date, new BigDecimal(date.getDayOfYear() - 150).movePointLeft(date.getMonthValue() % 3));
+        }
+        //The large flows overflow the fixed-point sums
+        flows.put(parse("2023-07-04"), new BigDecimal("92233720368547758.07"));
+        flows.put(parse("2023-07-11"), new BigDecimal("-92233720368547758.07"));
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("1000.00");
+        for (LocalDate date = parse("2022-12-31"); !date.isAfter(parse("2023-12-31")); date = date.plusDays(1)) {
+            assetValue = assetValue.add(flows.getOrDefault(date, BigDecimal.ZERO)).add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+            assetValues.put(date, assetValue);
+        }
+        TreeMap<LocalDate, BigDecimal> fixedPointFlows = new TreeMap<>(flows.headMap(parse("2023-07-01")));
+        //An amount of more decimal places than the resultAmountScale falls back to BigDecimal from its period on
+        TreeMap<LocalDate, BigDecimal> finerFlows = new TreeMap<>(fixedPointFlows);
+        finerFlows.put(parse("2023-03-15"), new BigDecimal("0.125"));
+        for (TreeMap<LocalDate, BigDecimal> reqFlows : List.of(fixedPointFlows, finerFlows, flows)) {
+            for (Frequency frequency : List.of(DAY, MONTH)) {
+                PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                        .resultFrequency(frequency)
+                        .resultStartDateIncl(parse("2023-01-01"))
+                        .resultEndDateIncl(parse("2023-12-31"))
+                        .assetValues(assetValues)
+                        .calculateTrailingAvgProfit1Y(true)
+                        .calculateTrailingAvgFlow1Y(true);
+                List<PerfAnalysis> expected = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder
+                        .flows((startDateIncl, endDateIncl) -> reqFlows.subMap(startDateIncl, endDateIncl.plusDays(1)))
+                        .build()));
+                for (boolean fixedPointAmounts : List.of(false, true)) {
+                    reqBuilder.fixedPointAmounts(fixedPointAmounts);
+                    String msg = "%s %s %s".formatted(reqFlows.size(), frequency, fixedPointAmounts);
+                    assertEquals(expected, List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder
+                            .flows((startDateIncl, endDateIncl) -> reqFlows.subMap(startDateIncl, endDateIncl.plusDays(1)))
+                            .build())), msg);
+                    assertEquals(expected, List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.flows(reqFlows).build())), msg);
+                    assertEquals(expected, List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.flows(reqFlows.entrySet()
+                            .stream()
+                            .map(e -> new DateAmount(e.getKey(), e.getValue()))
+                            .toList()).build())), msg);
+                }
+            }
+        }
+    }
+
+    @Test
+    void analyzePerformance_dayFrequency() {
+        LocalDate startDateIncl = parse("2018-01-01");
+        LocalDate endDateIncl = parse("2021-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            if (date.getDayOfMonth() % 10 == 3) {
+                BigDecimal flow = date.getMonthValue() % 3 == 0 ? new BigDecimal("-250") : new BigDecimal("400");
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() * 3 - 11));
+            assetValues.put(date, assetValue);
+        }
+
+        for (FlowTiming flowTiming : FlowTiming.values()) {
+            PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .flowTiming(flowTiming)
+                    .calculateMwr(true)
+                    .calculateTrailingTwr2Y(true);
+            SequencedCollection<PerfAnalysis> dayPerfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.resultFrequency(DAY).build());
+            assertEquals(1461, dayPerfAnalyses.size());
+            Map<LocalDate, PerfAnalysis> dayPerfAnalysesByDate = new HashMap<>();
+            for (PerfAnalysis dayPerfAnalysis : dayPerfAnalyses) {
+                assertEquals(dayPerfAnalysis.periodStartDateIncl(), dayPerfAnalysis.periodEndDateIncl());
+                dayPerfAnalysesByDate.put(dayPerfAnalysis.periodEndDateIncl(), dayPerfAnalysis);
+            }
+            assertEquals(null, dayPerfAnalysesByDate.get(parse("2019-12-30")).trailingTwr2Y());
+            assertNotNull(dayPerfAnalysesByDate.get(parse("2019-12-31")).trailingTwr2Y());
+
+            for (PerfAnalysis monthPerfAnalysis : PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.resultFrequency(MONTH).build())) {
+                PerfAnalysis dayPerfAnalysis = dayPerfAnalysesByDate.get(monthPerfAnalysis.periodEndDateIncl());
+                assertEquals(monthPerfAnalysis.cumulativeTwr(), dayPerfAnalysis.cumulativeTwr());
+                assertEquals(monthPerfAnalysis.annualizedTwr(), dayPerfAnalysis.annualizedTwr());
+                assertEquals(monthPerfAnalysis.cumulativeMwr(), dayPerfAnalysis.cumulativeMwr());
+                assertEquals(monthPerfAnalysis.totalContribution(), dayPerfAnalysis.totalContribution());
+                assertEquals(monthPerfAnalysis.totalProfit(), dayPerfAnalysis.totalProfit());
+                if (monthPerfAnalysis.periodEndDateIncl().getMonthValue() == 12) {
+                    assertEquals(monthPerfAnalysis.trailingTwr1Y(), dayPerfAnalysis.trailingTwr1Y());
+                    assertEquals(monthPerfAnalysis.trailingTwr2Y(), dayPerfAnalysis.trailingTwr2Y());
+                }
+            }
+        }
+    }
+
+    /**
+     * The cumulative factor falls far below the calcScale, the trailing windows must not depend on it.
+     */
+    @Test
+    void analyzePerformance_dayTrailingTwrsMatchMonth() {
+        LocalDate startDateIncl = parse("2018-01-01");
+        LocalDate endDateIncl = parse("2021-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("1000000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            BigDecimal growth = new BigDecimal(date.getDayOfWeek() == DayOfWeek.MONDAY ? "1.01" : "0.98");
+            assetValue = assetValue.multiply(growth).setScale(16, RoundingMode.HALF_UP);
+            assetValues.put(date, assetValue);
+        }
+        List<Period> trailingTwrPeriods = List.of(Period.ofMonths(6), Period.ofMonths(13));
+        PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                .resultStartDateIncl(startDateIncl)
+                .resultEndDateIncl(endDateIncl)
+                .assetValues(assetValues)
+                .calcScale(8)
+                .calculateTrailingTwr3Y(true)
+                .trailingTwrPeriods(trailingTwrPeriods);
+        Map<LocalDate, PerfAnalysis> dayPerfAnalysesByDate = new HashMap<>();
+        for (PerfAnalysis dayPerfAnalysis : PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.resultFrequency(DAY).build())) {
+            dayPerfAnalysesByDate.put(dayPerfAnalysis.periodEndDateIncl(), dayPerfAnalysis);
+        }
+        assertEquals("0.000000", dayPerfAnalysesByDate.get(endDateIncl).cumulativeTwr().add(BigDecimal.ONE).toPlainString());
+
+        for (PerfAnalysis monthPerfAnalysis : PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.resultFrequency(MONTH).build())) {
+            PerfAnalysis dayPerfAnalysis = dayPerfAnalysesByDate.get(monthPerfAnalysis.periodEndDateIncl());
+            String msg = monthPerfAnalysis.periodCaption();
+            assertEqualRates(monthPerfAnalysis.trailingTwr1Y(), dayPerfAnalysis.trailingTwr1Y(), msg);
+            assertEqualRates(monthPerfAnalysis.trailingTwr2Y(), dayPerfAnalysis.trailingTwr2Y(), msg);
+            assertEqualRates(monthPerfAnalysis.trailingTwr3Y(), dayPerfAnalysis.trailingTwr3Y(), msg);
+            for (Period trailingTwrPeriod : trailingTwrPeriods) {
+                assertEqualRates(monthPerfAnalysis.trailingTwrs().get(trailingTwrPeriod), dayPerfAnalysis.trailingTwrs().get(trailingTwrPeriod), msg);
+            }
+        }
+    }
+
+    private static void assertEqualRates(BigDecimal expected, BigDecimal actual, String message) {
+        if (expected == null) {
+            assertNull(actual, message);
+        } else {
+            assertEquals(expected.doubleValue(), actual.doubleValue(), 0.000002, message);
+        }
+    }
+
+    @Test
+    void analyzePerformanceByFrequency() {
+        LocalDate startDateIncl = parse("2018-02-10");
+        LocalDate endDateIncl = parse("2021-11-20");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            if (date.getDayOfMonth() % 10 == 3) {
+                BigDecimal flow = date.getMonthValue() % 3 == 0 ? new BigDecimal("-250") : new BigDecimal("400");
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() * 3 - 11));
+            assetValues.put(date, assetValue);
+        }
+
+        PerfAnalysisRequest.PerfAnalysisRequestBuilder reqBuilder = PerfAnalysisRequest.builder()
+                .resultStartDateIncl(startDateIncl)
+                .resultEndDateIncl(endDateIncl)
+                .assetValues(assetValues)
+                .flows(flows)
+                .calculateMwr(true)
+                .calculateTrailingAvgProfit1Y(true)
+                .calculateTrailingTwr1Y(true);
+        SequencedMap<Frequency, SequencedCollection<PerfAnalysis>> perfAnalysesByFrequency = PerformanceAnalyzer.INSTANCE
+                .analyzePerformanceByFrequency(reqBuilder.resultFrequencies(List.of(YEAR, MONTH, QUARTER)).build());
+        assertEquals(List.of(MONTH, QUARTER, YEAR), List.copyOf(perfAnalysesByFrequency.keySet()));
+        assertEquals(
+                List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.resultFrequencies(null).resultFrequency(MONTH).build())),
+                List.copyOf(perfAnalysesByFrequency.get(MONTH)));
+
+        for (Frequency frequency : List.of(QUARTER, YEAR)) {
+            List<PerfAnalysis> expectedPerfAnalyses = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqBuilder.resultFrequency(frequency).build()));
+            List<PerfAnalysis> perfAnalyses = List.copyOf(perfAnalysesByFrequency.get(frequency));
+            assertEquals(expectedPerfAnalyses.size(), perfAnalyses.size());
+            for (int i = 0; i < perfAnalyses.size(); i++) {
+                PerfAnalysis expected = expectedPerfAnalyses.get(i);
+                PerfAnalysis actual = perfAnalyses.get(i);
+                assertEquals(expected.periodCaption(), actual.periodCaption());
+                assertEquals(expected.periodStartDateIncl(), actual.periodStartDateIncl());
+                assertEquals(expected.periodEndDateIncl(), actual.periodEndDateIncl());
+                assertEquals(expected.periodFlow(), actual.periodFlow());
+                assertEquals(expected.periodProfit(), actual.periodProfit());
+                assertEquals(expected.totalContribution(), actual.totalContribution());
+                assertEquals(expected.totalProfit(), actual.totalProfit());
+                assertEquals(expected.trailingAvgProfit1Y(), actual.trailingAvgProfit1Y());
+                assertEquals(expected.cumulativeMwr(), actual.cumulativeMwr());
+                //Chained from the monthly factors, so only the last digit may differ
+                assertEquals(expected.periodTwr().doubleValue(), actual.periodTwr().doubleValue(), 0.000001);
+                assertEquals(expected.cumulativeTwr().doubleValue(), actual.cumulativeTwr().doubleValue(), 0.000001);
+                if (expected.trailingTwr1Y() == null) {
+                    assertEquals(null, actual.trailingTwr1Y());
+                } else {
+                    assertEquals(expected.trailingTwr1Y().doubleValue(), actual.trailingTwr1Y().doubleValue(), 0.000001);
+                }
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> reqBuilder.resultFrequency(null).resultFrequencies(List.of(WEEK, MONTH)).build());
+        assertThrows(IllegalArgumentException.class, () -> reqBuilder.resultFrequency(QUARTER).resultFrequencies(List.of(MONTH, QUARTER)).build());
+    }
+
+    @Test
+    void analyzePerformance_batch() {
+        List<PerfAnalysisRequest> reqs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            LocalDate startDateIncl = parse("2020-01-01").plusDays(i * 7L);
+            LocalDate endDateIncl = startDateIncl.plusMonths(14);
+            TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+            BigDecimal assetValue = new BigDecimal(1000 + i * 100);
+            for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+                //A missing start value makes every tenth request fail
+                if (i % 10 != 7 || !date.isBefore(startDateIncl)) {
+                    assetValues.put(date, assetValue);
+                }
+                assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+            }
+            reqs.add(PerfAnalysisRequest.builder()
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .assetValues(assetValues)
+                    .calculateMwr(true)
+                    .calculateTrailingTwr1Y(true)
+                    .build());
+        }
+
+        PerfAnalysisBatch batch = PerformanceAnalyzer.INSTANCE.analyzePerformance(reqs, 4);
+        assertEquals(reqs.size(), batch.outcomes().size());
+        assertEquals(4, batch.failureCount());
+        for (int i = 0; i < reqs.size(); i++) {
+            PerfAnalysisBatch.Outcome outcome = batch.outcomes().get(i);
+            if (i % 10 == 7) {
+                assertInstanceOf(IllegalStateException.class, outcome.failure());
+            } else {
+                assertEquals(List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(reqs.get(i))), List.copyOf(outcome.results()));
+            }
+        }
+        assertTrue(batch.requestsPerSecond() > 0);
+        assertTrue(batch.resultsPerSecond() > 0);
+
+        assertEquals(0, PerformanceAnalyzer.INSTANCE.analyzePerformance(List.of()).outcomes().size());
+        assertThrows(IllegalArgumentException.class, () -> PerformanceAnalyzer.INSTANCE.analyzePerformance(reqs, 0));
+    }
+
     //todo 5
     public static void assertEqualsWithMultilineMsg(String expected, String actual) {
         Assertions.assertEquals(expected, actual, () -> "\nExpected:\n%s\nActual:\n%s\n".formatted(expected, actual));
@@ -1,8 +1,12 @@
 package test.com.brinvex.investperf;
 
 import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.DateRange;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
 import com.brinvex.investperf.api.PerfCalcRequest;
 import com.brinvex.investperf.api.PerfCalcRequest.PerfCalcRequestBuilder;
+import com.brinvex.investperf.api.PerfCalcResult;
 import com.brinvex.investperf.api.PerformanceCalculator;
 import com.brinvex.investperf.api.PerformanceCalculator.LinkedModifiedDietzTwrCalculator;
 import com.brinvex.investperf.api.PerformanceCalculator.ModifiedDietzMwrCalculator;
@@ -10,7 +14,11 @@ import com.brinvex.investperf.api.PerformanceCalculator.TrueTwrCalculator;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE;
 import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE_IF_OVER_ONE_YEAR;
@@ -366,6 +374,153 @@ class PerformanceCalculatorTest {
         assertTrue(ret2.compareTo(ret4) < 0, () -> "ret2=%s, ret4=%s".formatted(ret2, ret4));
     }
 
+    @Test
+    void perfCalc_unsortedFlowsCollection() {
+        PerfCalcRequestBuilder req = PerfCalcRequest.builder()
+                .startDateIncl(parse("2021-01-01"))
+                .endDateIncl(parse("2021-03-31"))
+                .startAssetValueExcl(new BigDecimal("10000"))
+                .endAssetValueIncl(new BigDecimal("10500"))
+                .assetValues(List.of(
+                        new DateAmount(parse("2021-01-31"), new BigDecimal("10100")),
+                        new DateAmount(parse("2021-02-28"), new BigDecimal("10400")),
+                        new DateAmount(parse("2021-03-14"), new BigDecimal("10450"))
+                ))
+                .annualization(DO_NOT_ANNUALIZE);
+        PerfCalcRequestBuilder collectionReq = req.copy()
+                .flows(List.of(
+                        new DateAmount(parse("2021-03-15"), new BigDecimal("50")),
+                        new DateAmount(parse("2021-02-01"), new BigDecimal("100")),
+                        new DateAmount(parse("2021-04-01"), new BigDecimal("1000")),
+                        new DateAmount(parse("2021-03-15"), new BigDecimal("-20")),
+                        new DateAmount(parse("2020-12-31"), new BigDecimal("1000"))
+                ));
+        PerfCalcRequestBuilder mapReq = req.copy()
+                .flows(Map.of(
+                        parse("2021-02-01"), new BigDecimal("100"),
+                        parse("2021-03-15"), new BigDecimal("30")
+                ));
+        assertEquals(mapReq.build().flows(), collectionReq.build().flows());
+        assertEquals(
+                trueTwrCalculator.calculateReturn(mapReq.build()),
+                trueTwrCalculator.calculateReturn(collectionReq.build()));
+        assertEquals(
+                linkedModifiedDietzTwrCalculator.calculateReturn(mapReq.build()),
+                linkedModifiedDietzTwrCalculator.calculateReturn(collectionReq.build()));
+        assertEquals(
+                modifiedDietzMwrCalculator.calculateReturn(mapReq.build()),
+                modifiedDietzMwrCalculator.calculateReturn(collectionReq.build()));
+    }
+
+    @Test
+    void perfCalc_doubleNumericMode() {
+        PerfCalcRequestBuilder req = PerfCalcRequest.builder()
+                .startDateIncl(parse("2021-01-01"))
+                .endDateIncl(parse("2022-03-31"))
+                .startAssetValueExcl(new BigDecimal("10000"))
+                .endAssetValueIncl(new BigDecimal("12345.67"))
+                .flows(List.of(
+                        new DateAmount(parse("2021-02-01"), new BigDecimal("100")),
+                        new DateAmount(parse("2021-06-15"), new BigDecimal("-2500")),
+                        new DateAmount(parse("2022-01-03"), new BigDecimal("3000.5"))))
+                .assetValues(List.of(
+                        new DateAmount(parse("2021-01-31"), new BigDecimal("10100")),
+                        new DateAmount(parse("2021-02-28"), new BigDecimal("10400")),
+                        new DateAmount(parse("2021-03-31"), new BigDecimal("10300")),
+                        new DateAmount(parse("2021-04-30"), new BigDecimal("10500")),
+                        new DateAmount(parse("2021-05-31"), new BigDecimal("10900")),
+                        new DateAmount(parse("2021-06-14"), new BigDecimal("11000")),
+                        new DateAmount(parse("2021-06-15"), new BigDecimal("8600")),
+                        new DateAmount(parse("2021-06-30"), new BigDecimal("8700")),
+                        new DateAmount(parse("2021-07-31"), new BigDecimal("8800")),
+                        new DateAmount(parse("2021-08-31"), new BigDecimal("8750")),
+                        new DateAmount(parse("2021-09-30"), new BigDecimal("8900")),
+                        new DateAmount(parse("2021-10-31"), new BigDecimal("9100")),
+                        new DateAmount(parse("2021-11-30"), new BigDecimal("9000")),
+                        new DateAmount(parse("2021-12-31"), new BigDecimal("9300")),
+                        new DateAmount(parse("2022-01-02"), new BigDecimal("9350")),
+                        new DateAmount(parse("2022-01-31"), new BigDecimal("12500")),
+                        new DateAmount(parse("2022-02-28"), new BigDecimal("12200"))
+                ))
+                .flowTiming(BEGINNING_OF_DAY)
+                .annualization(ANNUALIZE)
+                .resultScale(8);
+
+        for (PerformanceCalculator calculator : List.of(trueTwrCalculator, linkedModifiedDietzTwrCalculator, modifiedDietzMwrCalculator)) {
+            PerfCalcResult bigDecimalResult = calculator.calculateReturnWithErrorBound(req.copy().build());
+            assertEquals(0, bigDecimalResult.errorBound().signum());
+            assertEquals(bigDecimalResult.value(), calculator.calculateReturn(req.copy().build()));
+
+            PerfCalcResult doubleResult = calculator.calculateReturnWithErrorBound(req.copy().numericMode(NumericMode.DOUBLE).build());
+            assertTrue(doubleResult.errorBound().signum() > 0);
+            assertTrue(doubleResult.errorBound().compareTo(new BigDecimal("1E-12")) < 0);
+            assertEquals(bigDecimalResult.value().setScale(6, HALF_UP), doubleResult.value().setScale(6, HALF_UP));
+        }
+    }
+
+    @Test
+    void perfCalc_dateRanges() {
+        LocalDate startDateIncl = parse("2021-01-01");
+        LocalDate endDateIncl = parse("2022-12-31");
+        Map<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        Map<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            BigDecimal flow = null;
+            if (date.getDayOfMonth() == 1 || date.getDayOfMonth() == 15) {
+                flow = BigDecimal.valueOf(date.getMonthValue() % 3 == 0 ? -300 : 500);
+                flows.put(date, flow);
+            }
+            assetValue = assetValue.add(BigDecimal.valueOf(date.getDayOfYear() % 7 - 3)).add(flow == null ? BigDecimal.ZERO : flow);
+            assetValues.put(date, assetValue);
+        }
+        List<DateRange> dateRanges = List.of(
+                new DateRange(parse("2022-12-01"), endDateIncl),
+                new DateRange(parse("2022-10-01"), endDateIncl),
+                new DateRange(parse("2022-01-01"), endDateIncl),
+                new DateRange(parse("2022-01-01"), endDateIncl),
+                new DateRange(startDateIncl, parse("2021-12-31")),
+                new DateRange(startDateIncl, endDateIncl),
+                new DateRange(parse("2021-03-15"), parse("2021-03-15")),
+                new DateRange(parse("2021-03-16"), parse("2022-06-14"))
+        );
+
+        for (FlowTiming flowTiming : FlowTiming.values()) {
+            PerfCalcRequestBuilder req = PerfCalcRequest.builder()
+                    .startDateIncl(startDateIncl)
+                    .endDateIncl(endDateIncl)
+                    .startAssetValueExcl(new BigDecimal("10000"))
+                    .endAssetValueIncl(assetValues.get(endDateIncl))
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .flowTiming(flowTiming)
+                    .annualization(ANNUALIZE_IF_OVER_ONE_YEAR);
+            for (PerformanceCalculator calculator : List.of(trueTwrCalculator, linkedModifiedDietzTwrCalculator, modifiedDietzMwrCalculator)) {
+                List<BigDecimal> expectedReturns = new ArrayList<>();
+                for (DateRange dateRange : dateRanges) {
+                    expectedReturns.add(calculator.calculateReturn(req.copy()
+                            .startDateIncl(dateRange.startDateIncl())
+                            .endDateIncl(dateRange.endDateIncl())
+                            .startAssetValueExcl(dateRange.startDateIncl().isEqual(startDateIncl)
+                                    ? new BigDecimal("10000")
+                                    : assetValues.get(dateRange.startDateIncl().minusDays(1)))
+                            .endAssetValueIncl(assetValues.get(dateRange.endDateIncl()))
+                            .build()));
+                }
+                assertEquals(expectedReturns, calculator.calculateReturns(req.copy().build(), dateRanges));
+
+                List<BigDecimal> doubleReturns = calculator.calculateReturns(req.copy().numericMode(NumericMode.DOUBLE).build(), dateRanges);
+                for (int i = 0; i < dateRanges.size(); i++) {
+                    assertEquals(expectedReturns.get(i).doubleValue(), doubleReturns.get(i).doubleValue(), 1e-9);
+                }
+
+                assertThrows(IllegalArgumentException.class, () -> calculator.calculateReturns(req.copy().build(), List.of(
+                        new DateRange(startDateIncl.minusDays(1), endDateIncl))));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new DateRange(endDateIncl, startDateIncl));
+    }
+
     /*
      * https://www.interactivebrokers.com/images/common/Statements/MWR-TWR_white_paper.pdf
      */
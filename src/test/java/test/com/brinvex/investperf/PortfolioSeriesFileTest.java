@@ -0,0 +1,205 @@
+package test.com.brinvex.investperf;
+
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerformanceAnalyzer;
+import com.brinvex.investperf.api.PortfolioSeriesFile;
+import com.brinvex.investperf.api.PortfolioSeriesFile.AccountSeries;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import static com.brinvex.fintypes.enu.Frequency.DAY;
+import static com.brinvex.fintypes.enu.Frequency.MONTH;
+import static java.time.LocalDate.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PortfolioSeriesFileTest {
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void writeAndRead() {
+        Map<LocalDate, BigDecimal> assetValues = new HashMap<>();
+        assetValues.put(parse("2023-10-16"), new BigDecimal("10000"));
+        assetValues.put(parse("2023-10-17"), new BigDecimal("10050.25"));
+        assetValues.put(parse("2023-10-20"), new BigDecimal("-0.5"));
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        flows.put(parse("2023-10-17"), new BigDecimal("123456789012345678901234567890.1"));
+        flows.put(parse("2023-10-18"), new BigDecimal("-7"));
+        flows.put(parse("2023-10-20"), new BigDecimal("0.001"));
+
+        Path file = tempDir.resolve("portfolio.bin");
+        PortfolioSeriesFile.write(file, List.of(
+                new AccountSeries("U1", assetValues, flows, null),
+                new AccountSeries("Účet 2", null, null, Map.of(parse("2023-10-18"), new BigDecimal("1.5")))
+        ));
+        PortfolioSeriesFile seriesFile = PortfolioSeriesFile.open(file);
+
+        assertEquals(List.of("U1", "Účet 2"), List.copyOf(seriesFile.accounts()));
+        var u1AssetValues = seriesFile.assetValues("U1");
+        for (LocalDate date = parse("2023-10-15"); !date.isAfter(parse("2023-10-21")); date = date.plusDays(1)) {
+            BigDecimal expected = assetValues.get(date);
+            BigDecimal actual = u1AssetValues.apply(date);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertEquals(0, expected.compareTo(actual), date.toString());
+                assertEquals(2, actual.scale());
+            }
+        }
+        SortedMap<LocalDate, BigDecimal> allU1Flows = seriesFile.flows("U1", parse("2023-10-01"), parse("2023-10-31"));
+        assertEquals(flows.keySet(), allU1Flows.keySet());
+        flows.forEach((date, flow) -> assertEquals(0, flow.compareTo(allU1Flows.get(date)), date.toString()));
+        assertEquals("123456789012345678901234567890.100", allU1Flows.get(parse("2023-10-17")).toPlainString());
+        SortedMap<LocalDate, BigDecimal> u1Flows = seriesFile.flows("U1", parse("2023-10-18"), parse("2023-10-19"));
+        assertEquals(1, u1Flows.size());
+        assertEquals(0, new BigDecimal("-7").compareTo(u1Flows.get(parse("2023-10-18"))));
+        assertTrue(seriesFile.flows("U1", parse("2023-10-21"), parse("2023-10-31")).isEmpty());
+        assertTrue(seriesFile.incomes("U1", parse("2023-10-01"), parse("2023-10-31")).isEmpty());
+
+        assertNull(seriesFile.assetValues("Účet 2").apply(parse("2023-10-18")));
+        assertEquals(Map.of(parse("2023-10-18"), new BigDecimal("1.5")), seriesFile.incomes("Účet 2", parse("2023-10-18"), parse("2023-10-18")));
+
+        assertThrows(IllegalArgumentException.class, () -> seriesFile.assetValues("U3"));
+        assertThrows(IllegalArgumentException.class, () -> PortfolioSeriesFile.write(file, List.of(
+                new AccountSeries("U1", null, null, null),
+                new AccountSeries("U1", null, null, null)
+        )));
+    }
+
+    @Test
+    void analyzePerformance() {
+        LocalDate startDateIncl = parse("2021-01-01");
+        LocalDate endDateIncl = parse("2022-06-30");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("5000");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            assetValues.put(date, assetValue);
+            assetValue = assetValue.add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+        }
+        Map<LocalDate, BigDecimal> flows = Map.of(parse("2021-05-13"), new BigDecimal("700"), parse("2022-02-03"), new BigDecimal("-300"));
+        Map<LocalDate, BigDecimal> incomes = Map.of(parse("2021-09-15"), new BigDecimal("25"));
+
+        Path file = tempDir.resolve("portfolio.bin");
+        PortfolioSeriesFile.write(file, List.of(new AccountSeries("U1", assetValues, flows, incomes)));
+        PortfolioSeriesFile seriesFile = PortfolioSeriesFile.open(file);
+
+        for (var frequency : List.of(DAY, MONTH)) {
+            PerfAnalysisRequest expectedReq = PerfAnalysisRequest.builder()
+                    .resultFrequency(frequency)
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .incomes(incomes)
+                    .calculateMwr(true)
+                    .calculateTrailingTwr1Y(true)
+                    .build();
+            PerfAnalysisRequest actualReq = seriesFile.analysisRequestBuilder("U1")
+                    .resultFrequency(frequency)
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .calculateMwr(true)
+                    .calculateTrailingTwr1Y(true)
+                    .build();
+            List<PerfAnalysis> expected = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(expectedReq));
+            List<PerfAnalysis> actual = List.copyOf(PerformanceAnalyzer.INSTANCE.analyzePerformance(actualReq));
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * A column of n long amounts takes {@code align8(4n) + 8n} bytes, so 21 of them fill a segment of 256 bytes exactly.
+     */
+    @Test
+    void writeAndRead_tinySegments() throws Exception {
+        LocalDate startDate = parse("2023-12-25");
+        List<AccountSeries> accounts = List.of(
+                //Fits after the header, does not fit after the previous column, fills the next segment exactly
+                new AccountSeries("U1", series(startDate, 10, "100.5", 0), series(startDate, 10, "-3", 2), series(startDate, 21, "0.01", 1)),
+                //Starts and ends exactly on the segment boundaries, then a BigInteger column and an empty one
+                new AccountSeries("U2", series(startDate, 21, "7", 0), series(startDate, 3, "123456789012345678901234567890.1", 3), null),
+                new AccountSeries("U3", null, null, series(startDate, 1, "-1.25", 0))
+        );
+
+        Path tinyFile = tempDir.resolve("tiny.bin");
+        PortfolioSeriesFile.write(tinyFile, accounts, 8);
+        Path defaultFile = tempDir.resolve("default.bin");
+        PortfolioSeriesFile.write(defaultFile, accounts);
+        //The header, then the columns in the segments 0 to 4, then the index
+        assertTrue(Files.size(tinyFile) > 4 * 256);
+
+        PortfolioSeriesFile tinySeriesFile = PortfolioSeriesFile.open(tinyFile);
+        PortfolioSeriesFile defaultSeriesFile = PortfolioSeriesFile.open(defaultFile);
+        assertEquals(List.of("U1", "U2", "U3"), List.copyOf(tinySeriesFile.accounts()));
+        LocalDate fromDate = startDate.minusDays(3);
+        LocalDate toDate = startDate.plusDays(100);
+        for (AccountSeries account : accounts) {
+            String name = account.account();
+            for (PortfolioSeriesFile seriesFile : List.of(tinySeriesFile, defaultSeriesFile)) {
+                Function<LocalDate, BigDecimal> assetValues = seriesFile.assetValues(name);
+                for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+                    assertSameAmount(account.assetValues().get(date), assetValues.apply(date), name + ", " + date);
+                }
+                assertSameSeries(account.flows(), seriesFile.flows(name, fromDate, toDate), name);
+                assertSameSeries(account.incomes(), seriesFile.incomes(name, fromDate, toDate), name);
+                assertSameSeries(
+                        new TreeMap<>(account.incomes()).subMap(startDate.plusDays(5), startDate.plusDays(12)),
+                        seriesFile.incomes(name, startDate.plusDays(5), startDate.plusDays(11)),
+                        name
+                );
+            }
+        }
+    }
+
+    @Test
+    void write_columnLongerThanSegment() {
+        LocalDate startDate = parse("2023-12-25");
+        Path file = tempDir.resolve("tiny.bin");
+        PortfolioSeriesFile.write(file, List.of(new AccountSeries("U1", series(startDate, 21, "1", 0), null, null)), 8);
+        assertThrows(IllegalArgumentException.class, () -> PortfolioSeriesFile.write(
+                file, List.of(new AccountSeries("U1", series(startDate, 22, "1", 0), null, null)), 8));
+        assertThrows(IllegalArgumentException.class, () -> PortfolioSeriesFile.write(file, List.of(), 4));
+        assertThrows(IllegalArgumentException.class, () -> PortfolioSeriesFile.write(file, List.of(), 31));
+    }
+
+    /**
+     * Every other day from the start date, the amounts growing by the given one.
+     */
+    private static Map<LocalDate, BigDecimal> series(LocalDate startDate, int count, String amount, int scale) {
+        Map<LocalDate, BigDecimal> series = new TreeMap<>();
+        BigDecimal step = new BigDecimal(amount);
+        for (int i = 0; i < count; i++) {
+            series.put(startDate.plusDays(2L * i), step.multiply(BigDecimal.valueOf(i + 1)).setScale(Math.max(scale, step.scale())));
+        }
+        return series;
+    }
+
+    private static void assertSameSeries(Map<LocalDate, BigDecimal> expected, SortedMap<LocalDate, BigDecimal> actual, String message) {
+        assertEquals(expected.keySet(), actual.keySet(), message);
+        expected.forEach((date, amount) -> assertSameAmount(amount, actual.get(date), message + ", " + date));
+    }
+
+    private static void assertSameAmount(BigDecimal expected, BigDecimal actual, String message) {
+        if (expected == null) {
+            assertNull(actual, message);
+        } else {
+            assertEquals(0, expected.compareTo(actual), message);
+        }
+    }
+}
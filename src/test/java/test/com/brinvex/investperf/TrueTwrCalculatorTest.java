@@ -1,19 +1,30 @@
 package test.com.brinvex.investperf;
 
 import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
 import com.brinvex.investperf.api.PerfCalcRequest;
 import com.brinvex.investperf.api.PerfCalcRequest.PerfCalcRequestBuilder;
+import com.brinvex.investperf.api.PerfCalcResult;
 import com.brinvex.investperf.api.PerformanceCalculator;
+import com.brinvex.investperf.api.TwrIndex;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
 import static com.brinvex.investperf.api.AnnualizationOption.DO_NOT_ANNUALIZE;
 import static com.brinvex.investperf.api.FlowTiming.BEGINNING_OF_DAY;
 import static com.brinvex.investperf.api.FlowTiming.END_OF_DAY;
 import static java.time.LocalDate.parse;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TrueTwrCalculatorTest {
 
@@ -246,5 +257,199 @@ class TrueTwrCalculatorTest {
         assertEquals("0.50", PerformanceCalculator.twrCalculator().calculateReturn(twrReq1).toPlainString());
     }
 
+    /**
+     * Runs with the scalar log-ratio kernel by default and once more with the vector one in the {@code vector} Maven profile.
+     * Every count of sub-periods up to several vector lengths, so that both the vector loop and the tail are covered.
+     */
+    @Test
+    void twr_doubleWithinErrorBound_everySubPeriodCount() {
+        LocalDate startDateIncl = parse("2021-01-01");
+        Random random = new Random(42);
+        for (int flowCount = 0; flowCount <= 100; flowCount++) {
+            TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+            TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+            BigDecimal assetValue = BigDecimal.valueOf(random.nextInt(100_000, 110_000), 2);
+            assetValues.put(startDateIncl.minusDays(1), assetValue);
+            LocalDate endDateIncl = startDateIncl.plusDays(flowCount);
+            for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+                if (date.isAfter(startDateIncl)) {
+                    BigDecimal flow = BigDecimal.valueOf(random.nextInt(-5_000, 5_000), 2);
+                    flows.put(date, flow);
+                    assetValue = assetValue.add(flow);
+                }
+                assetValue = assetValue.add(BigDecimal.valueOf(random.nextInt(-5_000, 5_000), 2));
+                assetValues.put(date, assetValue);
+            }
+            assertCalculatedInDoubleWithinErrorBound(startDateIncl, endDateIncl, assetValues, flows, "flowCount=" + flowCount);
+        }
+    }
+
+    @Test
+    void twr_doubleWithinErrorBound() {
+        LocalDate startDateIncl = parse("2020-01-01");
+        LocalDate endDateIncl = parse("2023-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        Random random = new Random(7);
+        BigDecimal assetValue = new BigDecimal("100000.00");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            assetValue = assetValue.add(BigDecimal.valueOf(random.nextInt(-150_000, 160_000), 2));
+            //Hundreds of flows, so hundreds of sub-periods
+            if (random.nextInt(4) == 0) {
+                BigDecimal flow = BigDecimal.valueOf(random.nextInt(-300_000, 500_000), 2);
+                flows.put(date, flow);
+                assetValue = assetValue.add(flow);
+            }
+            assetValues.put(date, assetValue);
+        }
+        assertCalculatedInDoubleWithinErrorBound(startDateIncl, endDateIncl, assetValues, flows, "");
+    }
+
+    private static void assertCalculatedInDoubleWithinErrorBound(
+            LocalDate startDateIncl,
+            LocalDate endDateIncl,
+            TreeMap<LocalDate, BigDecimal> assetValues,
+            TreeMap<LocalDate, BigDecimal> flows,
+            String message
+    ) {
+        PerformanceCalculator calculator = PerformanceCalculator.truetwrCalculator();
+        for (FlowTiming flowTiming : FlowTiming.values()) {
+            PerfCalcRequestBuilder req = PerfCalcRequest.builder()
+                    .startDateIncl(startDateIncl)
+                    .endDateIncl(endDateIncl)
+                    .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                    .endAssetValueIncl(assetValues.get(endDateIncl))
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .flowTiming(flowTiming)
+                    .calcScale(20)
+                    .resultScale(20)
+                    .annualization(DO_NOT_ANNUALIZE);
+            BigDecimal expected = calculator.calculateReturn(req.copy().numericMode(NumericMode.BIG_DECIMAL).build());
+            PerfCalcResult actual = calculator.calculateReturnWithErrorBound(req.copy().numericMode(NumericMode.DOUBLE).build());
+            assertTrue(actual.errorBound().signum() > 0, "%s %s".formatted(message, flowTiming));
+            assertTrue(actual.value().subtract(expected).abs().compareTo(actual.errorBound()) <= 0,
+                    "%s %s %s %s".formatted(message, flowTiming, expected, actual));
+        }
+    }
 
+    @Test
+    void twrIndex() {
+        LocalDate startDateIncl = parse("2023-03-01");
+        LocalDate endDateIncl = parse("2023-04-15");
+        Map<LocalDate, BigDecimal> assetValues = twrIndexAssetValues(startDateIncl, endDateIncl);
+        Map<LocalDate, BigDecimal> flows = twrIndexFlows(startDateIncl, endDateIncl);
+        for (FlowTiming flowTiming : FlowTiming.values()) {
+            for (NumericMode numericMode : NumericMode.values()) {
+                PerfCalcRequestBuilder calcReqBuilder = PerfCalcRequest.builder()
+                        .startDateIncl(startDateIncl)
+                        .endDateIncl(endDateIncl)
+                        .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                        .endAssetValueIncl(assetValues.get(endDateIncl))
+                        .assetValues(assetValues)
+                        .flows(flows)
+                        .flowTiming(flowTiming)
+                        .annualization(DO_NOT_ANNUALIZE)
+                        .numericMode(numericMode)
+                        .resultScale(10);
+                TwrIndex twrIndex = TwrIndex.of(calcReqBuilder.copy().build());
+                for (LocalDate rangeStartDateIncl = startDateIncl; !rangeStartDateIncl.isAfter(endDateIncl); rangeStartDateIncl = rangeStartDateIncl.plusDays(1)) {
+                    for (LocalDate rangeEndDateIncl = rangeStartDateIncl; !rangeEndDateIncl.isAfter(endDateIncl); rangeEndDateIncl = rangeEndDateIncl.plusDays(1)) {
+                        BigDecimal expected = PerformanceCalculator.truetwrCalculator().calculateReturn(calcReqBuilder.copy()
+                                .startDateIncl(rangeStartDateIncl)
+                                .endDateIncl(rangeEndDateIncl)
+                                .startAssetValueExcl(assetValues.get(rangeStartDateIncl.minusDays(1)))
+                                .endAssetValueIncl(assetValues.get(rangeEndDateIncl))
+                                .numericMode(NumericMode.BIG_DECIMAL)
+                                .build());
+                        BigDecimal actual = twrIndex.twr(rangeStartDateIncl, rangeEndDateIncl);
+                        if (numericMode == NumericMode.BIG_DECIMAL) {
+                            assertEquals(expected, actual, "%s %s %s".formatted(flowTiming, rangeStartDateIncl, rangeEndDateIncl));
+                        } else {
+                            assertTrue(expected.subtract(actual).abs().compareTo(new BigDecimal("1E-9")) <= 0,
+                                    "%s %s %s: %s != %s".formatted(flowTiming, rangeStartDateIncl, rangeEndDateIncl, expected, actual));
+                        }
+                    }
+                }
+                assertThrows(IllegalArgumentException.class, () -> twrIndex.twr(startDateIncl.minusDays(1), endDateIncl));
+            }
+        }
+    }
+
+    @Test
+    void twrIndex_updateAssetValue() {
+        LocalDate startDateIncl = parse("2023-03-01");
+        LocalDate endDateIncl = parse("2023-04-15");
+        Map<LocalDate, BigDecimal> assetValues = twrIndexAssetValues(startDateIncl, endDateIncl);
+        Map<LocalDate, BigDecimal> flows = twrIndexFlows(startDateIncl, endDateIncl);
+        for (FlowTiming flowTiming : FlowTiming.values()) {
+            for (NumericMode numericMode : NumericMode.values()) {
+                Map<LocalDate, BigDecimal> correctedAssetValues = new HashMap<>(assetValues);
+                PerfCalcRequestBuilder calcReqBuilder = PerfCalcRequest.builder()
+                        .startDateIncl(startDateIncl)
+                        .endDateIncl(endDateIncl)
+                        .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                        .endAssetValueIncl(assetValues.get(endDateIncl))
+                        .assetValues(assetValues)
+                        .flows(flows)
+                        .flowTiming(flowTiming)
+                        .annualization(DO_NOT_ANNUALIZE)
+                        .numericMode(numericMode)
+                        .resultScale(10);
+                TwrIndex twrIndex = TwrIndex.of(calcReqBuilder.copy().build());
+                for (LocalDate date : List.of(parse("2023-03-04"), parse("2023-03-05"), parse("2023-03-20"), startDateIncl.minusDays(1), endDateIncl)) {
+                    BigDecimal correctedAssetValue = correctedAssetValues.get(date).add(new BigDecimal("37.25"));
+                    correctedAssetValues.put(date, correctedAssetValue);
+                    twrIndex.updateAssetValue(date, correctedAssetValue);
+                }
+                calcReqBuilder = calcReqBuilder
+                        .startAssetValueExcl(correctedAssetValues.get(startDateIncl.minusDays(1)))
+                        .endAssetValueIncl(correctedAssetValues.get(endDateIncl))
+                        .assetValues(correctedAssetValues)
+                        .numericMode(NumericMode.BIG_DECIMAL);
+                for (LocalDate rangeStartDateIncl : List.of(startDateIncl, parse("2023-03-05"), parse("2023-03-06"))) {
+                    for (LocalDate rangeEndDateIncl : List.of(parse("2023-03-20"), parse("2023-03-21"), endDateIncl)) {
+                        BigDecimal expected = PerformanceCalculator.truetwrCalculator().calculateReturn(calcReqBuilder.copy()
+                                .startDateIncl(rangeStartDateIncl)
+                                .endDateIncl(rangeEndDateIncl)
+                                .startAssetValueExcl(correctedAssetValues.get(rangeStartDateIncl.minusDays(1)))
+                                .endAssetValueIncl(correctedAssetValues.get(rangeEndDateIncl))
+                                .build());
+                        BigDecimal actual = twrIndex.twr(rangeStartDateIncl, rangeEndDateIncl);
+                        assertTrue(expected.subtract(actual).abs().compareTo(new BigDecimal("1E-9")) <= 0,
+                                "%s %s %s %s: %s != %s".formatted(flowTiming, numericMode, rangeStartDateIncl, rangeEndDateIncl, expected, actual));
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<LocalDate, BigDecimal> twrIndexAssetValues(LocalDate startDateIncl, LocalDate endDateIncl) {
+        Map<LocalDate, BigDecimal> assetValues = new HashMap<>();
+        BigDecimal assetValue = new BigDecimal("1000.00");
+        for (LocalDate date = startDateIncl.minusDays(1); !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            int day = date.getDayOfMonth();
+            assetValue = assetValue.add(new BigDecimal(day % 7 - 3));
+            if (day % 5 == 0) {
+                assetValue = assetValue.add(twrIndexFlow(day));
+            }
+            assetValues.put(date, assetValue);
+        }
+        return assetValues;
+    }
+
+    private static Map<LocalDate, BigDecimal> twrIndexFlows(LocalDate startDateIncl, LocalDate endDateIncl) {
+        Map<LocalDate, BigDecimal> flows = new HashMap<>();
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            if (date.getDayOfMonth() % 5 == 0) {
+                flows.put(date, twrIndexFlow(date.getDayOfMonth()));
+            }
+        }
+        return flows;
+    }
+
+    private static BigDecimal twrIndexFlow(int dayOfMonth) {
+        return new BigDecimal(dayOfMonth % 10 == 0 ? "-120.50" : "250");
+    }
 }
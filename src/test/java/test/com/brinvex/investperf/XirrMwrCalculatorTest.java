@@ -0,0 +1,238 @@
+package test.com.brinvex.investperf;
+
+import com.brinvex.fintypes.vo.DateAmount;
+import com.brinvex.investperf.api.FlowTiming;
+import com.brinvex.investperf.api.NumericMode;
+import com.brinvex.investperf.api.PerfAnalysis;
+import com.brinvex.investperf.api.PerfAnalysisRequest;
+import com.brinvex.investperf.api.PerfCalcRequest;
+import com.brinvex.investperf.api.PerfCalcResult;
+import com.brinvex.investperf.api.PerformanceAnalyzer;
+import com.brinvex.investperf.api.PerformanceCalculator;
+import com.brinvex.investperf.api.PerformanceCalculator.XirrMwrCalculator;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SequencedCollection;
+import java.util.TreeMap;
+
+import static com.brinvex.fintypes.enu.Frequency.DAY;
+import static com.brinvex.fintypes.enu.Frequency.MONTH;
+import static com.brinvex.investperf.api.AnnualizationOption.ANNUALIZE;
+import static com.brinvex.investperf.api.AnnualizationOption.DO_NOT_ANNUALIZE;
+import static com.brinvex.investperf.api.FlowTiming.BEGINNING_OF_DAY;
+import static com.brinvex.investperf.api.FlowTiming.END_OF_DAY;
+import static java.time.LocalDate.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XirrMwrCalculatorTest {
+
+    private static final XirrMwrCalculator xirrMwrCalculator = PerformanceCalculator.xirrMwrCalculator();
+
+    /*
+     * The XIRR function example of Microsoft Excel, which discounts by 365-day years
+     * https://support.microsoft.com/en-us/office/xirr-function-de1242ec-6477-445b-b11b-a303ad9adc9d
+     */
+    private static PerfCalcRequest.PerfCalcRequestBuilder excelExampleRequest() {
+        return PerfCalcRequest.builder()
+                .startDateIncl(parse("2008-01-02"))
+                .endDateIncl(parse("2009-04-01"))
+                .startAssetValueExcl(new BigDecimal("10000"))
+                .endAssetValueIncl(new BigDecimal("2750"))
+                .flows(List.of(
+                        new DateAmount("2008-03-01", "-2750"),
+                        new DateAmount("2008-10-30", "-4250"),
+                        new DateAmount("2009-02-15", "-3250")))
+                .flowTiming(END_OF_DAY)
+                .annualization(DO_NOT_ANNUALIZE)
+                .resultScale(8);
+    }
+
+    @Test
+    void xirr_excelExample() {
+        BigDecimal cumulReturn = xirrMwrCalculator.calculateReturn(excelExampleRequest().build());
+        assertEquals("0.48640487", cumulReturn.toPlainString());
+
+        //Excel gives 0.373362535 for 365-day years, the 456 days of the period are annualized to the same
+        double annualReturn = Math.pow(1 + cumulReturn.doubleValue(), 365.0 / 456) - 1;
+        assertEquals(0.373362535, annualReturn, 1e-8);
+    }
+
+    @Test
+    void xirr_doubleWithinErrorBound() {
+        PerfCalcResult bigDecimalResult = xirrMwrCalculator.calculateReturnWithErrorBound(excelExampleRequest()
+                .resultScale(12)
+                .build());
+        assertEquals(0, bigDecimalResult.errorBound().signum());
+
+        PerfCalcResult doubleResult = xirrMwrCalculator.calculateReturnWithErrorBound(excelExampleRequest()
+                .resultScale(12)
+                .numericMode(NumericMode.DOUBLE)
+                .build());
+        assertTrue(doubleResult.errorBound().signum() > 0);
+        assertTrue(doubleResult.errorBound().compareTo(new BigDecimal("1E-12")) < 0);
+        BigDecimal diff = doubleResult.value().subtract(bigDecimalResult.value()).abs();
+        assertTrue(diff.compareTo(doubleResult.errorBound().add(new BigDecimal("1E-12"))) <= 0);
+    }
+
+    @Test
+    void xirr_withoutFlowsEqualsModifiedDietz() {
+        PerfCalcRequest req = PerfCalcRequest.builder()
+                .startDateIncl(parse("2023-01-01"))
+                .endDateIncl(parse("2024-12-31"))
+                .startAssetValueExcl(new BigDecimal("10000"))
+                .endAssetValueIncl(new BigDecimal("12100"))
+                .annualization(ANNUALIZE)
+                .build();
+        assertEquals(
+                PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(req),
+                xirrMwrCalculator.calculateReturn(req)
+        );
+    }
+
+    @Test
+    void xirr_equalsModifiedDietzForSingleFlowAtStart() {
+        //The flow is weighted in full, so the whole period is a single holding period
+        PerfCalcRequest req = PerfCalcRequest.builder()
+                .startDateIncl(parse("2023-01-01"))
+                .endDateIncl(parse("2023-06-30"))
+                .startAssetValueExcl(new BigDecimal("10000"))
+                .endAssetValueIncl(new BigDecimal("16000"))
+                .flows(List.of(new DateAmount("2023-01-01", "5000")))
+                .flowTiming(BEGINNING_OF_DAY)
+                .build();
+        assertEquals(
+                PerformanceCalculator.modifiedDietzMwrCalculator().calculateReturn(req),
+                xirrMwrCalculator.calculateReturn(req)
+        );
+    }
+
+    @Test
+    void xirr_bankruptcy() {
+        BigDecimal cumulReturn = xirrMwrCalculator.calculateReturn(PerfCalcRequest.builder()
+                .startDateIncl(parse("2023-01-01"))
+                .endDateIncl(parse("2023-12-31"))
+                .startAssetValueExcl(new BigDecimal("10000"))
+                .endAssetValueIncl(BigDecimal.ZERO)
+                .flows(List.of(new DateAmount("2023-06-01", "1000")))
+                .build());
+        assertEquals("-1.000000", cumulReturn.toPlainString());
+    }
+
+    @Test
+    void xirr_selectedByType() {
+        assertSame(xirrMwrCalculator, PerformanceCalculator.mwrCalculator("XirrMwrCalculator"));
+    }
+
+    @Test
+    void xirr_analyzerCumulativeMwrMatchesCalculator() {
+        LocalDate startDateIncl = parse("2020-01-01");
+        LocalDate endDateIncl = parse("2021-12-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        BigDecimal assetValue = new BigDecimal("10000");
+        assetValues.put(startDateIncl.minusDays(1), assetValue);
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            BigDecimal flow = date.getDayOfMonth() % 7 == 0 ? new BigDecimal("-40.50") : new BigDecimal("25.10");
+            flows.put(date, flow);
+            assetValue = assetValue.add(flow).add(new BigDecimal(date.getDayOfWeek().getValue() - 3));
+            assetValues.put(date, assetValue);
+        }
+
+        for (FlowTiming mwrFlowTiming : FlowTiming.values()) {
+            SequencedCollection<PerfAnalysis> perfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(PerfAnalysisRequest.builder()
+                    .resultStartDateIncl(startDateIncl)
+                    .resultEndDateIncl(endDateIncl)
+                    .assetValues(assetValues)
+                    .flows(flows)
+                    .mwrFlowTiming(mwrFlowTiming)
+                    .mwrCalculatorType(XirrMwrCalculator.class)
+                    .resultFrequency(MONTH)
+                    .calculateMwr(true)
+                    .build());
+            assertEquals(24, perfAnalyses.size());
+            for (PerfAnalysis perfAnalysis : perfAnalyses) {
+                BigDecimal expectedCumulMwr = xirrMwrCalculator.calculateReturn(PerfCalcRequest.builder()
+                        .startDateIncl(startDateIncl)
+                        .endDateIncl(perfAnalysis.periodEndDateIncl())
+                        .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                        .endAssetValueIncl(assetValues.get(perfAnalysis.periodEndDateIncl()))
+                        .flows(flows)
+                        .flowTiming(mwrFlowTiming)
+                        .build());
+                assertEquals(expectedCumulMwr, perfAnalysis.cumulativeMwr());
+            }
+        }
+    }
+
+    /**
+     * The flows change their sign, so the equations might have more roots, and the analyzer must not end in another one
+     * than the calculator does, although it starts from the root of the previous day.
+     */
+    @Test
+    void xirr_analyzerCumulativeMwrMatchesCalculator_multipleRoots() {
+        LocalDate startDateIncl = parse("2020-01-01");
+        LocalDate endDateIncl = parse("2020-01-31");
+        TreeMap<LocalDate, BigDecimal> assetValues = new TreeMap<>();
+        TreeMap<LocalDate, BigDecimal> flows = new TreeMap<>();
+        flows.put(parse("2020-01-03"), new BigDecimal("-304"));
+        flows.put(parse("2020-01-12"), new BigDecimal("219"));
+        flows.put(parse("2020-01-20"), new BigDecimal("-150"));
+        flows.put(parse("2020-01-27"), new BigDecimal("280"));
+        assetValues.put(startDateIncl.minusDays(1), new BigDecimal("100"));
+        for (LocalDate date = startDateIncl; !date.isAfter(endDateIncl); date = date.plusDays(1)) {
+            assetValues.put(date, new BigDecimal(11 + 37 * date.getDayOfMonth() % 190));
+        }
+        //Around the flows, high enough for the TWR sub-periods of either flow timing
+        assetValues.put(parse("2020-01-02"), new BigDecimal("400"));
+        assetValues.put(parse("2020-01-12"), new BigDecimal("300"));
+        assetValues.put(parse("2020-01-19"), new BigDecimal("200"));
+        assetValues.put(parse("2020-01-27"), new BigDecimal("350"));
+
+        for (FlowTiming mwrFlowTiming : FlowTiming.values()) {
+            for (NumericMode numericMode : NumericMode.values()) {
+                SequencedCollection<PerfAnalysis> perfAnalyses = PerformanceAnalyzer.INSTANCE.analyzePerformance(PerfAnalysisRequest.builder()
+                        .resultStartDateIncl(startDateIncl)
+                        .resultEndDateIncl(endDateIncl)
+                        .assetValues(assetValues)
+                        .flows(flows)
+                        .mwrFlowTiming(mwrFlowTiming)
+                        .mwrCalculatorType(XirrMwrCalculator.class)
+                        .resultFrequency(DAY)
+                        .calculateMwr(true)
+                        .numericMode(numericMode)
+                        .calcScale(12)
+                        .resultRateScale(12)
+                        .resultRatesInPercent(false)
+                        .build());
+                assertEquals(31, perfAnalyses.size());
+                for (PerfAnalysis perfAnalysis : perfAnalyses) {
+                    String message = "%s %s %s".formatted(mwrFlowTiming, numericMode, perfAnalysis.periodEndDateIncl());
+                    PerfCalcResult expectedCumulMwr = xirrMwrCalculator.calculateReturnWithErrorBound(PerfCalcRequest.builder()
+                            .startDateIncl(startDateIncl)
+                            .endDateIncl(perfAnalysis.periodEndDateIncl())
+                            .startAssetValueExcl(assetValues.get(startDateIncl.minusDays(1)))
+                            .endAssetValueIncl(assetValues.get(perfAnalysis.periodEndDateIncl()))
+                            .flows(flows)
+                            .flowTiming(mwrFlowTiming)
+                            .numericMode(numericMode)
+                            .calcScale(12)
+                            .resultScale(12)
+                            .annualization(DO_NOT_ANNUALIZE)
+                            .build());
+                    if (numericMode == NumericMode.BIG_DECIMAL) {
+                        assertEquals(expectedCumulMwr.value(), perfAnalysis.cumulativeMwr(), message);
+                    } else {
+                        double tolerance = 2 * expectedCumulMwr.errorBound().doubleValue() + 1e-12;
+                        double difference = perfAnalysis.cumulativeMwr().subtract(expectedCumulMwr.value()).abs().doubleValue();
+                        assertTrue(difference <= tolerance, "%s %s %s".formatted(message, expectedCumulMwr, perfAnalysis.cumulativeMwr()));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.brinvex.investperf.internal;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Each lane keeps its own compensated sum, which are merged after the loop,
+ * so the result is not bitwise equal to the scalar loop, but it is within the same error bound.
+ */
+final class VectorLogRatioKernel extends LogRatioKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    void addLogRatios(double[] numerators, double[] denominators, int length, CompensatedSum logSum) {
+        int i = 0;
+        int upperBound = SPECIES.loopBound(length);
+        if (upperBound > 0) {
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            DoubleVector compensation = DoubleVector.zero(SPECIES);
+            DoubleVector absSum = DoubleVector.zero(SPECIES);
+            for (; i < upperBound; i += SPECIES.length()) {
+                DoubleVector log = DoubleVector.fromArray(SPECIES, numerators, i)
+                        .div(DoubleVector.fromArray(SPECIES, denominators, i))
+                        .lanewise(VectorOperators.LOG);
+                DoubleVector newSum = sum.add(log);
+                VectorMask<Double> sumDominates = sum.abs().compare(VectorOperators.GE, log.abs());
+                compensation = compensation.add(log.sub(newSum).add(sum).blend(sum.sub(newSum).add(log), sumDominates));
+                sum = newSum;
+                absSum = absSum.add(log.abs());
+            }
+            for (int lane = 0; lane < SPECIES.length(); lane++) {
+                logSum.addPartial(sum.lane(lane), compensation.lane(lane), absSum.lane(lane));
+            }
+        }
+        for (; i < length; i++) {
+            logSum.add(Math.log(numerators[i] / denominators[i]));
+        }
+    }
+}